@@ -1,9 +1,12 @@
 package net.youssfi.transactionservice;
 
-import net.youssfi.transactionservice.entities.Transaction;
 import net.youssfi.transactionservice.entities.TransactionStatus;
 import net.youssfi.transactionservice.entities.TransactionType;
-import net.youssfi.transactionservice.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.service.TransactionBulkLoader;
+import net.youssfi.transactionservice.service.TransactionDatasetGenerator;
+import net.youssfi.transactionservice.service.TransactionWriteService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -13,6 +16,7 @@ import java.util.Date;
 import java.util.List;
 
 @SpringBootApplication
+@Slf4j
 public class TransactionServiceApplication {
 
     public static void main(String[] args) {
@@ -20,23 +24,28 @@ public class TransactionServiceApplication {
     }
 
     @Bean
-    CommandLineRunner commandLineRunner(TransactionRepository transactionRepository){
+    CommandLineRunner commandLineRunner(TransactionWriteService transactionWriteService,
+                                        TransactionBulkLoader transactionBulkLoader,
+                                        @Value("${transactions.seed.synthetic-rows:0}") long syntheticRows,
+                                        @Value("${transactions.seed.accounts:1000}") int syntheticAccounts){
         return args -> {
             List<Long> accounts = List.of(Long.valueOf(11),Long.valueOf(22),Long.valueOf(33));
             accounts.forEach(accountId->{
                 for (TransactionType type : TransactionType.values()){
                     for (int i = 0; i <3 ; i++) {
-                        Transaction transaction = Transaction.builder()
-                                .accountId(accountId)
-                                .type(type)
-                                .amount(1000+ Math.random()*70000)
-                                .date(new Date())
-                                .status(TransactionStatus.PENDING)
-                                .build();
-                       transactionRepository.save(transaction);
+                        // Via le service d'écriture: les résumés de comptes sont tenus à jour dès le départ
+                        transactionWriteService.create(accountId, 1000+ Math.random()*70000, type,
+                                TransactionStatus.PENDING, new Date());
                     }
                 }
             });
+            // Volume de test: générateur synthétique et chargement par lots (voir transactions.seed.*)
+            if (syntheticRows > 0) {
+                TransactionBulkLoader.LoadReport report = transactionBulkLoader.load(new TransactionDatasetGenerator(
+                        TransactionDatasetGenerator.Settings.defaults(syntheticAccounts, 42)).rows(syntheticRows));
+                log.info("Jeu de données synthétique chargé: {} transactions ({} lignes/s)",
+                        report.inserted(), String.format("%.0f", report.rowsPerSecond()));
+            }
         };
     }
 }
@@ -1,10 +1,16 @@
 package net.youssfi.transactionservice.agents;
 
 import lombok.extern.slf4j.Slf4j;
-import net.youssfi.transactionservice.util.QuestionClassifier;
+import net.youssfi.transactionservice.rag.PackedContext;
+import net.youssfi.transactionservice.service.TransactionToolResult;
+import net.youssfi.transactionservice.util.Classification;
 import net.youssfi.transactionservice.util.QuestionType;
+import net.youssfi.transactionservice.util.SemanticQuestionRouter;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.UUID;
+
 /**
  * Orchestrateur Multi-Agents qui coordonne tous les agents
  * Implémente l'architecture Agentic RAG 2.0 complète
@@ -13,7 +19,7 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class MultiAgentOrchestrator {
     
-    private final QuestionClassifier questionClassifier;
+    private final SemanticQuestionRouter questionRouter;
     private final RetrievalAgent retrievalAgent;
     private final ReasoningAgent reasoningAgent;
     private final VerificationAgent verificationAgent;
@@ -21,13 +27,13 @@ public class MultiAgentOrchestrator {
     private final ReActAgent reActAgent;
     
     public MultiAgentOrchestrator(
-            QuestionClassifier questionClassifier,
+            SemanticQuestionRouter questionRouter,
             RetrievalAgent retrievalAgent,
             ReasoningAgent reasoningAgent,
             VerificationAgent verificationAgent,
             ToolUseAgent toolUseAgent,
             ReActAgent reActAgent) {
-        this.questionClassifier = questionClassifier;
+        this.questionRouter = questionRouter;
         this.retrievalAgent = retrievalAgent;
         this.reasoningAgent = reasoningAgent;
         this.verificationAgent = verificationAgent;
@@ -43,19 +49,27 @@ public class MultiAgentOrchestrator {
         private final double confidenceScore;
         private final boolean wasCorrected;
         private final String reasoningIntent;
+        private final List<Long> commandIds; // écritures soumises par le Tool-Use Agent, confirmation à attendre
         
         public OrchestrationResult(String finalResponse, double confidenceScore, 
                                    boolean wasCorrected, String reasoningIntent) {
+            this(finalResponse, confidenceScore, wasCorrected, reasoningIntent, List.of());
+        }
+        
+        public OrchestrationResult(String finalResponse, double confidenceScore, 
+                                   boolean wasCorrected, String reasoningIntent, List<Long> commandIds) {
             this.finalResponse = finalResponse;
             this.confidenceScore = confidenceScore;
             this.wasCorrected = wasCorrected;
             this.reasoningIntent = reasoningIntent;
+            this.commandIds = commandIds;
         }
         
         public String getFinalResponse() { return finalResponse; }
         public double getConfidenceScore() { return confidenceScore; }
         public boolean wasCorrected() { return wasCorrected; }
         public String getReasoningIntent() { return reasoningIntent; }
+        public List<Long> getCommandIds() { return commandIds; }
     }
     
     /**
@@ -64,6 +78,16 @@ public class MultiAgentOrchestrator {
      * Pipeline: Classification → Retrieval → Reasoning → ReAct → Tool-Use → Verification → Réponse
      */
     public OrchestrationResult orchestrate(String question) {
+        return orchestrate(question, questionRouter.route(question), "default", UUID.randomUUID().toString());
+    }
+    
+    /**
+     * @param classification classification déjà calculée pour cette requête (pas de seconde analyse)
+     * @param chatId         conversation, transmise au Tool-Use Agent pour les écritures demandées
+     * @param requestId      jeton de nouvel essai des écritures demandées
+     */
+    public OrchestrationResult orchestrate(String question, Classification classification, String chatId, String requestId) {
+        List<Long> commandIds = List.of();
         log.info("═══════════════════════════════════════════════════════════");
         log.info("🎯 MultiAgentOrchestrator: Début de l'orchestration");
         log.info("   Question: {}", question);
@@ -71,31 +95,38 @@ public class MultiAgentOrchestrator {
         
         try {
             // 1. CLASSIFICATION: Déterminer le type de question
-            QuestionType questionType = questionClassifier.classify(question);
-            log.info("📋 Classification: {}", questionType);
+            QuestionType questionType = classification.type();
+            log.info("📋 Classification: {} (confiance {}, par {})", questionType,
+                    String.format("%.2f", classification.confidence()), classification.source());
             
             String ragContext = "";
+            PackedContext packedContext = null;
             String toolResult = null;
             
+            // SMALL_TALK: ni recherche documentaire ni outils, les agents répondent sans contexte
             // 2. RETRIEVAL AGENT: Chercher dans les documents (si question DOCUMENT)
             if (questionType == QuestionType.DOCUMENT) {
                 log.info("🔍 Étape 1: Retrieval Agent");
-                ragContext = retrievalAgent.search(question);
-                log.info("   ✅ Contexte RAG récupéré ({} caractères)", 
-                        ragContext != null ? ragContext.length() : 0);
+                // Contexte assemblé une seule fois, partagé ensuite par tous les agents
+                packedContext = retrievalAgent.retrieve(question);
+                ragContext = retrievalAgent.format(packedContext);
+                log.info("   ✅ Contexte RAG récupéré ({} segments, {} tokens)", 
+                        packedContext.getSegments().size(), packedContext.getTotalTokens());
             }
             
             // 3. TOOL-USE AGENT: Exécuter des actions (si question TRANSACTION)
             if (questionType == QuestionType.TRANSACTION) {
                 log.info("🛠️ Étape 1: Tool-Use Agent");
-                toolResult = toolUseAgent.execute(question);
+                TransactionToolResult tools = toolUseAgent.execute(question, chatId, requestId);
+                toolResult = tools.data();
+                commandIds = tools.commandIds();
                 log.info("   ✅ Résultat des outils récupéré");
             }
             
             // 4. REASONING AGENT: Interpréter et structurer
             log.info("🧠 Étape 2: Reasoning Agent");
             ReasoningAgent.StructuredContext structured = reasoningAgent.interpretAndStructure(
-                question, ragContext, toolResult
+                question, ragContext, packedContext, toolResult
             );
             log.info("   ✅ Contexte structuré");
             log.debug("   Intention: {}", structured.getIntent());
@@ -109,6 +140,7 @@ public class MultiAgentOrchestrator {
                 response = reActAgent.react(
                     question, 
                     structured.getStructuredContext(), 
+                    packedContext,
                     3 // Max 3 itérations
                 );
                 log.info("   ✅ Réponse générée via ReAct");
@@ -124,7 +156,8 @@ public class MultiAgentOrchestrator {
             VerificationAgent.VerificationResult verification = verificationAgent.verify(
                 question,
                 response,
-                structured.getStructuredContext()
+                structured.getStructuredContext(),
+                packedContext
             );
             log.info("   ✅ Vérification terminée (score: {})", String.format("%.2f", verification.getConfidenceScore()));
             
@@ -147,7 +180,8 @@ public class MultiAgentOrchestrator {
                 finalResponse,
                 verification.getConfidenceScore(),
                 wasCorrected,
-                structured.getIntent()
+                structured.getIntent(),
+                commandIds
             );
             
         } catch (Exception e) {
@@ -156,7 +190,8 @@ public class MultiAgentOrchestrator {
                 "Erreur lors du traitement de votre question. Veuillez réessayer.",
                 0.0,
                 false,
-                "error"
+                "error",
+                commandIds // écritures déjà soumises: leur confirmation reste due
             );
         }
     }
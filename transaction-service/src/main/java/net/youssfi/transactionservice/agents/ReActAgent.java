@@ -5,6 +5,9 @@ import dev.langchain4j.model.output.Response;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
 import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.rag.PackedContext;
+import net.youssfi.transactionservice.rag.TextTokenizer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -20,10 +23,18 @@ public class ReActAgent {
     
     private final ChatLanguageModel chatLanguageModel;
     private final ReasoningAgent reasoningAgent;
+    private final TextTokenizer tokenizer;
     
-    public ReActAgent(ChatLanguageModel chatLanguageModel, ReasoningAgent reasoningAgent) {
+    @Value("${rag.prompt.think-context-tokens:400}")
+    private int thinkContextTokens;
+    
+    @Value("${rag.prompt.observe-context-tokens:250}")
+    private int observeContextTokens;
+    
+    public ReActAgent(ChatLanguageModel chatLanguageModel, ReasoningAgent reasoningAgent, TextTokenizer tokenizer) {
         this.chatLanguageModel = chatLanguageModel;
         this.reasoningAgent = reasoningAgent;
+        this.tokenizer = tokenizer;
     }
     
     /**
@@ -73,12 +84,24 @@ public class ReActAgent {
      * @return Réponse finale
      */
     public String react(String question, String context, int maxIterations) {
+        return react(question, context, null, maxIterations);
+    }
+    
+    /**
+     * Exécute le cycle ReAct avec le contexte documentaire assemblé par le RetrievalAgent
+     * Les étapes THINK/OBSERVE rendent les meilleurs extraits entiers à leur budget
+     * au lieu de tronquer le contexte complet
+     * 
+     * @param packed Contexte documentaire assemblé (peut être null)
+     */
+    public String react(String question, String context, PackedContext packed, int maxIterations) {
         log.info("🔄 ReActAgent: Début du cycle ReAct");
         log.debug("   Question: {}", question);
         log.debug("   Max iterations: {}", maxIterations);
         
         List<String> thoughtHistory = new ArrayList<>();
         String currentContext = context;
+        PackedContext currentPacked = packed;
         String finalAnswer = null;
         
         for (int iteration = 1; iteration <= maxIterations; iteration++) {
@@ -86,7 +109,7 @@ public class ReActAgent {
             log.info("   🔄 Itération {}/{}", iteration, maxIterations);
             
             // 1. THINK: Raisonner sur la question et le contexte
-            Thought thought = think(question, currentContext, thoughtHistory);
+            Thought thought = think(question, currentContext, currentPacked, thoughtHistory);
             thoughtHistory.add(String.format("Étape %d: %s", iteration, thought.getReasoning()));
             
             log.info("   💭 THINK: {}", thought.getReasoning());
@@ -110,12 +133,13 @@ public class ReActAgent {
             }
             
             // 3. OBSERVE: Observer le résultat (dans ce cas, on continue avec le contexte actuel)
-            Observation observation = observe(currentContext, thought);
+            Observation observation = observe(currentContext, currentPacked, thought);
             log.info("   👁️ OBSERVE: {}", observation.getResult());
             
             if (observation.isSuccess() && "CONTINUE".equals(observation.getNextStep())) {
                 // Continuer avec le contexte actuel
                 currentContext = observation.getResult();
+                currentPacked = null; // le contexte n'est plus celui des documents
             } else if ("ANSWER".equals(observation.getNextStep())) {
                 // On peut répondre maintenant
                 finalAnswer = generateAnswer(question, currentContext, thoughtHistory);
@@ -137,7 +161,7 @@ public class ReActAgent {
     /**
      * Étape THINK: Raisonner sur la question et le contexte
      */
-    private Thought think(String question, String context, List<String> thoughtHistory) {
+    private Thought think(String question, String context, PackedContext packed, List<String> thoughtHistory) {
         String historyStr = thoughtHistory.isEmpty() ? "Aucune étape précédente" 
             : String.join("\n", thoughtHistory);
         
@@ -158,7 +182,7 @@ public class ReActAgent {
             ACTION: [ANSWER, SEARCH_MORE, ou CLARIFY]
             ÉTAPE: [description de l'étape de raisonnement]
             """, question, 
-            context != null ? context.substring(0, Math.min(1500, context.length())) : "Aucun contexte",
+            context != null ? excerpt(context, packed, thinkContextTokens) : "Aucun contexte",
             historyStr);
         
         try {
@@ -189,7 +213,7 @@ public class ReActAgent {
     /**
      * Étape OBSERVE: Observer le résultat de l'action
      */
-    private Observation observe(String context, Thought thought) {
+    private Observation observe(String context, PackedContext packed, Thought thought) {
         String prompt = String.format("""
             Analyse le contexte disponible après l'action suivante.
             
@@ -204,7 +228,7 @@ public class ReActAgent {
             SUCCÈS: [OUI ou NON]
             PROCHAINE_ÉTAPE: [ANSWER, CONTINUE, ou SEARCH_MORE]
             """, thought.getAction(), 
-            context != null ? context.substring(0, Math.min(1000, context.length())) : "Aucun contexte");
+            context != null ? excerpt(context, packed, observeContextTokens) : "Aucun contexte");
         
         try {
             Response<dev.langchain4j.data.message.AiMessage> response = chatLanguageModel.generate(
@@ -267,6 +291,17 @@ public class ReActAgent {
         }
     }
     
+    /**
+     * Extrait du contexte tenant dans maxTokens: les premiers extraits du contexte assemblé s'il existe,
+     * sinon le début du contexte
+     */
+    private String excerpt(String context, PackedContext packed, int maxTokens) {
+        if (packed != null && !packed.isEmpty()) {
+            return packed.render(maxTokens);
+        }
+        return tokenizer.truncate(context, maxTokens);
+    }
+    
     /**
      * Extrait un champ d'une réponse structurée
      */
@@ -5,6 +5,9 @@ import dev.langchain4j.model.output.Response;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
 import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.rag.PackedContext;
+import net.youssfi.transactionservice.rag.TextTokenizer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
@@ -16,9 +19,14 @@ import org.springframework.stereotype.Component;
 public class ReasoningAgent {
     
     private final ChatLanguageModel chatLanguageModel;
+    private final TextTokenizer tokenizer;
     
-    public ReasoningAgent(ChatLanguageModel chatLanguageModel) {
+    @Value("${rag.prompt.key-points-context-tokens:500}")
+    private int keyPointsContextTokens;
+    
+    public ReasoningAgent(ChatLanguageModel chatLanguageModel, TextTokenizer tokenizer) {
         this.chatLanguageModel = chatLanguageModel;
+        this.tokenizer = tokenizer;
     }
     
     /**
@@ -55,6 +63,18 @@ public class ReasoningAgent {
     public StructuredContext interpretAndStructure(String question, 
                                                    String ragContext, 
                                                    String toolResult) {
+        return interpretAndStructure(question, ragContext, null, toolResult);
+    }
+    
+    /**
+     * Variante utilisant le contexte documentaire assemblé pour l'extraction des points clés
+     * 
+     * @param packed Contexte documentaire assemblé par le RetrievalAgent (peut être null)
+     */
+    public StructuredContext interpretAndStructure(String question, 
+                                                   String ragContext, 
+                                                   PackedContext packed,
+                                                   String toolResult) {
         log.info("🧠 ReasoningAgent: Début de l'interprétation et structuration");
         log.debug("   Question: {}", question);
         
@@ -68,7 +88,7 @@ public class ReasoningAgent {
             log.debug("   Contexte structuré ({} caractères)", structuredContext.length());
             
             // 3. Extraire les points clés
-            String keyPoints = extractKeyPoints(question, ragContext, toolResult);
+            String keyPoints = extractKeyPoints(question, ragContext, packed, toolResult);
             log.debug("   Points clés extraits");
             
             // 4. Suggérer un template de réponse
@@ -178,10 +198,13 @@ public class ReasoningAgent {
     /**
      * Extrait les points clés du contexte
      */
-    private String extractKeyPoints(String question, String ragContext, String toolResult) {
+    private String extractKeyPoints(String question, String ragContext, PackedContext packed, String toolResult) {
         String contextToAnalyze = "";
-        if (ragContext != null && !ragContext.isEmpty()) {
-            contextToAnalyze = ragContext.substring(0, Math.min(2000, ragContext.length()));
+        if (packed != null && !packed.isEmpty()) {
+            // Premiers extraits entiers plutôt que le début du texte formaté
+            contextToAnalyze = packed.render(keyPointsContextTokens);
+        } else if (ragContext != null && !ragContext.isEmpty()) {
+            contextToAnalyze = tokenizer.truncate(ragContext, keyPointsContextTokens);
         } else if (toolResult != null && !toolResult.isEmpty()) {
             contextToAnalyze = toolResult;
         }
@@ -3,8 +3,15 @@ package net.youssfi.transactionservice.agents;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
 import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.rag.ContextPacker;
+import net.youssfi.transactionservice.rag.CrossEncoderReranker;
+import net.youssfi.transactionservice.rag.PackedContext;
+import net.youssfi.transactionservice.rag.RetrievalFilterExtractor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -26,12 +33,23 @@ public class RetrievalAgent {
     @Autowired(required = false)
     private EmbeddingModel embeddingModel;
     
+    @Autowired(required = false)
+    private CrossEncoderReranker reranker; // présent si rag.rerank.enabled=true
+    
     @Value("${rag.retriever.max-results:30}")
     private int maxResults;
     
     @Value("${rag.retriever.min-score:0.0}")
     private double minScore;
     
+    private final ContextPacker contextPacker;
+    private final RetrievalFilterExtractor filterExtractor;
+    
+    public RetrievalAgent(ContextPacker contextPacker, RetrievalFilterExtractor filterExtractor) {
+        this.contextPacker = contextPacker;
+        this.filterExtractor = filterExtractor;
+    }
+    
     /**
      * Cherche dans les documents et retourne le contexte RAG
      * 
@@ -39,48 +57,84 @@ public class RetrievalAgent {
      * @return Contexte RAG formaté
      */
     public String search(String question) {
+        return format(retrieve(question));
+    }
+    
+    /**
+     * Cherche dans les documents et assemble le contexte au budget de tokens
+     * Le même PackedContext est ensuite rendu par chaque agent à son propre budget
+     * 
+     * @param question La question de l'utilisateur
+     * @return Contexte assemblé (vide si rien n'est trouvé)
+     */
+    public PackedContext retrieve(String question) {
         if (embeddingStore == null || embeddingModel == null) {
             log.warn("⚠️ EmbeddingStore ou EmbeddingModel non disponible");
-            return "";
+            return PackedContext.empty();
         }
         
         try {
             // Générer l'embedding de la question
             Embedding queryEmbedding = embeddingModel.embed(question).content();
             
-            // Rechercher dans le vector store
-            Method findRelevantMethod = embeddingStore.getClass()
-                .getMethod("findRelevant", Embedding.class, int.class, double.class);
+            // Filtres désignés par la question (document, type, année), appliqués dans le store
+            List<EmbeddingMatch<TextSegment>> matches = null;
+            Filter filter = filterExtractor.extract(question);
+            if (filter != null) {
+                matches = embeddingStore.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(queryEmbedding)
+                        .maxResults(maxResults)
+                        .minScore(minScore)
+                        .filter(filter)
+                        .build()).matches();
+                if (matches.isEmpty()) {
+                    log.info("Aucun segment ne correspond au filtre, recherche sans filtre");
+                }
+            }
             
-            @SuppressWarnings("unchecked")
-            List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>> matches = 
-                (List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>>) 
-                findRelevantMethod.invoke(embeddingStore, queryEmbedding, maxResults, minScore);
+            if (matches == null || matches.isEmpty()) {
+                // Rechercher dans le vector store
+                Method findRelevantMethod = embeddingStore.getClass()
+                    .getMethod("findRelevant", Embedding.class, int.class, double.class);
+                
+                @SuppressWarnings("unchecked")
+                List<EmbeddingMatch<TextSegment>> unfiltered = 
+                    (List<EmbeddingMatch<TextSegment>>) 
+                    findRelevantMethod.invoke(embeddingStore, queryEmbedding, maxResults, minScore);
+                matches = unfiltered;
+            }
             
             if (matches == null || matches.isEmpty()) {
                 log.warn("⚠️ Aucun résultat trouvé");
-                return "";
+                return PackedContext.empty();
             }
             
-            // Formater le contexte
-            StringBuilder context = new StringBuilder();
-            context.append("═══════════════════════════════════════════════════════════\n");
-            context.append("📚 CONTEXTE PERTINENT DEPUIS LES DOCUMENTS\n");
-            context.append("═══════════════════════════════════════════════════════════\n\n");
-            
-            for (int i = 0; i < matches.size(); i++) {
-                dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment> match = matches.get(i);
-                context.append(String.format("【 Extrait %d 】 (Score: %.3f)\n", i + 1, match.score()));
-                context.append(match.embedded().text());
-                context.append("\n\n");
+            if (reranker != null) {
+                // Les scores du cross-encoder remplacent la similarité cosinus pour l'assemblage
+                matches = reranker.rerank(question, matches);
+                queryEmbedding = null;
             }
             
-            log.info("✅ {} segments trouvés", matches.size());
-            return context.toString();
+            PackedContext packed = contextPacker.pack(queryEmbedding, matches);
+            log.info("✅ {} segments trouvés, {} retenus", matches.size(), packed.getSegments().size());
+            return packed;
             
         } catch (Exception e) {
             log.error("❌ Erreur lors de la recherche: {}", e.getMessage(), e);
+            return PackedContext.empty();
+        }
+    }
+    
+    /**
+     * Formate le contexte assemblé avec son bandeau
+     */
+    public String format(PackedContext packed) {
+        if (packed.isEmpty()) {
             return "";
         }
+        return "═══════════════════════════════════════════════════════════\n" +
+               "📚 CONTEXTE PERTINENT DEPUIS LES DOCUMENTS\n" +
+               "═══════════════════════════════════════════════════════════\n\n" +
+               packed.render();
     }
 }
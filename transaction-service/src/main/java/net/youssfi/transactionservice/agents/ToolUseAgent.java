@@ -1,6 +1,7 @@
 package net.youssfi.transactionservice.agents;
 
 import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.service.TransactionToolResult;
 import net.youssfi.transactionservice.service.TransactionToolService;
 import org.springframework.stereotype.Component;
 
@@ -22,19 +23,21 @@ public class ToolUseAgent {
      * Exécute les outils appropriés selon la question
      * 
      * @param question La question de l'utilisateur
-     * @return Résultat formaté des outils
+     * @param chatId    conversation de la requête
+     * @param requestId jeton de nouvel essai des écritures demandées (voir TransactionCommandService)
+     * @return Résultat formaté des outils et commandes d'écriture soumises
      */
-    public String execute(String question) {
+    public TransactionToolResult execute(String question, String chatId, String requestId) {
         log.info("🛠️ ToolUseAgent: Exécution des outils pour '{}'", question);
         
-        String result = transactionToolService.executeTools(question);
+        TransactionToolResult result = transactionToolService.executeTools(question, chatId, requestId);
         
-        if (result == null || result.isEmpty()) {
+        if (result == null || result.data() == null || result.data().isEmpty()) {
             log.warn("⚠️ Aucun résultat des outils");
-            return "";
+            return TransactionToolResult.of("");
         }
         
-        log.info("✅ Résultat des outils récupéré ({} caractères)", result.length());
+        log.info("✅ Résultat des outils récupéré ({} caractères)", result.data().length());
         return result;
     }
 }
@@ -1,6 +1,8 @@
 package net.youssfi.transactionservice.agents;
 
+import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
 
 import java.util.stream.Stream;
 
@@ -8,18 +10,31 @@ public interface TransactionAIAgent {
     @SystemMessage("""
             You are a helpful assistant specialized in managing transactions.
             You have access to tools that allow you to interact with the database:
-            - getAllTransactions: Get all transactions from the database
-            - getAllTransactionsByAccountId: Get transactions for a specific account
-            - getTransactionsByStatus: Get transactions by status (PENDING, EXECUTED, CANCELED)
+            - getAllTransactions: Get one page of transactions with the total count, credits and debits
+            - getAllTransactionsByAccountId: Get one page of transactions for a specific account, with the account totals
+            - getTransactionsByStatus: Get one page of transactions by status (PENDING, EXECUTED, CANCELED), with the status totals
+            - sumAmountByType: Sum the amounts of one type (DEBIT or CREDIT) for an account
+            - summarizeAccountByStatus: Count, credits, debits and balance of an account for each status
             - getTransactionById: Get a specific transaction by ID
-            - updateTransactionStatus: Update the status of a transaction
-            - createTransaction: Create a new transaction
-            - deleteTransaction: Delete a transaction
+            - updateTransactionStatus: Request a status update of a transaction
+            - createTransaction: Request the creation of a new transaction
+            - deleteTransaction: Request the deletion of a transaction
             - calculateAccountBalance: Calculate the balance for an account (sum of credits minus debits)
+            - getAccountSummary: Balance, counts per status, credit and debit totals, largest debit and last activity of an account
+            - aggregateTransactions: Count, total, average, minimum and maximum of amounts, filtered by type, status, account
+              and period, optionally grouped by account, type, status, month or day
+            - monthlyTrend: Month by month totals over the last months
             
             When a user asks about transactions, use the appropriate tools to retrieve information from the database.
+            Listing tools return at most one page: start with afterId 0 and use nextAfterId only if more rows are really needed.
+            Prefer the totals returned with the page over adding up the rows yourself.
+            Write tools only queue a command and return its number: the change is applied in the background and its
+            confirmation is sent to the user separately. Call each write tool once per request; never say that the
+            change is already done, and never call it again to check.
+            For totals, averages, counts or rankings ("this month", "per account"...), use aggregateTransactions instead of listing rows.
             Always provide accurate and helpful responses based on the data you retrieve.
             Format amounts with 2 decimal places and provide clear, structured information.
             """)
-    Stream<String> chat(String question);
+    // chatId sélectionne la mémoire de la conversation et est transmis aux outils d'écriture (@ToolMemoryId)
+    Stream<String> chat(@MemoryId String chatId, @UserMessage String question);
 }
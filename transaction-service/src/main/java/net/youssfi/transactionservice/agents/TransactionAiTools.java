@@ -2,103 +2,183 @@ package net.youssfi.transactionservice.agents;
 
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
 import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.analytics.AnalyticsQuery;
+import net.youssfi.transactionservice.analytics.AnalyticsResult;
+import net.youssfi.transactionservice.analytics.Period;
+import net.youssfi.transactionservice.analytics.TransactionAnalyticsService;
+import net.youssfi.transactionservice.entities.AccountSummary;
 import net.youssfi.transactionservice.entities.Transaction;
 import net.youssfi.transactionservice.entities.TransactionStatus;
 import net.youssfi.transactionservice.entities.TransactionType;
+import net.youssfi.transactionservice.repository.AccountBalance;
+import net.youssfi.transactionservice.repository.AccountStatusTotals;
 import net.youssfi.transactionservice.repository.TransactionRepository;
+import net.youssfi.transactionservice.service.AccountSummaryService;
+import net.youssfi.transactionservice.service.TransactionLookupService;
+import net.youssfi.transactionservice.service.TransactionCommandService;
+import net.youssfi.transactionservice.service.TransactionPage;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.Date;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 @Component
 @Slf4j
 public class TransactionAiTools {
     private final TransactionRepository transactionRepository;
+    private final TransactionCommandService transactionCommandService;
+    private final AccountSummaryService accountSummaryService;
+    private final TransactionLookupService transactionLookupService;
+    private final TransactionAnalyticsService transactionAnalyticsService;
 
-    public TransactionAiTools(TransactionRepository transactionRepository) {
+    @Value("${rag.tools.max-rows:50}")
+    private int maxRows; // Groupes renvoyés au plus par les outils analytiques
+
+    public TransactionAiTools(TransactionRepository transactionRepository, TransactionCommandService transactionCommandService,
+                              AccountSummaryService accountSummaryService, TransactionLookupService transactionLookupService,
+                              TransactionAnalyticsService transactionAnalyticsService) {
         this.transactionRepository = transactionRepository;
+        this.transactionCommandService = transactionCommandService;
+        this.accountSummaryService = accountSummaryService;
+        this.transactionLookupService = transactionLookupService;
+        this.transactionAnalyticsService = transactionAnalyticsService;
     }
 
-    @Tool("Récupère toutes les transactions de la base de données")
-    public List<Transaction> getAllTransactions(){
-        log.info("Récupération de toutes les transactions depuis la base de données");
-        return transactionRepository.findAll();
+    @Tool("Récupère une page de transactions (par ordre d'identifiant) avec le nombre total et les totaux de crédits et débits")
+    public TransactionPage getAllTransactions(
+            @P("Identifiant de la dernière transaction déjà reçue (0 pour commencer)") long afterId){
+        log.info("Récupération des transactions après l'ID {}", afterId);
+        return transactionLookupService.allPage(afterId);
     }
 
-    @Tool("Récupère toutes les transactions pour un compte spécifique en utilisant l'ID du compte")
-    public List<Transaction> getAllTransactionsByAccountId(@P("L'ID du compte") long accountId){
-        log.info("Récupération des transactions pour le compte: {}", accountId);
-        return transactionRepository.findByAccountId(accountId);
+    @Tool("Récupère une page de transactions pour un compte spécifique en utilisant l'ID du compte, avec les totaux du compte")
+    public TransactionPage getAllTransactionsByAccountId(
+            @P("L'ID du compte") long accountId,
+            @P("Identifiant de la dernière transaction déjà reçue (0 pour commencer)") long afterId){
+        log.info("Récupération des transactions pour le compte: {} après l'ID {}", accountId, afterId);
+        return transactionLookupService.accountPage(accountId, afterId);
     }
 
-    @Tool("Récupère toutes les transactions avec un statut spécifique (PENDING, EXECUTED, CANCELED)")
-    public List<Transaction> getTransactionsByStatus(@P("Le statut de la transaction") TransactionStatus status){
-        log.info("Récupération des transactions avec le statut: {}", status);
-        return transactionRepository.findByStatus(status);
+    @Tool("Récupère une page de transactions avec un statut spécifique (PENDING, EXECUTED, CANCELED), avec les totaux du statut")
+    public TransactionPage getTransactionsByStatus(
+            @P("Le statut de la transaction") TransactionStatus status,
+            @P("Identifiant de la dernière transaction déjà reçue (0 pour commencer)") long afterId){
+        log.info("Récupération des transactions avec le statut: {} après l'ID {}", status, afterId);
+        return transactionLookupService.statusPage(status, afterId);
     }
 
     @Tool("Récupère une transaction spécifique par son ID")
     public Transaction getTransactionById(@P("L'ID de la transaction") Long transactionId){
         log.info("Récupération de la transaction avec l'ID: {}", transactionId);
+        // Lue dans le cache de second niveau (région transaction) si elle y est
         return transactionRepository.findById(transactionId)
                 .orElseThrow(() -> new RuntimeException("Transaction non trouvée avec l'ID: " + transactionId));
     }
 
-    @Tool("Met à jour le statut d'une transaction existante")
-    public Transaction updateTransactionStatus(
+    // Écritures soumises à TransactionCommandService: appliquées en arrière-plan; sans jeton de requête, un nouvel
+    // appel avec les mêmes arguments dans la fenêtre de déduplication retrouve la commande au lieu de l'appliquer
+
+    @Tool("Demande la mise à jour du statut d'une transaction existante (appliquée en arrière-plan, renvoie le numéro de commande)")
+    public String updateTransactionStatus(
+            @ToolMemoryId Object chatId,
             @P("L'ID de la transaction à mettre à jour") Long transactionId,
             @P("Le nouveau statut (PENDING, EXECUTED, CANCELED)") TransactionStatus transactionStatus){
         log.info("Mise à jour du statut de la transaction {} vers {}", transactionId, transactionStatus);
-        Transaction transaction = transactionRepository.findById(transactionId)
-                .orElseThrow(() -> new RuntimeException("Transaction non trouvée avec l'ID: " + transactionId));
-        transaction.setStatus(transactionStatus);
-        return transactionRepository.save(transaction);
+        return transactionCommandService.submitStatusUpdate(String.valueOf(chatId), null, transactionId, transactionStatus).message();
     }
 
-    @Tool("Crée une nouvelle transaction dans la base de données")
-    public Transaction createTransaction(
+    @Tool("Demande la création d'une nouvelle transaction (appliquée en arrière-plan, renvoie le numéro de commande)")
+    public String createTransaction(
+            @ToolMemoryId Object chatId,
             @P("L'ID du compte") long accountId,
             @P("Le montant de la transaction") double amount,
             @P("Le type de transaction (DEBIT ou CREDIT)") TransactionType type,
             @P("Le statut initial (PENDING, EXECUTED, CANCELED)") TransactionStatus status){
         log.info("Création d'une nouvelle transaction: compte={}, montant={}, type={}, statut={}", 
                 accountId, amount, type, status);
-        Transaction transaction = Transaction.builder()
-                .accountId(accountId)
-                .amount(amount)
-                .type(type)
-                .status(status)
-                .date(new Date())
-                .build();
-        return transactionRepository.save(transaction);
+        return transactionCommandService.submitCreate(String.valueOf(chatId), null, accountId, amount, type, status).message();
     }
 
-    @Tool("Supprime une transaction de la base de données")
-    public String deleteTransaction(@P("L'ID de la transaction à supprimer") Long transactionId){
+    @Tool("Demande la suppression d'une transaction (appliquée en arrière-plan, renvoie le numéro de commande)")
+    public String deleteTransaction(
+            @ToolMemoryId Object chatId,
+            @P("L'ID de la transaction à supprimer") Long transactionId){
         log.info("Suppression de la transaction avec l'ID: {}", transactionId);
-        if (transactionRepository.existsById(transactionId)) {
-            transactionRepository.deleteById(transactionId);
-            return "Transaction " + transactionId + " supprimée avec succès";
-        } else {
-            return "Transaction non trouvée avec l'ID: " + transactionId;
-        }
+        return transactionCommandService.submitDelete(String.valueOf(chatId), null, transactionId).message();
     }
 
     @Tool("Calcule le solde total pour un compte spécifique (somme des crédits moins somme des débits)")
     public double calculateAccountBalance(@P("L'ID du compte") long accountId){
         log.info("Calcul du solde pour le compte: {}", accountId);
-        List<Transaction> transactions = transactionRepository.findByAccountId(accountId);
-        double balance = 0.0;
-        for (Transaction t : transactions) {
-            if (t.getType() == TransactionType.CREDIT) {
-                balance += t.getAmount();
-            } else if (t.getType() == TransactionType.DEBIT) {
-                balance -= t.getAmount();
-            }
+        // Résumé maintenu à chaque écriture (une ligne), sinon agrégat calculé par la base
+        Optional<AccountSummary> summary = accountSummaryService.find(accountId);
+        if (summary.isPresent()) {
+            return summary.get().getBalance();
+        }
+        AccountBalance balance = transactionRepository.findBalanceByAccountId(accountId);
+        return balance != null ? balance.getBalance() : 0.0;
+    }
+
+    @Tool("Calcule le total des montants d'un type (DEBIT ou CREDIT) pour un compte spécifique")
+    public double sumAmountByType(
+            @P("L'ID du compte") long accountId,
+            @P("Le type de transaction (DEBIT ou CREDIT)") TransactionType type){
+        log.info("Total des {} pour le compte: {}", type, accountId);
+        return accountSummaryService.find(accountId)
+                .map(summary -> type == TransactionType.CREDIT ? summary.getTotalCredits() : summary.getTotalDebits())
+                .orElseGet(() -> transactionRepository.sumAmountByAccountIdAndType(accountId, type));
+    }
+
+    @Tool("Résumé d'un compte: solde, nombre de transactions par statut, totaux et nombres de crédits et débits, plus gros débit, dernière activité")
+    public AccountSummary getAccountSummary(@P("L'ID du compte") long accountId){
+        log.info("Résumé du compte: {}", accountId);
+        return accountSummaryService.find(accountId)
+                .orElseThrow(() -> new RuntimeException("Aucune transaction pour le compte: " + accountId));
+    }
+
+    @Tool("Résume les transactions d'un compte par statut (nombre, crédits, débits, solde)")
+    public List<AccountStatusTotals> summarizeAccountByStatus(@P("L'ID du compte") long accountId){
+        log.info("Résumé par statut pour le compte: {}", accountId);
+        return transactionRepository.summarizeByStatus(accountId);
+    }
+
+    @Tool("Statistiques sur les montants des transactions (nombre, total, moyenne, minimum, maximum), filtrées et regroupées: "
+            + "par exemple total des débits exécutés ce mois, moyenne par compte, nombre de transactions en attente par mois")
+    public AnalyticsResult aggregateTransactions(
+            @P("Valeur demandée (SUM, COUNT, AVG, MIN, MAX), sert aussi à classer les comptes") AnalyticsQuery.Aggregate aggregate,
+            @P("Le type de transaction (DEBIT, CREDIT ou ALL)") String type,
+            @P("Le statut (PENDING, EXECUTED, CANCELED ou ALL)") String status,
+            @P("L'ID du compte (0 pour tous les comptes)") long accountId,
+            @P("La période: ALL, TODAY, YESTERDAY, THIS_WEEK, THIS_MONTH, LAST_MONTH, THIS_YEAR, LAST_YEAR, AAAA, AAAA-MM ou AAAA-MM-JJ") String period,
+            @P("Le regroupement (NONE, ACCOUNT, TYPE, STATUS, MONTH, DAY)") AnalyticsQuery.GroupBy groupBy){
+        AnalyticsQuery query = new AnalyticsQuery(accountId > 0 ? accountId : null, optional(TransactionType.class, type),
+                optional(TransactionStatus.class, status), Period.parse(period, LocalDate.now(ZoneOffset.UTC)), aggregate, groupBy);
+        log.info("Statistiques: {}", query.describe());
+        return transactionAnalyticsService.query(query).limit(maxRows);
+    }
+
+    @Tool("Évolution mois par mois (nombre, total, moyenne, minimum, maximum) sur les derniers mois, mois en cours compris")
+    public AnalyticsResult monthlyTrend(
+            @P("L'ID du compte (0 pour tous les comptes)") long accountId,
+            @P("Le type de transaction (DEBIT, CREDIT ou ALL)") String type,
+            @P("Nombre de mois") int months){
+        AnalyticsQuery query = new AnalyticsQuery(accountId > 0 ? accountId : null, optional(TransactionType.class, type), null,
+                Period.lastMonths(months, LocalDate.now(ZoneOffset.UTC)), AnalyticsQuery.Aggregate.SUM, AnalyticsQuery.GroupBy.MONTH);
+        log.info("Évolution mensuelle: {}", query.describe());
+        return transactionAnalyticsService.query(query).limit(maxRows);
+    }
+
+    // "ALL", vide ou null: pas de filtre
+    private static <E extends Enum<E>> E optional(Class<E> type, String value) {
+        if (value == null || value.isBlank() || value.equalsIgnoreCase("ALL")) {
+            return null;
         }
-        return balance;
+        return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
     }
-}
\ No newline at end of file
+}
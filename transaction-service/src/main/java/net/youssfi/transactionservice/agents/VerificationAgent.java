@@ -5,6 +5,9 @@ import dev.langchain4j.model.output.Response;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
 import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.rag.PackedContext;
+import net.youssfi.transactionservice.rag.TextTokenizer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -19,9 +22,17 @@ import java.util.List;
 public class VerificationAgent {
     
     private final ChatLanguageModel chatLanguageModel;
+    private final TextTokenizer tokenizer;
     
-    public VerificationAgent(ChatLanguageModel chatLanguageModel) {
+    @Value("${rag.prompt.verification-context-tokens:500}")
+    private int verificationContextTokens;
+    
+    @Value("${rag.prompt.verification-response-tokens:250}")
+    private int verificationResponseTokens;
+    
+    public VerificationAgent(ChatLanguageModel chatLanguageModel, TextTokenizer tokenizer) {
         this.chatLanguageModel = chatLanguageModel;
+        this.tokenizer = tokenizer;
     }
     
     /**
@@ -58,16 +69,31 @@ public class VerificationAgent {
     public VerificationResult verify(String originalQuestion, 
                                      String generatedResponse, 
                                      String context) {
+        return verify(originalQuestion, generatedResponse, context, null);
+    }
+    
+    /**
+     * Vérifie la réponse contre les extraits du contexte documentaire assemblé s'il existe
+     * 
+     * @param packed Contexte documentaire assemblé par le RetrievalAgent (peut être null)
+     */
+    public VerificationResult verify(String originalQuestion, 
+                                     String generatedResponse, 
+                                     String context,
+                                     PackedContext packed) {
         log.info("🔍 VerificationAgent: Début de la vérification");
         log.debug("   Question: {}", originalQuestion);
         log.debug("   Réponse: {}...", generatedResponse.substring(0, Math.min(100, generatedResponse.length())));
         
         try {
+            // Extrait du contexte au budget, calculé une seule fois pour tous les contrôles
+            String evidence = excerpt(context, packed);
+            
             // 1. Vérifier la cohérence avec le contexte
-            double coherenceScore = checkCoherence(generatedResponse, context);
+            double coherenceScore = checkCoherence(generatedResponse, evidence);
             
             // 2. Détecter les hallucinations (réponses sans base dans le contexte)
-            double hallucinationScore = detectHallucinations(generatedResponse, context);
+            double hallucinationScore = detectHallucinations(generatedResponse, evidence);
             
             // 3. Vérifier la pertinence par rapport à la question
             double relevanceScore = checkRelevance(originalQuestion, generatedResponse);
@@ -93,7 +119,7 @@ public class VerificationAgent {
             
             String correctedResponse = null;
             if (needsCorrection) {
-                correctedResponse = correctResponse(originalQuestion, generatedResponse, context, issues);
+                correctedResponse = correctResponse(originalQuestion, generatedResponse, evidence, issues);
             }
             
             log.info("✅ VerificationAgent: Score de confiance = {:.2f}, Correction nécessaire = {}", 
@@ -113,6 +139,17 @@ public class VerificationAgent {
         }
     }
     
+    /**
+     * Réduit le contexte au budget de vérification: meilleurs extraits entiers du contexte assemblé,
+     * ou début du contexte (données DB) à défaut
+     */
+    private String excerpt(String context, PackedContext packed) {
+        if (packed != null && !packed.isEmpty()) {
+            return packed.render(verificationContextTokens);
+        }
+        return context != null ? tokenizer.truncate(context, verificationContextTokens) : null;
+    }
+    
     /**
      * Vérifie la cohérence de la réponse avec le contexte
      */
@@ -132,8 +169,8 @@ public class VerificationAgent {
             %s
             
             Score de cohérence (0.0-1.0):
-            """, context.substring(0, Math.min(2000, context.length())), 
-            response.substring(0, Math.min(1000, response.length())));
+            """, context, 
+            tokenizer.truncate(response, verificationResponseTokens));
         
         try {
             String scoreStr = chatLanguageModel.generate(
@@ -173,8 +210,8 @@ public class VerificationAgent {
             %s
             
             Score (0.0-1.0):
-            """, context.substring(0, Math.min(2000, context.length())), 
-            response.substring(0, Math.min(1000, response.length())));
+            """, context, 
+            tokenizer.truncate(response, verificationResponseTokens));
         
         try {
             String scoreStr = chatLanguageModel.generate(
@@ -209,7 +246,7 @@ public class VerificationAgent {
             %s
             
             Score de pertinence (0.0-1.0):
-            """, question, response.substring(0, Math.min(1000, response.length())));
+            """, question, tokenizer.truncate(response, verificationResponseTokens));
         
         try {
             String scoreStr = chatLanguageModel.generate(
@@ -261,8 +298,8 @@ public class VerificationAgent {
             
             RÉPONSE CORRIGÉE:
             """, issuesStr, question, 
-            context != null ? context.substring(0, Math.min(2000, context.length())) : "Aucun contexte",
-            originalResponse.substring(0, Math.min(1000, originalResponse.length())),
+            context != null ? context : "Aucun contexte",
+            tokenizer.truncate(originalResponse, verificationResponseTokens),
             issuesStr);
         
         try {
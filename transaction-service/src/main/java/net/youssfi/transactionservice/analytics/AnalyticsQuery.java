@@ -0,0 +1,62 @@
+package net.youssfi.transactionservice.analytics;
+
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+
+/**
+ * Question analytique sur les transactions: filtres (null = tous), regroupement et agrégat demandé
+ * Chaque groupe calcule toujours nombre, somme, moyenne, minimum et maximum; aggregate désigne la valeur
+ * mise en avant et l'ordre des groupes par compte
+ */
+public record AnalyticsQuery(Long accountId, TransactionType type, TransactionStatus status, Period period,
+                             Aggregate aggregate, GroupBy groupBy) {
+
+    public enum Aggregate {
+        SUM, COUNT, AVG, MIN, MAX
+    }
+
+    public enum GroupBy {
+        NONE, ACCOUNT, TYPE, STATUS, MONTH, DAY
+    }
+
+    public AnalyticsQuery {
+        period = period != null ? period : Period.ALL;
+        aggregate = aggregate != null ? aggregate : Aggregate.SUM;
+        groupBy = groupBy != null ? groupBy : GroupBy.NONE;
+    }
+
+    /**
+     * Libellé de la question, par exemple "Total des montants des débits EXECUTED du compte 3, du 2024-03-01 au 2024-03-31"
+     */
+    public String describe() {
+        StringBuilder description = new StringBuilder(switch (aggregate) {
+            case SUM -> "Total des montants";
+            case COUNT -> "Nombre";
+            case AVG -> "Montant moyen";
+            case MIN -> "Plus petit montant";
+            case MAX -> "Plus gros montant";
+        });
+        description.append(type == null ? " des transactions" : type == TransactionType.DEBIT ? " des débits" : " des crédits");
+        if (status != null) {
+            description.append(' ').append(status);
+        }
+        if (accountId != null) {
+            description.append(" du compte ").append(accountId);
+        }
+        String dates = period.describe();
+        if (!dates.isEmpty()) {
+            description.append(", ").append(dates);
+        }
+        if (groupBy != GroupBy.NONE) {
+            description.append(", par ").append(switch (groupBy) {
+                case ACCOUNT -> "compte";
+                case TYPE -> "type";
+                case STATUS -> "statut";
+                case MONTH -> "mois";
+                case DAY -> "jour";
+                case NONE -> "";
+            });
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package net.youssfi.transactionservice.analytics;
+
+import java.util.List;
+
+/**
+ * Résultat d'une AnalyticsQuery: groupes triés (par valeur décroissante pour les comptes, chronologiquement
+ * pour les mois et les jours), nombre total de groupes, lignes retenues par les filtres et lignes parcourues
+ */
+public record AnalyticsResult(AnalyticsQuery query, List<Group> groups, int groupCount, long matchedRows, long scannedRows,
+                              double millis) {
+
+    public record Group(String key, long count, double sum, double avg, double min, double max) {
+
+        public static Group of(String key, long count, double sum, double min, double max) {
+            return new Group(key, count, sum, count > 0 ? sum / count : 0.0, min, max);
+        }
+
+        public double value(AnalyticsQuery.Aggregate aggregate) {
+            return switch (aggregate) {
+                case SUM -> sum;
+                case COUNT -> count;
+                case AVG -> avg;
+                case MIN -> min;
+                case MAX -> max;
+            };
+        }
+    }
+
+    /**
+     * Les maxGroups premiers groupes (à passer au LLM); groupCount garde le nombre total
+     */
+    public AnalyticsResult limit(int maxGroups) {
+        if (groups.size() <= maxGroups) {
+            return this;
+        }
+        return new AnalyticsResult(query, List.copyOf(groups.subList(0, Math.max(0, maxGroups))), groupCount, matchedRows,
+                scannedRows, millis);
+    }
+
+    /**
+     * Groupe unique d'une requête sans regroupement (vide si aucune ligne retenue)
+     */
+    public Group total() {
+        return groups.isEmpty() ? new Group("total", 0, 0, 0, 0, 0) : groups.get(0);
+    }
+}
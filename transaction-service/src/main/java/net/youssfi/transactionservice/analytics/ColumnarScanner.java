@@ -0,0 +1,244 @@
+package net.youssfi.transactionservice.analytics;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Exécute une AnalyticsQuery sur les colonnes: filtre, regroupement et agrégats en un seul passage
+ * Les lignes sont découpées en blocs parcourus en parallèle sur le pool; chaque bloc agrège dans ses propres
+ * groupes (aucune synchronisation pendant le parcours), fusionnés à la fin
+ * Groupes par type, statut ou total dans des tableaux indexés par le code, les autres dans une table
+ * de hachage primitive (LongIntHashMap)
+ */
+final class ColumnarScanner {
+
+    private static final long DAY_MILLIS = 24L * 3600 * 1000;
+    private static final int ANY = -2;
+
+    private ColumnarScanner() {
+    }
+
+    /**
+     * @param pool      null pour un parcours séquentiel
+     * @param chunkRows lignes par bloc parallèle
+     */
+    static AnalyticsResult scan(TransactionColumns columns, AnalyticsQuery query, ForkJoinPool pool, int chunkRows) {
+        long start = System.nanoTime();
+        int size = columns.size();
+        Filter filter = new Filter(query);
+        Partial total;
+        if (pool == null || size <= chunkRows) {
+            total = scanRange(columns, filter, 0, size);
+        } else {
+            List<ForkJoinTask<Partial>> tasks = new ArrayList<>(size / chunkRows + 1);
+            for (int from = 0; from < size; from += chunkRows) {
+                int begin = from;
+                int end = Math.min(size, from + chunkRows);
+                tasks.add(pool.submit(() -> scanRange(columns, filter, begin, end)));
+            }
+            total = tasks.get(0).join();
+            for (int i = 1; i < tasks.size(); i++) {
+                total.merge(tasks.get(i).join());
+            }
+        }
+        List<AnalyticsResult.Group> groups = total.groups(query);
+        return new AnalyticsResult(query, groups, groups.size(), total.matched, size, (System.nanoTime() - start) / 1e6);
+    }
+
+    private static Partial scanRange(TransactionColumns columns, Filter filter, int from, int to) {
+        long[] accountIds = columns.accountIds;
+        double[] amounts = columns.amounts;
+        long[] dates = columns.dates;
+        byte[] types = columns.types;
+        byte[] statuses = columns.statuses;
+        AnalyticsQuery.GroupBy groupBy = filter.groupBy;
+        Partial partial = new Partial(groupBy);
+        for (int row = from; row < to; row++) {
+            byte status = statuses[row];
+            if (status < 0
+                    || (filter.status != ANY && status != filter.status)
+                    || (filter.type != ANY && types[row] != filter.type)
+                    || (filter.byAccount && accountIds[row] != filter.accountId)) {
+                continue;
+            }
+            long date = dates[row];
+            if (date < filter.fromMillis || date >= filter.toMillis) {
+                continue;
+            }
+            long key = switch (groupBy) {
+                case NONE -> 0;
+                case ACCOUNT -> accountIds[row];
+                case TYPE -> types[row];
+                case STATUS -> status;
+                case MONTH -> monthIndex(Math.floorDiv(date, DAY_MILLIS));
+                case DAY -> Math.floorDiv(date, DAY_MILLIS);
+            };
+            partial.add(key, amounts[row]);
+        }
+        return partial;
+    }
+
+    /**
+     * Mois depuis l'an 0 (année * 12 + mois - 1) d'un jour epoch, sans objet date (algorithme civil_from_days)
+     */
+    static long monthIndex(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    private static final class Filter {
+        final int type;
+        final int status;
+        final boolean byAccount;
+        final long accountId;
+        final long fromMillis;
+        final long toMillis;
+        final AnalyticsQuery.GroupBy groupBy;
+
+        Filter(AnalyticsQuery query) {
+            type = query.type() != null ? TransactionColumns.code(query.type()) : ANY;
+            status = query.status() != null ? TransactionColumns.code(query.status()) : ANY;
+            byAccount = query.accountId() != null;
+            accountId = byAccount ? query.accountId() : 0;
+            fromMillis = millis(query.period().from(), Long.MIN_VALUE);
+            toMillis = millis(query.period().to(), Long.MAX_VALUE);
+            groupBy = query.groupBy();
+        }
+
+        private static long millis(LocalDate date, long unbounded) {
+            return date != null ? date.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli() : unbounded;
+        }
+    }
+
+    /**
+     * Groupes agrégés par un bloc: tableaux parallèles indexés par emplacement
+     */
+    private static final class Partial {
+        private static final int DIRECT_GROUPS = 3; // total, types ou statuts: le code sert d'emplacement
+
+        final AnalyticsQuery.GroupBy groupBy;
+        final LongIntHashMap slots;
+        long[] keys;
+        long[] counts;
+        double[] sums;
+        double[] mins;
+        double[] maxs;
+        int groups;
+        long matched;
+
+        Partial(AnalyticsQuery.GroupBy groupBy) {
+            this.groupBy = groupBy;
+            boolean direct = groupBy == AnalyticsQuery.GroupBy.NONE || groupBy == AnalyticsQuery.GroupBy.TYPE
+                    || groupBy == AnalyticsQuery.GroupBy.STATUS;
+            int capacity = direct ? DIRECT_GROUPS : 64;
+            this.slots = direct ? null : new LongIntHashMap(capacity);
+            keys = new long[capacity];
+            counts = new long[capacity];
+            sums = new double[capacity];
+            mins = new double[capacity];
+            maxs = new double[capacity];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+            if (direct) {
+                for (int i = 0; i < DIRECT_GROUPS; i++) {
+                    keys[i] = i;
+                }
+                groups = DIRECT_GROUPS;
+            }
+        }
+
+        void add(long key, double amount) {
+            int slot = slot(key);
+            counts[slot]++;
+            sums[slot] += amount;
+            if (amount < mins[slot]) {
+                mins[slot] = amount;
+            }
+            if (amount > maxs[slot]) {
+                maxs[slot] = amount;
+            }
+            matched++;
+        }
+
+        void merge(Partial other) {
+            for (int i = 0; i < other.groups; i++) {
+                if (other.counts[i] == 0) {
+                    continue;
+                }
+                int slot = slot(other.keys[i]);
+                counts[slot] += other.counts[i];
+                sums[slot] += other.sums[i];
+                mins[slot] = Math.min(mins[slot], other.mins[i]);
+                maxs[slot] = Math.max(maxs[slot], other.maxs[i]);
+            }
+            matched += other.matched;
+        }
+
+        private int slot(long key) {
+            if (slots == null) {
+                return (int) key;
+            }
+            int slot = slots.putIfAbsent(key, groups);
+            if (slot == groups) {
+                if (groups == keys.length) {
+                    grow();
+                }
+                keys[slot] = key;
+                groups++;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxs = Arrays.copyOf(maxs, capacity);
+            Arrays.fill(mins, capacity / 2, capacity, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs, capacity / 2, capacity, Double.NEGATIVE_INFINITY);
+        }
+
+        List<AnalyticsResult.Group> groups(AnalyticsQuery query) {
+            List<AnalyticsResult.Group> result = new ArrayList<>(groups);
+            for (int i = 0; i < groups; i++) {
+                if (counts[i] > 0) {
+                    result.add(AnalyticsResult.Group.of(label(keys[i]), counts[i], sums[i], mins[i], maxs[i]));
+                }
+            }
+            if (groupBy == AnalyticsQuery.GroupBy.ACCOUNT) {
+                result.sort(Comparator.comparingDouble((AnalyticsResult.Group g) -> g.value(query.aggregate())).reversed()
+                        .thenComparing(AnalyticsResult.Group::key));
+            } else if (groupBy == AnalyticsQuery.GroupBy.MONTH || groupBy == AnalyticsQuery.GroupBy.DAY) {
+                result.sort(Comparator.comparing(AnalyticsResult.Group::key)); // AAAA-MM(-JJ): ordre lexical = chronologique
+            }
+            return result;
+        }
+
+        private String label(long key) {
+            return switch (groupBy) {
+                case NONE -> "total";
+                case ACCOUNT -> String.valueOf(key);
+                case TYPE -> TransactionColumns.type((int) key).name();
+                case STATUS -> TransactionColumns.status((int) key).name();
+                case MONTH -> YearMonth.of((int) (key / 12), (int) (key % 12) + 1).toString();
+                case DAY -> LocalDate.ofEpochDay(key).toString();
+            };
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package net.youssfi.transactionservice.analytics;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Intervalle de dates [from, to) en UTC; from ou to null = non borné
+ */
+public record Period(LocalDate from, LocalDate to) {
+
+    public static final Period ALL = new Period(null, null);
+
+    public static Period year(int year) {
+        return new Period(LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1));
+    }
+
+    public static Period month(int year, int month) {
+        LocalDate first = LocalDate.of(year, month, 1);
+        return new Period(first, first.plusMonths(1));
+    }
+
+    public static Period day(LocalDate day) {
+        return new Period(day, day.plusDays(1));
+    }
+
+    public static Period week(LocalDate day) {
+        LocalDate monday = day.with(DayOfWeek.MONDAY);
+        return new Period(monday, monday.plusWeeks(1));
+    }
+
+    /**
+     * Les N derniers mois, mois en cours compris
+     */
+    public static Period lastMonths(int months, LocalDate today) {
+        LocalDate next = today.withDayOfMonth(1).plusMonths(1);
+        return new Period(next.minusMonths(Math.max(1, months)), next);
+    }
+
+    /**
+     * ALL, TODAY, YESTERDAY, THIS_WEEK, THIS_MONTH, LAST_MONTH, THIS_YEAR, LAST_YEAR, AAAA, AAAA-MM ou AAAA-MM-JJ
+     */
+    public static Period parse(String value, LocalDate today) {
+        if (value == null || value.isBlank()) {
+            return ALL;
+        }
+        String normalized = value.trim().toUpperCase(Locale.ROOT).replace(' ', '_');
+        return switch (normalized) {
+            case "ALL" -> ALL;
+            case "TODAY" -> day(today);
+            case "YESTERDAY" -> day(today.minusDays(1));
+            case "THIS_WEEK" -> week(today);
+            case "THIS_MONTH" -> month(today.getYear(), today.getMonthValue());
+            case "LAST_MONTH" -> month(today.minusMonths(1).getYear(), today.minusMonths(1).getMonthValue());
+            case "THIS_YEAR" -> year(today.getYear());
+            case "LAST_YEAR" -> year(today.getYear() - 1);
+            default -> parseDate(normalized);
+        };
+    }
+
+    /**
+     * "du 2024-03-01 au 2024-03-31" (bornes incluses), "depuis le ...", "jusqu'au ..." ou "" si non borné
+     */
+    public String describe() {
+        if (from != null && to != null) {
+            return "du " + from + " au " + to.minusDays(1);
+        }
+        if (from != null) {
+            return "depuis le " + from;
+        }
+        return to != null ? "jusqu'au " + to.minusDays(1) : "";
+    }
+
+    private static Period parseDate(String value) {
+        try {
+            return switch (value.length()) {
+                case 4 -> year(Integer.parseInt(value));
+                case 7 -> {
+                    YearMonth month = YearMonth.parse(value);
+                    yield month(month.getYear(), month.getMonthValue());
+                }
+                case 10 -> day(LocalDate.parse(value));
+                default -> throw new IllegalArgumentException("Période inconnue: " + value);
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Période inconnue: " + value);
+        }
+    }
+}
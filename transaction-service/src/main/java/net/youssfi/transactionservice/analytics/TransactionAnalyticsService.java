@@ -0,0 +1,296 @@
+package net.youssfi.transactionservice.analytics;
+
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+import net.youssfi.transactionservice.repository.TransactionRepository;
+import net.youssfi.transactionservice.repository.TransactionRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Instantané en mémoire de la table Transaction, rangé par colonnes (TransactionColumns), pour les questions
+ * analytiques des agents (totaux, moyennes, regroupements par compte, statut, type, mois ou jour)
+ * Mise à jour incrémentale:
+ * - les écritures de TransactionWriteService et de TransactionBulkLoader sont appliquées au commit
+ * - une lecture périodique ajoute les lignes d'identifiant supérieur au dernier vu (insertions faites hors
+ *   des services); une modification faite directement en SQL n'est vue qu'après rebuild()
+ * - les lignes supprimées sont compactées quand elles dépassent compact-ratio de l'instantané
+ * Les parcours partagent un verrou de lecture; les mises à jour prennent brièvement le verrou d'écriture
+ */
+@Service
+@Slf4j
+public class TransactionAnalyticsService implements AutoCloseable {
+
+    private static final int APPLY_BATCH = 10_000;
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int chunkRows;
+    private final double compactRatio;
+    private final ForkJoinPool scanPool;
+    private final ScheduledExecutorService refresher;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object refreshMutex = new Object();
+    private TransactionColumns columns = new TransactionColumns(1024);
+    private List<Consumer<TransactionColumns>> replayDuringRebuild; // non null pendant rebuild()
+    private volatile Instant lastRefresh;
+    private volatile boolean ready;
+
+    public record SnapshotStatus(boolean ready, int rows, int deletedRows, long maxId, long columnBytes,
+                                 Instant lastRefresh) {
+    }
+
+    public TransactionAnalyticsService(TransactionRepository transactionRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${transactions.analytics.threads:0}") int threads,
+                                       @Value("${transactions.analytics.chunk-rows:262144}") int chunkRows,
+                                       @Value("${transactions.analytics.compact-ratio:0.2}") double compactRatio,
+                                       @Value("${transactions.analytics.refresh-interval-ms:5000}") long refreshIntervalMillis) {
+        this.transactionRepository = transactionRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.chunkRows = Math.max(1024, chunkRows);
+        this.compactRatio = compactRatio;
+        this.scanPool = scanPool(threads);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "analytics-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Première lecture complète en tâche de fond: le démarrage n'attend pas le chargement de la table
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, Math.max(100, refreshIntervalMillis), TimeUnit.MILLISECONDS);
+    }
+
+    static ForkJoinPool scanPool(int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism, p -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("analytics-scan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    public AnalyticsResult query(AnalyticsQuery query) {
+        lock.readLock().lock();
+        try {
+            return ColumnarScanner.scan(columns, query, scanPool, chunkRows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public SnapshotStatus status() {
+        lock.readLock().lock();
+        try {
+            return new SnapshotStatus(ready, columns.live(), columns.deleted(), columns.maxId(), columns.bytes(), lastRefresh);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Création ou mise à jour, appliquée au commit de la transaction en cours (immédiatement hors transaction)
+     */
+    public void recordSaved(Transaction transaction) {
+        Row row = Row.of(transaction);
+        afterCommit(snapshot -> row.applyTo(snapshot));
+    }
+
+    /**
+     * Lot inséré par le chargement en masse; les valeurs sont copiées, le lot peut être réutilisé ensuite
+     */
+    public void recordSaved(Collection<Transaction> transactions) {
+        List<Row> rows = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            rows.add(Row.of(transaction));
+        }
+        afterCommit(snapshot -> rows.forEach(row -> row.applyTo(snapshot)));
+    }
+
+    public void recordDeleted(Transaction transaction) {
+        long id = transaction.getId();
+        afterCommit(snapshot -> snapshot.delete(id));
+    }
+
+    public void recordAccountsDeleted(long from, long to) {
+        afterCommit(snapshot -> snapshot.deleteAccounts(from, to));
+    }
+
+    /**
+     * Ajoute les lignes d'identifiant supérieur au dernier vu et compacte si nécessaire
+     * @return nombre de lignes lues
+     */
+    public long refresh() {
+        synchronized (refreshMutex) {
+            long afterId;
+            lock.readLock().lock();
+            try {
+                afterId = columns.maxId();
+            } finally {
+                lock.readLock().unlock();
+            }
+            long read = readRows(afterId, batch -> apply(snapshot -> batch.forEach(row -> row.applyTo(snapshot))));
+            lock.writeLock().lock();
+            try {
+                if (columns.deleted() > compactRatio * columns.size()) {
+                    int removed = columns.deleted();
+                    columns.compact();
+                    log.info("🗜️ Instantané analytique compacté: {} lignes supprimées retirées", removed);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            lastRefresh = Instant.now();
+            if (!ready) {
+                ready = true;
+                log.info("📊 Instantané analytique prêt: {} transactions en colonnes", status().rows());
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Relit toute la table dans de nouvelles colonnes (modifications faites hors des services)
+     * Les requêtes continuent sur l'ancien instantané pendant la lecture; les écritures notifiées entre-temps
+     * sont rejouées sur le nouveau avant l'échange
+     */
+    public long rebuild() {
+        synchronized (refreshMutex) {
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                replayDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            TransactionColumns fresh = new TransactionColumns(Math.max(1024, status().rows()));
+            long read = 0;
+            boolean complete = false;
+            try {
+                read = readRows(0, batch -> batch.forEach(row -> row.applyTo(fresh)));
+                complete = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (complete) {
+                        replayDuringRebuild.forEach(change -> change.accept(fresh));
+                        columns = fresh;
+                    }
+                    replayDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            lastRefresh = Instant.now();
+            ready = true;
+            log.info("📊 Instantané analytique reconstruit: {} transactions en {} ms", read,
+                    String.format("%.0f", (System.nanoTime() - start) / 1e6));
+            return read;
+        }
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+        scanPool.shutdownNow();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("⚠️ Rafraîchissement de l'instantané analytique impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lecture en flux (transaction en lecture seule), remise par lots de APPLY_BATCH lignes
+     */
+    private long readRows(long afterId, Consumer<List<Row>> consumer) {
+        Long read = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            List<Row> batch = new ArrayList<>(APPLY_BATCH);
+            try (Stream<TransactionRow> rows = transactionRepository.streamRowsAfter(afterId)) {
+                Iterator<TransactionRow> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    batch.add(Row.of(iterator.next()));
+                    if (batch.size() == APPLY_BATCH) {
+                        consumer.accept(batch);
+                        batch = new ArrayList<>(APPLY_BATCH);
+                    }
+                    count++;
+                }
+            }
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+            }
+            return count;
+        });
+        return read != null ? read : 0;
+    }
+
+    private void afterCommit(Consumer<TransactionColumns> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private void apply(Consumer<TransactionColumns> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(columns);
+            if (replayDuringRebuild != null) {
+                replayDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private record Row(long id, long accountId, double amount, long date, TransactionType type, TransactionStatus status) {
+
+        static Row of(Transaction t) {
+            return new Row(t.getId(), t.getAccountId(), t.getAmount(), t.getDate() != null ? t.getDate().getTime() : 0,
+                    t.getType(), t.getStatus());
+        }
+
+        static Row of(TransactionRow t) {
+            return new Row(t.getId(), t.getAccountId(), t.getAmount(), t.getDate() != null ? t.getDate().getTime() : 0,
+                    t.getType(), t.getStatus());
+        }
+
+        void applyTo(TransactionColumns snapshot) {
+            if (type != null && status != null) {
+                snapshot.upsert(id, accountId, amount, date, type, status);
+            }
+        }
+    }
+}
@@ -1,21 +1,59 @@
 package net.youssfi.transactionservice.config;
 
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.Tokenizer;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.service.AiServices;
+import lombok.extern.slf4j.Slf4j;
 import net.youssfi.transactionservice.agents.TransactionAIAgent;
 import net.youssfi.transactionservice.agents.TransactionAiTools;
+import net.youssfi.transactionservice.memory.BoundedChatMemoryProvider;
+import net.youssfi.transactionservice.memory.ChatMemoryLog;
+import net.youssfi.transactionservice.memory.ConversationSummarizer;
+import net.youssfi.transactionservice.memory.SummarizingChatMemory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Function;
 
 @Configuration
+@Slf4j
 public class AiConfig {
 
+    @Value("${chat.memory.max-messages:20}")
+    private int maxMessages;
+
+    @Value("${chat.memory.idle-ttl-minutes:30}")
+    private long idleTtlMinutes;
+
+    @Value("${chat.memory.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${chat.memory.mode:window}")
+    private String memoryMode;
+
+    @Value("${chat.memory.max-tokens:1500}")
+    private int maxTokens;
+
+    @Value("${chat.memory.summary-max-tokens:300}")
+    private int summaryMaxTokens;
+
+    @Value("${chat.memory.summarizer-threads:2}")
+    private int summarizerThreads;
+
+    @Value("${chat.memory.persistence.enabled:false}")
+    private boolean persistenceEnabled;
+
+    @Value("${chat.memory.persistence.directory:data/chat-memory}")
+    private String persistenceDirectory;
+
     /*  @Bean
      public Tokenizer tokenizer() {
          // Tokenizer simple pour Ollama (approximation: 1 token ≈ 4 caractères)
@@ -44,20 +82,44 @@ public class AiConfig {
          };
      }
      */
+    /**
+     * Pool de résumé des anciens échanges (mode de mémoire "summary")
+     */
+    @Bean
+    public ConversationSummarizer conversationSummarizer(ChatLanguageModel chatLanguageModel) {
+        return new ConversationSummarizer(chatLanguageModel, summaryMaxTokens, summarizerThreads);
+    }
+
+    /**
+     * Mémoire conversationnelle par chatId, bornée en temps d'inactivité et en octets
+     * Les sessions évincées peuvent être restaurées depuis un journal sur disque (optionnel)
+     * Mode "window": fenêtre des N derniers messages
+     * Mode "summary": budget de tokens avec résumé glissant des anciens échanges
+     */
     @Bean
-    public ChatMemoryProvider chatMemoryProvider() {
-        // Mémoire conversationnelle persistante par chatId
-        // Utilise une Map thread-safe pour stocker les mémoires par chatId
-        Map<String, MessageWindowChatMemory> memories = new ConcurrentHashMap<>();
-        
-        return chatId -> {
-            // Convertir chatId en String pour la clé de la Map
-            String chatIdStr = chatId != null ? chatId.toString() : "default";
-            // Retourner la mémoire existante ou en créer une nouvelle pour ce chatId
-            // Cela garantit que chaque utilisateur/session a sa propre mémoire persistante
-            return memories.computeIfAbsent(chatIdStr, id -> MessageWindowChatMemory.withMaxMessages(20));
-        };
-        
+    public ChatMemoryProvider chatMemoryProvider(Tokenizer tokenizer, ConversationSummarizer conversationSummarizer) {
+        ChatMemoryLog memoryLog = null;
+        if (persistenceEnabled) {
+            try {
+                memoryLog = new ChatMemoryLog(Path.of(persistenceDirectory), maxMessages);
+            } catch (IOException e) {
+                log.warn("⚠️ Journal des conversations indisponible ({}), persistance désactivée", e.getMessage());
+            }
+        }
+        Function<String, ChatMemory> memoryFactory;
+        if ("summary".equalsIgnoreCase(memoryMode)) {
+            memoryFactory = id -> new SummarizingChatMemory(id, maxTokens, tokenizer, conversationSummarizer);
+        } else {
+            memoryFactory = id -> MessageWindowChatMemory.builder().id(id).maxMessages(maxMessages).build();
+        }
+        log.info("Mémoire de chat: mode {}, TTL {} min, budget {} octets, persistance {}",
+                memoryMode, idleTtlMinutes, maxBytes, memoryLog != null ? "activée" : "désactivée");
+
+        return new BoundedChatMemoryProvider(
+                memoryFactory,
+                Duration.ofMinutes(idleTtlMinutes).toMillis(),
+                maxBytes,
+                memoryLog);
     }
 
     /**
@@ -0,0 +1,14 @@
+package net.youssfi.transactionservice.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caches Spring (Caffeine, voir spring.cache.* dans application.properties)
+ * Pas de gestionnaire transactionnel: différer les evict au commit n'empêche pas un lecteur qui a lu la base
+ * avant le commit de remettre la page en cache après l'evict; TransactionLookupService versionne ses clés
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+}
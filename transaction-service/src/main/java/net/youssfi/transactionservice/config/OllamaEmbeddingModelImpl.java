@@ -5,6 +5,7 @@ import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.output.Response;
 import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.rag.EmbeddingUnavailableException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -21,6 +22,7 @@ import java.util.List;
 /**
  * Implémentation simple d'EmbeddingModel utilisant Ollama
  * Note: Cette implémentation utilise l'API Ollama directement pour générer des embeddings
+ * En cas d'échec une EmbeddingUnavailableException est levée: jamais de vecteur de remplacement
  */
 @Component
 @Slf4j
@@ -48,44 +50,40 @@ public class OllamaEmbeddingModelImpl implements EmbeddingModel {
 
     @Override
     public Response<Embedding> embed(String text) {
-        try {
-            // Utiliser Gson pour créer le JSON correctement (gère automatiquement l'échappement)
-            JsonObject requestJson = new JsonObject();
-            requestJson.addProperty("model", embeddingModelName);
-            requestJson.addProperty("prompt", text);
-            String requestBody = gson.toJson(requestJson);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/api/embeddings"))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .timeout(Duration.ofSeconds(60))
-                    .build();
+        // Utiliser Gson pour créer le JSON correctement (gère automatiquement l'échappement)
+        JsonObject requestJson = new JsonObject();
+        requestJson.addProperty("model", embeddingModelName);
+        requestJson.addProperty("prompt", text);
+        String requestBody = gson.toJson(requestJson);
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/api/embeddings"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .timeout(Duration.ofSeconds(60))
+                .build();
 
-            if (response.statusCode() == 200) {
-                // Parser la réponse JSON pour extraire l'embedding
-                String responseBody = response.body();
-                // Extraction simple de l'embedding depuis la réponse JSON
-                // Format attendu: {"embedding": [0.1, 0.2, ...]}
-                float[] embeddingValues = parseEmbeddingFromJson(responseBody);
-                
-                if (embeddingValues != null && embeddingValues.length > 0) {
-                    Embedding embedding = Embedding.from(embeddingValues);
-                    return Response.from(embedding);
-                } else {
-                    log.error("Impossible de parser l'embedding depuis la réponse Ollama");
-                    return createFallbackEmbedding(text);
-                }
-            } else {
-                log.warn("Erreur lors de l'appel à Ollama: status={}, body={}", response.statusCode(), response.body());
-                return createFallbackEmbedding(text);
-            }
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingUnavailableException("Appel à Ollama interrompu", e);
         } catch (Exception e) {
-            log.error("Erreur lors de la génération de l'embedding: {}", e.getMessage(), e);
-            return createFallbackEmbedding(text);
+            throw new EmbeddingUnavailableException("Ollama injoignable: " + e.getMessage(), e);
+        }
+
+        if (response.statusCode() != 200) {
+            log.warn("Erreur lors de l'appel à Ollama: status={}, body={}", response.statusCode(), response.body());
+            throw new EmbeddingUnavailableException("Ollama a répondu " + response.statusCode());
+        }
+
+        // Format attendu: {"embedding": [0.1, 0.2, ...]}
+        float[] embeddingValues = parseEmbeddingFromJson(response.body());
+        if (embeddingValues == null || embeddingValues.length == 0) {
+            throw new EmbeddingUnavailableException("Impossible de parser l'embedding depuis la réponse Ollama");
         }
+        return Response.from(Embedding.from(embeddingValues));
     }
 
     @Override
@@ -140,20 +138,4 @@ public class OllamaEmbeddingModelImpl implements EmbeddingModel {
             return null;
         }
     }
-
-    /**
-     * Crée un embedding de fallback simple basé sur le hash du texte
-     * Ceci est utilisé si Ollama n'est pas disponible
-     * IMPORTANT: Utiliser 768 dimensions pour correspondre à nomic-embed-text
-     */
-    private Response<Embedding> createFallbackEmbedding(String text) {
-        // Embedding simple basé sur le hash du texte (768 dimensions pour correspondre à nomic-embed-text)
-        float[] embedding = new float[768];
-        int hash = text.hashCode();
-        for (int i = 0; i < 768; i++) {
-            embedding[i] = (float) Math.sin(hash + i) * 0.1f;
-        }
-        log.warn("⚠️ Utilisation d'un embedding de fallback (768 dimensions) - Ollama n'est pas disponible ou a échoué");
-        return Response.from(Embedding.from(embedding));
-    }
 }
@@ -1,24 +1,32 @@
 package net.youssfi.transactionservice.config;
 
-import dev.langchain4j.data.document.Document;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import dev.langchain4j.data.document.DocumentSplitter;
-import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
-import dev.langchain4j.data.document.parser.apache.pdfbox.ApachePdfBoxDocumentParser;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.model.output.Response;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
-import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
-import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
-import dev.langchain4j.data.message.AiMessage;
-import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.data.message.TextContent;
 import dev.langchain4j.model.Tokenizer;
 import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.ingestion.DocumentIngestionService;
+import net.youssfi.transactionservice.ingestion.ImageDescriber;
+import net.youssfi.transactionservice.ingestion.IngestionJobQueue;
+import net.youssfi.transactionservice.ingestion.SplitterEvaluation;
+import net.youssfi.transactionservice.ingestion.StructureAwareDocumentSplitter;
+import net.youssfi.transactionservice.rag.BpeTokenizer;
+import net.youssfi.transactionservice.rag.EmbeddingCircuitBreaker;
+import net.youssfi.transactionservice.rag.EstimatingTokenizer;
+import net.youssfi.transactionservice.rag.FilteredInMemoryEmbeddingStore;
+import net.youssfi.transactionservice.rag.IngestionRetryQueue;
+import net.youssfi.transactionservice.rag.OnnxEmbeddingModel;
+import net.youssfi.transactionservice.rag.RemoteShardEmbeddingStore;
+import net.youssfi.transactionservice.rag.ResilientEmbeddingModel;
+import net.youssfi.transactionservice.rag.ShardedEmbeddingStore;
+import net.youssfi.transactionservice.rag.TextTokenizer;
+import net.youssfi.transactionservice.rag.TunedPgVectorEmbeddingStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
@@ -26,16 +34,14 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @Slf4j
@@ -59,177 +65,403 @@ public class RagConfig {
     @Value("${rag.postgres.table:data_vs_v3}")
     private String postgresTable;
 
+    @Value("${rag.postgres.pool.max-size:10}")
+    private int postgresPoolSize;
+
+    @Value("${rag.postgres.insert-batch-size:500}")
+    private int insertBatchSize;
+
+    @Value("${rag.postgres.index.type:hnsw}")
+    private String indexType;
+
+    @Value("${rag.postgres.index.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${rag.postgres.index.hnsw.ef-construction:64}")
+    private int hnswEfConstruction;
+
+    @Value("${rag.postgres.index.hnsw.ef-search:40}")
+    private int hnswEfSearch;
+
+    @Value("${rag.postgres.index.ivfflat.lists:100}")
+    private int ivfflatLists;
+
+    @Value("${rag.postgres.index.ivfflat.probes:10}")
+    private int ivfflatProbes;
+
+    @Value("${rag.store.type:pgvector}")
+    private String storeType;
+
+    @Value("${rag.store.in-memory-fallback:true}")
+    private boolean inMemoryFallback;
+
+    @Value("${rag.sharding.fail-on-partial:false}")
+    private boolean shardFailOnPartial;
+
+    @Value("${rag.sharding.shards:1}")
+    private int shardCount;
+
+    @Value("${rag.sharding.threads:0}")
+    private int shardThreads;
+
+    @Value("${rag.sharding.remote-nodes:}")
+    private List<String> remoteShardNodes;
+
+    @Value("${rag.sharding.remote-timeout-seconds:10}")
+    private long remoteShardTimeoutSeconds;
+
     @Value("${rag.document.chunk-size:1000}")
     private int chunkSize;
 
     @Value("${rag.document.chunk-overlap:100}")
     private int chunkOverlap;
 
+    @Value("${rag.document.splitter.type:recursive}")
+    private String splitterType;
+
+    @Value("${rag.document.splitter.semantic:false}")
+    private boolean semanticSplitting;
+
+    @Value("${rag.document.splitter.breakpoint-percentile:90}")
+    private double breakpointPercentile;
+
+    @Value("${rag.document.splitter.threads:2}")
+    private int splitterThreads;
+
     @Value("${rag.retriever.max-results:5}")
     private int maxResults;
 
     @Value("${rag.retriever.min-score:0.3}")
     private double minScore;
 
+    @Value("${rag.tokenizer.cache-size:100000}")
+    private int tokenizerCacheSize;
+
     @Value("${ollama.base-url:http://localhost:11434}")
     private String ollamaBaseUrl;
 
-    @Value("${ollama.model-name:llama2}")
-    private String ollamaModelName;
+    @Value("${ollama.vision-model-name:llava}")
+    private String visionModelName;
+
+    @Value("${ollama.vision-timeout-seconds:120}")
+    private long visionTimeoutSeconds;
     
     @Value("${ollama.embedding-model-name:nomic-embed-text}")
     private String ollamaEmbeddingModelName;
 
+    @Value("${rag.embeddings.provider:ollama}")
+    private String embeddingsProvider;
+
+    @Value("${rag.embeddings.model:all-minilm-l6-v2}")
+    private String embeddingsModel;
+
+    @Value("${rag.embeddings.onnx.model-path:models/${rag.embeddings.model:all-minilm-l6-v2}/model.onnx}")
+    private String onnxModelPath;
+
+    @Value("${rag.embeddings.onnx.tokenizer-path:models/${rag.embeddings.model:all-minilm-l6-v2}/tokenizer.json}")
+    private String onnxTokenizerPath;
+
+    @Value("${rag.embeddings.onnx.max-length:256}")
+    private int onnxMaxLength;
+
+    @Value("${rag.embeddings.onnx.batch-size:32}")
+    private int onnxBatchSize;
+
+    @Value("${rag.embeddings.onnx.threads:2}")
+    private int onnxThreads;
+
+    @Value("${rag.embeddings.dimension:0}")
+    private int embeddingDimension;
+
     /**
-     * Modèle d'embedding utilisant Ollama
-     * Utilise OllamaEmbeddingModelImpl qui appelle directement l'API Ollama
+     * Disjoncteur partagé par le modèle d'embedding et la file de réessai de l'ingestion
      */
     @Bean
-    public EmbeddingModel embeddingModel(OllamaEmbeddingModelImpl ollamaEmbeddingModel) {
-        log.info("Activation du RAG avec OllamaEmbeddingModelImpl");
-        log.info("Modèle d'embedding: {}", ollamaEmbeddingModelName);
-        log.info("Base URL Ollama: {}", ollamaBaseUrl);
-        return ollamaEmbeddingModel;
+    public EmbeddingCircuitBreaker embeddingCircuitBreaker(
+            @Value("${rag.embeddings.breaker.failure-threshold:3}") int failureThreshold,
+            @Value("${rag.embeddings.breaker.open-seconds:30}") long openSeconds) {
+        return new EmbeddingCircuitBreaker(failureThreshold, openSeconds * 1000);
     }
 
     /**
-     * Tokenizer simple pour le découpage des documents
+     * Documents dont l'embedding a échoué, réingérés quand le modèle redevient disponible
      */
     @Bean
-    public Tokenizer tokenizer() {
-        // Tokenizer simple: 1 token ≈ 4 caractères
-        return new Tokenizer() {
-            @Override
-            public int estimateTokenCountInText(String text) {
-                return text.length() / 4;
-            }
-
-            @Override
-            public int estimateTokenCountInMessage(dev.langchain4j.data.message.ChatMessage message) {
-                return estimateTokenCountInText(message.text());
-            }
-
-            @Override
-            public int estimateTokenCountInMessages(Iterable<dev.langchain4j.data.message.ChatMessage> messages) {
-                int count = 0;
-                for (dev.langchain4j.data.message.ChatMessage message : messages) {
-                    count += estimateTokenCountInMessage(message);
-                }
-                return count;
-            }
+    public IngestionRetryQueue ingestionRetryQueue(
+            EmbeddingCircuitBreaker embeddingCircuitBreaker,
+            @Value("${rag.ingestion.retry.capacity:1000}") int capacity,
+            @Value("${rag.ingestion.retry.max-attempts:10}") int maxAttempts,
+            @Value("${rag.ingestion.retry.interval-seconds:30}") long intervalSeconds) {
+        return new IngestionRetryQueue(embeddingCircuitBreaker, capacity, maxAttempts, intervalSeconds * 1000);
+    }
 
-            @Override
-            public int estimateTokenCountInToolExecutionRequests(Iterable<dev.langchain4j.agent.tool.ToolExecutionRequest> toolExecutionRequests) {
-                int count = 0;
-                for (dev.langchain4j.agent.tool.ToolExecutionRequest request : toolExecutionRequests) {
-                    count += estimateTokenCountInText(request.name());
-                    if (request.arguments() != null) {
-                        count += estimateTokenCountInText(request.arguments());
-                    }
-                }
-                return count;
+    /**
+     * Modèle d'embedding, choisi par rag.embeddings.provider:
+     * - ollama: OllamaEmbeddingModelImpl qui appelle directement l'API Ollama, derrière le disjoncteur
+     * - onnx: modèle local rag.embeddings.model exécuté dans le processus (OnnxEmbeddingModel)
+     */
+    @Bean
+    public EmbeddingModel embeddingModel(OllamaEmbeddingModelImpl ollamaEmbeddingModel,
+                                         EmbeddingCircuitBreaker embeddingCircuitBreaker) {
+        if ("onnx".equalsIgnoreCase(embeddingsProvider)) {
+            try {
+                log.info("Activation du RAG avec le modèle d'embedding ONNX local: {}", embeddingsModel);
+                return new OnnxEmbeddingModel(onnxModelPath, onnxTokenizerPath, onnxMaxLength, onnxBatchSize, onnxThreads);
+            } catch (Exception e) {
+                log.warn("⚠️ Impossible de charger le modèle ONNX {} ({}), utilisation d'Ollama", onnxModelPath, e.getMessage());
             }
+        }
+        log.info("Activation du RAG avec OllamaEmbeddingModelImpl");
+        log.info("Modèle d'embedding: {}", ollamaEmbeddingModelName);
+        log.info("Base URL Ollama: {}", ollamaBaseUrl);
+        // Appels HTTP protégés par le disjoncteur: échec immédiat tant qu'Ollama est indisponible
+        return new ResilientEmbeddingModel(ollamaEmbeddingModel, embeddingCircuitBreaker);
+    }
 
-            @Override
-            public int estimateTokenCountInToolSpecifications(Iterable<dev.langchain4j.agent.tool.ToolSpecification> toolSpecifications) {
-                int count = 0;
-                for (dev.langchain4j.agent.tool.ToolSpecification spec : toolSpecifications) {
-                    if (spec.name() != null) {
-                        count += estimateTokenCountInText(spec.name());
-                    }
-                    if (spec.description() != null) {
-                        count += estimateTokenCountInText(spec.description());
-                    }
-                }
-                return count;
+    /**
+     * Tokenizer exact chargé depuis un fichier de vocabulaire local (tokenizer.json)
+     * Utilisé pour le découpage des documents et pour tous les budgets de prompt
+     * Fallback vers une estimation (1 token ≈ 4 caractères) si le fichier est absent
+     */
+    @Bean
+    public TextTokenizer tokenizer(@Value("${rag.tokenizer.path:classpath:tokenizer/tokenizer.json}") Resource tokenizerResource) {
+        if (tokenizerResource.exists()) {
+            try (InputStream inputStream = tokenizerResource.getInputStream()) {
+                BpeTokenizer tokenizer = BpeTokenizer.load(inputStream, tokenizerCacheSize);
+                log.info("✅ Tokenizer chargé depuis {}", tokenizerResource.getDescription());
+                return tokenizer;
+            } catch (Exception e) {
+                log.warn("⚠️ Impossible de charger le tokenizer {}: {}", tokenizerResource.getDescription(), e.getMessage());
             }
-        };
+        } else {
+            log.warn("⚠️ Fichier de vocabulaire introuvable ({}), estimation 1 token ≈ 4 caractères",
+                    tokenizerResource.getDescription());
+        }
+        return new EstimatingTokenizer();
     }
 
     /**
-     * Store d'embeddings utilisant PostgreSQL avec pgvector
-     * Fallback vers InMemoryEmbeddingStore si PostgreSQL n'est pas disponible
+     * Store d'embeddings utilisant PostgreSQL avec pgvector (rag.store.type=pgvector), ou store en
+     * mémoire choisi explicitement (rag.store.type=memory)
+     * Si PostgreSQL est indisponible, repli sur le store en mémoire (données perdues au redémarrage);
+     * rag.store.in-memory-fallback=false fait échouer le démarrage à la place
      * Ce bean n'est créé que si un EmbeddingModel est disponible
      */
     @Bean
     @ConditionalOnBean(EmbeddingModel.class)
     public EmbeddingStore<TextSegment> embeddingStore(EmbeddingModel embeddingModel) {
-        
+        if ("memory".equalsIgnoreCase(storeType)) {
+            log.info("Configuration de l'EmbeddingStore en mémoire (rag.store.type=memory)");
+            return createInMemoryStore();
+        }
+
         log.info("Configuration de l'EmbeddingStore PostgreSQL: {}:{}/{}", postgresHost, postgresPort, postgresDatabase);
-        try {
-            // Obtenir la dimension en générant un embedding de test
-            int dimension;
+        // Obtenir la dimension en générant un embedding de test
+        // Jamais de valeur en dur: une table créée avec une mauvaise dimension refuserait tous les vecteurs
+        int dimension;
+        if (embeddingDimension > 0) {
+            dimension = embeddingDimension;
+            log.info("Dimension configurée: {}", dimension);
+        } else {
             try {
                 dev.langchain4j.data.embedding.Embedding testEmbedding = embeddingModel.embed("test").content();
                 dimension = testEmbedding.dimension();
                 log.info("Dimension détectée automatiquement: {}", dimension);
             } catch (Exception e) {
-                log.warn("Impossible de déterminer la dimension automatiquement, utilisation de 384 par défaut: {}", e.getMessage());
-                dimension = 384; // Dimension par défaut pour la plupart des modèles d'embedding
-            }
-            
-            try {
-                EmbeddingStore<TextSegment> pgStore = PgVectorEmbeddingStore.builder()
-                        .host(postgresHost)
-                        .port(postgresPort)
-                        .database(postgresDatabase)
-                        .user(postgresUser)
-                        .password(postgresPassword)
-                        .table(postgresTable)
-                        .dimension(dimension)
-                        .dropTableFirst(false) // Ne pas supprimer la table à chaque démarrage
-                        .build();
-                
-                log.info("✅ EmbeddingStore PostgreSQL créé avec succès");
-                return pgStore;
-            } catch (Exception e) {
-                log.warn("⚠️ Impossible de se connecter à PostgreSQL: {}", e.getMessage());
-                log.warn("   Utilisation d'InMemoryEmbeddingStore en fallback (données perdues au redémarrage)");
-                log.warn("   Pour utiliser PostgreSQL, assurez-vous que:");
-                log.warn("   1. PostgreSQL est démarré sur {}:{}", postgresHost, postgresPort);
-                log.warn("   2. La base de données '{}' existe", postgresDatabase);
-                log.warn("   3. L'utilisateur '{}' a les permissions nécessaires", postgresUser);
-                log.warn("   4. L'extension pgvector est installée: CREATE EXTENSION IF NOT EXISTS vector;");
-                
-                // Fallback vers InMemoryEmbeddingStore
-                return new InMemoryEmbeddingStore<>();
+                return inMemoryFallback("Impossible de déterminer la dimension des embeddings (définir rag.embeddings.dimension): "
+                        + e.getMessage(), e);
             }
+        }
+
+        try {
+            EmbeddingStore<TextSegment> pgStore = createPgVectorStore(dimension);
+            log.info("✅ EmbeddingStore PostgreSQL créé avec succès");
+            return pgStore;
         } catch (Exception e) {
-            log.error("❌ Erreur critique lors de la création de l'EmbeddingStore: {}", e.getMessage(), e);
-            log.warn("   Utilisation d'InMemoryEmbeddingStore en fallback");
-            return new InMemoryEmbeddingStore<>();
+            log.error("❌ Impossible de se connecter à PostgreSQL: {}", e.getMessage());
+            log.error("   Pour utiliser PostgreSQL, assurez-vous que:");
+            log.error("   1. PostgreSQL est démarré sur {}:{}", postgresHost, postgresPort);
+            log.error("   2. La base de données '{}' existe", postgresDatabase);
+            log.error("   3. L'utilisateur '{}' a les permissions nécessaires", postgresUser);
+            log.error("   4. L'extension pgvector est installée: CREATE EXTENSION IF NOT EXISTS vector;");
+            return inMemoryFallback("PostgreSQL indisponible: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Repli en mémoire (par défaut), ou échec du démarrage si rag.store.in-memory-fallback=false
+     */
+    private EmbeddingStore<TextSegment> inMemoryFallback(String reason, Exception cause) {
+        if (!inMemoryFallback) {
+            throw new IllegalStateException(reason + " (rag.store.in-memory-fallback=false)", cause);
         }
+        log.warn("⚠️ {}", reason);
+        log.warn("⚠️ REPLI sur le store en mémoire: documents perdus au redémarrage");
+        return createInMemoryStore();
     }
 
     /**
-     * ChatLanguageModel pour la description des images
+     * Store en mémoire, partitionné si rag.sharding.shards > 1 ou si des nœuds distants sont configurés
+     */
+    private EmbeddingStore<TextSegment> createInMemoryStore() {
+        List<String> remoteNodes = remoteShardNodes.stream().map(String::trim).filter(node -> !node.isEmpty()).toList();
+        if (shardCount <= 1 && remoteNodes.isEmpty()) {
+            return new FilteredInMemoryEmbeddingStore();
+        }
+        List<EmbeddingStore<TextSegment>> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new FilteredInMemoryEmbeddingStore());
+        }
+        for (String node : remoteNodes) {
+            shards.add(new RemoteShardEmbeddingStore(node, Duration.ofSeconds(remoteShardTimeoutSeconds)));
+        }
+        log.info("Store en mémoire partitionné: {} shards locaux, {} distants {}", shards.size() - remoteNodes.size(),
+                remoteNodes.size(), remoteNodes);
+        return new ShardedEmbeddingStore(shards, shardThreads, shardFailOnPartial);
+    }
+
+    /**
+     * Store pgvector avec pool HikariCP, index ANN et insertions par lots
+     * Le pool est fermé avec le store (ou immédiatement si l'initialisation échoue)
+     */
+    private TunedPgVectorEmbeddingStore createPgVectorStore(int dimension) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("pgvector");
+        config.setJdbcUrl("jdbc:postgresql://" + postgresHost + ":" + postgresPort + "/" + postgresDatabase);
+        config.setUsername(postgresUser);
+        config.setPassword(postgresPassword);
+        config.setMaximumPoolSize(postgresPoolSize);
+        config.setConnectionTimeout(5000);
+        HikariDataSource dataSource = new HikariDataSource(config);
+
+        TunedPgVectorEmbeddingStore.IndexSettings indexSettings = new TunedPgVectorEmbeddingStore.IndexSettings(
+                TunedPgVectorEmbeddingStore.IndexType.valueOf(indexType.toUpperCase()),
+                hnswM, hnswEfConstruction, hnswEfSearch, ivfflatLists, ivfflatProbes);
+        try {
+            log.info("Index pgvector: {}", indexSettings);
+            return new TunedPgVectorEmbeddingStore(dataSource, postgresTable, dimension, indexSettings, insertBatchSize);
+        } catch (RuntimeException e) {
+            dataSource.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Modèle de vision pour la description des images (llava, bakllava...)
+     * Un modèle texte seul ignore les images: il faut un modèle multimodal
      */
     @Bean
     public ChatLanguageModel imageDescriptionModel() {
         return OllamaChatModel.builder()
                 .baseUrl(ollamaBaseUrl)
-                .modelName(ollamaModelName)
+                .modelName(visionModelName)
+                .timeout(Duration.ofSeconds(visionTimeoutSeconds))
                 .build();
     }
 
     /**
-     * ApplicationRunner pour charger les documents au démarrage
-     * Charge les documents depuis le dossier docs/
-     * Ce bean n'est créé que si EmbeddingModel et EmbeddingStore sont disponibles
+     * Description des images (fichiers et images contenues dans les PDF), avec cache disque
      */
     @Bean
-    @ConditionalOnBean({EmbeddingModel.class, EmbeddingStore.class})
-    public ApplicationRunner loadDocumentToVectorStore(
+    public ImageDescriber imageDescriber(
             ChatLanguageModel imageDescriptionModel,
+            @Value("${rag.images.cache-directory:data/image-descriptions}") String cacheDirectory,
+            @Value("${rag.images.max-side:1024}") int maxSide,
+            @Value("${rag.images.min-side:64}") int minSide,
+            @Value("${rag.images.threads:2}") int threads) {
+        return new ImageDescriber(imageDescriptionModel, Path.of(cacheDirectory), maxSide, minSide,
+                visionTimeoutSeconds, threads);
+    }
+
+    /**
+     * Découpage des documents avant embedding
+     * - recursive: DocumentSplitters.recursive de LangChain4j (taille fixe)
+     * - structure: respecte titres, listes et tableaux (voir StructureAwareDocumentSplitter)
+     */
+    @Bean
+    @ConditionalOnBean(EmbeddingModel.class)
+    public DocumentSplitter documentSplitter(Tokenizer tokenizer, EmbeddingModel embeddingModel) {
+        log.info("✂️ Découpage des documents: {}{}", splitterType,
+                "structure".equalsIgnoreCase(splitterType) && semanticSplitting ? " + coupures sémantiques" : "");
+        return createSplitter(splitterType, semanticSplitting, tokenizer, embeddingModel);
+    }
+
+    private DocumentSplitter createSplitter(String type, boolean semantic, Tokenizer tokenizer, EmbeddingModel embeddingModel) {
+        if ("structure".equalsIgnoreCase(type)) {
+            return new StructureAwareDocumentSplitter(tokenizer, chunkSize, chunkOverlap,
+                    semantic ? embeddingModel : null, breakpointPercentile, splitterThreads);
+        }
+        return DocumentSplitters.recursive(chunkSize, chunkOverlap, tokenizer);
+    }
+
+    /**
+     * Comparaison des découpages sur le corpus docs/ (endpoint /rag/splitterBenchmark, profil bench)
+     * Les splitters sont des instances propres à l'évaluation, créées à chaque appel de l'endpoint
+     */
+    @Bean
+    @ConditionalOnBean(DocumentIngestionService.class)
+    public SplitterEvaluation splitterEvaluation(DocumentIngestionService documentIngestionService,
+                                                 EmbeddingModel embeddingModel,
+                                                 Tokenizer tokenizer) {
+        return new SplitterEvaluation(documentIngestionService, embeddingModel, tokenizer, () -> {
+            Map<String, DocumentSplitter> splitters = new LinkedHashMap<>();
+            splitters.put("recursive", createSplitter("recursive", false, tokenizer, embeddingModel));
+            splitters.put("structure", createSplitter("structure", false, tokenizer, embeddingModel));
+            splitters.put("structure+semantic", createSplitter("structure", true, tokenizer, embeddingModel));
+            return splitters;
+        });
+    }
+
+    /**
+     * Chargement d'un fichier dans le vector store (PDF, TXT, images)
+     * Ce bean n'est créé que si EmbeddingModel et EmbeddingStore sont disponibles
+     */
+    @Bean
+    @ConditionalOnBean({EmbeddingModel.class, EmbeddingStore.class, DocumentSplitter.class})
+    public DocumentIngestionService documentIngestionService(
+            ImageDescriber imageDescriber,
             EmbeddingModel embeddingModel,
             EmbeddingStore<TextSegment> embeddingStore,
-            Tokenizer tokenizer,
+            IngestionRetryQueue ingestionRetryQueue,
+            DocumentSplitter documentSplitter,
+            @Value("${rag.ingestion.pdf.threads:2}") int pdfThreads,
+            @Value("${rag.ingestion.pdf.pages-per-batch:8}") int pagesPerBatch,
+            @Value("${rag.ingestion.pdf.pages-per-task:16}") int pagesPerTask,
+            @Value("${rag.ingestion.pdf.parallel-threshold:32}") int parallelThreshold,
+            @Value("${rag.ingestion.pdf.images:true}") boolean pdfImages) {
+        return new DocumentIngestionService(imageDescriber, embeddingModel, embeddingStore,
+                ingestionRetryQueue, documentSplitter,
+                new DocumentIngestionService.PdfSettings(pdfThreads, pagesPerBatch, pagesPerTask, parallelThreshold, pdfImages));
+    }
+
+    /**
+     * File d'ingestion durable traitée en arrière-plan (uploads HTTP et documents du démarrage)
+     */
+    @Bean
+    @ConditionalOnBean(DocumentIngestionService.class)
+    public IngestionJobQueue ingestionJobQueue(
+            DocumentIngestionService documentIngestionService,
+            @Value("${rag.ingestion.directory:data/ingestion}") String directory,
+            @Value("${rag.ingestion.workers:2}") int workers,
+            @Value("${rag.ingestion.max-attempts:3}") int maxAttempts) {
+        return new IngestionJobQueue(documentIngestionService, Path.of(directory), workers, maxAttempts);
+    }
+
+    /**
+     * ApplicationRunner pour charger les documents au démarrage
+     * Les fichiers du dossier docs/ sont seulement mis en file: l'application est prête
+     * immédiatement et le corpus se charge en arrière-plan (suivi via /documents/jobs)
+     */
+    @Bean
+    @ConditionalOnBean(IngestionJobQueue.class)
+    public ApplicationRunner loadDocumentToVectorStore(
+            IngestionJobQueue ingestionJobQueue,
             @Value("classpath:/docs") Resource folderResource) {
         return args -> {
             
             try {
                 log.info("═══════════════════════════════════════════════════════════");
-                log.info("🚀 DÉMARRAGE DU CHARGEMENT DES DOCUMENTS DANS LE VECTOR STORE");
+                log.info("🚀 MISE EN FILE DES DOCUMENTS DU DOSSIER docs/");
                 log.info("═══════════════════════════════════════════════════════════");
                 
                 // Essayer d'obtenir le dossier docs de différentes manières
@@ -256,25 +488,6 @@ public class RagConfig {
                     return;
                 }
                 
-                log.info("✅ Dossier docs/ trouvé: {}", docsFolder.getAbsolutePath());
-
-                // Vérifier que l'embeddingStore n'est pas null
-                if (embeddingStore == null) {
-                    log.error("❌ ERREUR CRITIQUE: embeddingStore est null!");
-                    log.error("   Le RAG ne peut pas fonctionner sans EmbeddingStore.");
-                    log.error("   Vérifiez la configuration PostgreSQL ou utilisez InMemoryEmbeddingStore.");
-                    return;
-                }
-                
-                DocumentSplitter documentSplitter = DocumentSplitters.recursive(chunkSize, chunkOverlap, tokenizer);
-                
-                EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
-                        .documentSplitter(documentSplitter)
-                        .embeddingModel(embeddingModel)
-                        .embeddingStore(embeddingStore)
-                        .build();
-
-                // Charger tous les fichiers du dossier docs/
                 File[] files = docsFolder.listFiles();
                 if (files == null || files.length == 0) {
                     log.warn("⚠️ Aucun fichier trouvé dans le dossier docs/");
@@ -282,212 +495,24 @@ public class RagConfig {
                     return;
                 }
                 
-                log.info("📋 {} fichier(s) trouvé(s) dans le dossier docs/", files.length);
-                for (File f : files) {
-                    log.info("   - {}", f.getName());
-                }
-
-                int totalDocuments = 0;
-                int totalSegments = 0;
+                int queued = 0;
                 for (File file : files) {
-                    if (file.isFile()) {
-                        try {
-                            String fileName = file.getName();
-                            String fileNameLower = fileName.toLowerCase();
-                            log.info("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
-                            log.info("📄 Traitement du fichier: {}", fileName);
-                            
-                            if (fileNameLower.endsWith(".pdf")) {
-                                int count = loadPdfDocument(file, imageDescriptionModel, ingestor, tokenizer);
-                                totalSegments += count;
-                                totalDocuments++;
-                                log.info("✅ PDF {} traité: {} segments chargés", fileName, count);
-                            } else if (fileNameLower.endsWith(".txt")) {
-                                List<Document> documents = FileSystemDocumentLoader.loadDocuments(file.toPath());
-                                ingestor.ingest(documents);
-                                totalSegments += documents.size();
-                                totalDocuments++;
-                                log.info("✅ TXT {} traité: {} documents chargés", fileName, documents.size());
-                            } else if (fileNameLower.matches(".*\\.(png|jpg|jpeg|gif)$")) {
-                                loadImageDocument(file, imageDescriptionModel, ingestor);
-                                totalSegments++;
-                                totalDocuments++;
-                                log.info("✅ Image {} traitée", fileName);
-                            } else {
-                                log.debug("⚠️ Fichier ignoré (format non supporté): {}", fileName);
-                            }
-                        } catch (Exception e) {
-                            log.error("❌ ERREUR lors du traitement du fichier {}: {}", file.getName(), e.getMessage(), e);
-                        }
+                    if (!file.isFile() || !DocumentIngestionService.isSupported(file.getName())) {
+                        log.debug("⚠️ Fichier ignoré (format non supporté): {}", file.getName());
+                        continue;
                     }
-                }
-                
-                log.info("═══════════════════════════════════════════════════════════");
-                log.info("✅ CHARGEMENT TERMINÉ!");
-                log.info("   Documents traités: {}", totalDocuments);
-                log.info("   Segments chargés dans le vector store: {}", totalSegments);
-                log.info("═══════════════════════════════════════════════════════════");
-                
-                if (totalSegments == 0) {
-                    log.error("❌ ATTENTION: Aucun segment n'a été chargé dans le vector store!");
-                    log.error("   Vérifiez les logs ci-dessus pour identifier les erreurs.");
-                }
-            } catch (Exception e) {
-                log.error("❌ ERREUR CRITIQUE lors du chargement des documents: {}", e.getMessage(), e);
-                log.error("   Stack trace:", e);
-            }
-        };
-    }
-
-    /**
-     * Charge un document PDF en utilisant le parser de LangChain4j
-     * Note: Le parser de LangChain4j gère PDFBox en interne, donc on n'a pas besoin
-     * d'importer PDFBox directement
-     */
-    private int loadPdfDocument(File pdfFile, 
-                                  ChatLanguageModel chatLanguageModel,
-                                  EmbeddingStoreIngestor ingestor,
-                                  Tokenizer tokenizer) throws IOException {
-        try {
-            log.info("   📖 Lecture du PDF: {}", pdfFile.getAbsolutePath());
-            
-            if (!pdfFile.exists()) {
-                log.error("   ❌ Le fichier PDF n'existe pas: {}", pdfFile.getAbsolutePath());
-                return 0;
-            }
-            
-            if (!pdfFile.canRead()) {
-                log.error("   ❌ Le fichier PDF n'est pas lisible: {}", pdfFile.getAbsolutePath());
-                return 0;
-            }
-            
-            // Utiliser ApachePdfBoxDocumentParser pour charger un fichier PDF unique
-            ApachePdfBoxDocumentParser pdfParser = new ApachePdfBoxDocumentParser();
-            Document document;
-            try (FileInputStream inputStream = new FileInputStream(pdfFile)) {
-                document = pdfParser.parse(inputStream);
-            }
-            List<Document> documents = new ArrayList<>();
-            documents.add(document);
-            log.info("   📄 PDF parsé: {} document(s) extrait(s)", documents.size());
-            
-            if (documents.isEmpty()) {
-                log.warn("   ⚠️ Aucun contenu extrait du PDF {}", pdfFile.getName());
-                return 0;
-            }
-            
-            // Compter les caractères avant ingestion
-            int totalChars = 0;
-            for (Document doc : documents) {
-                String text = doc.text();
-                if (text != null && !text.trim().isEmpty()) {
-                    totalChars += text.length();
-                }
-            }
-            log.info("   📊 Total de {} caractères extraits du PDF", totalChars);
-            
-            // Ajouter des métadonnées à chaque document avant ingestion
-            List<Document> documentsWithMetadata = new ArrayList<>();
-            for (Document doc : documents) {
-                String text = doc.text();
-                if (text != null && !text.trim().isEmpty()) {
-                    dev.langchain4j.data.document.Metadata metadata = new dev.langchain4j.data.document.Metadata();
-                    metadata.put("source", pdfFile.getName());
-                    metadata.put("type", "pdf");
-                    metadata.put("file_path", pdfFile.getAbsolutePath());
-                    
-                    Document documentWithMetadata = new Document(text, metadata);
-                    documentsWithMetadata.add(documentWithMetadata);
-                }
-            }
-            
-            log.info("   🔄 Ingestion de {} document(s) dans le vector store...", documentsWithMetadata.size());
-            
-            // IMPORTANT: Utiliser l'ingestor directement - il va découper et créer les embeddings
-            int ingestedCount = 0;
-            try {
-                // Ingester tous les documents - l'ingestor gère le découpage automatiquement
-                ingestor.ingest(documentsWithMetadata);
-                ingestedCount = documentsWithMetadata.size();
-                log.info("   ✅ {} document(s) ingéré(s) avec succès", ingestedCount);
-            } catch (Exception e) {
-                log.error("   ❌ Erreur lors de l'ingestion globale: {}", e.getMessage(), e);
-                log.error("   Stack trace:", e);
-                // Fallback: essayer document par document
-                log.info("   🔄 Tentative document par document...");
-                for (Document doc : documentsWithMetadata) {
                     try {
-                        ingestor.ingest(doc);
-                        ingestedCount++;
-                    } catch (Exception ex) {
-                        log.warn("   ⚠️ Erreur lors de l'ingestion d'un document: {}", ex.getMessage());
+                        // Un fichier déjà ingéré lors d'un démarrage précédent n'est pas resoumis
+                        ingestionJobQueue.submitFile(file);
+                        queued++;
+                    } catch (Exception e) {
+                        log.error("❌ ERREUR lors de la mise en file du fichier {}: {}", file.getName(), e.getMessage(), e);
                     }
                 }
-            }
-            
-            log.info("   ✅ PDF {} traité: {} segments ingérés ({} caractères)", 
-                    pdfFile.getName(), ingestedCount, totalChars);
-            
-            if (ingestedCount == 0) {
-                log.error("   ❌ AUCUN segment n'a été ingéré du PDF {}!", pdfFile.getName());
-            }
-            
-            return ingestedCount;
-        } catch (Exception e) {
-            log.error("   ❌ ERREUR lors du traitement du PDF {}: {}", pdfFile.getName(), e.getMessage(), e);
-            throw new IOException("Erreur lors du chargement du PDF: " + e.getMessage(), e);
-        }
-    }
-
-    /**
-     * Charge un document image avec génération de description
-     */
-    private void loadImageDocument(File imageFile,
-                                    ChatLanguageModel chatLanguageModel,
-                                    EmbeddingStoreIngestor ingestor) throws IOException {
-        try {
-            BufferedImage bufferedImage = ImageIO.read(imageFile);
-            if (bufferedImage == null) {
-                log.warn("Impossible de lire l'image: {}", imageFile.getName());
-                return;
-            }
-
-            // Convertir en base64
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            String format = imageFile.getName().substring(imageFile.getName().lastIndexOf('.') + 1).toLowerCase();
-            ImageIO.write(bufferedImage, format, byteArrayOutputStream);
-            byte[] imageData = byteArrayOutputStream.toByteArray();
-            String imageBase64 = Base64.getEncoder().encodeToString(imageData);
-
-            // Générer une description avec le LLM
-            String imageDescription;
-            try {
-                UserMessage userMessage = UserMessage.from(
-                        "Décris cette image en détail. L'image est en base64: " + 
-                        imageBase64.substring(0, Math.min(100, imageBase64.length())) + "..."
-                );
-                Response<AiMessage> response = chatLanguageModel.generate(userMessage);
-                imageDescription = response.content().text();
+                log.info("✅ {} fichier(s) soumis à la file d'ingestion", queued);
             } catch (Exception e) {
-                log.warn("Impossible de générer une description pour l'image: {}", e.getMessage());
-                imageDescription = "Image: " + imageFile.getName();
+                log.error("❌ ERREUR CRITIQUE lors de la mise en file des documents: {}", e.getMessage(), e);
             }
-
-            // Créer le document avec la description
-            dev.langchain4j.data.document.Metadata metadata = new dev.langchain4j.data.document.Metadata();
-            metadata.put("source", imageFile.getName());
-            metadata.put("type", "image");
-            
-            Document imageDocument = new Document(
-                    "[IMAGE: " + imageFile.getName() + "]\n\n" +
-                    "Description de l'image:\n" + imageDescription,
-                    metadata
-            );
-            
-            ingestor.ingest(imageDocument);
-            log.info("Image {} traitée avec succès", imageFile.getName());
-        } catch (Exception e) {
-            log.error("Erreur lors du traitement de l'image {}: {}", imageFile.getName(), e.getMessage(), e);
-        }
+        };
     }
 }
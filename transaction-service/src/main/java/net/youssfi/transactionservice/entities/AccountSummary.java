@@ -0,0 +1,62 @@
+package net.youssfi.transactionservice.entities;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.util.Date;
+
+/**
+ * Résumé d'un compte maintenu à chaque écriture de transaction (AccountSummaryService), dans la même
+ * transaction base de données: les outils lisent une ligne au lieu d'agréger la table Transaction
+ * lastActivity: date de la transaction la plus récente du compte
+ */
+@Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "account-summary")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class AccountSummary {
+    @Id
+    private Long accountId;
+
+    private long pendingCount;
+    private long executedCount;
+    private long canceledCount;
+
+    private long creditCount;
+    private long debitCount;
+    private double totalCredits;
+    private double totalDebits;
+    private double largestDebit;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss", timezone = "UTC")
+    private Date lastActivity;
+
+    public double getBalance() {
+        return totalCredits - totalDebits;
+    }
+
+    public long getTransactionCount() {
+        return creditCount + debitCount;
+    }
+
+    public long countByStatus(TransactionStatus status) {
+        return switch (status) {
+            case PENDING -> pendingCount;
+            case EXECUTED -> executedCount;
+            case CANCELED -> canceledCount;
+        };
+    }
+
+    public void addToStatus(TransactionStatus status, long delta) {
+        switch (status) {
+            case PENDING -> pendingCount += delta;
+            case EXECUTED -> executedCount += delta;
+            case CANCELED -> canceledCount += delta;
+        }
+    }
+}
@@ -3,13 +3,26 @@ package net.youssfi.transactionservice.entities;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Date;
 
 @Entity
+// Cache de second niveau: findById sans aller-retour en base; READ_WRITE met à jour l'entrée de l'id écrit
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "transaction")
+// id en seconde colonne: sert aussi la pagination par clé d'un compte ou d'un statut (where ... and id > ? order by id)
+@Table(indexes = {
+        @Index(name = "idx_transaction_account_id", columnList = "accountId, id"),
+        @Index(name = "idx_transaction_status", columnList = "status, id")
+})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Transaction {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Séquence allouée par blocs (optimiseur pooled): un aller-retour pour 50 ids, et Hibernate peut
+    // regrouper les INSERT en lots JDBC, ce que la stratégie IDENTITY interdit
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 50)
     private Long id;
     
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss", timezone = "UTC")
@@ -0,0 +1,53 @@
+package net.youssfi.transactionservice.entities;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Date;
+
+/**
+ * Écriture demandée par un outil du chat (création, changement de statut, suppression), en attente dans la
+ * table outbox jusqu'à son application par TransactionCommandService
+ * idempotencyKey (SHA-256 de la conversation, du jeton de requête et de l'intention) est unique: la même demande
+ * soumise à nouveau avec le même jeton (nouvel essai du LLM, message renvoyé) retrouve la commande existante
+ * au lieu d'en créer une; une clé libérée après la fenêtre de déduplication devient "expired:<id>"
+ */
+@Entity
+// status puis id: lecture des commandes en attente dans l'ordre d'arrivée
+@Table(indexes = @Index(name = "idx_transaction_command_status", columnList = "status, id"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_transaction_command_key", columnNames = "idempotencyKey"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class TransactionCommand {
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_command_seq")
+    @SequenceGenerator(name = "transaction_command_seq", sequenceName = "transaction_command_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String idempotencyKey;
+    private String chatId;
+    private String requestId; // jeton de nouvel essai (message client ou requête HTTP), null pour les outils du LLM
+
+    @Enumerated(EnumType.STRING)
+    private TransactionCommandType type;
+
+    // Cible d'une mise à jour ou d'une suppression; transaction créée pour CREATE
+    private Long transactionId;
+    private Long accountId;
+    private Double amount;
+    @Enumerated(EnumType.STRING)
+    private TransactionType transactionType;
+    @Enumerated(EnumType.STRING)
+    private TransactionStatus transactionStatus; // statut initial (CREATE) ou nouveau statut (UPDATE_STATUS)
+
+    @Enumerated(EnumType.STRING)
+    private TransactionCommandStatus status;
+    private int attempts;
+    @Column(length = 1000)
+    private String outcome;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss", timezone = "UTC")
+    private Date createdAt;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss", timezone = "UTC")
+    private Date processedAt;
+}
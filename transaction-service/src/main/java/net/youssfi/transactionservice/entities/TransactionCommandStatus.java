@@ -0,0 +1,5 @@
+package net.youssfi.transactionservice.entities;
+
+public enum TransactionCommandStatus {
+    PENDING, DONE, FAILED
+}
@@ -0,0 +1,5 @@
+package net.youssfi.transactionservice.entities;
+
+public enum TransactionCommandType {
+    CREATE, UPDATE_STATUS, DELETE
+}
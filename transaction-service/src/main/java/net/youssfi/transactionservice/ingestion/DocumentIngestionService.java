@@ -0,0 +1,240 @@
+package net.youssfi.transactionservice.ingestion;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.rag.IngestionRetryQueue;
+import net.youssfi.transactionservice.rag.MetadataCatalog;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Charge un fichier (PDF, TXT, image) dans le vector store
+ * Extrait de RagConfig pour être appelé par les workers de la file d'ingestion
+ */
+@Slf4j
+public class DocumentIngestionService implements AutoCloseable {
+
+    private static final Pattern YEAR_IN_NAME = Pattern.compile("(?<!\\d)((19|20)\\d{2})(?!\\d)");
+
+    private final ImageDescriber imageDescriber;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final EmbeddingStoreIngestor ingestor;
+    private final IngestionRetryQueue ingestionRetryQueue;
+    private final ExecutorService pdfPagePool;
+    private final PdfPageStreamLoader pdfPageStreamLoader;
+
+    public DocumentIngestionService(ImageDescriber imageDescriber,
+                                    EmbeddingModel embeddingModel,
+                                    EmbeddingStore<TextSegment> embeddingStore,
+                                    IngestionRetryQueue ingestionRetryQueue,
+                                    DocumentSplitter documentSplitter,
+                                    PdfSettings pdfSettings) {
+        this.imageDescriber = imageDescriber;
+        this.embeddingStore = embeddingStore;
+        this.ingestionRetryQueue = ingestionRetryQueue;
+        this.ingestor = EmbeddingStoreIngestor.builder()
+                .documentSplitter(documentSplitter)
+                .embeddingModel(embeddingModel)
+                .embeddingStore(embeddingStore)
+                .build();
+
+        AtomicInteger counter = new AtomicInteger();
+        this.pdfPagePool = Executors.newFixedThreadPool(pdfSettings.threads(), r -> {
+            Thread thread = new Thread(r, "pdf-pages-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pdfPageStreamLoader = new PdfPageStreamLoader(ingestor, ingestionRetryQueue, pdfPagePool,
+                pdfSettings.images() ? imageDescriber : null,
+                pdfSettings.pagesPerBatch(), pdfSettings.pagesPerTask(), pdfSettings.parallelThreshold(),
+                documentSplitter instanceof StructureAwareDocumentSplitter);
+    }
+
+    /**
+     * Réglages de la lecture des PDF page par page (images: description des images intégrées)
+     */
+    public record PdfSettings(int threads, int pagesPerBatch, int pagesPerTask, int parallelThreshold, boolean images) {
+    }
+
+    /**
+     * Indique si le format du fichier est pris en charge
+     */
+    public static boolean isSupported(String fileName) {
+        String lower = fileName.toLowerCase();
+        return lower.endsWith(".pdf") || lower.endsWith(".txt") || lower.matches(".*\\.(png|jpg|jpeg|gif)$");
+    }
+
+    /**
+     * Ingère un fichier: documents chargés, et documents différés faute de modèle d'embedding (file de réessai)
+     */
+    public IngestionResult ingest(File file) throws IOException {
+        String fileName = file.getName();
+        String fileNameLower = fileName.toLowerCase();
+        log.info("📄 Traitement du fichier: {}", fileName);
+        if (fileNameLower.endsWith(".pdf")) {
+            IngestionResult result = loadPdfDocument(file);
+            log.info("✅ PDF {} traité: {} segments chargés, {} différés", fileName, result.documents(), result.deferred());
+            return result;
+        } else if (fileNameLower.endsWith(".txt")) {
+            List<Document> documents = readText(file);
+            boolean ingested = ingestionRetryQueue.ingest(fileName, documents, ingestor);
+            log.info("✅ TXT {} traité: {} documents {}", fileName, documents.size(), ingested ? "chargés" : "différés");
+            return IngestionResult.of(documents.size(), ingested);
+        } else if (fileNameLower.matches(".*\\.(png|jpg|jpeg|gif)$")) {
+            IngestionResult result = loadImageDocument(file);
+            log.info("✅ Image {} traitée", fileName);
+            return result;
+        }
+        throw new IOException("Format non supporté: " + fileName);
+    }
+
+    /**
+     * Supprime du store les segments d'un document avant sa réindexation
+     * Par chemin absolu (metadata file_path) et non par nom: deux fichiers de même nom dans des dossiers
+     * différents (deux envois, par exemple) ne suppriment pas leurs segments l'un l'autre
+     *
+     * @return nombre de segments supprimés
+     */
+    public int removeFile(File file) {
+        if (!canRemoveSources()) {
+            throw new UnsupportedOperationException("Le store " + embeddingStore.getClass().getSimpleName()
+                    + " ne permet pas de supprimer les segments d'un document");
+        }
+        return ((MetadataCatalog) embeddingStore).removeWhere("file_path", file.getAbsolutePath());
+    }
+
+    public boolean canRemoveSources() {
+        return embeddingStore instanceof MetadataCatalog;
+    }
+
+    /**
+     * Texte brut d'un PDF (une entrée par page) ou d'un TXT, sans ingestion
+     * Les images ne sont pas décrites
+     */
+    public List<Document> readText(File file) throws IOException {
+        String fileNameLower = file.getName().toLowerCase();
+        if (fileNameLower.endsWith(".pdf")) {
+            return PdfPageStreamLoader.readPages(file);
+        } else if (fileNameLower.endsWith(".txt")) {
+            List<Document> documents = FileSystemDocumentLoader.loadDocuments(file.toPath());
+            for (Document document : documents) {
+                document.metadata().put("source", file.getName());
+                document.metadata().put("type", "txt");
+                document.metadata().put("file_path", file.getAbsolutePath());
+                putYear(document.metadata(), documentYear(file));
+            }
+            return documents;
+        }
+        return List.of();
+    }
+
+    /**
+     * Charge un PDF page par page (voir PdfPageStreamLoader)
+     */
+    private IngestionResult loadPdfDocument(File pdfFile) throws IOException {
+        if (!pdfFile.exists() || !pdfFile.canRead()) {
+            log.error("   ❌ Le fichier PDF n'existe pas ou n'est pas lisible: {}", pdfFile.getAbsolutePath());
+            return IngestionResult.EMPTY;
+        }
+        try {
+            IngestionResult result = pdfPageStreamLoader.load(pdfFile);
+            if (result.documents() == 0) {
+                log.warn("   ⚠️ Aucune page ingérée du PDF {} ({})", pdfFile.getName(),
+                        result.deferred() > 0 ? "ingestion différée" : "vide");
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("   ❌ ERREUR lors du traitement du PDF {}: {}", pdfFile.getName(), e.getMessage(), e);
+            throw new IOException("Erreur lors du chargement du PDF: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Charge un document image: la description est produite par le modèle de vision
+     */
+    private IngestionResult loadImageDocument(File imageFile) throws IOException {
+        BufferedImage bufferedImage = ImageIO.read(imageFile);
+        if (bufferedImage == null) {
+            log.warn("Impossible de lire l'image: {}", imageFile.getName());
+            return IngestionResult.EMPTY;
+        }
+
+        String imageDescription;
+        try {
+            imageDescription = imageDescriber.describeAsync(bufferedImage, imageFile.getName()).join();
+        } catch (RejectedExecutionException e) {
+            // Tâche d'ingestion en échec: réessayée par IngestionJobQueue plutôt qu'indexée sans description
+            throw new IOException("File des descriptions d'images pleine: " + imageFile.getName());
+        }
+        if (imageDescription == null || imageDescription.isBlank()) {
+            imageDescription = "Image: " + imageFile.getName();
+        }
+
+        Metadata metadata = new Metadata();
+        metadata.put("source", imageFile.getName());
+        metadata.put("type", "image");
+        metadata.put("file_path", imageFile.getAbsolutePath());
+        putYear(metadata, documentYear(imageFile));
+
+        Document imageDocument = new Document(
+                "[IMAGE: " + imageFile.getName() + "]\n\n" +
+                "Description de l'image:\n" + imageDescription,
+                metadata
+        );
+
+        boolean ingested = ingestionRetryQueue.ingest(imageFile.getName(), List.of(imageDocument), ingestor);
+        if (ingested) {
+            log.info("Image {} traitée avec succès", imageFile.getName());
+        }
+        return IngestionResult.of(1, ingested);
+    }
+
+    /**
+     * Année du document pour le filtrage ("rapport 2023"): celle que porte son nom, null sinon
+     * La date de modification du fichier n'est pas utilisée (date de copie, pas du contenu)
+     * Pour un PDF, voir aussi PdfPageStreamLoader.documentYear (metadata du document)
+     */
+    static String documentYear(File file) {
+        return yearIn(file.getName());
+    }
+
+    static String yearIn(String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = YEAR_IN_NAME.matcher(text);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * Sans année connue la clé est absente: le filtre par année écarte le document plutôt que de
+     * le rattacher à une année inventée
+     */
+    static void putYear(Metadata metadata, String year) {
+        if (year != null) {
+            metadata.put("year", year);
+        }
+    }
+
+    @Override
+    public void close() {
+        pdfPagePool.shutdownNow();
+    }
+}
@@ -0,0 +1,203 @@
+package net.youssfi.transactionservice.ingestion;
+
+import dev.langchain4j.data.message.ImageContent;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description d'images par un modèle de vision Ollama (champ images de l'API)
+ * - l'image est réduite (plus grand côté maxSide) puis encodée en PNG avant l'envoi
+ * - les descriptions sont mises en cache sur disque, par SHA-256 de l'image réduite
+ * - les appels passent par un pool à file bornée: file pleine, describeAsync lève RejectedExecutionException
+ *   et l'appelant décide (attendre ses descriptions en cours, réessayer plus tard)
+ * - un appel non terminé après timeoutSeconds (attente en file comprise) est annulé: retiré de la file
+ *   s'il n'a pas commencé, thread interrompu sinon
+ */
+@Slf4j
+public class ImageDescriber implements AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 100;
+    private static final String PROMPT = "Décris cette image en détail, en FRANÇAIS. "
+            + "Retranscris tout texte, chiffre, tableau ou légende visible.";
+
+    private final ChatLanguageModel visionModel;
+    private final Path cacheDirectory;
+    private final int maxSide;
+    private final int minSide;
+    private final long timeoutSeconds;
+    private final ThreadPoolExecutor executor;
+
+    public ImageDescriber(ChatLanguageModel visionModel, Path cacheDirectory, int maxSide, int minSide,
+                          long timeoutSeconds, int threads) {
+        this.visionModel = visionModel;
+        this.cacheDirectory = cacheDirectory;
+        this.maxSide = maxSide;
+        this.minSide = minSide;
+        this.timeoutSeconds = timeoutSeconds;
+        try {
+            Files.createDirectories(cacheDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de créer le cache des descriptions " + cacheDirectory, e);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> {
+                    Thread thread = new Thread(r, "image-describer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // File pleine: rejet rendu à l'appelant (décrire sur son thread échapperait au timeout)
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Indique si l'image est assez grande pour mériter une description (icônes, puces et filets ignorés)
+     */
+    public boolean isWorthDescribing(int width, int height) {
+        return width >= minSide && height >= minSide;
+    }
+
+    /**
+     * Décrit l'image de façon asynchrone; le futur se termine avec null en cas d'échec ou de timeout
+     *
+     * @throws RejectedExecutionException si la file des descriptions est pleine (ou le pool arrêté)
+     */
+    public CompletableFuture<String> describeAsync(BufferedImage image, String label) {
+        byte[] png;
+        try {
+            png = encodePng(downscale(image));
+        } catch (IOException e) {
+            log.warn("Impossible d'encoder l'image {}: {}", label, e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        String hash = sha256(png);
+        String cached = readCache(hash);
+        if (cached != null) {
+            log.debug("Description de {} trouvée en cache", label);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<String> description = new CompletableFuture<>();
+        Future<?> call = executor.submit(() -> {
+            try {
+                description.complete(callModel(png, hash, label));
+            } catch (Throwable e) {
+                description.completeExceptionally(e);
+            }
+        });
+        return description.orTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .exceptionally(e -> {
+                    if (e instanceof TimeoutException) {
+                        // Libère la place en file, ou interrompt l'appel HTTP en cours
+                        call.cancel(true);
+                        executor.remove((Runnable) call);
+                        log.warn("Description de l'image {} abandonnée après {} s", label, timeoutSeconds);
+                    } else {
+                        log.warn("Impossible de générer une description pour l'image {}: {}", label, e.getMessage());
+                    }
+                    return null;
+                });
+    }
+
+    private String callModel(byte[] png, String hash, String label) {
+        long start = System.currentTimeMillis();
+        UserMessage message = UserMessage.from(
+                TextContent.from(PROMPT),
+                ImageContent.from(Base64.getEncoder().encodeToString(png), "image/png"));
+        String description = visionModel.generate(message).content().text();
+        if (description != null && !description.isBlank()) {
+            writeCache(hash, description.trim());
+        }
+        log.debug("Image {} décrite en {} ms", label, System.currentTimeMillis() - start);
+        return description;
+    }
+
+    private BufferedImage downscale(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxSide / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        if (scale == 1.0 && image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        // Conversion RGB dans tous les cas: les images CMYK/indexées des PDF ne s'encodent pas toutes en PNG
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "png", out)) {
+            throw new IOException("Aucun encodeur PNG disponible");
+        }
+        return out.toByteArray();
+    }
+
+    private String readCache(String hash) {
+        Path file = cacheDirectory.resolve(hash + ".txt");
+        try {
+            return Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeCache(String hash, String description) {
+        Path file = cacheDirectory.resolve(hash + ".txt");
+        Path tmp = cacheDirectory.resolve(hash + ".txt.tmp");
+        try {
+            Files.writeString(tmp, description, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.debug("Impossible d'écrire la description en cache: {}", e.getMessage());
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,40 @@
+package net.youssfi.transactionservice.ingestion;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tâche d'ingestion d'un fichier, persistée en JSON dans le répertoire de la file
+ * Les dates sont en millisecondes epoch
+ */
+@Data
+@NoArgsConstructor
+public class IngestionJob {
+    private String id;
+    private String fileName;
+    private String path;
+    private String sha256;
+    private String origin; // "upload" ou "boot"
+    private IngestionJobStatus status;
+    private int attempts;
+    private int documents;
+    private String error;
+    private long createdAt;
+    private long startedAt;
+    private long finishedAt;
+
+    IngestionJob(IngestionJob other) {
+        this.id = other.id;
+        this.fileName = other.fileName;
+        this.path = other.path;
+        this.sha256 = other.sha256;
+        this.origin = other.origin;
+        this.status = other.status;
+        this.attempts = other.attempts;
+        this.documents = other.documents;
+        this.error = other.error;
+        this.createdAt = other.createdAt;
+        this.startedAt = other.startedAt;
+        this.finishedAt = other.finishedAt;
+    }
+}
@@ -0,0 +1,352 @@
+package net.youssfi.transactionservice.ingestion;
+
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File d'ingestion durable
+ * Chaque tâche est un fichier JSON dans jobs/, le fichier à ingérer est copié dans uploads/<id>/
+ * Au redémarrage, les tâches non terminées sont reprises; un fichier déjà ingéré (même SHA-256)
+ * n'est pas soumis une seconde fois. Les tâches sont traitées par un nombre borné de workers
+ * Une tâche dont des documents sont partis dans la file de réessai (en mémoire) est DEFERRED, pas DONE:
+ * le même fichier envoyé à nouveau est réingéré, ses documents pouvant avoir été perdus
+ * reindex() réingère les fichiers déjà traités, hors déduplication, après suppression de leurs segments
+ */
+@Slf4j
+public class IngestionJobQueue implements AutoCloseable {
+
+    private static final String REINDEX = "reindex";
+
+    private final DocumentIngestionService ingestionService;
+    private final Path jobsDirectory;
+    private final Path uploadsDirectory;
+    private final int maxAttempts;
+    private final ThreadPoolExecutor workers;
+    private final Gson gson = new Gson();
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong documentsIngested = new AtomicLong();
+
+    public IngestionJobQueue(DocumentIngestionService ingestionService, Path directory, int workerCount, int maxAttempts) {
+        this.ingestionService = ingestionService;
+        this.jobsDirectory = directory.resolve("jobs");
+        this.uploadsDirectory = directory.resolve("uploads");
+        this.maxAttempts = Math.max(1, maxAttempts);
+        try {
+            Files.createDirectories(jobsDirectory);
+            Files.createDirectories(uploadsDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de créer le répertoire d'ingestion " + directory, e);
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "ingestion-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        recover();
+    }
+
+    /**
+     * Enregistre un fichier envoyé par HTTP et planifie son ingestion
+     * Si un fichier identique est déjà ingéré (DONE) ou en cours, la tâche existante est retournée
+     */
+    public IngestionJob submitUpload(String originalFileName, InputStream content) throws IOException {
+        String id = UUID.randomUUID().toString();
+        String fileName = Path.of(originalFileName).getFileName().toString(); // pas de chemin fourni par le client
+        Path jobUploads = uploadsDirectory.resolve(id);
+        Files.createDirectories(jobUploads);
+        Path target = jobUploads.resolve(fileName);
+
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(content, digest);
+             OutputStream out = Files.newOutputStream(target)) {
+            in.transferTo(out);
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        synchronized (this) {
+            IngestionJob existing = findActiveOrDone(hash);
+            if (existing != null) {
+                deleteQuietly(target);
+                deleteQuietly(jobUploads);
+                return snapshot(existing);
+            }
+            return snapshot(create(id, fileName, target, hash, "upload"));
+        }
+    }
+
+    /**
+     * Planifie l'ingestion d'un fichier déjà présent sur disque (documents du classpath au démarrage)
+     * Le fichier n'est pas copié
+     */
+    public IngestionJob submitFile(File file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        synchronized (this) {
+            IngestionJob existing = findActiveOrDone(hash);
+            if (existing != null) {
+                return snapshot(existing);
+            }
+            return snapshot(create(UUID.randomUUID().toString(), file.getName(), file.toPath(), hash, "boot"));
+        }
+    }
+
+    /**
+     * Réindexe chaque contenu déjà ingéré (DONE ou DEFERRED) dont le fichier est toujours présent
+     * Les segments existants du document sont supprimés du store juste avant sa nouvelle ingestion:
+     * les metadata ajoutées depuis (année, type, section) sont ainsi posées sur les anciens documents,
+     * que la déduplication par SHA-256 empêcherait sinon de renvoyer
+     */
+    public synchronized List<IngestionJob> reindex() {
+        if (!ingestionService.canRemoveSources()) {
+            throw new IllegalStateException("Le store configuré ne permet pas de supprimer les segments d'un document");
+        }
+        Map<String, IngestionJob> latest = new LinkedHashMap<>();
+        Set<String> active = new HashSet<>(); // déjà en cours: sera ingéré avec le code actuel
+        for (IngestionJob job : jobs.values()) {
+            synchronized (job) {
+                IngestionJobStatus status = job.getStatus();
+                if (status == IngestionJobStatus.PENDING || status == IngestionJobStatus.RUNNING) {
+                    active.add(job.getSha256());
+                } else if ((status == IngestionJobStatus.DONE || status == IngestionJobStatus.DEFERRED)
+                        && new File(job.getPath()).isFile()) {
+                    latest.merge(job.getSha256(), job,
+                            (current, candidate) -> candidate.getCreatedAt() > current.getCreatedAt() ? candidate : current);
+                }
+            }
+        }
+        List<IngestionJob> created = new ArrayList<>();
+        for (IngestionJob job : latest.values()) {
+            if (!active.contains(job.getSha256())) {
+                created.add(snapshot(create(UUID.randomUUID().toString(), job.getFileName(), Path.of(job.getPath()),
+                        job.getSha256(), REINDEX)));
+            }
+        }
+        log.info("🔁 Réindexation planifiée: {} document(s)", created.size());
+        return created;
+    }
+
+    public IngestionJob get(String id) {
+        IngestionJob job = jobs.get(id);
+        return job != null ? snapshot(job) : null;
+    }
+
+    public List<IngestionJob> list() {
+        return jobs.values().stream()
+                .map(this::snapshot)
+                .sorted(Comparator.comparingLong(IngestionJob::getCreatedAt).reversed())
+                .toList();
+    }
+
+    /**
+     * Compteurs de progression: nombre de tâches par statut et documents ingérés depuis le démarrage
+     */
+    public Map<String, Long> counters() {
+        Map<IngestionJobStatus, Long> byStatus = new EnumMap<>(IngestionJobStatus.class);
+        for (IngestionJobStatus status : IngestionJobStatus.values()) {
+            byStatus.put(status, 0L);
+        }
+        for (IngestionJob job : jobs.values()) {
+            synchronized (job) {
+                byStatus.merge(job.getStatus(), 1L, Long::sum);
+            }
+        }
+        Map<String, Long> counters = new LinkedHashMap<>();
+        byStatus.forEach((status, count) -> counters.put(status.name().toLowerCase(), count));
+        counters.put("queued", (long) workers.getQueue().size());
+        counters.put("documentsIngested", documentsIngested.get());
+        return counters;
+    }
+
+    private IngestionJob create(String id, String fileName, Path path, String hash, String origin) {
+        IngestionJob job = new IngestionJob();
+        job.setId(id);
+        job.setFileName(fileName);
+        job.setPath(path.toAbsolutePath().toString());
+        job.setSha256(hash);
+        job.setOrigin(origin);
+        job.setStatus(IngestionJobStatus.PENDING);
+        job.setCreatedAt(System.currentTimeMillis());
+        jobs.put(id, job);
+        persist(job);
+        workers.execute(() -> process(job));
+        log.info("📥 Ingestion planifiée: {} ({})", fileName, id);
+        return job;
+    }
+
+    /**
+     * Tâche en cours ou terminée pour ce contenu; une tâche FAILED ou DEFERRED ne compte pas
+     */
+    private IngestionJob findActiveOrDone(String hash) {
+        for (IngestionJob job : jobs.values()) {
+            synchronized (job) {
+                if (hash.equals(job.getSha256()) && job.getStatus() != IngestionJobStatus.FAILED
+                        && job.getStatus() != IngestionJobStatus.DEFERRED) {
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void process(IngestionJob job) {
+        File file;
+        synchronized (job) {
+            job.setStatus(IngestionJobStatus.RUNNING);
+            job.setStartedAt(System.currentTimeMillis());
+            job.setAttempts(job.getAttempts() + 1);
+            job.setError(null);
+            persist(job);
+            file = new File(job.getPath());
+        }
+
+        try {
+            if (REINDEX.equals(job.getOrigin())) {
+                // Aussi à chaque nouvel essai: une tentative échouée a pu laisser des segments
+                int removed = ingestionService.removeFile(file);
+                log.info("🗑️ {} segment(s) de {} supprimé(s) avant réindexation", removed, file.getName());
+            }
+            IngestionResult result = ingestionService.ingest(file);
+            documentsIngested.addAndGet(result.documents());
+            synchronized (job) {
+                job.setDocuments(result.documents());
+                job.setStatus(result.deferred() > 0 ? IngestionJobStatus.DEFERRED : IngestionJobStatus.DONE);
+                job.setError(result.deferred() > 0
+                        ? result.deferred() + " document(s) en file de réessai (modèle d'embedding indisponible)" : null);
+                job.setFinishedAt(System.currentTimeMillis());
+                persist(job);
+            }
+            if (result.deferred() > 0) {
+                log.warn("⏳ Ingestion {} partielle: {} document(s), {} différé(s)", job.getFileName(), result.documents(),
+                        result.deferred());
+            } else {
+                log.info("✅ Ingestion {} terminée: {} document(s)", job.getFileName(), result.documents());
+            }
+        } catch (Exception e) {
+            boolean retry;
+            synchronized (job) {
+                retry = job.getAttempts() < maxAttempts;
+                job.setError(e.getMessage());
+                job.setStatus(retry ? IngestionJobStatus.PENDING : IngestionJobStatus.FAILED);
+                job.setFinishedAt(retry ? 0 : System.currentTimeMillis());
+                persist(job);
+            }
+            log.error("❌ Ingestion {} échouée (tentative {}): {}", job.getFileName(), job.getAttempts(), e.getMessage());
+            if (retry) {
+                workers.execute(() -> process(job));
+            }
+        }
+    }
+
+    /**
+     * Relit les tâches persistées; celles qui étaient en cours lors de l'arrêt sont reprises
+     */
+    private void recover() {
+        int resumed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(jobsDirectory, "*.json")) {
+            for (Path file : files) {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    IngestionJob job = gson.fromJson(reader, IngestionJob.class);
+                    if (job == null || job.getId() == null) {
+                        continue;
+                    }
+                    jobs.put(job.getId(), job);
+                    if (job.getStatus() == IngestionJobStatus.PENDING || job.getStatus() == IngestionJobStatus.RUNNING) {
+                        job.setStatus(IngestionJobStatus.PENDING);
+                        workers.execute(() -> process(job));
+                        resumed++;
+                    }
+                } catch (Exception e) {
+                    log.warn("⚠️ Tâche d'ingestion illisible {}: {}", file.getFileName(), e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("⚠️ Impossible de relire la file d'ingestion: {}", e.getMessage());
+        }
+        if (!jobs.isEmpty()) {
+            log.info("📋 File d'ingestion: {} tâche(s) connue(s), {} reprise(s)", jobs.size(), resumed);
+        }
+    }
+
+    /**
+     * Écrit la tâche de façon atomique (fichier temporaire puis renommage)
+     * Appelé sous le verrou de la tâche
+     */
+    private void persist(IngestionJob job) {
+        Path target = jobsDirectory.resolve(job.getId() + ".json");
+        Path tmp = jobsDirectory.resolve(job.getId() + ".json.tmp");
+        try {
+            Files.writeString(tmp, gson.toJson(job), StandardCharsets.UTF_8);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("⚠️ Impossible de persister la tâche {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    private IngestionJob snapshot(IngestionJob job) {
+        synchronized (job) {
+            return new IngestionJob(job);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // fichier temporaire, sans conséquence
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
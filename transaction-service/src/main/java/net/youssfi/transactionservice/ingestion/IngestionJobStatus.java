@@ -0,0 +1,9 @@
+package net.youssfi.transactionservice.ingestion;
+
+/**
+ * DEFERRED: lu, mais une partie des documents attend dans la file de réessai (en mémoire, perdue à l'arrêt);
+ * comme FAILED, ne compte pas comme déjà ingéré: le même fichier envoyé à nouveau est réingéré
+ */
+public enum IngestionJobStatus {
+    PENDING, RUNNING, DONE, DEFERRED, FAILED
+}
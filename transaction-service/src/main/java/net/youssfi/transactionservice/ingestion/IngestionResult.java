@@ -0,0 +1,21 @@
+package net.youssfi.transactionservice.ingestion;
+
+/**
+ * Bilan de l'ingestion d'un fichier: documents écrits dans le store, et documents confiés à la file de réessai
+ * (modèle d'embedding indisponible), qui ne sont pas encore dans le store
+ */
+public record IngestionResult(int documents, int deferred) {
+
+    public static final IngestionResult EMPTY = new IngestionResult(0, 0);
+
+    /**
+     * @param ingested false si le lot a été différé
+     */
+    public static IngestionResult of(int size, boolean ingested) {
+        return ingested ? new IngestionResult(size, 0) : new IngestionResult(0, size);
+    }
+
+    public IngestionResult plus(IngestionResult other) {
+        return new IngestionResult(documents + other.documents, deferred + other.deferred);
+    }
+}
@@ -0,0 +1,303 @@
+package net.youssfi.transactionservice.ingestion;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.rag.IngestionRetryQueue;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Lecture d'un PDF page par page
+ * Le texte de chaque page devient un document portant son numéro de page; les pages sont découpées
+ * et ingérées par petits lots au fil de la lecture, si bien que la mémoire dépend de la taille
+ * d'une page et non de celle du fichier. Au-delà de parallelThreshold pages, des plages de pages
+ * sont extraites en parallèle, chaque tâche ouvrant sa propre instance du document (PDDocument
+ * n'est pas thread-safe)
+ * Les images intégrées à une page sont décrites par le modèle de vision en parallèle de la lecture
+ * du texte, puis ingérées avec le lot de leur page (type image, même numéro de page)
+ * Avec carrySections, chaque page porte le titre de la section ouverte sur les pages précédentes:
+ * le découpage structurel préfixe ainsi une section qui se poursuit d'une page à l'autre
+ */
+@Slf4j
+public class PdfPageStreamLoader {
+
+    private final EmbeddingStoreIngestor ingestor;
+    private final IngestionRetryQueue ingestionRetryQueue;
+    private final ExecutorService pagePool;
+    private final ImageDescriber imageDescriber;
+    private final int pagesPerBatch;
+    private final int pagesPerTask;
+    private final int parallelThreshold;
+    private final boolean carrySections;
+
+    /**
+     * @param imageDescriber null pour ignorer les images intégrées
+     * @param carrySections  reporter le titre de section d'une page à la suivante (découpage structurel)
+     */
+    public PdfPageStreamLoader(EmbeddingStoreIngestor ingestor,
+                               IngestionRetryQueue ingestionRetryQueue,
+                               ExecutorService pagePool,
+                               ImageDescriber imageDescriber,
+                               int pagesPerBatch,
+                               int pagesPerTask,
+                               int parallelThreshold,
+                               boolean carrySections) {
+        this.ingestor = ingestor;
+        this.ingestionRetryQueue = ingestionRetryQueue;
+        this.pagePool = pagePool;
+        this.imageDescriber = imageDescriber;
+        this.pagesPerBatch = Math.max(1, pagesPerBatch);
+        this.pagesPerTask = Math.max(1, pagesPerTask);
+        this.parallelThreshold = parallelThreshold;
+        this.carrySections = carrySections;
+    }
+
+    /**
+     * Description en cours d'une image intégrée à une page
+     */
+    private record PendingImage(int page, int index, CompletableFuture<String> description) {
+    }
+
+    /**
+     * @return documents (pages et images) ingérés et différés; les pages vides ne sont pas comptées
+     */
+    public IngestionResult load(File pdfFile) throws IOException {
+        int pageCount;
+        String year;
+        try (PDDocument document = open(pdfFile)) {
+            pageCount = document.getNumberOfPages();
+            year = documentYear(document, pdfFile);
+            if (pageCount <= parallelThreshold) {
+                log.info("   📖 PDF {}: {} pages, lecture séquentielle", pdfFile.getName(), pageCount);
+                return loadRange(document, pdfFile, year, 1, pageCount);
+            }
+        }
+
+        log.info("   📖 PDF {}: {} pages, lecture parallèle par plages de {}", pdfFile.getName(), pageCount, pagesPerTask);
+        List<CompletableFuture<IngestionResult>> tasks = new ArrayList<>();
+        for (int start = 1; start <= pageCount; start += pagesPerTask) {
+            int first = start;
+            int last = Math.min(start + pagesPerTask - 1, pageCount);
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                try (PDDocument document = open(pdfFile)) {
+                    return loadRange(document, pdfFile, year, first, last);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, pagePool));
+        }
+        IngestionResult result = IngestionResult.EMPTY;
+        for (CompletableFuture<IngestionResult> task : tasks) {
+            result = result.plus(task.join());
+        }
+        return result;
+    }
+
+    /**
+     * Texte de toutes les pages, sans ingestion ni images (évaluation du découpage)
+     */
+    public static List<Document> readPages(File pdfFile) throws IOException {
+        List<Document> pages = new ArrayList<>();
+        try (PDDocument document = open(pdfFile)) {
+            String year = documentYear(document, pdfFile);
+            PDFTextStripper stripper = new PDFTextStripper();
+            String section = null;
+            for (int page = 1; page <= document.getNumberOfPages(); page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                String text = stripper.getText(document);
+                if (text != null && !text.isBlank()) {
+                    pages.add(new Document(text, withSection(pageMetadata(pdfFile, year, page, "pdf"), section)));
+                    section = nextSection(text, section);
+                }
+            }
+        }
+        return pages;
+    }
+
+    private IngestionResult loadRange(PDDocument document, File pdfFile, String year, int firstPage, int lastPage) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        List<Document> batch = new ArrayList<>(pagesPerBatch);
+        List<PendingImage> images = new ArrayList<>();
+        Set<COSBase> seenImages = Collections.newSetFromMap(new IdentityHashMap<>());
+        IngestionResult result = IngestionResult.EMPTY;
+        String section = carrySections ? sectionBefore(document, stripper, firstPage) : null;
+        for (int page = firstPage; page <= lastPage; page++) {
+            if (imageDescriber != null) {
+                // Soumises avant l'extraction du texte: le modèle de vision travaille pendant la lecture
+                submitImages(document.getPage(page - 1), pdfFile, page, seenImages, images);
+            }
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+            String text = stripper.getText(document);
+            if (text != null && !text.isBlank()) {
+                batch.add(new Document(text, withSection(pageMetadata(pdfFile, year, page, "pdf"), section)));
+                if (carrySections) {
+                    section = nextSection(text, section);
+                }
+            }
+
+            if (batch.size() + images.size() >= pagesPerBatch) {
+                result = result.plus(flush(pdfFile, year, batch, images));
+            }
+        }
+        return result.plus(flush(pdfFile, year, batch, images));
+    }
+
+    /**
+     * Section ouverte avant la première page d'une plage: les pages précédentes sont relues, au plus
+     * pagesPerTask, jusqu'à trouver un titre (plages extraites en parallèle)
+     */
+    private String sectionBefore(PDDocument document, PDFTextStripper stripper, int firstPage) throws IOException {
+        for (int page = firstPage - 1; page >= Math.max(1, firstPage - pagesPerTask); page--) {
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+            String heading = StructureAwareDocumentSplitter.lastHeading(stripper.getText(document));
+            if (heading != null) {
+                return heading;
+            }
+        }
+        return null;
+    }
+
+    private static String nextSection(String pageText, String section) {
+        String heading = StructureAwareDocumentSplitter.lastHeading(pageText);
+        return heading != null ? heading : section;
+    }
+
+    private static Metadata withSection(Metadata metadata, String section) {
+        if (section != null) {
+            metadata.put(StructureAwareDocumentSplitter.SECTION_METADATA, section);
+        }
+        return metadata;
+    }
+
+    /**
+     * Lance la description des images de la page; une image partagée entre pages (logo, en-tête)
+     * n'est décrite qu'une fois, et les images trop petites sont ignorées
+     */
+    private void submitImages(PDPage page, File pdfFile, int pageNumber, Set<COSBase> seenImages, List<PendingImage> images) {
+        PDResources resources = page.getResources();
+        if (resources == null) {
+            return;
+        }
+        int index = 0;
+        for (COSName name : resources.getXObjectNames()) {
+            try {
+                if (!(resources.getXObject(name) instanceof PDImageXObject image)
+                        || !seenImages.add(image.getCOSObject())
+                        || !imageDescriber.isWorthDescribing(image.getWidth(), image.getHeight())) {
+                    continue;
+                }
+                index++;
+                String label = pdfFile.getName() + " p." + pageNumber + " image " + index;
+                images.add(new PendingImage(pageNumber, index, describe(image.getImage(), label, images)));
+            } catch (IOException e) {
+                log.warn("   ⚠️ Image {} illisible page {} de {}: {}", name.getName(), pageNumber, pdfFile.getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * File des descriptions pleine: attendre les descriptions déjà lancées pour ce lot, puis réessayer une fois;
+     * l'image reste sans description si la file est toujours pleine (autres ingestions en cours)
+     */
+    private CompletableFuture<String> describe(BufferedImage image, String label, List<PendingImage> pending) {
+        try {
+            return imageDescriber.describeAsync(image, label);
+        } catch (RejectedExecutionException e) {
+            pending.forEach(previous -> previous.description().join());
+        }
+        try {
+            return imageDescriber.describeAsync(image, label);
+        } catch (RejectedExecutionException e) {
+            log.warn("   ⚠️ File des descriptions d'images pleine: {} ignorée", label);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private IngestionResult flush(File pdfFile, String year, List<Document> batch, List<PendingImage> images) {
+        for (PendingImage image : images) {
+            String description = image.description().join();
+            if (description == null || description.isBlank()) {
+                continue;
+            }
+            batch.add(new Document(
+                    "[IMAGE " + image.index() + " - " + pdfFile.getName() + ", page " + image.page() + "]\n\n"
+                            + "Description de l'image:\n" + description,
+                    pageMetadata(pdfFile, year, image.page(), "image")));
+        }
+        images.clear();
+        if (batch.isEmpty()) {
+            return IngestionResult.EMPTY;
+        }
+        String label = pdfFile.getName() + " p." + batch.get(0).metadata().getString("page")
+                + "-" + batch.get(batch.size() - 1).metadata().getString("page");
+        int size = batch.size();
+        // Copie: la file de réessai peut conserver la liste, le lot courant est réutilisé
+        boolean ingested = ingestionRetryQueue.ingest(label, new ArrayList<>(batch), ingestor);
+        batch.clear();
+        log.debug("   📄 {} {}", label, ingested ? "ingérées" : "différées");
+        return IngestionResult.of(size, ingested);
+    }
+
+    /**
+     * Année du PDF: celle de son nom, sinon celle de son titre, sinon sa date de création
+     * (dictionnaire d'information du document); null si aucune n'est renseignée
+     */
+    private static String documentYear(PDDocument document, File pdfFile) {
+        String year = DocumentIngestionService.documentYear(pdfFile);
+        if (year != null) {
+            return year;
+        }
+        PDDocumentInformation information = document.getDocumentInformation();
+        year = DocumentIngestionService.yearIn(information.getTitle());
+        if (year != null) {
+            return year;
+        }
+        Calendar created = information.getCreationDate();
+        return created != null ? String.valueOf(created.get(Calendar.YEAR)) : null;
+    }
+
+    private static Metadata pageMetadata(File pdfFile, String year, int page, String type) {
+        Metadata metadata = new Metadata();
+        metadata.put("source", pdfFile.getName());
+        metadata.put("type", type);
+        metadata.put("file_path", pdfFile.getAbsolutePath());
+        metadata.put("page", String.valueOf(page));
+        DocumentIngestionService.putYear(metadata, year);
+        return metadata;
+    }
+
+    /**
+     * Ouverture sur fichier: PDFBox lit le fichier à la demande et place ses caches de flux
+     * dans des fichiers temporaires plutôt que sur le heap
+     */
+    private static PDDocument open(File pdfFile) throws IOException {
+        return Loader.loadPDF(pdfFile, IOUtils.createTempFileOnlyStreamCache());
+    }
+}
@@ -0,0 +1,178 @@
+package net.youssfi.transactionservice.ingestion;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Compare plusieurs stratégies de découpage sur le même corpus
+ * Chaque découpage est indexé dans un store en mémoire avec le modèle d'embedding actif, puis
+ * interrogé avec les mêmes questions: un succès est compté quand le texte attendu figure dans
+ * l'un des topK segments retrouvés
+ * Sans questions fournies, des phrases du corpus servent à la fois de question et de texte attendu:
+ * on mesure alors si un passage reste retrouvable une fois noyé dans son chunk
+ * Les splitters (et leurs ForkJoinPool) sont créés à chaque évaluation puis fermés: rien n'est
+ * alloué au démarrage
+ */
+@Slf4j
+public class SplitterEvaluation {
+
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?])\\s+");
+    private static final int MIN_PROBE_WORDS = 8;
+    private static final int MAX_PROBE_WORDS = 40;
+
+    private final DocumentIngestionService ingestionService;
+    private final EmbeddingModel embeddingModel;
+    private final Tokenizer tokenizer;
+    private final Supplier<Map<String, DocumentSplitter>> splitters;
+
+    public record Probe(String question, String expected) {
+    }
+
+    public record Result(String splitter, int chunks, double averageTokens, int maxTokens,
+                         long splitMillis, int hits, int probes) {
+        public double hitRate() {
+            return probes == 0 ? 0.0 : (double) hits / probes;
+        }
+    }
+
+    public SplitterEvaluation(DocumentIngestionService ingestionService, EmbeddingModel embeddingModel,
+                              Tokenizer tokenizer, Supplier<Map<String, DocumentSplitter>> splitters) {
+        this.ingestionService = ingestionService;
+        this.embeddingModel = embeddingModel;
+        this.tokenizer = tokenizer;
+        this.splitters = splitters;
+    }
+
+    /**
+     * @param probes     questions et textes attendus; vide pour échantillonner sampleSize phrases du corpus
+     */
+    public List<Result> evaluate(File corpusDirectory, List<Probe> probes, int sampleSize, int topK) throws IOException {
+        List<Document> documents = readCorpus(corpusDirectory);
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        if (probes.isEmpty()) {
+            probes = sampleProbes(documents, sampleSize);
+        }
+        List<Embedding> questionEmbeddings = new ArrayList<>();
+        for (Probe probe : probes) {
+            questionEmbeddings.add(embeddingModel.embed(probe.question()).content());
+        }
+
+        Map<String, DocumentSplitter> created = splitters.get();
+        try {
+            return evaluate(created, documents, probes, questionEmbeddings, topK);
+        } finally {
+            close(created);
+        }
+    }
+
+    private List<Result> evaluate(Map<String, DocumentSplitter> created, List<Document> documents, List<Probe> probes,
+                                  List<Embedding> questionEmbeddings, int topK) {
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<String, DocumentSplitter> entry : created.entrySet()) {
+            long start = System.nanoTime();
+            List<TextSegment> segments = entry.getValue().splitAll(documents);
+            long splitMillis = (System.nanoTime() - start) / 1_000_000;
+
+            InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+            store.addAll(embeddingModel.embedAll(segments).content(), segments);
+
+            int hits = 0;
+            for (int i = 0; i < probes.size(); i++) {
+                String expected = normalize(probes.get(i).expected());
+                for (EmbeddingMatch<TextSegment> match : store.findRelevant(questionEmbeddings.get(i), topK)) {
+                    if (normalize(match.embedded().text()).contains(expected)) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+
+            int totalTokens = 0;
+            int maxTokens = 0;
+            for (TextSegment segment : segments) {
+                int tokens = tokenizer.estimateTokenCountInText(segment.text());
+                totalTokens += tokens;
+                maxTokens = Math.max(maxTokens, tokens);
+            }
+            double averageTokens = segments.isEmpty() ? 0.0 : (double) totalTokens / segments.size();
+            results.add(new Result(entry.getKey(), segments.size(), averageTokens, maxTokens, splitMillis, hits, probes.size()));
+            log.info("📏 Découpage {}: {} chunks, {}/{} questions retrouvées", entry.getKey(), segments.size(), hits, probes.size());
+        }
+        return results;
+    }
+
+    private List<Document> readCorpus(File corpusDirectory) throws IOException {
+        List<Document> documents = new ArrayList<>();
+        File[] files = corpusDirectory.listFiles();
+        if (files == null) {
+            return documents;
+        }
+        for (File file : files) {
+            if (file.isFile()) {
+                documents.addAll(ingestionService.readText(file));
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Phrases de longueur moyenne réparties sur tout le corpus
+     */
+    private static List<Probe> sampleProbes(List<Document> documents, int sampleSize) {
+        List<String> sentences = new ArrayList<>();
+        for (Document document : documents) {
+            for (String sentence : SENTENCE_END.split(document.text().replaceAll("\\s+", " "))) {
+                int words = sentence.trim().split(" ").length;
+                if (words >= MIN_PROBE_WORDS && words <= MAX_PROBE_WORDS) {
+                    sentences.add(sentence.trim());
+                }
+            }
+        }
+        List<Probe> probes = new ArrayList<>();
+        int step = Math.max(1, sentences.size() / Math.max(1, sampleSize));
+        for (int i = 0; i < sentences.size() && probes.size() < sampleSize; i += step) {
+            probes.add(new Probe(sentences.get(i), sentences.get(i)));
+        }
+        return probes;
+    }
+
+    /**
+     * Comparaison insensible aux retours à la ligne, aux césures et à la casse
+     */
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT)
+                .replaceAll("-\\s+", "")
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
+    private static void close(Map<String, DocumentSplitter> created) {
+        for (Map.Entry<String, DocumentSplitter> entry : created.entrySet()) {
+            if (entry.getValue() instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("⚠️ Fermeture du découpage {} impossible: {}", entry.getKey(), e.getMessage());
+                }
+            }
+        }
+    }
+}
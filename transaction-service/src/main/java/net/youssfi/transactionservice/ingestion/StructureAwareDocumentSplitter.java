@@ -0,0 +1,442 @@
+package net.youssfi.transactionservice.ingestion;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.rag.VectorSimilarity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+/**
+ * Découpage qui respecte la structure du document
+ * - le texte est d'abord analysé en blocs: titres, paragraphes, listes, tableaux
+ * - un titre ouvre une section; aucun chunk ne chevauche deux sections et chaque chunk est préfixé par
+ *   le titre de sa section
+ * - les blocs d'une section sont regroupés jusqu'à maxTokens; un bloc trop long est coupé sur ses
+ *   frontières naturelles (phrases, éléments de liste, lignes de tableau avec répétition de l'en-tête)
+ * - mode sémantique optionnel: une coupure est aussi placée là où la similarité entre deux blocs
+ *   voisins chute (distance au-dessus du percentile breakpointPercentile du document)
+ * splitAll découpe les documents en parallèle sur un ForkJoinPool dédié
+ * Un document découpé par morceaux (pages d'un PDF) peut porter dans SECTION_METADATA le titre de la
+ * section ouverte avant lui: le texte précédant son premier titre est alors rattaché à cette section
+ */
+@Slf4j
+public class StructureAwareDocumentSplitter implements DocumentSplitter, AutoCloseable {
+
+    private static final Pattern MARKDOWN_HEADING = Pattern.compile("^#{1,6}\\s+\\S.*");
+    private static final Pattern SECTION_NUMBER = Pattern.compile("^(\\d+(\\.\\d+)+\\.?|[IVX]+\\.|[A-Z]\\.)\\s+\\S.*");
+    private static final Pattern NUMBERED_TITLE = Pattern.compile("^\\d+[.)]?\\s+\\p{Lu}.*");
+    private static final Pattern LIST_ITEM = Pattern.compile("^([-•*▪◦–]|\\d+[.)]|[a-z][.)])\\s+\\S.*");
+    private static final Pattern TABLE_ROW = Pattern.compile(".*\\|.*\\|.*|.*\\S(\\t|\\s{3,})\\S.*(\\t|\\s{3,})\\S.*");
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?…])\\s+");
+    private static final int MAX_HEADING_CHARS = 100;
+    private static final int DOCUMENTS_PER_TASK = 2;
+
+    /**
+     * Titre de la section en cours au début du document (voir lastHeading)
+     */
+    public static final String SECTION_METADATA = "section";
+
+    enum BlockType { HEADING, PARAGRAPH, LIST, TABLE }
+
+    record Block(BlockType type, String text) {
+    }
+
+    /**
+     * Unité de regroupement: un bloc entier ou un morceau d'un bloc trop long
+     */
+    private record Unit(BlockType type, String text, int tokens, int section) {
+    }
+
+    private final Tokenizer tokenizer;
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final EmbeddingModel semanticModel;
+    private final double breakpointPercentile;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param semanticModel        null pour désactiver les coupures sémantiques
+     * @param breakpointPercentile percentile (0-100) des distances entre blocs voisins au-delà duquel on coupe
+     */
+    public StructureAwareDocumentSplitter(Tokenizer tokenizer, int maxTokens, int overlapTokens,
+                                          EmbeddingModel semanticModel, double breakpointPercentile, int threads) {
+        this.tokenizer = tokenizer;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+        this.semanticModel = semanticModel;
+        this.breakpointPercentile = breakpointPercentile;
+        this.pool = new ForkJoinPool(Math.max(1, threads), p -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("splitter-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public List<TextSegment> splitAll(List<Document> documents) {
+        if (documents.size() <= DOCUMENTS_PER_TASK) {
+            return splitSequentially(documents);
+        }
+        return pool.invoke(new SplitTask(documents));
+    }
+
+    /**
+     * Divise la liste de documents en deux jusqu'à DOCUMENTS_PER_TASK; l'ordre des segments est conservé
+     */
+    private final class SplitTask extends RecursiveTask<List<TextSegment>> {
+
+        private final List<Document> documents;
+
+        SplitTask(List<Document> documents) {
+            this.documents = documents;
+        }
+
+        @Override
+        protected List<TextSegment> compute() {
+            if (documents.size() <= DOCUMENTS_PER_TASK) {
+                return splitSequentially(documents);
+            }
+            int middle = documents.size() / 2;
+            SplitTask left = new SplitTask(documents.subList(0, middle));
+            SplitTask right = new SplitTask(documents.subList(middle, documents.size()));
+            left.fork();
+            List<TextSegment> segments = new ArrayList<>(right.compute());
+            segments.addAll(0, left.join());
+            return segments;
+        }
+    }
+
+    private List<TextSegment> splitSequentially(List<Document> documents) {
+        List<TextSegment> segments = new ArrayList<>();
+        for (Document document : documents) {
+            segments.addAll(split(document));
+        }
+        return segments;
+    }
+
+    @Override
+    public List<TextSegment> split(Document document) {
+        List<Block> blocks = parse(document.text());
+        List<String> sectionTitles = new ArrayList<>();
+        // Texte précédant le premier titre: suite de la section du document précédent, s'il y en a une
+        sectionTitles.add(document.metadata().getString(SECTION_METADATA));
+        List<Unit> units = toUnits(blocks, sectionTitles);
+        boolean[] breakpoints = semanticModel != null ? semanticBreakpoints(units) : new boolean[units.size()];
+
+        List<TextSegment> segments = new ArrayList<>();
+        List<Unit> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (int i = 0; i < units.size(); i++) {
+            Unit unit = units.get(i);
+            int headingTokens = headingTokens(sectionTitles, unit.section());
+            boolean newSection = !current.isEmpty() && current.get(0).section() != unit.section();
+            boolean full = currentTokens + unit.tokens() > maxTokens - headingTokens;
+            if (!current.isEmpty() && (newSection || full || breakpoints[i])) {
+                segments.add(segment(document, sectionTitles, current, segments.size()));
+                Unit overlap = newSection ? null : overlapOf(current.get(current.size() - 1), unit, headingTokens);
+                current.clear();
+                currentTokens = 0;
+                if (overlap != null) {
+                    current.add(overlap);
+                    currentTokens = overlap.tokens();
+                }
+            }
+            current.add(unit);
+            currentTokens += unit.tokens();
+        }
+        if (!current.isEmpty()) {
+            segments.add(segment(document, sectionTitles, current, segments.size()));
+        }
+        return segments;
+    }
+
+    /**
+     * Dernier titre du texte, null s'il n'en contient aucun
+     * Permet de reporter la section en cours d'une page à la suivante
+     */
+    public static String lastHeading(String text) {
+        String heading = null;
+        for (Block block : parse(text)) {
+            if (block.type() == BlockType.HEADING) {
+                heading = block.text();
+            }
+        }
+        return heading;
+    }
+
+    /**
+     * Analyse du texte extrait (PDF, TXT) en blocs
+     * Les lignes d'un même paragraphe sont recollées; une ligne vide, un titre, une liste ou un
+     * tableau ferment le paragraphe en cours
+     */
+    static List<Block> parse(String text) {
+        List<Block> blocks = new ArrayList<>();
+        StringBuilder buffer = new StringBuilder();
+        BlockType bufferType = null;
+        String[] lines = text.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].strip();
+            String next = i + 1 < lines.length ? lines[i + 1].strip() : "";
+            if (line.isEmpty()) {
+                bufferType = close(blocks, buffer, bufferType);
+                continue;
+            }
+            BlockType type = classify(line, next, bufferType);
+            if (type == BlockType.HEADING) {
+                close(blocks, buffer, bufferType);
+                blocks.add(new Block(BlockType.HEADING, line.replaceFirst("^#+\\s*", "")));
+                bufferType = null;
+            } else if (type != bufferType && !(bufferType == BlockType.LIST && type == BlockType.PARAGRAPH)) {
+                close(blocks, buffer, bufferType);
+                buffer.append(line);
+                bufferType = type;
+            } else if (type == BlockType.PARAGRAPH) {
+                // Suite de paragraphe ou d'élément de liste: recoller, en supprimant la césure
+                if (buffer.length() > 0 && buffer.charAt(buffer.length() - 1) == '-' && Character.isLowerCase(line.charAt(0))) {
+                    buffer.setLength(buffer.length() - 1);
+                } else {
+                    buffer.append(' ');
+                }
+                buffer.append(line);
+            } else {
+                buffer.append('\n').append(line);
+            }
+        }
+        close(blocks, buffer, bufferType);
+        return blocks;
+    }
+
+    private static BlockType classify(String line, String next, BlockType bufferType) {
+        if (MARKDOWN_HEADING.matcher(line).matches()) {
+            return BlockType.HEADING;
+        }
+        if (TABLE_ROW.matcher(line).matches()) {
+            return BlockType.TABLE;
+        }
+        boolean shortLine = line.length() <= MAX_HEADING_CHARS && !line.matches(".*[.;,:]$");
+        if (shortLine && (SECTION_NUMBER.matcher(line).matches() || isUpperCaseTitle(line))) {
+            return BlockType.HEADING;
+        }
+        // "1 Introduction" ou "2. Résultats" hors d'une liste et non suivi d'un élément: titre
+        if (shortLine && bufferType != BlockType.LIST && NUMBERED_TITLE.matcher(line).matches()
+                && !LIST_ITEM.matcher(next).matches()) {
+            return BlockType.HEADING;
+        }
+        return LIST_ITEM.matcher(line).matches() ? BlockType.LIST : BlockType.PARAGRAPH;
+    }
+
+    private static boolean isUpperCaseTitle(String line) {
+        int letters = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isLetter(c)) {
+                if (Character.isLowerCase(c)) {
+                    return false;
+                }
+                letters++;
+            }
+        }
+        return letters >= 4;
+    }
+
+    private static BlockType close(List<Block> blocks, StringBuilder buffer, BlockType bufferType) {
+        if (buffer.length() > 0 && bufferType != null) {
+            blocks.add(new Block(bufferType, buffer.toString()));
+        }
+        buffer.setLength(0);
+        return null;
+    }
+
+    /**
+     * Transforme les blocs en unités tenant dans le budget; les titres deviennent des sections
+     * sectionTitles contient déjà la section 0 (texte précédant le premier titre)
+     */
+    private List<Unit> toUnits(List<Block> blocks, List<String> sectionTitles) {
+        List<Unit> units = new ArrayList<>();
+        int section = 0;
+        for (Block block : blocks) {
+            if (block.type() == BlockType.HEADING) {
+                sectionTitles.add(block.text());
+                section = sectionTitles.size() - 1;
+                continue;
+            }
+            int budget = Math.max(1, maxTokens - headingTokens(sectionTitles, section));
+            int tokens = tokenizer.estimateTokenCountInText(block.text());
+            if (tokens <= budget) {
+                units.add(new Unit(block.type(), block.text(), tokens, section));
+                continue;
+            }
+            for (String piece : splitOversized(block, budget)) {
+                units.add(new Unit(block.type(), piece, tokenizer.estimateTokenCountInText(piece), section));
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Coupe un bloc trop long sur ses frontières naturelles
+     * Les morceaux d'un tableau reprennent sa première ligne (en-tête des colonnes)
+     */
+    private List<String> splitOversized(Block block, int budget) {
+        List<String> parts = switch (block.type()) {
+            case TABLE, LIST -> Arrays.asList(block.text().split("\n"));
+            default -> Arrays.asList(SENTENCE_END.split(block.text()));
+        };
+        String separator = block.type() == BlockType.PARAGRAPH ? " " : "\n";
+        String header = block.type() == BlockType.TABLE ? parts.get(0) : null;
+        int headerTokens = header != null ? tokenizer.estimateTokenCountInText(header) : 0;
+
+        List<String> pieces = new ArrayList<>();
+        StringBuilder piece = new StringBuilder();
+        int pieceTokens = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            String part = parts.get(i);
+            int tokens = tokenizer.estimateTokenCountInText(part);
+            if (piece.length() > 0 && pieceTokens + tokens > budget) {
+                pieces.add(piece.toString());
+                piece.setLength(0);
+                pieceTokens = 0;
+                if (header != null && i > 0) {
+                    piece.append(header);
+                    pieceTokens = headerTokens;
+                }
+            }
+            if (tokens > budget) {
+                // Phrase ou ligne plus longue que le budget: coupe sur les mots
+                pieces.addAll(splitOnWords(part, budget));
+                continue;
+            }
+            if (piece.length() > 0) {
+                piece.append(separator);
+            }
+            piece.append(part);
+            pieceTokens += tokens;
+        }
+        if (piece.length() > 0) {
+            pieces.add(piece.toString());
+        }
+        return pieces;
+    }
+
+    private List<String> splitOnWords(String text, int budget) {
+        List<String> pieces = new ArrayList<>();
+        StringBuilder piece = new StringBuilder();
+        for (String word : text.split("\\s+")) {
+            String candidate = piece.length() > 0 ? piece + " " + word : word;
+            if (piece.length() > 0 && tokenizer.estimateTokenCountInText(candidate) > budget) {
+                pieces.add(piece.toString());
+                piece.setLength(0);
+                piece.append(word);
+            } else {
+                piece.setLength(0);
+                piece.append(candidate);
+            }
+        }
+        if (piece.length() > 0) {
+            pieces.add(piece.toString());
+        }
+        return pieces;
+    }
+
+    /**
+     * Recouvrement entre deux chunks d'une même section: la dernière phrase du chunk précédent,
+     * seulement si un paragraphe est coupé et qu'elle tient dans overlapTokens
+     * Le titre répété en tête du chunk suivant est déduit du budget, comme pour les autres unités
+     */
+    private Unit overlapOf(Unit previous, Unit next, int headingTokens) {
+        if (overlapTokens <= 0 || previous.type() != BlockType.PARAGRAPH || next.type() != BlockType.PARAGRAPH) {
+            return null;
+        }
+        String[] sentences = SENTENCE_END.split(previous.text());
+        String last = sentences[sentences.length - 1];
+        int tokens = tokenizer.estimateTokenCountInText(last);
+        if (sentences.length < 2 || tokens > overlapTokens || tokens + next.tokens() > maxTokens - headingTokens) {
+            return null;
+        }
+        return new Unit(BlockType.PARAGRAPH, last, tokens, previous.section());
+    }
+
+    /**
+     * Coupures sémantiques: distance cosinus entre unités voisines d'une même section,
+     * coupure au-delà du percentile configuré des distances du document
+     */
+    private boolean[] semanticBreakpoints(List<Unit> units) {
+        boolean[] breakpoints = new boolean[units.size()];
+        if (units.size() < 3) {
+            return breakpoints;
+        }
+        List<TextSegment> texts = units.stream().map(unit -> TextSegment.from(unit.text())).toList();
+        List<Embedding> embeddings;
+        try {
+            embeddings = semanticModel.embedAll(texts).content();
+        } catch (Exception e) {
+            log.warn("⚠️ Découpage sémantique indisponible, découpage structurel seul: {}", e.getMessage());
+            return breakpoints;
+        }
+
+        double[] distances = new double[units.size()];
+        List<Double> sameSection = new ArrayList<>();
+        for (int i = 1; i < units.size(); i++) {
+            if (units.get(i).section() == units.get(i - 1).section()) {
+                distances[i] = 1.0 - VectorSimilarity.cosine(embeddings.get(i - 1).vector(), embeddings.get(i).vector());
+                sameSection.add(distances[i]);
+            }
+        }
+        if (sameSection.isEmpty()) {
+            return breakpoints;
+        }
+        double threshold = percentile(sameSection, breakpointPercentile);
+        for (int i = 1; i < units.size(); i++) {
+            breakpoints[i] = distances[i] > threshold;
+        }
+        return breakpoints;
+    }
+
+    private static double percentile(List<Double> values, double percentile) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private int headingTokens(List<String> sectionTitles, int section) {
+        String title = sectionTitles.get(section);
+        return title != null ? tokenizer.estimateTokenCountInText(title) + 1 : 0;
+    }
+
+    private static TextSegment segment(Document document, List<String> sectionTitles, List<Unit> units, int index) {
+        String title = sectionTitles.get(units.get(0).section());
+        StringBuilder text = new StringBuilder();
+        if (title != null) {
+            text.append(title).append('\n');
+        }
+        for (int i = 0; i < units.size(); i++) {
+            if (i > 0) {
+                text.append('\n');
+            }
+            text.append(units.get(i).text());
+        }
+        Metadata metadata = document.metadata().copy();
+        metadata.put("index", String.valueOf(index));
+        if (title != null) {
+            metadata.put(SECTION_METADATA, title);
+        }
+        return TextSegment.from(text.toString(), metadata);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,259 @@
+package net.youssfi.transactionservice.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * ChatMemoryProvider borné: les mémoires sont évincées après une période d'inactivité (TTL)
+ * et dans l'ordre LRU dès que le budget total en octets est dépassé
+ * Si un journal est configuré, une conversation évincée est restaurée depuis le disque au prochain accès
+ */
+@Slf4j
+public class BoundedChatMemoryProvider implements ChatMemoryProvider, AutoCloseable {
+
+    // Coût fixe estimé d'une session vide (entrée de map, mémoire, liste de messages)
+    private static final long SESSION_OVERHEAD_BYTES = 512;
+    private static final long MESSAGE_OVERHEAD_BYTES = 64;
+
+    private final Function<String, ChatMemory> memoryFactory;
+    private final long idleTtlMillis;
+    private final long maxBytes;
+    private final ChatMemoryLog memoryLog; // null si la persistance est désactivée
+
+    // Ordre d'accès = ordre LRU; protégé par le verrou de l'instance
+    private final LinkedHashMap<String, TrackedChatMemory> memories = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final ScheduledExecutorService sweeper;
+
+    public BoundedChatMemoryProvider(Function<String, ChatMemory> memoryFactory,
+                                     long idleTtlMillis,
+                                     long maxBytes,
+                                     ChatMemoryLog memoryLog) {
+        this.memoryFactory = memoryFactory;
+        this.idleTtlMillis = idleTtlMillis;
+        this.maxBytes = maxBytes;
+        this.memoryLog = memoryLog;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-memory-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTtlMillis / 2, 60_000));
+        sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ChatMemory get(Object memoryId) {
+        String chatId = memoryId != null ? memoryId.toString() : "default";
+
+        synchronized (this) {
+            TrackedChatMemory existing = memories.get(chatId);
+            if (existing != null) {
+                existing.touch();
+                return existing;
+            }
+        }
+
+        // Restauration hors verrou global: la lecture disque ne bloque pas les autres sessions
+        TrackedChatMemory created = new TrackedChatMemory(chatId, memoryFactory.apply(chatId));
+        if (memoryLog != null) {
+            List<ChatMessage> restored = memoryLog.read(chatId);
+            for (ChatMessage message : restored) {
+                created.delegate.add(message);
+            }
+            if (!restored.isEmpty()) {
+                log.debug("Conversation {} restaurée depuis le journal ({} messages)", chatId, restored.size());
+            }
+        }
+        created.bytes = estimateBytes(created.delegate.messages());
+
+        List<TrackedChatMemory> evicted;
+        TrackedChatMemory result;
+        synchronized (this) {
+            TrackedChatMemory raced = memories.get(chatId);
+            if (raced != null) {
+                raced.touch();
+                return raced;
+            }
+            memories.put(chatId, created);
+            totalBytes += created.bytes;
+            result = created;
+            evicted = evictOverBudgetLocked();
+        }
+        persistEvicted(evicted);
+        return result;
+    }
+
+    /**
+     * Nombre de sessions actuellement en mémoire
+     */
+    public synchronized int size() {
+        return memories.size();
+    }
+
+    /**
+     * Estimation de l'occupation mémoire totale des sessions (octets)
+     */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        List<TrackedChatMemory> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<>(memories.values());
+        }
+        persistEvicted(remaining);
+    }
+
+    /**
+     * Évince les sessions inactives depuis plus que le TTL
+     */
+    void evictIdle() {
+        long deadline = System.currentTimeMillis() - idleTtlMillis;
+        List<TrackedChatMemory> evicted = new ArrayList<>();
+        synchronized (this) {
+            // Parcours complet: un accès via messages() ne réordonne pas la map
+            Iterator<TrackedChatMemory> it = memories.values().iterator();
+            while (it.hasNext()) {
+                TrackedChatMemory memory = it.next();
+                if (memory.lastAccess > deadline) {
+                    continue;
+                }
+                it.remove();
+                totalBytes -= memory.bytes;
+                evicted.add(memory);
+            }
+        }
+        if (!evicted.isEmpty()) {
+            log.info("🧹 {} session(s) de chat inactive(s) évincée(s)", evicted.size());
+        }
+        persistEvicted(evicted);
+    }
+
+    private void onResized(TrackedChatMemory memory, long delta) {
+        List<TrackedChatMemory> evicted;
+        synchronized (this) {
+            if (memories.get(memory.chatId) != memory) {
+                return; // déjà évincée: plus comptabilisée
+            }
+            totalBytes += delta;
+            evicted = evictOverBudgetLocked();
+        }
+        persistEvicted(evicted);
+    }
+
+    private List<TrackedChatMemory> evictOverBudgetLocked() {
+        if (totalBytes <= maxBytes) {
+            return List.of();
+        }
+        List<TrackedChatMemory> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, TrackedChatMemory>> it = memories.entrySet().iterator();
+        // On garde toujours au moins la session la plus récente
+        while (totalBytes > maxBytes && memories.size() > 1 && it.hasNext()) {
+            TrackedChatMemory memory = it.next().getValue();
+            it.remove();
+            totalBytes -= memory.bytes;
+            evicted.add(memory);
+        }
+        return evicted;
+    }
+
+    private void persistEvicted(List<TrackedChatMemory> evicted) {
+        if (memoryLog == null) {
+            return;
+        }
+        for (TrackedChatMemory memory : evicted) {
+            synchronized (memory) {
+                memoryLog.compact(memory.chatId, memory.delegate.messages());
+            }
+        }
+    }
+
+    static long estimateBytes(List<ChatMessage> messages) {
+        long bytes = SESSION_OVERHEAD_BYTES;
+        for (ChatMessage message : messages) {
+            String text = message.text();
+            bytes += MESSAGE_OVERHEAD_BYTES + (text != null ? 2L * text.length() : 0);
+        }
+        return bytes;
+    }
+
+    /**
+     * Mémoire de chat instrumentée: suit le dernier accès et la taille estimée,
+     * et alimente le journal à chaque nouveau message
+     */
+    private final class TrackedChatMemory implements ChatMemory {
+        private final String chatId;
+        private final ChatMemory delegate;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile long bytes; // écrit sous le verrou de cette mémoire
+
+        private TrackedChatMemory(String chatId, ChatMemory delegate) {
+            this.chatId = chatId;
+            this.delegate = delegate;
+        }
+
+        private void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+
+        @Override
+        public Object id() {
+            return chatId;
+        }
+
+        @Override
+        public void add(ChatMessage message) {
+            long delta;
+            synchronized (this) {
+                delegate.add(message);
+                if (memoryLog != null) {
+                    memoryLog.append(chatId, message);
+                }
+                long newBytes = estimateBytes(delegate.messages());
+                delta = newBytes - bytes;
+                bytes = newBytes;
+            }
+            touch();
+            onResized(this, delta);
+        }
+
+        @Override
+        public List<ChatMessage> messages() {
+            touch();
+            synchronized (this) {
+                return delegate.messages();
+            }
+        }
+
+        @Override
+        public void clear() {
+            long delta;
+            synchronized (this) {
+                delegate.clear();
+                if (memoryLog != null) {
+                    memoryLog.delete(chatId);
+                }
+                delta = SESSION_OVERHEAD_BYTES - bytes;
+                bytes = SESSION_OVERHEAD_BYTES;
+            }
+            onResized(this, delta);
+        }
+    }
+}
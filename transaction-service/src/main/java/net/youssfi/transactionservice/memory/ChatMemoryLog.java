@@ -0,0 +1,180 @@
+package net.youssfi.transactionservice.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Journal append-only des conversations sur disque (un fichier par chatId)
+ * Chaque message est écrit sur une ligne JSON; le fichier est compacté lors de l'éviction
+ * afin qu'une conversation évincée puisse être restaurée paresseusement
+ */
+@Slf4j
+public class ChatMemoryLog {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path directory;
+    private final int maxMessages;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public ChatMemoryLog(Path directory, int maxMessages) throws IOException {
+        this.directory = directory;
+        this.maxMessages = maxMessages;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        Files.createDirectories(directory);
+        log.info("📁 Journal des conversations: {}", directory.toAbsolutePath());
+    }
+
+    /**
+     * Ajoute un message à la fin du journal de la conversation
+     */
+    public void append(String chatId, ChatMessage message) {
+        String line = toLine(message) + "\n";
+        synchronized (lockFor(chatId)) {
+            try {
+                Files.writeString(fileFor(chatId), line, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.warn("Impossible d'écrire dans le journal de la conversation {}: {}", chatId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Relit les derniers messages d'une conversation (liste vide si aucun journal)
+     * Le dernier message système sorti de la fenêtre (résumé écrit en tête par la compaction, prompt système)
+     * est remis en tête: il n'est jamais perdu par la troncature
+     */
+    public List<ChatMessage> read(String chatId) {
+        Path file = fileFor(chatId);
+        synchronized (lockFor(chatId)) {
+            if (!Files.exists(file)) {
+                return List.of();
+            }
+            Deque<String> lastLines = new ArrayDeque<>(maxMessages);
+            String systemLine = null;
+            int lineCount = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    lineCount++;
+                    if (lastLines.size() == maxMessages) {
+                        String dropped = lastLines.removeFirst();
+                        if (isSystemMessage(dropped)) {
+                            systemLine = dropped;
+                        }
+                    }
+                    lastLines.addLast(line);
+                }
+            } catch (IOException e) {
+                log.warn("Impossible de relire le journal de la conversation {}: {}", chatId, e.getMessage());
+                return List.of();
+            }
+            if (systemLine != null) {
+                lastLines.addFirst(systemLine);
+            }
+
+            List<ChatMessage> messages = new ArrayList<>(lastLines.size());
+            for (String line : lastLines) {
+                try {
+                    messages.add(ChatMessageDeserializer.messageFromJson(line));
+                } catch (Exception e) {
+                    log.debug("Ligne de journal ignorée pour {}: {}", chatId, e.getMessage());
+                }
+            }
+            // Le journal a beaucoup grossi depuis la dernière compaction: le réécrire
+            if (lineCount > maxMessages * 4) {
+                rewriteLocked(file, messages);
+            }
+            return messages;
+        }
+    }
+
+    /**
+     * Réécrit le journal avec uniquement les messages encore retenus
+     */
+    public void compact(String chatId, List<ChatMessage> messages) {
+        synchronized (lockFor(chatId)) {
+            rewriteLocked(fileFor(chatId), messages);
+        }
+    }
+
+    /**
+     * Supprime le journal d'une conversation
+     */
+    public void delete(String chatId) {
+        synchronized (lockFor(chatId)) {
+            try {
+                Files.deleteIfExists(fileFor(chatId));
+            } catch (IOException e) {
+                log.warn("Impossible de supprimer le journal de la conversation {}: {}", chatId, e.getMessage());
+            }
+        }
+    }
+
+    Object lockFor(String chatId) {
+        return locks[Math.floorMod(chatId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private void rewriteLocked(Path file, List<ChatMessage> messages) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            StringBuilder content = new StringBuilder();
+            for (ChatMessage message : messages) {
+                content.append(toLine(message)).append('\n');
+            }
+            Files.writeString(tmp, content, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Impossible de compacter le journal {}: {}", file.getFileName(), e.getMessage());
+        }
+    }
+
+    // Seules les lignes qui sortent de la fenêtre sont désérialisées ici
+    private static boolean isSystemMessage(String line) {
+        try {
+            return ChatMessageDeserializer.messageFromJson(line) instanceof SystemMessage;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private String toLine(ChatMessage message) {
+        // Les retours à la ligne dans les chaînes sont échappés par le JSON:
+        // seuls d'éventuels retours de mise en forme sont remplacés
+        return ChatMessageSerializer.messageToJson(message).replace('\n', ' ');
+    }
+
+    private Path fileFor(String chatId) {
+        // Hash du chatId pour éviter toute traversée de chemin via un identifiant client
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(chatId.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest) + ".log");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.youssfi.transactionservice.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Résume de manière incrémentale les anciens échanges d'une conversation
+ * Les appels au LLM sont exécutés sur un pool dédié, en dehors du chemin de la requête
+ */
+@Slf4j
+public class ConversationSummarizer implements AutoCloseable {
+
+    private final ChatLanguageModel chatLanguageModel;
+    private final int summaryMaxTokens;
+    private final ThreadPoolExecutor executor;
+
+    public ConversationSummarizer(ChatLanguageModel chatLanguageModel, int summaryMaxTokens, int threads) {
+        this.chatLanguageModel = chatLanguageModel;
+        this.summaryMaxTokens = summaryMaxTokens;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                r -> {
+                    Thread thread = new Thread(r, "chat-summarizer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Fusionne le résumé existant avec les nouveaux échanges, de façon asynchrone
+     * Le futur échoue si la file est pleine ou si le LLM ne répond pas
+     */
+    public CompletableFuture<String> summarizeAsync(String previousSummary, List<ChatMessage> newMessages) {
+        try {
+            return CompletableFuture.supplyAsync(() -> summarize(previousSummary, newMessages), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private String summarize(String previousSummary, List<ChatMessage> newMessages) {
+        StringBuilder exchanges = new StringBuilder();
+        for (ChatMessage message : newMessages) {
+            if (message instanceof UserMessage) {
+                exchanges.append("UTILISATEUR: ");
+            } else if (message instanceof AiMessage) {
+                exchanges.append("ASSISTANT: ");
+            } else {
+                continue;
+            }
+            exchanges.append(message.text()).append("\n");
+        }
+
+        String prompt = String.format("""
+            Mets à jour le résumé de la conversation avec les nouveaux échanges.
+            Conserve les faits importants (identifiants, montants, comptes, documents cités, décisions).
+            Le résumé doit faire au maximum %d tokens.
+
+            RÉSUMÉ ACTUEL:
+            %s
+
+            NOUVEAUX ÉCHANGES:
+            %s
+
+            RÉSUMÉ MIS À JOUR:
+            """, summaryMaxTokens,
+            previousSummary != null ? previousSummary : "Aucun résumé",
+            exchanges);
+
+        long start = System.currentTimeMillis();
+        String summary = chatLanguageModel.generate(
+                SystemMessage.from("Tu es un assistant qui résume des conversations de manière concise et factuelle. Réponds TOUJOURS en FRANÇAIS."),
+                UserMessage.from(prompt)
+        ).content().text().trim();
+        log.debug("Résumé de conversation mis à jour en {} ms ({} messages)",
+                System.currentTimeMillis() - start, newMessages.size());
+        return summary;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,125 @@
+package net.youssfi.transactionservice.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.Tokenizer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Mémoire de chat à budget de tokens
+ * Les échanges récents sont conservés tels quels tant qu'ils tiennent dans le budget;
+ * les plus anciens sont fusionnés en arrière-plan dans un message de résumé glissant,
+ * de sorte que la taille du prompt reste à peu près constante
+ */
+@Slf4j
+public class SummarizingChatMemory implements ChatMemory {
+
+    private static final String SUMMARY_PREFIX = "Résumé de la conversation précédente:\n";
+    // Toujours garder au moins le dernier échange question/réponse en clair
+    private static final int MIN_RECENT_MESSAGES = 2;
+
+    private final Object id;
+    private final int maxTokens;
+    private final Tokenizer tokenizer;
+    private final ConversationSummarizer summarizer;
+
+    // Toutes les structures ci-dessous sont protégées par le verrou de l'instance
+    private final Deque<ChatMessage> recent = new ArrayDeque<>();
+    private final List<ChatMessage> pending = new ArrayList<>();
+    private int recentTokens;
+    private String summary;
+    private int summaryTokens;
+    private boolean summarizing;
+    private int generation; // incrémenté par clear() pour ignorer les résumés obsolètes
+
+    public SummarizingChatMemory(Object id, int maxTokens, Tokenizer tokenizer, ConversationSummarizer summarizer) {
+        this.id = id;
+        this.maxTokens = maxTokens;
+        this.tokenizer = tokenizer;
+        this.summarizer = summarizer;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public synchronized void add(ChatMessage message) {
+        if (message instanceof SystemMessage systemMessage) {
+            // Résumé relu depuis le journal (compaction à l'éviction): il redevient le résumé courant
+            if (systemMessage.text().startsWith(SUMMARY_PREFIX)) {
+                summary = systemMessage.text().substring(SUMMARY_PREFIX.length());
+                summaryTokens = tokenizer.estimateTokenCountInText(systemMessage.text());
+            }
+            // Le prompt système est reconstruit à chaque requête par le contrôleur
+            return;
+        }
+        recent.addLast(message);
+        recentTokens += tokenizer.estimateTokenCountInMessage(message);
+
+        // Sortir les messages les plus anciens du budget: ils partent en résumé
+        while (recentTokens + summaryTokens > maxTokens && recent.size() > MIN_RECENT_MESSAGES) {
+            ChatMessage oldest = recent.removeFirst();
+            recentTokens -= tokenizer.estimateTokenCountInMessage(oldest);
+            pending.add(oldest);
+        }
+        scheduleSummaryIfNeeded();
+    }
+
+    @Override
+    public synchronized List<ChatMessage> messages() {
+        List<ChatMessage> messages = new ArrayList<>(recent.size() + 1);
+        if (summary != null) {
+            messages.add(SystemMessage.from(SUMMARY_PREFIX + summary));
+        }
+        messages.addAll(recent);
+        return messages;
+    }
+
+    @Override
+    public synchronized void clear() {
+        recent.clear();
+        pending.clear();
+        recentTokens = 0;
+        summary = null;
+        summaryTokens = 0;
+        generation++;
+    }
+
+    private void scheduleSummaryIfNeeded() {
+        if (summarizing || pending.isEmpty()) {
+            return;
+        }
+        summarizing = true;
+        List<ChatMessage> batch = new ArrayList<>(pending);
+        String previousSummary = summary;
+        int batchGeneration = generation;
+
+        summarizer.summarizeAsync(previousSummary, batch).whenComplete((newSummary, error) -> {
+            synchronized (SummarizingChatMemory.this) {
+                summarizing = false;
+                if (batchGeneration != generation) {
+                    scheduleSummaryIfNeeded();
+                    return;
+                }
+                // Le lot est retiré dans tous les cas: en cas d'échec ces messages sont perdus
+                // plutôt que de faire grossir le prompt
+                pending.subList(0, Math.min(batch.size(), pending.size())).clear();
+                if (error != null) {
+                    log.warn("Résumé de la conversation {} impossible: {}", id, error.getMessage());
+                } else if (newSummary != null && !newSummary.isBlank()) {
+                    summary = newSummary;
+                    summaryTokens = tokenizer.estimateTokenCountInText(SUMMARY_PREFIX + newSummary);
+                }
+                scheduleSummaryIfNeeded();
+            }
+        });
+    }
+}
@@ -0,0 +1,457 @@
+package net.youssfi.transactionservice.rag;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tokenizer exact chargé depuis un fichier tokenizer.json (format HuggingFace)
+ * Supporte les modèles BPE de type SentencePiece (llama2: "▁" + byte fallback),
+ * BPE byte-level (GPT-2) et WordPiece (BERT, nomic-embed-text)
+ *
+ * Le texte est découpé en mots, chaque mot est encodé une seule fois puis son nombre de tokens
+ * est mémorisé: les segments répétés (mots courants, bannières de prompt) ne coûtent qu'une lecture de cache
+ */
+@Slf4j
+public class BpeTokenizer extends TextTokenizer {
+
+    enum Mode { METASPACE, BYTE_LEVEL, WORDPIECE }
+
+    private static final char METASPACE = '▁';
+    private static final int MAX_WORDPIECE_CHARS = 100;
+    private static final int[] BYTE_TO_UNICODE = buildByteToUnicode();
+
+    private final Mode mode;
+    private final Map<String, Integer> vocab;
+    private final int[] bmpIds; // code point (BMP) -> id, -1 si absent
+    private final MergeTable merges;
+    private final int[] byteFallbackIds; // null si pas de byte fallback
+    private final boolean lowercase;
+    private final int cacheLimit;
+    private final ConcurrentHashMap<String, Integer> pieceCache = new ConcurrentHashMap<>();
+    private final ThreadLocal<int[]> symbolBuffer = ThreadLocal.withInitial(() -> new int[64]);
+
+    private BpeTokenizer(Mode mode, Map<String, Integer> vocab, MergeTable merges,
+                         boolean byteFallback, boolean lowercase, int cacheLimit) {
+        this.mode = mode;
+        this.vocab = vocab;
+        this.merges = merges;
+        this.lowercase = lowercase;
+        this.cacheLimit = cacheLimit;
+
+        this.bmpIds = new int[Character.MAX_VALUE + 1];
+        Arrays.fill(bmpIds, -1);
+        for (Map.Entry<String, Integer> entry : vocab.entrySet()) {
+            String token = entry.getKey();
+            if (token.length() == 1) {
+                bmpIds[token.charAt(0)] = entry.getValue();
+            }
+        }
+
+        if (byteFallback) {
+            byteFallbackIds = new int[256];
+            for (int b = 0; b < 256; b++) {
+                Integer id = vocab.get(String.format("<0x%02X>", b));
+                byteFallbackIds[b] = id != null ? id : -1;
+            }
+        } else {
+            byteFallbackIds = null;
+        }
+    }
+
+    /**
+     * Charge un tokenizer.json HuggingFace
+     */
+    public static BpeTokenizer load(InputStream inputStream, int cacheLimit) throws IOException {
+        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            JsonObject root = JsonParser.parseReader(reader).getAsJsonObject();
+            JsonObject model = root.getAsJsonObject("model");
+            String type = model.has("type") && !model.get("type").isJsonNull() ? model.get("type").getAsString() : "BPE";
+
+            Map<String, Integer> vocab = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : model.getAsJsonObject("vocab").entrySet()) {
+                vocab.put(entry.getKey(), entry.getValue().getAsInt());
+            }
+
+            if ("WordPiece".equals(type)) {
+                boolean lowercase = false;
+                JsonElement normalizer = root.get("normalizer");
+                if (normalizer != null && normalizer.isJsonObject()
+                        && normalizer.getAsJsonObject().has("lowercase")) {
+                    lowercase = normalizer.getAsJsonObject().get("lowercase").getAsBoolean();
+                }
+                log.info("Tokenizer WordPiece chargé: {} tokens (lowercase={})", vocab.size(), lowercase);
+                return new BpeTokenizer(Mode.WORDPIECE, vocab, null, false, lowercase, cacheLimit);
+            }
+
+            JsonArray mergeArray = model.getAsJsonArray("merges");
+            MergeTable merges = new MergeTable(mergeArray.size());
+            for (int rank = 0; rank < mergeArray.size(); rank++) {
+                JsonElement merge = mergeArray.get(rank);
+                String left;
+                String right;
+                if (merge.isJsonArray()) {
+                    left = merge.getAsJsonArray().get(0).getAsString();
+                    right = merge.getAsJsonArray().get(1).getAsString();
+                } else {
+                    String pair = merge.getAsString();
+                    int space = pair.indexOf(' ', 1);
+                    left = pair.substring(0, space);
+                    right = pair.substring(space + 1);
+                }
+                Integer leftId = vocab.get(left);
+                Integer rightId = vocab.get(right);
+                Integer mergedId = vocab.get(left + right);
+                if (leftId != null && rightId != null && mergedId != null) {
+                    merges.put(leftId, rightId, rank, mergedId);
+                }
+            }
+
+            boolean byteFallback = model.has("byte_fallback") && model.get("byte_fallback").getAsBoolean();
+            Mode mode = String.valueOf(root.get("pre_tokenizer")).contains("ByteLevel") ? Mode.BYTE_LEVEL : Mode.METASPACE;
+            log.info("Tokenizer BPE chargé: {} tokens, {} fusions, mode {}, byte fallback {}",
+                    vocab.size(), mergeArray.size(), mode, byteFallback);
+            return new BpeTokenizer(mode, vocab, merges, byteFallback, false, cacheLimit);
+        }
+    }
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (int) scan(text, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String truncate(String text, int maxTokens) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        long result = scan(text, Math.max(0, maxTokens));
+        int end = (int) (result >>> 32);
+        return end >= text.length() ? text : text.substring(0, end);
+    }
+
+    /**
+     * Nombre d'entrées dans le cache de segments (diagnostic)
+     */
+    public int cachedPieces() {
+        return pieceCache.size();
+    }
+
+    /**
+     * Parcourt le texte mot par mot et s'arrête avant de dépasser maxTokens
+     * Retourne (offset de fin << 32) | nombre de tokens comptés
+     */
+    private long scan(String text, int maxTokens) {
+        int length = text.length();
+        int start = 0;
+        int tokens = 0;
+        while (start < length) {
+            int end = nextPieceEnd(text, start);
+            int pieceTokens = countPiece(text, start, end);
+            if (tokens + pieceTokens > maxTokens) {
+                return ((long) start << 32) | tokens;
+            }
+            tokens += pieceTokens;
+            start = end;
+        }
+        return ((long) length << 32) | tokens;
+    }
+
+    private int nextPieceEnd(String text, int start) {
+        int length = text.length();
+        char first = text.charAt(start);
+        int i = start + 1;
+        switch (mode) {
+            case METASPACE -> {
+                // Un mot commence à chaque espace (qui devient "▁")
+                while (i < length && text.charAt(i) != ' ') {
+                    i++;
+                }
+                return i;
+            }
+            case WORDPIECE -> {
+                if (Character.isWhitespace(first)) {
+                    while (i < length && Character.isWhitespace(text.charAt(i))) {
+                        i++;
+                    }
+                    return i;
+                }
+                if (isPunctuation(first)) {
+                    return i;
+                }
+                while (i < length && !Character.isWhitespace(text.charAt(i)) && !isPunctuation(text.charAt(i))) {
+                    i++;
+                }
+                return i;
+            }
+            default -> {
+                // Approximation du découpage GPT-2: espace optionnel + lettres | chiffres | autres
+                int runStart = start;
+                if (first == ' ' && i < length && !Character.isWhitespace(text.charAt(i))) {
+                    runStart = i;
+                    i++;
+                } else if (Character.isWhitespace(first)) {
+                    while (i < length && Character.isWhitespace(text.charAt(i))) {
+                        i++;
+                    }
+                    // Laisser le dernier espace au mot suivant
+                    return (i < length && i - start > 1 && text.charAt(i - 1) == ' ') ? i - 1 : i;
+                }
+                int cls = charClass(text.charAt(runStart));
+                while (i < length && charClass(text.charAt(i)) == cls) {
+                    i++;
+                }
+                return i;
+            }
+        }
+    }
+
+    private int countPiece(String text, int start, int end) {
+        String key;
+        switch (mode) {
+            case METASPACE -> {
+                String word = text.substring(start, end).replace(' ', METASPACE);
+                key = (start == 0 && word.charAt(0) != METASPACE) ? METASPACE + word : word;
+            }
+            case WORDPIECE -> {
+                if (Character.isWhitespace(text.charAt(start))) {
+                    return 0;
+                }
+                key = text.substring(start, end);
+            }
+            default -> key = text.substring(start, end);
+        }
+
+        Integer cached = pieceCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int count = mode == Mode.WORDPIECE ? countWordPiece(key) : countBpe(key);
+        if (pieceCache.size() >= cacheLimit) {
+            pieceCache.clear();
+        }
+        pieceCache.put(key, count);
+        return count;
+    }
+
+    /**
+     * Encode un mot en BPE et retourne le nombre de tokens
+     * Les symboles sont manipulés dans un tableau d'int réutilisé par thread
+     */
+    private int countBpe(String piece) {
+        int[] symbols = symbolBuffer.get();
+        int n = 0;
+
+        if (mode == Mode.BYTE_LEVEL) {
+            byte[] bytes = piece.getBytes(StandardCharsets.UTF_8);
+            symbols = ensureCapacity(symbols, bytes.length);
+            for (byte b : bytes) {
+                symbols[n++] = bmpIds[BYTE_TO_UNICODE[b & 0xFF]];
+            }
+        } else {
+            symbols = ensureCapacity(symbols, piece.length() * 4);
+            for (int i = 0; i < piece.length(); ) {
+                int cp = piece.codePointAt(i);
+                int charCount = Character.charCount(cp);
+                int id = cp <= Character.MAX_VALUE ? bmpIds[cp] : idOf(piece.substring(i, i + charCount));
+                if (id >= 0) {
+                    symbols[n++] = id;
+                } else if (byteFallbackIds != null) {
+                    for (byte b : piece.substring(i, i + charCount).getBytes(StandardCharsets.UTF_8)) {
+                        symbols[n++] = byteFallbackIds[b & 0xFF];
+                    }
+                } else {
+                    symbols[n++] = -1; // token inconnu
+                }
+                i += charCount;
+            }
+        }
+
+        // Fusions successives de la paire de plus petit rang
+        while (n > 1) {
+            int bestRank = Integer.MAX_VALUE;
+            int bestIndex = -1;
+            int bestMerged = -1;
+            for (int i = 0; i < n - 1; i++) {
+                if (symbols[i] < 0 || symbols[i + 1] < 0) {
+                    continue;
+                }
+                int slot = merges.find(symbols[i], symbols[i + 1]);
+                if (slot >= 0 && merges.rank(slot) < bestRank) {
+                    bestRank = merges.rank(slot);
+                    bestIndex = i;
+                    bestMerged = merges.merged(slot);
+                }
+            }
+            if (bestIndex < 0) {
+                break;
+            }
+            symbols[bestIndex] = bestMerged;
+            System.arraycopy(symbols, bestIndex + 2, symbols, bestIndex + 1, n - bestIndex - 2);
+            n--;
+        }
+        return n;
+    }
+
+    /**
+     * WordPiece: plus long préfixe connu, puis continuations "##"
+     */
+    private int countWordPiece(String word) {
+        String normalized = word;
+        if (lowercase) {
+            normalized = Normalizer.normalize(word.toLowerCase(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        }
+        if (normalized.length() > MAX_WORDPIECE_CHARS) {
+            return 1;
+        }
+        int count = 0;
+        int start = 0;
+        while (start < normalized.length()) {
+            int end = normalized.length();
+            boolean found = false;
+            while (start < end) {
+                String candidate = normalized.substring(start, end);
+                if (start > 0) {
+                    candidate = "##" + candidate;
+                }
+                if (vocab.containsKey(candidate)) {
+                    found = true;
+                    break;
+                }
+                end--;
+            }
+            if (!found) {
+                return 1; // mot entier inconnu -> [UNK]
+            }
+            count++;
+            start = end;
+        }
+        return count;
+    }
+
+    private int idOf(String token) {
+        Integer id = vocab.get(token);
+        return id != null ? id : -1;
+    }
+
+    private int[] ensureCapacity(int[] buffer, int size) {
+        if (buffer.length >= size) {
+            return buffer;
+        }
+        int[] grown = new int[Math.max(size, buffer.length * 2)];
+        symbolBuffer.set(grown);
+        return grown;
+    }
+
+    private static int charClass(char c) {
+        if (Character.isLetter(c)) return 1;
+        if (Character.isDigit(c)) return 2;
+        if (Character.isWhitespace(c)) return 3;
+        return 4;
+    }
+
+    private static boolean isPunctuation(char c) {
+        return (c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)
+                || Character.getType(c) == Character.OTHER_PUNCTUATION
+                || Character.getType(c) == Character.DASH_PUNCTUATION
+                || Character.getType(c) == Character.START_PUNCTUATION
+                || Character.getType(c) == Character.END_PUNCTUATION
+                || Character.getType(c) == Character.INITIAL_QUOTE_PUNCTUATION
+                || Character.getType(c) == Character.FINAL_QUOTE_PUNCTUATION;
+    }
+
+    /**
+     * Table octet -> caractère unicode utilisée par les tokenizers byte-level (GPT-2)
+     */
+    private static int[] buildByteToUnicode() {
+        int[] table = new int[256];
+        boolean[] printable = new boolean[256];
+        for (int b = '!'; b <= '~'; b++) printable[b] = true;
+        for (int b = 0xA1; b <= 0xAC; b++) printable[b] = true;
+        for (int b = 0xAE; b <= 0xFF; b++) printable[b] = true;
+        int next = 0;
+        for (int b = 0; b < 256; b++) {
+            table[b] = printable[b] ? b : 256 + next++;
+        }
+        return table;
+    }
+
+    /**
+     * Table de hachage à adressage ouvert (paire d'ids -> rang, id fusionné)
+     * Évite le boxing d'une Map<Long, Integer> sur le chemin critique
+     */
+    private static final class MergeTable {
+        private final long[] keys;
+        private final int[] ranks;
+        private final int[] mergedIds;
+        private final int mask;
+
+        MergeTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            keys = new long[capacity];
+            Arrays.fill(keys, -1L);
+            ranks = new int[capacity];
+            mergedIds = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        void put(int left, int right, int rank, int mergedId) {
+            long key = key(left, right);
+            int slot = slotOf(key);
+            while (keys[slot] != -1L && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == key && ranks[slot] <= rank) {
+                return; // garder la fusion de plus haute priorité
+            }
+            keys[slot] = key;
+            ranks[slot] = rank;
+            mergedIds[slot] = mergedId;
+        }
+
+        int find(int left, int right) {
+            long key = key(left, right);
+            int slot = slotOf(key);
+            while (keys[slot] != -1L) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        int rank(int slot) {
+            return ranks[slot];
+        }
+
+        int merged(int slot) {
+            return mergedIds[slot];
+        }
+
+        private static long key(int left, int right) {
+            return ((long) left << 32) | (right & 0xFFFFFFFFL);
+        }
+
+        private int slotOf(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+    }
+}
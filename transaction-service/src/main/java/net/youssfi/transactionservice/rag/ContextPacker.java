@@ -0,0 +1,272 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Assemble le contexte RAG dans un budget de tokens
+ * - sélection MMR: pertinence par rapport à la question, pénalité de similarité avec les segments déjà retenus
+ * - suppression du recouvrement entre chunks voisins (rag.document.chunk-overlap)
+ * - le dernier segment qui ne tient pas entier est coupé sur une fin de phrase
+ * Le résultat est partagé par tous les agents, chacun le rendant à son propre budget
+ */
+@Component
+@Slf4j
+public class ContextPacker {
+
+    private final TextTokenizer tokenizer;
+
+    @Value("${rag.context.max-tokens:3000}")
+    private int maxTokens;
+
+    @Value("${rag.context.mmr-lambda:0.7}")
+    private double mmrLambda;
+
+    @Value("${rag.context.min-overlap-chars:20}")
+    private int minOverlapChars;
+
+    @Value("${rag.context.max-overlap-chars:1000}")
+    private int maxOverlapChars;
+
+    @Value("${rag.context.min-segment-tokens:40}")
+    private int minSegmentTokens;
+
+    public ContextPacker(TextTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    private static final class Candidate {
+        final String text;
+        final String source;
+        final double relevance;
+        final float[] vector;
+        final double norm;
+        double maxSimilarity; // similarité maximale avec les segments déjà retenus
+
+        Candidate(String text, String source, double relevance, float[] vector) {
+            this.text = text;
+            this.source = source;
+            this.relevance = relevance;
+            this.vector = vector;
+            this.norm = vector != null ? norm(vector) : 0.0;
+        }
+    }
+
+    public PackedContext pack(Embedding queryEmbedding, List<EmbeddingMatch<TextSegment>> matches) {
+        return pack(queryEmbedding, matches, maxTokens);
+    }
+
+    /**
+     * @param queryEmbedding embedding de la question (peut être null: le score du match est alors utilisé)
+     * @param matches        résultats bruts du vector store, éventuellement issus de plusieurs recherches
+     * @param budget         budget total en tokens, en-têtes d'extraits compris
+     */
+    public PackedContext pack(Embedding queryEmbedding, List<EmbeddingMatch<TextSegment>> matches, int budget) {
+        List<Candidate> remaining = candidates(queryEmbedding, matches);
+        if (remaining.isEmpty()) {
+            return PackedContext.empty();
+        }
+
+        List<PackedContext.Segment> selected = new ArrayList<>();
+        int used = 0;
+        int dropped = 0;
+
+        while (!remaining.isEmpty()) {
+            Candidate best = removeBest(remaining);
+            String text = stripOverlap(best.text, selected);
+            if (text.isBlank()) {
+                dropped++;
+                continue;
+            }
+
+            int headerTokens = tokenizer.estimateTokenCountInText(headerOf(selected.size() + 1, best.source));
+            int tokens = tokenizer.estimateTokenCountInText(text);
+            if (used + headerTokens + tokens > budget) {
+                int room = budget - used - headerTokens;
+                if (room >= minSegmentTokens) {
+                    text = trimToSentence(tokenizer, text, room);
+                    tokens = tokenizer.estimateTokenCountInText(text);
+                    selected.add(new PackedContext.Segment(text, best.source, best.relevance, tokens));
+                    used += headerTokens + tokens;
+                }
+                break;
+            }
+
+            selected.add(new PackedContext.Segment(text, best.source, best.relevance, tokens));
+            used += headerTokens + tokens;
+            updateSimilarities(remaining, best);
+        }
+
+        log.info("📦 Contexte: {} segments retenus sur {} ({} tokens / {}, {} doublons)",
+                selected.size(), matches.size(), used, budget, dropped);
+        return new PackedContext(List.copyOf(selected), tokenizer, used);
+    }
+
+    private List<Candidate> candidates(Embedding queryEmbedding, List<EmbeddingMatch<TextSegment>> matches) {
+        float[] query = queryEmbedding != null ? queryEmbedding.vector() : null;
+        double queryNorm = query != null ? norm(query) : 0.0;
+        Set<String> seen = new HashSet<>();
+        List<Candidate> candidates = new ArrayList<>();
+        for (EmbeddingMatch<TextSegment> match : matches) {
+            TextSegment segment = match.embedded();
+            if (segment == null || segment.text() == null || segment.text().isBlank()) {
+                continue;
+            }
+            String text = segment.text().trim();
+            if (!seen.add(text)) {
+                continue; // même chunk renvoyé par plusieurs recherches
+            }
+            float[] vector = match.embedding() != null ? match.embedding().vector() : null;
+            // Les matches peuvent venir de recherches différentes (mots-clés): on recalcule la pertinence
+            // par rapport à la question dès que les deux vecteurs sont disponibles
+            double relevance = query != null && vector != null && vector.length == query.length
+                    ? cosine(query, queryNorm, vector, norm(vector))
+                    : (match.score() != null ? match.score() : 0.0);
+            String source = sourceOf(segment);
+            candidates.add(new Candidate(text, source, relevance, vector));
+        }
+        return candidates;
+    }
+
+    private Candidate removeBest(List<Candidate> remaining) {
+        int bestIndex = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < remaining.size(); i++) {
+            Candidate candidate = remaining.get(i);
+            double score = mmrLambda * candidate.relevance - (1 - mmrLambda) * candidate.maxSimilarity;
+            if (score > bestScore) {
+                bestScore = score;
+                bestIndex = i;
+            }
+        }
+        // L'ordre de la liste restante n'a pas d'importance
+        Candidate best = remaining.get(bestIndex);
+        remaining.set(bestIndex, remaining.get(remaining.size() - 1));
+        remaining.remove(remaining.size() - 1);
+        return best;
+    }
+
+    private static void updateSimilarities(List<Candidate> remaining, Candidate chosen) {
+        if (chosen.vector == null) {
+            return;
+        }
+        for (Candidate candidate : remaining) {
+            if (candidate.vector != null && candidate.vector.length == chosen.vector.length) {
+                double similarity = cosine(candidate.vector, candidate.norm, chosen.vector, chosen.norm);
+                if (similarity > candidate.maxSimilarity) {
+                    candidate.maxSimilarity = similarity;
+                }
+            }
+        }
+    }
+
+    /**
+     * Retire du texte la partie déjà présente dans un segment retenu:
+     * chunk entièrement inclus, ou recouvrement en début/fin laissé par le découpage
+     */
+    private String stripOverlap(String text, List<PackedContext.Segment> selected) {
+        for (PackedContext.Segment segment : selected) {
+            String other = segment.text();
+            if (other.contains(text)) {
+                return "";
+            }
+            int head = overlap(other, text);
+            if (head >= minOverlapChars) {
+                text = text.substring(head).trim();
+            }
+            int tail = overlap(text, other);
+            if (tail >= minOverlapChars) {
+                text = text.substring(0, text.length() - tail).trim();
+            }
+            if (text.isEmpty()) {
+                return "";
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Longueur du plus long suffixe de a qui est aussi un préfixe de b (KMP, borné à maxOverlapChars)
+     */
+    int overlap(String a, String b) {
+        int m = Math.min(Math.min(a.length(), b.length()), maxOverlapChars);
+        if (m == 0) {
+            return 0;
+        }
+        int[] failure = new int[m];
+        for (int i = 1, k = 0; i < m; i++) {
+            while (k > 0 && b.charAt(i) != b.charAt(k)) {
+                k = failure[k - 1];
+            }
+            if (b.charAt(i) == b.charAt(k)) {
+                k++;
+            }
+            failure[i] = k;
+        }
+        int k = 0;
+        for (int i = a.length() - m; i < a.length(); i++) {
+            while (k > 0 && (k == m || a.charAt(i) != b.charAt(k))) {
+                k = failure[k - 1];
+            }
+            if (a.charAt(i) == b.charAt(k)) {
+                k++;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Coupe le texte au budget puis recule jusqu'à la dernière fin de phrase
+     * Si aucune fin de phrase n'est assez proche, la coupe reste sur une frontière de mot
+     */
+    static String trimToSentence(TextTokenizer tokenizer, String text, int maxTokens) {
+        String truncated = tokenizer.truncate(text, maxTokens);
+        if (truncated.length() >= text.length()) {
+            return text;
+        }
+        for (int i = truncated.length() - 1; i >= truncated.length() / 3; i--) {
+            char c = truncated.charAt(i);
+            boolean sentenceEnd = c == '.' || c == '!' || c == '?' || c == '…';
+            if ((sentenceEnd && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1))))
+                    || (c == '\n' && i > 0 && truncated.charAt(i - 1) == '\n')) {
+                return truncated.substring(0, i + 1).trim();
+            }
+        }
+        return truncated.trim() + "...";
+    }
+
+    /**
+     * Fichier d'origine, suivi de la page pour les PDF lus page par page
+     */
+    private static String sourceOf(TextSegment segment) {
+        if (segment.metadata() == null || segment.metadata().getString("source") == null) {
+            return null;
+        }
+        String page = segment.metadata().getString("page");
+        return segment.metadata().getString("source") + (page != null ? ", p. " + page : "");
+    }
+
+    static String headerOf(int index, String source) {
+        return "【 Extrait " + index + " 】" + (source != null ? " (" + source + ")" : "") + "\n";
+    }
+
+    private static double norm(float[] vector) {
+        return VectorSimilarity.norm(vector);
+    }
+
+    private static double cosine(float[] a, double normA, float[] b, double normB) {
+        if (normA == 0 || normB == 0) {
+            return 0.0;
+        }
+        return VectorSimilarity.dot(a, b) / (normA * normB);
+    }
+}
@@ -0,0 +1,263 @@
+package net.youssfi.transactionservice.rag;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Re-ranking des résultats du vector store par un cross-encoder local (ONNX Runtime, CPU)
+ * Chaque paire (question, segment) est notée par le modèle; seuls les topN meilleurs segments
+ * sont transmis au ContextPacker. Les paires sont traitées par lots, en parallèle sur un pool dédié
+ *
+ * Le modèle et son tokenizer sont lus depuis un chemin local (fonctionne hors ligne), par exemple
+ * un export ONNX de cross-encoder/ms-marco-MiniLM-L-6-v2
+ */
+@Component
+@ConditionalOnProperty(name = "rag.rerank.enabled", havingValue = "true")
+@Slf4j
+public class CrossEncoderReranker implements AutoCloseable {
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final HuggingFaceTokenizer tokenizer;
+    private final boolean needsTokenTypeIds;
+    private final ThreadPoolExecutor executor;
+    private final int topN;
+    private final int batchSize;
+
+    // Latence observée par taille de lot
+    private final Map<Integer, BatchStats> statsByBatchSize = new ConcurrentHashMap<>();
+
+    private static final class BatchStats {
+        final LongAdder batches = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            batches.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public CrossEncoderReranker(
+            @Value("${rag.rerank.model-path:models/reranker/model.onnx}") String modelPath,
+            @Value("${rag.rerank.tokenizer-path:models/reranker/tokenizer.json}") String tokenizerPath,
+            @Value("${rag.rerank.max-length:512}") int maxLength,
+            @Value("${rag.rerank.top-n:8}") int topN,
+            @Value("${rag.rerank.batch-size:16}") int batchSize,
+            @Value("${rag.rerank.threads:2}") int threads) throws OrtException, IOException {
+        this.topN = topN;
+        this.batchSize = Math.max(1, batchSize);
+
+        this.environment = OrtEnvironment.getEnvironment();
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        // Le parallélisme vient du pool: un thread ONNX par lot évite la sur-souscription des cœurs
+        options.setIntraOpNumThreads(1);
+        this.session = environment.createSession(modelPath, options);
+        this.needsTokenTypeIds = session.getInputNames().contains("token_type_ids");
+
+        this.tokenizer = HuggingFaceTokenizer.builder()
+                .optTokenizerPath(Path.of(tokenizerPath))
+                .optMaxLength(maxLength)
+                .optTruncateSecondOnly()
+                .optPadding(false)
+                .build();
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                r -> {
+                    Thread thread = new Thread(r, "rag-reranker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        log.info("✅ Cross-encoder chargé: {} (topN={}, lots de {}, {} threads)", modelPath, topN, this.batchSize, threads);
+    }
+
+    /**
+     * Note les matches par le cross-encoder et retourne les topN meilleurs, score remplacé
+     * par la probabilité de pertinence du modèle
+     * En cas d'échec du modèle, les matches sont retournés tels quels
+     */
+    public List<EmbeddingMatch<TextSegment>> rerank(String question, List<EmbeddingMatch<TextSegment>> matches) {
+        if (matches == null || matches.size() <= 1) {
+            return matches;
+        }
+        long start = System.nanoTime();
+        try {
+            List<CompletableFuture<float[]>> futures = new ArrayList<>();
+            for (int from = 0; from < matches.size(); from += batchSize) {
+                List<String> texts = new ArrayList<>(batchSize);
+                for (EmbeddingMatch<TextSegment> match : matches.subList(from, Math.min(from + batchSize, matches.size()))) {
+                    texts.add(match.embedded() != null && match.embedded().text() != null ? match.embedded().text() : "");
+                }
+                futures.add(CompletableFuture.supplyAsync(() -> scoreBatch(question, texts), executor));
+            }
+
+            List<EmbeddingMatch<TextSegment>> rescored = new ArrayList<>(matches.size());
+            int index = 0;
+            for (CompletableFuture<float[]> future : futures) {
+                for (float score : future.join()) {
+                    EmbeddingMatch<TextSegment> match = matches.get(index++);
+                    rescored.add(new EmbeddingMatch<>((double) score, match.embeddingId(), match.embedding(), match.embedded()));
+                }
+            }
+            rescored.sort(Comparator.comparingDouble((EmbeddingMatch<TextSegment> m) -> m.score()).reversed());
+            List<EmbeddingMatch<TextSegment>> top = rescored.subList(0, Math.min(topN, rescored.size()));
+
+            log.info("🎯 Re-ranking: {} → {} segments en {} ms", matches.size(), top.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return new ArrayList<>(top);
+        } catch (Exception e) {
+            log.warn("⚠️ Re-ranking impossible, résultats du vector store conservés: {}", e.getMessage());
+            return matches;
+        }
+    }
+
+    /**
+     * Note un lot de paires (question, texte) en une seule inférence
+     */
+    private float[] scoreBatch(String question, List<String> texts) {
+        long start = System.nanoTime();
+        Encoding[] encodings = new Encoding[texts.size()];
+        int maxLength = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            encodings[i] = tokenizer.encode(question, texts.get(i));
+            maxLength = Math.max(maxLength, encodings[i].getIds().length);
+        }
+
+        // Padding à la plus longue paire du lot (tableaux initialisés à 0 = PAD)
+        long[][] inputIds = new long[texts.size()][maxLength];
+        long[][] attentionMask = new long[texts.size()][maxLength];
+        long[][] tokenTypeIds = new long[texts.size()][maxLength];
+        for (int i = 0; i < encodings.length; i++) {
+            long[] ids = encodings[i].getIds();
+            System.arraycopy(ids, 0, inputIds[i], 0, ids.length);
+            System.arraycopy(encodings[i].getAttentionMask(), 0, attentionMask[i], 0, ids.length);
+            System.arraycopy(encodings[i].getTypeIds(), 0, tokenTypeIds[i], 0, ids.length);
+        }
+
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(environment, inputIds));
+            inputs.put("attention_mask", OnnxTensor.createTensor(environment, attentionMask));
+            if (needsTokenTypeIds) {
+                inputs.put("token_type_ids", OnnxTensor.createTensor(environment, tokenTypeIds));
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                float[][] logits = (float[][]) result.get(0).getValue();
+                float[] scores = new float[logits.length];
+                for (int i = 0; i < logits.length; i++) {
+                    scores[i] = relevance(logits[i]);
+                }
+                statsByBatchSize.computeIfAbsent(texts.size(), k -> new BatchStats()).record(System.nanoTime() - start);
+                return scores;
+            }
+        } catch (OrtException e) {
+            throw new IllegalStateException("Inférence ONNX échouée: " + e.getMessage(), e);
+        } finally {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    /**
+     * Mesure la latence moyenne d'un lot pour chaque taille demandée, sur le thread appelant
+     *
+     * @return latence moyenne en millisecondes par taille de lot
+     */
+    public Map<Integer, Double> benchmark(String question, List<String> texts, List<Integer> batchSizes, int rounds) {
+        Map<Integer, Double> report = new LinkedHashMap<>();
+        if (texts.isEmpty()) {
+            return report;
+        }
+        scoreBatch(question, texts.subList(0, 1)); // préchauffage de la session
+        for (int size : batchSizes) {
+            List<String> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(texts.get(i % texts.size()));
+            }
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                scoreBatch(question, batch);
+            }
+            report.put(size, (System.nanoTime() - start) / 1_000_000.0 / rounds);
+            log.info("⏱️ Re-ranking: lot de {} → {} ms", size, String.format("%.2f", report.get(size)));
+        }
+        return report;
+    }
+
+    /**
+     * Latence observée en production par taille de lot: "n lots, moyenne, max" en millisecondes
+     */
+    public Map<Integer, String> latencyStats() {
+        Map<Integer, String> stats = new TreeMap<>();
+        statsByBatchSize.forEach((size, s) -> {
+            long batches = s.batches.sum();
+            if (batches > 0) {
+                stats.put(size, String.format("%d lots, moyenne %.2f ms, max %.2f ms", batches,
+                        s.totalNanos.sum() / 1_000_000.0 / batches, s.maxNanos.get() / 1_000_000.0));
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * Probabilité "pertinent": sigmoïde d'une sortie unique (ms-marco), sinon softmax sur toutes les classes
+     * dont la dernière est la classe "pertinent" (une sigmoïde de ce seul logit ignorerait les autres)
+     */
+    private static float relevance(float[] logits) {
+        if (logits.length == 1) {
+            return sigmoid(logits[0]);
+        }
+        float max = Float.NEGATIVE_INFINITY;
+        for (float logit : logits) {
+            max = Math.max(max, logit);
+        }
+        double sum = 0;
+        for (float logit : logits) {
+            sum += Math.exp(logit - max);
+        }
+        return (float) (Math.exp(logits[logits.length - 1] - max) / sum);
+    }
+
+    private static float sigmoid(float x) {
+        return (float) (1.0 / (1.0 + Math.exp(-x)));
+    }
+
+    @Override
+    public void close() throws OrtException {
+        executor.shutdownNow();
+        tokenizer.close();
+        session.close();
+    }
+}
@@ -0,0 +1,96 @@
+package net.youssfi.transactionservice.rag;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.Supplier;
+
+/**
+ * Disjoncteur autour des appels au modèle d'embedding
+ * - CLOSED: les appels passent; après failureThreshold échecs consécutifs le circuit s'ouvre
+ * - OPEN: les appels échouent immédiatement pendant openMillis, sans attendre le timeout du modèle
+ * - HALF_OPEN: un seul appel de test passe; son succès referme le circuit, son échec le rouvre
+ */
+@Slf4j
+public class EmbeddingCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    // Protégés par le verrou de l'instance
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public EmbeddingCircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    public <T> T call(Supplier<T> action) {
+        acquire();
+        try {
+            T result = action.get();
+            onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            onFailure(e);
+            throw e instanceof EmbeddingUnavailableException unavailable
+                    ? unavailable
+                    : new EmbeddingUnavailableException("Modèle d'embedding indisponible: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Indique si un appel serait tenté maintenant (circuit fermé, ou délai d'ouverture écoulé)
+     */
+    public synchronized boolean allowsCalls() {
+        return state == State.CLOSED
+                || (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis)
+                || (state == State.HALF_OPEN && !probeInFlight);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private synchronized void acquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                throw new EmbeddingUnavailableException("Circuit d'embedding ouvert, appel refusé");
+            }
+            state = State.HALF_OPEN;
+            log.info("🔌 Circuit d'embedding semi-ouvert: appel de test");
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                throw new EmbeddingUnavailableException("Circuit d'embedding semi-ouvert, test déjà en cours");
+            }
+            probeInFlight = true;
+        }
+    }
+
+    private synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("✅ Circuit d'embedding refermé");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    private synchronized void onFailure(RuntimeException e) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("⚠️ Circuit d'embedding ouvert pour {} ms après {} échec(s): {}",
+                        openMillis, consecutiveFailures, e.getMessage());
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+        probeInFlight = false;
+    }
+}
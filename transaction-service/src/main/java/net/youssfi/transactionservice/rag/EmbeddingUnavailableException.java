@@ -0,0 +1,16 @@
+package net.youssfi.transactionservice.rag;
+
+/**
+ * Levée quand aucun embedding ne peut être produit: échec du modèle ou circuit ouvert
+ * Aucun vecteur de remplacement n'est jamais retourné à la place
+ */
+public class EmbeddingUnavailableException extends RuntimeException {
+
+    public EmbeddingUnavailableException(String message) {
+        super(message);
+    }
+
+    public EmbeddingUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,29 @@
+package net.youssfi.transactionservice.rag;
+
+/**
+ * Tokenizer approximatif: 1 token ≈ 4 caractères
+ * Utilisé uniquement si aucun fichier de vocabulaire n'est disponible
+ */
+public class EstimatingTokenizer extends TextTokenizer {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        return text != null ? text.length() / CHARS_PER_TOKEN : 0;
+    }
+
+    @Override
+    public String truncate(String text, int maxTokens) {
+        int maxChars = Math.max(0, maxTokens) * CHARS_PER_TOKEN;
+        if (text == null || text.length() <= maxChars) {
+            return text;
+        }
+        // Reculer jusqu'au dernier espace pour ne pas couper un mot
+        int cut = maxChars;
+        while (cut > 0 && !Character.isWhitespace(text.charAt(cut))) {
+            cut--;
+        }
+        return text.substring(0, cut > 0 ? cut : maxChars);
+    }
+}
@@ -0,0 +1,349 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Store en mémoire (fallback sans PostgreSQL) avec pré-filtrage par bitmaps
+ * Chaque couple (clé, valeur) de metadata a un BitSet des positions qui le portent; un filtre est
+ * évalué par opérations sur ces bitmaps avant tout calcul de similarité, si bien qu'une recherche
+ * restreinte à un document ne parcourt que les vecteurs de ce document
+ * Les vecteurs sont rangés à plat dans un seul tableau (parcours contigu, noyaux VectorSimilarity)
+ */
+public class FilteredInMemoryEmbeddingStore implements EmbeddingStore<TextSegment>, MetadataCatalog {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Protégés par lock; une position = un vecteur, stocké à plat dans vectors[position * dimension ...]
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private float[] vectors = new float[0];
+    private double[] norms = new double[0];
+    private int dimension;
+    private final Map<String, Map<String, BitSet>> metadataIndex = new HashMap<>();
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding, null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        add(id, embedding, null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding, textSegment);
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return addAll(embeddings, null);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        return addAllWithIds(null, embeddings, textSegments);
+    }
+
+    /**
+     * @param ids identifiants imposés (hôte de shards), null ou élément null pour en attribuer un
+     */
+    public List<String> addAllWithIds(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> added = new ArrayList<>(embeddings.size());
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < embeddings.size(); i++) {
+                String id = ids != null && ids.get(i) != null ? ids.get(i) : UUID.randomUUID().toString();
+                append(id, embeddings.get(i), textSegments != null ? textSegments.get(i) : null);
+                added.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return added;
+    }
+
+    private void add(String id, Embedding embedding, TextSegment textSegment) {
+        lock.writeLock().lock();
+        try {
+            append(id, embedding, textSegment);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(String id, Embedding embedding, TextSegment textSegment) {
+        int position = ids.size();
+        float[] vector = embedding.vector();
+        if (position == 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("Dimension " + vector.length + " au lieu de " + dimension);
+        }
+        if ((position + 1) * dimension > vectors.length) {
+            int capacity = Math.max(16, position * 2);
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+            norms = Arrays.copyOf(norms, capacity);
+        }
+        System.arraycopy(vector, 0, vectors, position * dimension, dimension);
+        norms[position] = VectorSimilarity.norm(vector);
+        ids.add(id);
+        segments.add(textSegment);
+        index(position, textSegment);
+    }
+
+    private void index(int position, TextSegment textSegment) {
+        if (textSegment != null) {
+            for (Map.Entry<String, String> entry : textSegment.metadata().asMap().entrySet()) {
+                metadataIndex.computeIfAbsent(entry.getKey(), key -> new HashMap<>())
+                        .computeIfAbsent(entry.getValue(), value -> new BitSet())
+                        .set(position);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> distinctValues(String key) {
+        lock.readLock().lock();
+        try {
+            Map<String, BitSet> values = metadataIndex.get(key);
+            return values != null ? new TreeSet<>(values.keySet()) : Set.of();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Les positions restantes sont compactées, puis les bitmaps reconstruits
+     */
+    @Override
+    public int removeWhere(String key, String value) {
+        lock.writeLock().lock();
+        try {
+            Map<String, BitSet> values = metadataIndex.get(key);
+            BitSet removed = values != null ? values.get(value) : null;
+            if (removed == null || removed.isEmpty()) {
+                return 0;
+            }
+            int count = removed.cardinality();
+            int target = 0;
+            for (int position = 0; position < ids.size(); position++) {
+                if (removed.get(position)) {
+                    continue;
+                }
+                if (target != position) {
+                    System.arraycopy(vectors, position * dimension, vectors, target * dimension, dimension);
+                    norms[target] = norms[position];
+                    ids.set(target, ids.get(position));
+                    segments.set(target, segments.get(position));
+                }
+                target++;
+            }
+            ids.subList(target, ids.size()).clear();
+            segments.subList(target, segments.size()).clear();
+            metadataIndex.clear();
+            for (int position = 0; position < segments.size(); position++) {
+                index(position, segments.get(position));
+            }
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<EmbeddingMatch<TextSegment>> findRelevant(Embedding referenceEmbedding, int maxResults, double minScore) {
+        return search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(referenceEmbedding)
+                .maxResults(maxResults)
+                .minScore(minScore)
+                .build()).matches();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = request.queryEmbedding().vector();
+        double queryNorm = VectorSimilarity.norm(query);
+        Comparator<EmbeddingMatch<TextSegment>> byScore = Comparator.comparingDouble(EmbeddingMatch::score);
+        PriorityQueue<EmbeddingMatch<TextSegment>> top = new PriorityQueue<>(byScore); // tas min borné à maxResults
+
+        lock.readLock().lock();
+        try {
+            BitSet candidates = request.filter() != null ? evaluate(request.filter()) : null;
+            int size = ids.size();
+            if (size > 0 && query.length != dimension) {
+                throw new IllegalArgumentException("Dimension " + query.length + " au lieu de " + dimension);
+            }
+            for (int position = candidates != null ? candidates.nextSetBit(0) : 0;
+                 position >= 0 && position < size;
+                 position = candidates != null ? candidates.nextSetBit(position + 1) : position + 1) {
+                double denominator = queryNorm * norms[position];
+                double cosine = denominator > 0
+                        ? VectorSimilarity.dot(query, 0, vectors, position * dimension, dimension) / denominator
+                        : 0.0;
+                double score = RelevanceScore.fromCosineSimilarity(cosine);
+                if (score < request.minScore()) {
+                    continue;
+                }
+                if (top.size() < request.maxResults()) {
+                    top.add(match(position, score));
+                } else if (score > top.peek().score()) {
+                    top.poll();
+                    top.add(match(position, score));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(top);
+        matches.sort(byScore.reversed());
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    private EmbeddingMatch<TextSegment> match(int position, double score) {
+        float[] vector = Arrays.copyOfRange(vectors, position * dimension, (position + 1) * dimension);
+        return new EmbeddingMatch<>(score, ids.get(position), Embedding.from(vector), segments.get(position));
+    }
+
+    /**
+     * Évalue le filtre en bitmap des positions candidates (appelé sous le verrou de lecture)
+     * Les comparaisons d'ordre ne parcourent que les valeurs distinctes de la clé
+     */
+    private BitSet evaluate(Filter filter) {
+        if (filter instanceof And and) {
+            BitSet result = evaluate(and.left());
+            result.and(evaluate(and.right()));
+            return result;
+        }
+        if (filter instanceof Or or) {
+            BitSet result = evaluate(or.left());
+            result.or(evaluate(or.right()));
+            return result;
+        }
+        if (filter instanceof Not not) {
+            return complement(evaluate(not.expression()));
+        }
+        if (filter instanceof IsEqualTo equalTo) {
+            return valuesMatching(equalTo.key(), value -> value.equals(String.valueOf(equalTo.comparisonValue())));
+        }
+        if (filter instanceof IsNotEqualTo notEqualTo) {
+            return complement(valuesMatching(notEqualTo.key(), value -> value.equals(String.valueOf(notEqualTo.comparisonValue()))));
+        }
+        if (filter instanceof IsIn in) {
+            return valuesMatching(in.key(), value -> containsValue(in.comparisonValues(), value));
+        }
+        if (filter instanceof IsNotIn notIn) {
+            return complement(valuesMatching(notIn.key(), value -> containsValue(notIn.comparisonValues(), value)));
+        }
+        if (filter instanceof IsGreaterThan greaterThan) {
+            return valuesMatching(greaterThan.key(), value -> compare(value, greaterThan.comparisonValue()) > 0);
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo greaterOrEqual) {
+            return valuesMatching(greaterOrEqual.key(), value -> compare(value, greaterOrEqual.comparisonValue()) >= 0);
+        }
+        if (filter instanceof IsLessThan lessThan) {
+            return valuesMatching(lessThan.key(), value -> compare(value, lessThan.comparisonValue()) < 0);
+        }
+        if (filter instanceof IsLessThanOrEqualTo lessOrEqual) {
+            return valuesMatching(lessOrEqual.key(), value -> compare(value, lessOrEqual.comparisonValue()) <= 0);
+        }
+        // Filtre inconnu: évaluation ligne par ligne
+        BitSet result = new BitSet(ids.size());
+        for (int position = 0; position < ids.size(); position++) {
+            TextSegment segment = segments.get(position);
+            if (segment != null && filter.test(segment.metadata())) {
+                result.set(position);
+            }
+        }
+        return result;
+    }
+
+    private BitSet valuesMatching(String key, Predicate<String> predicate) {
+        BitSet result = new BitSet(ids.size());
+        Map<String, BitSet> values = metadataIndex.get(key);
+        if (values != null) {
+            for (Map.Entry<String, BitSet> entry : values.entrySet()) {
+                if (predicate.test(entry.getKey())) {
+                    result.or(entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    private BitSet complement(BitSet bits) {
+        BitSet result = (BitSet) bits.clone();
+        result.flip(0, ids.size());
+        return result;
+    }
+
+    private static boolean containsValue(Collection<?> values, String value) {
+        for (Object candidate : values) {
+            if (value.equals(String.valueOf(candidate))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Comparaison numérique si les deux valeurs sont des nombres, lexicographique sinon
+     */
+    private static int compare(String value, Object comparisonValue) {
+        String other = String.valueOf(comparisonValue);
+        try {
+            return Double.compare(Double.parseDouble(value), Double.parseDouble(other));
+        } catch (NumberFormatException e) {
+            return value.compareTo(other);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
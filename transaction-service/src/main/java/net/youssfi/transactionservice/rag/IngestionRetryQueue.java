@@ -0,0 +1,120 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File de réessai de l'ingestion
+ * Les documents dont l'embedding a échoué (modèle indisponible, circuit ouvert) sont conservés
+ * et réingérés en arrière-plan dès que le disjoncteur laisse de nouveau passer les appels
+ */
+@Slf4j
+public class IngestionRetryQueue implements AutoCloseable {
+
+    private final EmbeddingCircuitBreaker circuitBreaker;
+    private final int capacity;
+    private final int maxAttempts;
+
+    // Protégé par le verrou de l'instance
+    private final Deque<PendingIngestion> pending = new ArrayDeque<>();
+
+    private final ScheduledExecutorService retrier;
+
+    private static final class PendingIngestion {
+        final String label;
+        final List<Document> documents;
+        final EmbeddingStoreIngestor ingestor;
+        int attempts;
+
+        PendingIngestion(String label, List<Document> documents, EmbeddingStoreIngestor ingestor) {
+            this.label = label;
+            this.documents = documents;
+            this.ingestor = ingestor;
+        }
+    }
+
+    public IngestionRetryQueue(EmbeddingCircuitBreaker circuitBreaker, int capacity, int maxAttempts, long retryIntervalMillis) {
+        this.circuitBreaker = circuitBreaker;
+        this.capacity = capacity;
+        this.maxAttempts = maxAttempts;
+        this.retrier = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ingestion-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        retrier.scheduleWithFixedDelay(this::retryPending, retryIntervalMillis, retryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ingère les documents; en cas d'indisponibilité du modèle d'embedding ils sont mis en file
+     *
+     * @return true si l'ingestion a eu lieu immédiatement, false si elle est différée
+     */
+    public boolean ingest(String label, List<Document> documents, EmbeddingStoreIngestor ingestor) {
+        try {
+            ingestor.ingest(documents);
+            return true;
+        } catch (EmbeddingUnavailableException e) {
+            enqueue(new PendingIngestion(label, documents, ingestor));
+            log.warn("⏳ Ingestion de {} différée ({}), {} en attente", label, e.getMessage(), size());
+            return false;
+        }
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    private synchronized void enqueue(PendingIngestion item) {
+        if (pending.size() >= capacity) {
+            PendingIngestion dropped = pending.removeFirst();
+            log.error("❌ File de réessai pleine, ingestion de {} abandonnée", dropped.label);
+        }
+        pending.addLast(item);
+    }
+
+    private synchronized PendingIngestion poll() {
+        return pending.pollFirst();
+    }
+
+    private void retryPending() {
+        int batch = size();
+        for (int i = 0; i < batch && circuitBreaker.allowsCalls(); i++) {
+            PendingIngestion item = poll();
+            if (item == null) {
+                return;
+            }
+            try {
+                item.ingestor.ingest(item.documents);
+                log.info("✅ Ingestion différée de {} réussie", item.label);
+            } catch (EmbeddingUnavailableException e) {
+                item.attempts++;
+                if (item.attempts >= maxAttempts) {
+                    log.error("❌ Ingestion de {} abandonnée après {} tentatives: {}", item.label, item.attempts, e.getMessage());
+                } else {
+                    enqueue(item);
+                }
+            } catch (Exception e) {
+                // Erreur autre que l'embedding (store, document): réessayer ne changera rien
+                log.error("❌ Ingestion différée de {} impossible: {}", item.label, e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        retrier.shutdownNow();
+        int remaining = size();
+        if (remaining > 0) {
+            log.warn("⚠️ {} ingestion(s) en attente non traitées à l'arrêt", remaining);
+        }
+    }
+}
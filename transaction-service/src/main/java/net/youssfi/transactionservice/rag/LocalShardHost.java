@@ -0,0 +1,38 @@
+package net.youssfi.transactionservice.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shards en mémoire hébergés par cette instance et exposés par ShardController
+ * Permet de faire tourner une instance comme nœud de stockage d'un ShardedEmbeddingStore distant,
+ * ou de tester le protocole HTTP en local (rag.sharding.host.enabled=true)
+ */
+@Component
+@ConditionalOnProperty(name = "rag.sharding.host.enabled", havingValue = "true")
+@Slf4j
+public class LocalShardHost {
+
+    private final Map<String, FilteredInMemoryEmbeddingStore> shards = new ConcurrentHashMap<>();
+
+    public FilteredInMemoryEmbeddingStore shard(String name) {
+        return shards.computeIfAbsent(name, key -> {
+            log.info("📦 Nouveau shard hébergé: {}", key);
+            return new FilteredInMemoryEmbeddingStore();
+        });
+    }
+
+    public boolean drop(String name) {
+        return shards.remove(name) != null;
+    }
+
+    public Set<String> names() {
+        return new TreeSet<>(shards.keySet());
+    }
+}
@@ -0,0 +1,20 @@
+package net.youssfi.transactionservice.rag;
+
+import java.util.Set;
+
+/**
+ * Store capable de lister les valeurs présentes d'une clé de metadata (sources, types, années)
+ * Sert à reconnaître dans une question le nom d'un document réellement indexé, et à retirer les
+ * segments d'un document avant sa réindexation
+ */
+public interface MetadataCatalog {
+
+    Set<String> distinctValues(String key);
+
+    /**
+     * Supprime les segments dont la metadata key vaut value
+     *
+     * @return nombre de segments supprimés
+     */
+    int removeWhere(String key, String value);
+}
@@ -0,0 +1,253 @@
+package net.youssfi.transactionservice.rag;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EmbeddingModel exécuté dans le processus (ONNX Runtime, CPU), sans aller-retour HTTP vers Ollama
+ * Modèle de type sentence-transformers (ex: all-MiniLM-L6-v2): mean pooling sur le masque d'attention
+ * puis normalisation L2
+ *
+ * Chaque worker possède son tokenizer et ses buffers d'entrée directs, réutilisés d'un lot à l'autre;
+ * les lots d'ingestion sont répartis sur un pool de threads de la taille du pool de workers
+ */
+@Slf4j
+public class OnnxEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final boolean needsTokenTypeIds;
+    private final int batchSize;
+    private final int maxLength;
+    private final BlockingQueue<Worker> workers;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Tokenizer et buffers d'entrée d'un thread d'inférence
+     * Les buffers sont dimensionnés pour un lot complet à la longueur maximale
+     */
+    private static final class Worker implements AutoCloseable {
+        final HuggingFaceTokenizer tokenizer;
+        final LongBuffer inputIds;
+        final LongBuffer attentionMask;
+        final LongBuffer tokenTypeIds;
+
+        Worker(HuggingFaceTokenizer tokenizer, int capacity) {
+            this.tokenizer = tokenizer;
+            this.inputIds = directLongBuffer(capacity);
+            this.attentionMask = directLongBuffer(capacity);
+            this.tokenTypeIds = directLongBuffer(capacity);
+        }
+
+        private static LongBuffer directLongBuffer(int capacity) {
+            return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        @Override
+        public void close() {
+            tokenizer.close();
+        }
+    }
+
+    public OnnxEmbeddingModel(String modelPath, String tokenizerPath, int maxLength, int batchSize, int threads)
+            throws OrtException, IOException {
+        this.maxLength = maxLength;
+        this.batchSize = Math.max(1, batchSize);
+
+        this.environment = OrtEnvironment.getEnvironment();
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        // Un thread ONNX par worker: le parallélisme vient du pool
+        options.setIntraOpNumThreads(1);
+        this.session = environment.createSession(modelPath, options);
+        this.needsTokenTypeIds = session.getInputNames().contains("token_type_ids");
+
+        this.workers = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < threads; i++) {
+            HuggingFaceTokenizer tokenizer = HuggingFaceTokenizer.builder()
+                    .optTokenizerPath(Path.of(tokenizerPath))
+                    .optMaxLength(maxLength)
+                    .optTruncation(true)
+                    .optPadding(false)
+                    .build();
+            workers.add(new Worker(tokenizer, this.batchSize * maxLength));
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                r -> {
+                    Thread thread = new Thread(r, "onnx-embedding-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        log.info("✅ Modèle d'embedding ONNX chargé: {} (lots de {}, {} workers)", modelPath, this.batchSize, threads);
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        // Requête de recherche: un lot de 1 sur le thread appelant, sans passer par le pool
+        return Response.from(embedBatch(List.of(text)).get(0));
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        int size = textSegments.size();
+        if (size == 0) {
+            return Response.from(List.of());
+        }
+
+        // Trier par longueur pour que chaque lot ait des textes de taille proche (moins de padding)
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> textSegments.get(i).text().length()));
+
+        List<CompletableFuture<List<Embedding>>> futures = new ArrayList<>();
+        for (int from = 0; from < size; from += batchSize) {
+            List<String> batch = new ArrayList<>(batchSize);
+            for (int i = from; i < Math.min(from + batchSize, size); i++) {
+                batch.add(textSegments.get(order[i]).text());
+            }
+            futures.add(CompletableFuture.supplyAsync(() -> embedBatch(batch), executor));
+        }
+
+        Embedding[] embeddings = new Embedding[size];
+        int position = 0;
+        for (CompletableFuture<List<Embedding>> future : futures) {
+            for (Embedding embedding : future.join()) {
+                embeddings[order[position++]] = embedding;
+            }
+        }
+        return Response.from(Arrays.asList(embeddings));
+    }
+
+    private List<Embedding> embedBatch(List<String> texts) {
+        Worker worker;
+        try {
+            worker = workers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompu en attendant un worker d'embedding", e);
+        }
+        try {
+            return infer(worker, texts);
+        } catch (OrtException e) {
+            throw new IllegalStateException("Inférence ONNX échouée: " + e.getMessage(), e);
+        } finally {
+            workers.add(worker);
+        }
+    }
+
+    private List<Embedding> infer(Worker worker, List<String> texts) throws OrtException {
+        int rows = texts.size();
+        Encoding[] encodings = new Encoding[rows];
+        int length = 1;
+        for (int i = 0; i < rows; i++) {
+            encodings[i] = worker.tokenizer.encode(texts.get(i));
+            length = Math.max(length, encodings[i].getIds().length);
+        }
+        length = Math.min(length, maxLength);
+
+        // Remplissage des buffers réutilisés, padding à 0 jusqu'à la plus longue séquence du lot
+        worker.inputIds.clear();
+        worker.attentionMask.clear();
+        worker.tokenTypeIds.clear();
+        for (Encoding encoding : encodings) {
+            long[] ids = encoding.getIds();
+            long[] mask = encoding.getAttentionMask();
+            long[] types = encoding.getTypeIds();
+            for (int t = 0; t < length; t++) {
+                boolean present = t < ids.length;
+                worker.inputIds.put(present ? ids[t] : 0L);
+                worker.attentionMask.put(present ? mask[t] : 0L);
+                worker.tokenTypeIds.put(present ? types[t] : 0L);
+            }
+        }
+        worker.inputIds.flip();
+        worker.attentionMask.flip();
+        worker.tokenTypeIds.flip();
+
+        long[] shape = {rows, length};
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(environment, worker.inputIds, shape));
+            inputs.put("attention_mask", OnnxTensor.createTensor(environment, worker.attentionMask, shape));
+            if (needsTokenTypeIds) {
+                inputs.put("token_type_ids", OnnxTensor.createTensor(environment, worker.tokenTypeIds, shape));
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                float[][][] hidden = (float[][][]) result.get(0).getValue();
+                List<Embedding> embeddings = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                    embeddings.add(Embedding.from(meanPoolAndNormalize(hidden[i], worker.attentionMask, i * length, length)));
+                }
+                return embeddings;
+            }
+        } finally {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    private static float[] meanPoolAndNormalize(float[][] tokens, LongBuffer mask, int offset, int length) {
+        int dimension = tokens[0].length;
+        float[] pooled = new float[dimension];
+        int count = 0;
+        for (int t = 0; t < length; t++) {
+            if (mask.get(offset + t) == 0) {
+                continue;
+            }
+            float[] token = tokens[t];
+            for (int d = 0; d < dimension; d++) {
+                pooled[d] += token[d];
+            }
+            count++;
+        }
+        double norm = 0;
+        for (int d = 0; d < dimension; d++) {
+            pooled[d] /= Math.max(1, count);
+            norm += pooled[d] * pooled[d];
+        }
+        float scale = norm > 0 ? (float) (1.0 / Math.sqrt(norm)) : 0f;
+        for (int d = 0; d < dimension; d++) {
+            pooled[d] *= scale;
+        }
+        return pooled;
+    }
+
+    @Override
+    public void close() throws OrtException {
+        executor.shutdownNow();
+        workers.forEach(Worker::close);
+        session.close();
+    }
+}
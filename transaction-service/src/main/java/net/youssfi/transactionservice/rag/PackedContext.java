@@ -0,0 +1,80 @@
+package net.youssfi.transactionservice.rag;
+
+import java.util.List;
+
+/**
+ * Contexte RAG déjà sélectionné et mis au budget par le ContextPacker
+ * Les segments sont rangés par ordre de sélection (les plus pertinents d'abord):
+ * un agent qui dispose d'un budget plus petit garde les premiers segments entiers
+ * au lieu de couper le texte au milieu d'un extrait
+ */
+public class PackedContext {
+
+    private static final PackedContext EMPTY = new PackedContext(List.of(), null, 0);
+
+    private final List<Segment> segments;
+    private final TextTokenizer tokenizer;
+    private final int totalTokens;
+
+    /**
+     * Segment retenu dans le contexte
+     */
+    public record Segment(String text, String source, double score, int tokens) {
+    }
+
+    PackedContext(List<Segment> segments, TextTokenizer tokenizer, int totalTokens) {
+        this.segments = segments;
+        this.tokenizer = tokenizer;
+        this.totalTokens = totalTokens;
+    }
+
+    public static PackedContext empty() {
+        return EMPTY;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public int getTotalTokens() {
+        return totalTokens;
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Rend tous les segments du contexte
+     */
+    public String render() {
+        return render(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Rend les premiers segments qui tiennent dans maxTokens
+     * Si même le premier segment ne tient pas, il est coupé sur une fin de phrase
+     */
+    public String render(int maxTokens) {
+        StringBuilder builder = new StringBuilder();
+        int used = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            String header = ContextPacker.headerOf(i + 1, segment.source());
+            int headerTokens = tokenizer.estimateTokenCountInText(header);
+            int cost = headerTokens + segment.tokens();
+            if (used + cost <= maxTokens) {
+                builder.append(header).append(segment.text()).append("\n\n");
+                used += cost;
+            } else {
+                if (i == 0 && maxTokens - headerTokens > 0) {
+                    builder.append(header)
+                            .append(ContextPacker.trimToSentence(tokenizer, segment.text(), maxTokens - headerTokens))
+                            .append("\n\n");
+                }
+                break;
+            }
+        }
+        return builder.toString();
+    }
+}
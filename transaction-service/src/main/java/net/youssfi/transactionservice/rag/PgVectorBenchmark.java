@@ -0,0 +1,204 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Banc d'essai pgvector sur une table jetable (<table>_bench) de la base configurée
+ * - insertion ligne par ligne (comportement de PgVectorEmbeddingStore) contre insertion par lots
+ * - recherche exacte (parcours séquentiel, vérité terrain) contre recherche ANN à différents
+ *   ef_search (HNSW) ou probes (IVFFlat): latence moyenne, p95 et rappel@k
+ * Les vecteurs sont synthétiques (groupes gaussiens normalisés) pour ne pas dépendre du modèle d'embedding
+ */
+@Slf4j
+public class PgVectorBenchmark {
+
+    private static final int ROW_BY_ROW_SAMPLE = 1000;
+    private static final int CLUSTERS = 50;
+
+    private final TunedPgVectorEmbeddingStore store;
+    private final int insertBatchSize;
+
+    public PgVectorBenchmark(TunedPgVectorEmbeddingStore store, int insertBatchSize) {
+        this.store = store;
+        this.insertBatchSize = insertBatchSize;
+    }
+
+    /**
+     * @param searchBreadths valeurs de ef_search (HNSW) ou de probes (IVFFlat) à comparer
+     */
+    public String run(int rows, int queries, int k, List<Integer> searchBreadths) throws SQLException {
+        DataSource dataSource = store.getDataSource();
+        TunedPgVectorEmbeddingStore.IndexSettings settings = store.getIndexSettings();
+        String table = store.getTable() + "_bench";
+        int dimension = store.getDimension();
+        Random random = new Random(42);
+        List<Embedding> vectors = clusteredVectors(rows, dimension, random);
+
+        StringBuilder report = new StringBuilder(String.format("⏱️ pgvector: %d vecteurs de dimension %d, %d requêtes, k=%d%n",
+                rows, dimension, queries, k));
+        dropTable(dataSource, table);
+        try {
+            TunedPgVectorEmbeddingStore exact = new TunedPgVectorEmbeddingStore(dataSource, table, dimension,
+                    new TunedPgVectorEmbeddingStore.IndexSettings(TunedPgVectorEmbeddingStore.IndexType.NONE, 0, 0, 0, 0, 0),
+                    insertBatchSize);
+
+            // Insertion ligne par ligne: une transaction par vecteur
+            int sample = Math.min(ROW_BY_ROW_SAMPLE, rows);
+            long start = System.nanoTime();
+            for (int i = 0; i < sample; i++) {
+                exact.add(vectors.get(i));
+            }
+            double rowByRowSeconds = (System.nanoTime() - start) / 1e9;
+            truncate(dataSource, table);
+
+            // Insertion par lots, par tranches comme pendant l'ingestion
+            start = System.nanoTime();
+            for (int from = 0; from < rows; from += ROW_BY_ROW_SAMPLE) {
+                exact.addAll(vectors.subList(from, Math.min(from + ROW_BY_ROW_SAMPLE, rows)));
+            }
+            double batchSeconds = (System.nanoTime() - start) / 1e9;
+            report.append(String.format("insertion ligne par ligne: %8.0f lignes/s (%d lignes)%n", sample / rowByRowSeconds, sample));
+            report.append(String.format("insertion par lots de %d: %8.0f lignes/s (%d lignes)%n",
+                    insertBatchSize, rows / batchSeconds, rows));
+
+            List<Embedding> queryVectors = new ArrayList<>();
+            for (int i = 0; i < queries; i++) {
+                queryVectors.add(perturb(vectors.get(random.nextInt(rows)), random));
+            }
+            List<Set<String>> truth = new ArrayList<>();
+            double[] exactLatencies = new double[queries];
+            for (int i = 0; i < queries; i++) {
+                long queryStart = System.nanoTime();
+                truth.add(ids(exact.findRelevant(queryVectors.get(i), k, 0.0)));
+                exactLatencies[i] = (System.nanoTime() - queryStart) / 1e6;
+            }
+            report.append(String.format("exact (séquentiel):     moyenne %7.2f ms, p95 %7.2f ms, rappel 1.000%n",
+                    mean(exactLatencies), p95(exactLatencies)));
+
+            if (settings.type() == TunedPgVectorEmbeddingStore.IndexType.NONE) {
+                return report.append("aucun index ANN configuré (rag.postgres.index.type=none)\n").toString();
+            }
+            for (int breadth : searchBreadths) {
+                boolean hnsw = settings.type() == TunedPgVectorEmbeddingStore.IndexType.HNSW;
+                TunedPgVectorEmbeddingStore.IndexSettings tuned = new TunedPgVectorEmbeddingStore.IndexSettings(
+                        settings.type(), settings.m(), settings.efConstruction(),
+                        hnsw ? breadth : settings.efSearch(), settings.lists(), hnsw ? settings.probes() : breadth);
+                start = System.nanoTime();
+                TunedPgVectorEmbeddingStore ann = new TunedPgVectorEmbeddingStore(dataSource, table, dimension, tuned, insertBatchSize);
+                double buildSeconds = (System.nanoTime() - start) / 1e9;
+                if (buildSeconds > 0.5) {
+                    report.append(String.format("construction de l'index %s: %.1f s%n", settings.type(), buildSeconds));
+                }
+
+                double[] latencies = new double[queries];
+                double recall = 0;
+                for (int i = 0; i < queries; i++) {
+                    long queryStart = System.nanoTime();
+                    Set<String> found = ids(ann.findRelevant(queryVectors.get(i), k, 0.0));
+                    latencies[i] = (System.nanoTime() - queryStart) / 1e6;
+                    found.retainAll(truth.get(i));
+                    recall += truth.get(i).isEmpty() ? 1.0 : (double) found.size() / truth.get(i).size();
+                }
+                report.append(String.format("%s %s=%-4d: moyenne %7.2f ms, p95 %7.2f ms, rappel %.3f%n",
+                        settings.type(), hnsw ? "ef_search" : "probes", breadth,
+                        mean(latencies), p95(latencies), recall / queries));
+            }
+            return report.toString();
+        } finally {
+            dropTable(dataSource, table);
+        }
+    }
+
+    static List<Embedding> clusteredVectors(int rows, int dimension, Random random) {
+        List<float[]> centers = new ArrayList<>();
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers.add(gaussian(dimension, random, 1.0f));
+        }
+        List<Embedding> vectors = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            float[] center = centers.get(random.nextInt(CLUSTERS));
+            float[] noise = gaussian(dimension, random, 0.3f);
+            for (int d = 0; d < dimension; d++) {
+                noise[d] += center[d];
+            }
+            vectors.add(Embedding.from(normalize(noise)));
+        }
+        return vectors;
+    }
+
+    static Embedding perturb(Embedding embedding, Random random) {
+        float[] vector = Arrays.copyOf(embedding.vector(), embedding.dimension());
+        float[] noise = gaussian(vector.length, random, 0.05f);
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] += noise[d];
+        }
+        return Embedding.from(normalize(vector));
+    }
+
+    private static float[] gaussian(int dimension, Random random, float sigma) {
+        float[] vector = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float inverse = (float) (1.0 / Math.sqrt(norm));
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] *= inverse;
+        }
+        return vector;
+    }
+
+    private static Set<String> ids(List<EmbeddingMatch<TextSegment>> matches) {
+        Set<String> ids = new HashSet<>();
+        for (EmbeddingMatch<TextSegment> match : matches) {
+            ids.add(match.embeddingId());
+        }
+        return ids;
+    }
+
+    static double mean(double[] values) {
+        return Arrays.stream(values).average().orElse(0);
+    }
+
+    static double p95(double[] values) {
+        if (values.length == 0) {
+            return 0;
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(0.95 * sorted.length) - 1)];
+    }
+
+    private static void truncate(DataSource dataSource, String table) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE " + table);
+        }
+    }
+
+    private static void dropTable(DataSource dataSource, String table) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+        }
+    }
+}
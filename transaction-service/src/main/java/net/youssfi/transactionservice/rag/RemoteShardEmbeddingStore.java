@@ -0,0 +1,168 @@
+package net.youssfi.transactionservice.rag;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shard distant, interrogé en HTTP/JSON selon ShardProtocol (hôte: ShardController)
+ * Le protocole ne transporte pas les filtres: une recherche filtrée demande FILTER_OVERFETCH fois
+ * plus de résultats et filtre les metadata à la réception
+ */
+public class RemoteShardEmbeddingStore implements EmbeddingStore<TextSegment>, MetadataCatalog {
+
+    private static final int FILTER_OVERFETCH = 4;
+
+    private final String baseUrl;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final Gson gson = new Gson();
+
+    /**
+     * @param baseUrl adresse du shard, ex. http://node-2:8091/shards/main
+     */
+    public RemoteShardEmbeddingStore(String baseUrl, Duration timeout) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return add(embedding, null);
+    }
+
+    /**
+     * L'identifiant fourni est transmis au shard, qui le conserve
+     */
+    @Override
+    public void add(String id, Embedding embedding) {
+        send(List.of(ShardProtocol.entry(id, embedding, null)));
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return send(List.of(ShardProtocol.entry(null, embedding, textSegment))).get(0);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return addAll(embeddings, null);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<ShardProtocol.Entry> entries = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            entries.add(ShardProtocol.entry(null, embeddings.get(i), textSegments != null ? textSegments.get(i) : null));
+        }
+        return send(entries);
+    }
+
+    private List<String> send(List<ShardProtocol.Entry> entries) {
+        ShardProtocol.AddResponse response = post("/add", new ShardProtocol.AddRequest(entries), ShardProtocol.AddResponse.class);
+        return response.ids();
+    }
+
+    @Override
+    public List<EmbeddingMatch<TextSegment>> findRelevant(Embedding referenceEmbedding, int maxResults, double minScore) {
+        return search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(referenceEmbedding)
+                .maxResults(maxResults)
+                .minScore(minScore)
+                .build()).matches();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        Filter filter = request.filter();
+        int requested = filter != null ? request.maxResults() * FILTER_OVERFETCH : request.maxResults();
+        ShardProtocol.SearchResponse response = post("/search",
+                new ShardProtocol.SearchRequest(request.queryEmbedding().vector(), requested, request.minScore()),
+                ShardProtocol.SearchResponse.class);
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        for (ShardProtocol.Match match : response.matches()) {
+            TextSegment segment = ShardProtocol.segment(match.text(), match.metadata());
+            if (filter != null && (segment == null || !filter.test(segment.metadata()))) {
+                continue;
+            }
+            matches.add(new EmbeddingMatch<>(match.score(), match.id(), null, segment));
+            if (matches.size() == request.maxResults()) {
+                break;
+            }
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    @Override
+    public Set<String> distinctValues(String key) {
+        String body = exchange(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/values/" + URLEncoder.encode(key, StandardCharsets.UTF_8)))
+                .timeout(timeout)
+                .GET()
+                .build());
+        return gson.fromJson(body, new TypeToken<Set<String>>() {
+        }.getType());
+    }
+
+    @Override
+    public int removeWhere(String key, String value) {
+        String body = exchange(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/values/" + URLEncoder.encode(key, StandardCharsets.UTF_8)
+                        + "?value=" + URLEncoder.encode(value, StandardCharsets.UTF_8)))
+                .timeout(timeout)
+                .DELETE()
+                .build());
+        return gson.fromJson(body, Integer.class);
+    }
+
+    private <T> T post(String path, Object payload, Class<T> responseType) {
+        String body = exchange(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .timeout(timeout)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(payload)))
+                .build());
+        return gson.fromJson(body, responseType);
+    }
+
+    private String exchange(HttpRequest request) {
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Appel au shard " + baseUrl + " interrompu", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Shard " + baseUrl + " injoignable: " + e.getMessage(), e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Shard " + baseUrl + " a répondu " + response.statusCode());
+        }
+        return response.body();
+    }
+}
@@ -0,0 +1,43 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+
+/**
+ * EmbeddingModel protégé par un disjoncteur
+ * Toute défaillance remonte en EmbeddingUnavailableException: l'appelant décide (recherche vide,
+ * mise en file de réessai pour l'ingestion) au lieu de recevoir un vecteur inutilisable
+ */
+public class ResilientEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCircuitBreaker circuitBreaker;
+
+    public ResilientEmbeddingModel(EmbeddingModel delegate, EmbeddingCircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public EmbeddingModel getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return circuitBreaker.call(() -> delegate.embed(text));
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment textSegment) {
+        return circuitBreaker.call(() -> delegate.embed(textSegment));
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        return circuitBreaker.call(() -> delegate.embedAll(textSegments));
+    }
+}
@@ -0,0 +1,189 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * Extrait de la question les filtres de metadata à appliquer dans le store
+ * - source: nom d'un document réellement indexé, complet ou entre guillemets, "dans le rapport X"
+ * - type: "dans les images", "les figures" → image; "fichiers texte" → txt
+ * - année: "en 2023", "depuis 2022", "avant 2021" (metadata year posée à l'ingestion)
+ * Les noms de documents sont relus dans le store au plus une fois par refreshSeconds
+ */
+@Component
+@Slf4j
+public class RetrievalFilterExtractor {
+
+    private static final Pattern IMAGE_CUE = Pattern.compile(
+            "\\b(dans|parmi|sur|d'apres|selon)\\s+(les|la|le|l'|une|cette|ces)?\\s*(images?|photos?|figures?|schemas?|captures?)\\b");
+    private static final Pattern TEXT_CUE = Pattern.compile("\\b(fichiers?|documents?)\\s+(texte|txt)\\b");
+    private static final Pattern YEAR_EXACT = Pattern.compile("\\b(en|de|du|annee)\\s+((19|20)\\d{2})\\b");
+    private static final Pattern YEAR_FROM = Pattern.compile("\\b(depuis|apres|a partir de)\\s+((19|20)\\d{2})\\b");
+    private static final Pattern YEAR_UNTIL = Pattern.compile("\\b(avant|jusqu'en|jusqu'a)\\s+((19|20)\\d{2})\\b");
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "les", "des", "une", "the", "and", "pdf", "txt", "png", "jpg", "jpeg", "doc", "final", "version"));
+    private static final int MIN_NAME_TOKEN = 3;
+    private static final Pattern QUOTED = Pattern.compile("[\"«“]\\s*([^\"«»“”]+?)\\s*[\"»”]");
+
+    @Autowired(required = false)
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    @Value("${rag.filters.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.filters.refresh-seconds:60}")
+    private long refreshSeconds;
+
+    private volatile Set<String> knownSources = Set.of();
+    private volatile long sourcesLoadedAt;
+
+    /**
+     * @return filtre combiné (ET) ou null si la question ne désigne ni document, ni type, ni période
+     */
+    public Filter extract(String question) {
+        if (!enabled || question == null || question.isBlank()) {
+            return null;
+        }
+        String normalized = normalize(question);
+        Set<String> questionTokens = new HashSet<>(tokens(normalized));
+        List<Filter> filters = new ArrayList<>();
+
+        List<String> sources = matchingSources(normalized, questionTokens, quoted(question));
+        if (sources.size() == 1) {
+            filters.add(metadataKey("source").isEqualTo(sources.get(0)));
+        } else if (!sources.isEmpty()) {
+            filters.add(metadataKey("source").isIn(sources));
+        }
+
+        if (IMAGE_CUE.matcher(normalized).find()) {
+            filters.add(metadataKey("type").isEqualTo("image"));
+        } else if (TEXT_CUE.matcher(normalized).find()) {
+            filters.add(metadataKey("type").isEqualTo("txt"));
+        }
+
+        Matcher year;
+        if ((year = YEAR_FROM.matcher(normalized)).find()) {
+            filters.add(metadataKey("year").isGreaterThanOrEqualTo(year.group(2)));
+        } else if ((year = YEAR_UNTIL.matcher(normalized)).find()) {
+            filters.add(metadataKey("year").isLessThan(year.group(2)));
+        } else if ((year = YEAR_EXACT.matcher(normalized)).find()) {
+            filters.add(metadataKey("year").isEqualTo(year.group(2)));
+        }
+
+        if (filters.isEmpty()) {
+            return null;
+        }
+        Filter combined = filters.get(0);
+        for (int i = 1; i < filters.size(); i++) {
+            combined = combined.and(filters.get(i));
+        }
+        log.info("🔎 Filtre de recherche extrait de la question: {}", combined);
+        return combined;
+    }
+
+    /**
+     * Un document est désigné par son nom de fichier complet ("rapport.pdf"), par son nom entre
+     * guillemets ("le document « rapport »"), ou, si son nom compte plusieurs mots significatifs,
+     * par tous ces mots ("AnalyseDeDonnee4 c.pdf" ← "dans l'analyse de donnees 4")
+     * Un nom d'un seul mot ("rapport") n'est pas reconnu hors guillemets: le mot courant désignerait
+     * n'importe quel document
+     */
+    private List<String> matchingSources(String normalizedQuestion, Set<String> questionTokens, Set<String> quoted) {
+        List<String> matches = new ArrayList<>();
+        String paddedQuestion = " " + normalizedQuestion + " ";
+        for (String source : sources()) {
+            String baseName = source.replaceFirst("\\.[A-Za-z0-9]{1,5}$", "");
+            String normalizedName = normalize(splitCamelCase(baseName));
+            String normalizedFileName = normalize(source);
+            if (paddedQuestion.contains(" " + normalizedFileName + " ")
+                    || quoted.contains(normalizedName) || quoted.contains(normalizedFileName)) {
+                matches.add(source);
+                continue;
+            }
+            List<String> nameTokens = tokens(normalizedName).stream()
+                    .filter(token -> token.length() >= MIN_NAME_TOKEN && !STOP_WORDS.contains(token))
+                    .toList();
+            if (nameTokens.size() >= 2 && nameTokens.stream().allMatch(token -> containsToken(questionTokens, token))) {
+                matches.add(source);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Passages entre guillemets de la question, normalisés comme les noms de documents
+     */
+    private static Set<String> quoted(String question) {
+        Set<String> quoted = new HashSet<>();
+        Matcher matcher = QUOTED.matcher(question);
+        while (matcher.find()) {
+            String text = matcher.group(1);
+            quoted.add(normalize(text));
+            quoted.add(normalize(splitCamelCase(text.replaceFirst("\\.[A-Za-z0-9]{1,5}$", ""))));
+        }
+        return quoted;
+    }
+
+    private static boolean containsToken(Set<String> questionTokens, String token) {
+        return questionTokens.contains(token) || questionTokens.contains(token + "s")
+                || (token.endsWith("s") && questionTokens.contains(token.substring(0, token.length() - 1)));
+    }
+
+    private Set<String> sources() {
+        if (!(embeddingStore instanceof MetadataCatalog catalog)) {
+            return Set.of();
+        }
+        long now = System.currentTimeMillis();
+        if (now - sourcesLoadedAt > refreshSeconds * 1000) {
+            try {
+                knownSources = catalog.distinctValues("source");
+            } catch (Exception e) {
+                log.debug("Liste des sources indisponible: {}", e.getMessage());
+            }
+            sourcesLoadedAt = now;
+        }
+        return knownSources;
+    }
+
+    private static String splitCamelCase(String name) {
+        return name.replaceAll("(?<=\\p{Ll})(?=\\p{Lu})|(?<=\\p{L})(?=\\d)|(?<=\\d)(?=\\p{L})", " ");
+    }
+
+    /**
+     * Minuscules sans accents, ponctuation remplacée par des espaces (apostrophes conservées)
+     */
+    static String normalize(String text) {
+        String withoutAccents = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return withoutAccents.toLowerCase(Locale.ROOT)
+                .replace('’', '\'')
+                .replaceAll("[^a-z0-9']+", " ")
+                .trim();
+    }
+
+    private static List<String> tokens(String normalized) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalized.split("[\\s']+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
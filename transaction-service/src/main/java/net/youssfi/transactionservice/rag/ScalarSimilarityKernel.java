@@ -0,0 +1,59 @@
+package net.youssfi.transactionservice.rag;
+
+/**
+ * Noyau scalaire, utilisé quand la Vector API n'est pas disponible
+ * Quatre accumulateurs indépendants: le JIT peut enchaîner les multiplications sans attendre l'addition précédente
+ */
+final class ScalarSimilarityKernel implements SimilarityKernel {
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int upper = length & ~3; i < upper; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public float cosine(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            dot += x * y;
+            normA += x * x;
+            normB += y * y;
+        }
+        return normA == 0 || normB == 0 ? 0f : (float) (dot / Math.sqrt((double) normA * normB));
+    }
+
+    @Override
+    public float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0, s1 = 0;
+        int i = 0;
+        for (int upper = length & ~1; i < upper; i += 2) {
+            float d0 = a[aOffset + i] - b[bOffset + i];
+            float d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+        }
+        if (i < length) {
+            float d = a[aOffset + i] - b[bOffset + i];
+            s0 += d * d;
+        }
+        return s0 + s1;
+    }
+
+    @Override
+    public String name() {
+        return "scalaire";
+    }
+}
@@ -0,0 +1,57 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Messages JSON échangés avec un shard distant (voir ShardController côté hôte)
+ * - POST {base}/add     AddRequest    → AddResponse (identifiants dans l'ordre: celui de l'entrée s'il est
+ *                                       fourni, sinon attribué par le shard)
+ * - POST {base}/search  SearchRequest → SearchResponse (matches triés par score décroissant)
+ * - GET  {base}/values/{key}          → valeurs distinctes de la metadata
+ * - DELETE {base}/values/{key}?value= → nombre de segments supprimés
+ * Les vecteurs ne reviennent pas dans les réponses de recherche: seul le segment sert au contexte
+ */
+public final class ShardProtocol {
+
+    private ShardProtocol() {
+    }
+
+    /**
+     * @param id identifiant choisi par l'appelant, null pour laisser le shard l'attribuer
+     */
+    public record Entry(String id, float[] vector, String text, Map<String, String> metadata) {
+    }
+
+    public record AddRequest(List<Entry> entries) {
+    }
+
+    public record AddResponse(List<String> ids) {
+    }
+
+    public record SearchRequest(float[] vector, int maxResults, double minScore) {
+    }
+
+    public record Match(String id, double score, String text, Map<String, String> metadata) {
+    }
+
+    public record SearchResponse(List<Match> matches) {
+    }
+
+    static Entry entry(String id, Embedding embedding, TextSegment segment) {
+        return segment != null
+                ? new Entry(id, embedding.vector(), segment.text(), segment.metadata().asMap())
+                : new Entry(id, embedding.vector(), null, null);
+    }
+
+    public static TextSegment segment(String text, Map<String, String> metadata) {
+        if (text == null) {
+            return null;
+        }
+        return TextSegment.from(text, metadata != null ? Metadata.from(metadata) : new Metadata());
+    }
+}
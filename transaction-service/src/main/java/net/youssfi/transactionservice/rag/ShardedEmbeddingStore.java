@@ -0,0 +1,272 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Store partitionné: les vecteurs sont répartis sur N shards (en mémoire ou distants) et chaque
+ * recherche interroge tous les shards en parallèle (scatter) avant de fusionner les top-K (gather)
+ * Une recherche en mémoire est un parcours mono-thread: N shards locaux la répartissent sur N cœurs
+ * - insertion: tourniquet (addAll) ou hachage de l'identifiant (add avec id)
+ * - fusion: tas min borné à maxResults, chaque shard renvoyant ses matches triés
+ * - un shard en erreur est ignoré (résultats partiels), l'erreur n'est levée que si tous échouent,
+ *   ou dès le premier shard en erreur avec failOnPartial; les recherches partielles sont comptées
+ *   par shard (health(), affiché par /rag/status)
+ */
+@Slf4j
+public class ShardedEmbeddingStore implements EmbeddingStore<TextSegment>, MetadataCatalog, AutoCloseable {
+
+    private static final Comparator<EmbeddingMatch<TextSegment>> BY_SCORE = Comparator.comparingDouble(EmbeddingMatch::score);
+
+    private final List<EmbeddingStore<TextSegment>> shards;
+    private final ForkJoinPool pool;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final boolean failOnPartial;
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong partialSearches = new AtomicLong();
+    private final AtomicLongArray shardFailures;
+    private volatile String lastFailure;
+
+    /**
+     * Nombre de recherches, recherches aux résultats partiels, échecs par shard et dernière erreur
+     */
+    public record Health(long searches, long partialSearches, long[] failuresByShard, String lastFailure) {
+    }
+
+    public ShardedEmbeddingStore(List<EmbeddingStore<TextSegment>> shards, int threads) {
+        this(shards, threads, false);
+    }
+
+    /**
+     * @param threads       parallélisme du pool de recherche (0 = nombre de cœurs)
+     * @param failOnPartial lever une erreur dès qu'un shard échoue plutôt que renvoyer des résultats partiels
+     */
+    public ShardedEmbeddingStore(List<EmbeddingStore<TextSegment>> shards, int threads, boolean failOnPartial) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Au moins un shard est nécessaire");
+        }
+        this.shards = List.copyOf(shards);
+        this.failOnPartial = failOnPartial;
+        this.shardFailures = new AtomicLongArray(shards.size());
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("shard-search-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public Health health() {
+        long[] failures = new long[shardFailures.length()];
+        for (int s = 0; s < failures.length; s++) {
+            failures[s] = shardFailures.get(s);
+        }
+        return new Health(searches.get(), partialSearches.get(), failures, lastFailure);
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return add(embedding, null);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        shards.get(Math.floorMod(id.hashCode(), shards.size())).add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return shards.get(Math.floorMod(nextShard.getAndIncrement(), shards.size())).add(embedding, textSegment);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return addAll(embeddings, null);
+    }
+
+    /**
+     * Répartit le lot en tourniquet et insère dans tous les shards en parallèle
+     * Les identifiants sont renvoyés dans l'ordre des embeddings reçus
+     */
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        int shardCount = shards.size();
+        int first = nextShard.getAndAdd(embeddings.size());
+        List<List<Integer>> positions = new ArrayList<>(shardCount);
+        for (int s = 0; s < shardCount; s++) {
+            positions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < embeddings.size(); i++) {
+            positions.get(Math.floorMod(first + i, shardCount)).add(i);
+        }
+
+        List<ForkJoinTask<List<String>>> tasks = new ArrayList<>(shardCount);
+        for (int s = 0; s < shardCount; s++) {
+            EmbeddingStore<TextSegment> shard = shards.get(s);
+            List<Integer> shardPositions = positions.get(s);
+            if (shardPositions.isEmpty()) {
+                tasks.add(null);
+                continue;
+            }
+            List<Embedding> shardEmbeddings = new ArrayList<>(shardPositions.size());
+            List<TextSegment> shardSegments = textSegments != null ? new ArrayList<>(shardPositions.size()) : null;
+            for (int position : shardPositions) {
+                shardEmbeddings.add(embeddings.get(position));
+                if (shardSegments != null) {
+                    shardSegments.add(textSegments.get(position));
+                }
+            }
+            tasks.add(pool.submit(() -> shardSegments != null
+                    ? shard.addAll(shardEmbeddings, shardSegments)
+                    : shard.addAll(shardEmbeddings)));
+        }
+
+        String[] ids = new String[embeddings.size()];
+        for (int s = 0; s < shardCount; s++) {
+            if (tasks.get(s) == null) {
+                continue;
+            }
+            List<String> shardIds = tasks.get(s).join();
+            List<Integer> shardPositions = positions.get(s);
+            for (int i = 0; i < shardPositions.size(); i++) {
+                ids[shardPositions.get(i)] = shardIds.get(i);
+            }
+        }
+        return Arrays.asList(ids);
+    }
+
+    @Override
+    public List<EmbeddingMatch<TextSegment>> findRelevant(Embedding referenceEmbedding, int maxResults, double minScore) {
+        return search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(referenceEmbedding)
+                .maxResults(maxResults)
+                .minScore(minScore)
+                .build()).matches();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        searches.incrementAndGet();
+        if (shards.size() == 1) {
+            return shards.get(0).search(request);
+        }
+        List<ForkJoinTask<List<EmbeddingMatch<TextSegment>>>> tasks = new ArrayList<>(shards.size());
+        for (EmbeddingStore<TextSegment> shard : shards) {
+            tasks.add(pool.submit(() -> shard.search(request).matches()));
+        }
+
+        PriorityQueue<EmbeddingMatch<TextSegment>> top = new PriorityQueue<>(BY_SCORE); // tas min borné à maxResults
+        int failures = 0;
+        Throwable lastError = null;
+        for (int s = 0; s < tasks.size(); s++) {
+            List<EmbeddingMatch<TextSegment>> matches;
+            try {
+                matches = tasks.get(s).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tasks.forEach(task -> task.cancel(true));
+                throw new IllegalStateException("Recherche interrompue", e);
+            } catch (ExecutionException e) {
+                failures++;
+                lastError = e.getCause();
+                shardFailures.incrementAndGet(s);
+                lastFailure = "shard " + s + ": " + e.getCause().getMessage();
+                if (failOnPartial) {
+                    tasks.forEach(task -> task.cancel(true));
+                    partialSearches.incrementAndGet();
+                    throw new IllegalStateException("Shard " + s + " en erreur (rag.sharding.fail-on-partial)", e.getCause());
+                }
+                log.warn("⚠️ Shard {} en erreur, résultats partiels: {}", s, e.getCause().getMessage());
+                continue;
+            }
+            // Matches triés par score décroissant: inutile de parcourir au-delà du minimum du tas
+            for (EmbeddingMatch<TextSegment> match : matches) {
+                if (top.size() < request.maxResults()) {
+                    top.add(match);
+                } else if (match.score() > top.peek().score()) {
+                    top.poll();
+                    top.add(match);
+                } else {
+                    break;
+                }
+            }
+        }
+        if (failures > 0) {
+            partialSearches.incrementAndGet();
+        }
+        if (failures == shards.size()) {
+            throw new IllegalStateException("Aucun shard disponible", lastError);
+        }
+
+        List<EmbeddingMatch<TextSegment>> merged = new ArrayList<>(top);
+        merged.sort(BY_SCORE.reversed());
+        return new EmbeddingSearchResult<>(merged);
+    }
+
+    @Override
+    public Set<String> distinctValues(String key) {
+        Set<String> values = new TreeSet<>();
+        for (EmbeddingStore<TextSegment> shard : shards) {
+            if (shard instanceof MetadataCatalog catalog) {
+                try {
+                    values.addAll(catalog.distinctValues(key));
+                } catch (Exception e) {
+                    log.debug("Valeurs de {} indisponibles sur un shard: {}", key, e.getMessage());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Les segments d'un document sont répartis sur tous les shards: la suppression est envoyée à chacun
+     */
+    @Override
+    public int removeWhere(String key, String value) {
+        int removed = 0;
+        for (EmbeddingStore<TextSegment> shard : shards) {
+            if (shard instanceof MetadataCatalog catalog) {
+                removed += catalog.removeWhere(key, value);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        for (EmbeddingStore<TextSegment> shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.debug("Fermeture d'un shard: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
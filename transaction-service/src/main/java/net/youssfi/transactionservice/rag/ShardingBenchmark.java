@@ -0,0 +1,152 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Courbe de passage à l'échelle du store partitionné: même corpus synthétique, même requêtes,
+ * de 1 à N shards en mémoire (latence moyenne, p95, débit et accélération par rapport à la première
+ * configuration, 1 shard par défaut)
+ * Avec remote=true, la même mesure passe par le protocole HTTP vers les shards hébergés par cette
+ * instance (LocalShardHost), ce qui donne le coût du transport
+ * Le rappel compare chaque configuration à la première: la recherche étant exacte, il doit rester à 1.000
+ */
+@Slf4j
+public class ShardingBenchmark {
+
+    private static final int LOAD_BATCH = 1000;
+    private static final int WARMUP_QUERIES = 20;
+
+    private final LocalShardHost shardHost;
+    private final String hostBaseUrl;
+
+    /**
+     * @param shardHost   null si les shards HTTP ne sont pas hébergés (rag.sharding.host.enabled=false)
+     * @param hostBaseUrl adresse de cette instance, ex. http://localhost:8091
+     */
+    public ShardingBenchmark(LocalShardHost shardHost, String hostBaseUrl) {
+        this.shardHost = shardHost;
+        this.hostBaseUrl = hostBaseUrl;
+    }
+
+    public String run(int rows, int dimension, int queries, int k, List<Integer> shardCounts, boolean remote) {
+        Random random = new Random(42);
+        List<Embedding> vectors = PgVectorBenchmark.clusteredVectors(rows, dimension, random);
+        List<TextSegment> segments = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            segments.add(TextSegment.from("v" + i));
+        }
+        List<Embedding> queryVectors = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            queryVectors.add(PgVectorBenchmark.perturb(vectors.get(random.nextInt(rows)), random));
+        }
+
+        StringBuilder report = new StringBuilder(String.format(
+                "⏱️ Shards: %d vecteurs de dimension %d, %d requêtes, k=%d, %d cœurs%n",
+                rows, dimension, queries, k, Runtime.getRuntime().availableProcessors()));
+
+        List<Set<String>> truth = null;
+        double baseline = 0;
+        for (int shardCount : shardCounts) {
+            List<EmbeddingStore<TextSegment>> shards = new ArrayList<>(shardCount);
+            for (int s = 0; s < shardCount; s++) {
+                shards.add(new FilteredInMemoryEmbeddingStore());
+            }
+            try (ShardedEmbeddingStore store = new ShardedEmbeddingStore(shards, 0)) {
+                Measure measure = measure(store, vectors, segments, queryVectors, k, truth);
+                if (truth == null) {
+                    truth = measure.results();
+                    baseline = measure.meanMillis();
+                }
+                report.append(line("mémoire", shardCount, measure, baseline));
+            }
+        }
+
+        if (remote) {
+            if (shardHost == null) {
+                report.append("HTTP: non mesuré (rag.sharding.host.enabled=false)\n");
+                return report.toString();
+            }
+            for (int shardCount : shardCounts) {
+                List<String> names = new ArrayList<>(shardCount);
+                List<EmbeddingStore<TextSegment>> shards = new ArrayList<>(shardCount);
+                for (int s = 0; s < shardCount; s++) {
+                    String name = "bench-" + shardCount + "-" + s;
+                    names.add(name);
+                    shards.add(new RemoteShardEmbeddingStore(hostBaseUrl + "/shards/" + name, Duration.ofSeconds(30)));
+                }
+                try (ShardedEmbeddingStore store = new ShardedEmbeddingStore(shards, 0)) {
+                    report.append(line("http", shardCount, measure(store, vectors, segments, queryVectors, k, truth), baseline));
+                } catch (Exception e) {
+                    log.error("Erreur lors du benchmark HTTP ({} shards): {}", shardCount, e.getMessage(), e);
+                    report.append(String.format("http    %2d shards: ❌ %s%n", shardCount, e.getMessage()));
+                } finally {
+                    names.forEach(shardHost::drop);
+                }
+            }
+        }
+        return report.toString();
+    }
+
+    private record Measure(double loadPerSecond, double meanMillis, double p95Millis, double queriesPerSecond,
+                           double recall, List<Set<String>> results) {
+    }
+
+    private static Measure measure(ShardedEmbeddingStore store, List<Embedding> vectors, List<TextSegment> segments,
+                                   List<Embedding> queryVectors, int k, List<Set<String>> truth) {
+        long start = System.nanoTime();
+        for (int from = 0; from < vectors.size(); from += LOAD_BATCH) {
+            int to = Math.min(from + LOAD_BATCH, vectors.size());
+            store.addAll(vectors.subList(from, to), segments.subList(from, to));
+        }
+        double loadSeconds = (System.nanoTime() - start) / 1e9;
+
+        for (int i = 0; i < Math.min(WARMUP_QUERIES, queryVectors.size()); i++) {
+            store.findRelevant(queryVectors.get(i), k, 0.0);
+        }
+
+        double[] latencies = new double[queryVectors.size()];
+        List<Set<String>> results = new ArrayList<>(queryVectors.size());
+        double recall = 0;
+        long total = System.nanoTime();
+        for (int i = 0; i < queryVectors.size(); i++) {
+            long queryStart = System.nanoTime();
+            Set<String> found = texts(store.findRelevant(queryVectors.get(i), k, 0.0));
+            latencies[i] = (System.nanoTime() - queryStart) / 1e6;
+            results.add(found);
+            if (truth != null) {
+                Set<String> common = new HashSet<>(found);
+                common.retainAll(truth.get(i));
+                recall += truth.get(i).isEmpty() ? 1.0 : (double) common.size() / truth.get(i).size();
+            }
+        }
+        double totalSeconds = (System.nanoTime() - total) / 1e9;
+        return new Measure(vectors.size() / loadSeconds, PgVectorBenchmark.mean(latencies), PgVectorBenchmark.p95(latencies),
+                queryVectors.size() / totalSeconds, truth != null ? recall / queryVectors.size() : 1.0, results);
+    }
+
+    private static String line(String mode, int shardCount, Measure measure, double baseline) {
+        return String.format("%-7s %2d shards: chargement %8.0f vecteurs/s, moyenne %7.2f ms, p95 %7.2f ms, "
+                        + "%7.1f requêtes/s, accélération x%.2f, rappel %.3f%n",
+                mode, shardCount, measure.loadPerSecond(), measure.meanMillis(), measure.p95Millis(),
+                measure.queriesPerSecond(), baseline / measure.meanMillis(), measure.recall());
+    }
+
+    private static Set<String> texts(List<EmbeddingMatch<TextSegment>> matches) {
+        Set<String> texts = new HashSet<>();
+        for (EmbeddingMatch<TextSegment> match : matches) {
+            texts.add(match.embedded().text());
+        }
+        return texts;
+    }
+}
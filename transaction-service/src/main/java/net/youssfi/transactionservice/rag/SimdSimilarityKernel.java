@@ -0,0 +1,80 @@
+package net.youssfi.transactionservice.rag;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Noyau SIMD (jdk.incubator.vector): une instruction traite SPECIES.length() flottants
+ * (8 en AVX2, 16 en AVX-512), la fin du vecteur est traitée en scalaire
+ * Chargée par réflexion dans VectorSimilarity: sans --add-modules jdk.incubator.vector, cette classe
+ * n'est jamais initialisée et le noyau scalaire prend le relais
+ */
+final class SimdSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public float cosine(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector dotSum = FloatVector.zero(SPECIES);
+        FloatVector normASum = FloatVector.zero(SPECIES);
+        FloatVector normBSum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            dotSum = va.fma(vb, dotSum);
+            normASum = va.fma(va, normASum);
+            normBSum = vb.fma(vb, normBSum);
+        }
+        float dot = dotSum.reduceLanes(VectorOperators.ADD);
+        float normA = normASum.reduceLanes(VectorOperators.ADD);
+        float normB = normBSum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            dot += x * y;
+            normA += x * x;
+            normB += y * y;
+        }
+        return normA == 0 || normB == 0 ? 0f : (float) (dot / Math.sqrt((double) normA * normB));
+    }
+
+    @Override
+    public float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i));
+            sum = diff.fma(diff, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float d = a[aOffset + i] - b[bOffset + i];
+            result += d * d;
+        }
+        return result;
+    }
+
+    @Override
+    public String name() {
+        return "SIMD " + SPECIES.vectorBitSize() + " bits (" + SPECIES.length() + " floats)";
+    }
+}
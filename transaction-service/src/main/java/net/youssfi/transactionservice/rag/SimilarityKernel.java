@@ -0,0 +1,22 @@
+package net.youssfi.transactionservice.rag;
+
+/**
+ * Noyau de calcul de similarité sur des vecteurs float[] (ou des lignes d'une matrice à plat)
+ * Implémentations: ScalarSimilarityKernel (boucles déroulées) et SimdSimilarityKernel (Vector API)
+ */
+interface SimilarityKernel {
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Cosinus calculé en une passe (produit scalaire et deux normes), 0 si un vecteur est nul
+     */
+    float cosine(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Distance euclidienne au carré
+     */
+    float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    String name();
+}
@@ -0,0 +1,72 @@
+package net.youssfi.transactionservice.rag;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.Tokenizer;
+
+/**
+ * Base commune des tokenizers de l'application
+ * Les sous-classes ne fournissent que le comptage sur du texte et la coupe à un budget de tokens;
+ * les messages et les outils sont comptés à partir de leur texte
+ */
+public abstract class TextTokenizer implements Tokenizer {
+
+    /**
+     * Coupe le texte pour qu'il tienne dans maxTokens, sur une frontière de mot
+     * Retourne le texte inchangé s'il tient déjà dans le budget
+     */
+    public abstract String truncate(String text, int maxTokens);
+
+    /**
+     * Coupe le texte au budget en ajoutant "..." si une coupe a eu lieu
+     */
+    public String truncateWithEllipsis(String text, int maxTokens) {
+        if (text == null) {
+            return null;
+        }
+        String truncated = truncate(text, maxTokens);
+        return truncated.length() < text.length() ? truncated + "..." : truncated;
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        String text = message.text();
+        return text != null ? estimateTokenCountInText(text) : 0;
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int count = 0;
+        for (ChatMessage message : messages) {
+            count += estimateTokenCountInMessage(message);
+        }
+        return count;
+    }
+
+    @Override
+    public int estimateTokenCountInToolExecutionRequests(Iterable<ToolExecutionRequest> toolExecutionRequests) {
+        int count = 0;
+        for (ToolExecutionRequest request : toolExecutionRequests) {
+            count += estimateTokenCountInText(request.name());
+            if (request.arguments() != null) {
+                count += estimateTokenCountInText(request.arguments());
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int estimateTokenCountInToolSpecifications(Iterable<ToolSpecification> toolSpecifications) {
+        int count = 0;
+        for (ToolSpecification spec : toolSpecifications) {
+            if (spec.name() != null) {
+                count += estimateTokenCountInText(spec.name());
+            }
+            if (spec.description() != null) {
+                count += estimateTokenCountInText(spec.description());
+            }
+        }
+        return count;
+    }
+}
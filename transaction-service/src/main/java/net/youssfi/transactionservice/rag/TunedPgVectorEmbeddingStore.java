@@ -0,0 +1,516 @@
+package net.youssfi.transactionservice.rag;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.zaxxer.hikari.HikariDataSource;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Store pgvector géré par l'application (remplace PgVectorEmbeddingStore de LangChain4j)
+ * - connexions via un pool HikariCP
+ * - index ANN HNSW ou IVFFlat créé et maintenu selon IndexSettings: un index dont les paramètres
+ *   ne correspondent plus à la configuration est supprimé puis reconstruit
+ * - ef_search / probes fixés par requête (SET LOCAL), tri sur l'opérateur <=> pour que l'index serve
+ * - insertions par lots multi-lignes en une transaction, avec upsert sur embedding_id
+ * - filtres de metadata traduits en WHERE, index d'expression sur source, type et year
+ * Le schéma de table est celui de LangChain4j (embedding_id, embedding, text, metadata JSON):
+ * une table existante est réutilisée telle quelle
+ */
+@Slf4j
+public class TunedPgVectorEmbeddingStore implements EmbeddingStore<TextSegment>, MetadataCatalog, AutoCloseable {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    // Clés filtrées par RetrievalFilterExtractor et clé de suppression avant réindexation, indexées par expression
+    private static final List<String> FILTERED_KEYS = List.of("source", "type", "year", "file_path");
+    private static final int FILTERED_SEARCH_BOOST = 4;
+    private static final Type METADATA_TYPE = new TypeToken<Map<String, String>>() { }.getType();
+
+    public enum IndexType { NONE, HNSW, IVFFLAT }
+
+    /**
+     * Paramètres de l'index ANN
+     *
+     * @param m              HNSW: nombre de voisins par nœud
+     * @param efConstruction HNSW: largeur de la liste de candidats à la construction
+     * @param efSearch       HNSW: largeur de la liste de candidats à la recherche (rappel vs latence)
+     * @param lists          IVFFlat: nombre de listes (≈ lignes / 1000); l'index n'est créé qu'au-delà de lists lignes
+     * @param probes         IVFFlat: listes visitées par requête
+     */
+    public record IndexSettings(IndexType type, int m, int efConstruction, int efSearch, int lists, int probes) {
+
+        String indexName(String table) {
+            return switch (type) {
+                case HNSW -> table + "_ann_hnsw_m" + m + "_ef" + efConstruction;
+                case IVFFLAT -> table + "_ann_ivfflat_l" + lists;
+                case NONE -> null;
+            };
+        }
+    }
+
+    private final DataSource dataSource;
+    private final String table;
+    private final int dimension;
+    private final IndexSettings indexSettings;
+    private final int insertBatchSize;
+    private final Gson gson = new Gson();
+
+    // IVFFlat sur une table trop petite: création différée jusqu'à ce que les données suffisent
+    private volatile boolean indexPending;
+
+    public TunedPgVectorEmbeddingStore(DataSource dataSource, String table, int dimension,
+                                       IndexSettings indexSettings, int insertBatchSize) {
+        if (!IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("Nom de table invalide: " + table);
+        }
+        this.dataSource = dataSource;
+        this.table = table;
+        this.dimension = dimension;
+        this.indexSettings = indexSettings;
+        this.insertBatchSize = Math.max(1, insertBatchSize);
+        try (Connection connection = dataSource.getConnection()) {
+            createSchema(connection);
+            ensureIndex(connection);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Initialisation du store pgvector impossible: " + e.getMessage(), e);
+        }
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public IndexSettings getIndexSettings() {
+        return indexSettings;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    private void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS vector");
+            statement.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                    + "embedding_id UUID PRIMARY KEY, "
+                    + "embedding vector(" + dimension + "), "
+                    + "text TEXT NULL, "
+                    + "metadata JSON NULL)");
+            for (String key : FILTERED_KEYS) {
+                statement.execute("CREATE INDEX IF NOT EXISTS " + table + "_meta_" + key + "_idx ON " + table
+                        + " (" + field(key) + ")");
+            }
+        }
+    }
+
+    /**
+     * Aligne les index ANN de la table sur la configuration
+     */
+    private void ensureIndex(Connection connection) throws SQLException {
+        String wanted = indexSettings.indexName(table);
+        List<String> existing = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT indexname FROM pg_indexes WHERE tablename = ? AND indexname LIKE ?")) {
+            statement.setString(1, table.toLowerCase(Locale.ROOT));
+            statement.setString(2, table.toLowerCase(Locale.ROOT) + "\\_ann\\_%");
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getString(1));
+                }
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            for (String index : existing) {
+                if (!index.equalsIgnoreCase(wanted)) {
+                    log.info("🗑️ Suppression de l'index pgvector {} (paramètres modifiés)", index);
+                    statement.execute("DROP INDEX IF EXISTS " + index);
+                }
+            }
+            if (wanted == null || existing.stream().anyMatch(wanted::equalsIgnoreCase)) {
+                indexPending = false;
+                return;
+            }
+
+            if (indexSettings.type() == IndexType.IVFFLAT) {
+                long rows = countRows(statement);
+                if (rows < indexSettings.lists()) {
+                    // Les centroïdes IVFFlat sont calculés à la création: sur une table vide ils seraient inutiles
+                    log.info("⏳ Index IVFFlat différé: {} ligne(s) pour {} listes", rows, indexSettings.lists());
+                    indexPending = true;
+                    return;
+                }
+            }
+
+            long start = System.currentTimeMillis();
+            statement.execute(switch (indexSettings.type()) {
+                case HNSW -> "CREATE INDEX IF NOT EXISTS " + wanted + " ON " + table
+                        + " USING hnsw (embedding vector_cosine_ops) WITH (m = " + indexSettings.m()
+                        + ", ef_construction = " + indexSettings.efConstruction() + ")";
+                case IVFFLAT -> "CREATE INDEX IF NOT EXISTS " + wanted + " ON " + table
+                        + " USING ivfflat (embedding vector_cosine_ops) WITH (lists = " + indexSettings.lists() + ")";
+                case NONE -> throw new IllegalStateException();
+            });
+            indexPending = false;
+            log.info("✅ Index pgvector {} créé en {} ms", wanted, System.currentTimeMillis() - start);
+        }
+    }
+
+    private long countRows(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("SELECT count(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = randomIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = randomIds(embeddings.size());
+        addAll(ids, embeddings, textSegments);
+        return ids;
+    }
+
+    /**
+     * Insère par lots de insertBatchSize lignes (un INSERT multi-lignes par lot), le tout en une transaction
+     */
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (int from = 0; from < ids.size(); from += insertBatchSize) {
+                    int to = Math.min(from + insertBatchSize, ids.size());
+                    insertBatch(connection, ids, embeddings, textSegments, from, to);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            if (indexPending) {
+                connection.setAutoCommit(true);
+                ensureIndex(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Insertion pgvector impossible: " + e.getMessage(), e);
+        }
+    }
+
+    private void insertBatch(Connection connection, List<String> ids, List<Embedding> embeddings,
+                             List<TextSegment> textSegments, int from, int to) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                .append(" (embedding_id, embedding, text, metadata) VALUES ");
+        for (int i = from; i < to; i++) {
+            sql.append(i > from ? ", " : "").append("(?::uuid, ?::vector, ?, ?::json)");
+        }
+        sql.append(" ON CONFLICT (embedding_id) DO UPDATE SET embedding = EXCLUDED.embedding, "
+                + "text = EXCLUDED.text, metadata = EXCLUDED.metadata");
+
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            int parameter = 1;
+            for (int i = from; i < to; i++) {
+                TextSegment segment = textSegments != null ? textSegments.get(i) : null;
+                statement.setString(parameter++, ids.get(i));
+                statement.setString(parameter++, toVectorLiteral(embeddings.get(i).vector()));
+                statement.setString(parameter++, segment != null ? segment.text() : null);
+                statement.setString(parameter++, segment != null ? gson.toJson(segment.metadata().asMap()) : null);
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public List<EmbeddingMatch<TextSegment>> findRelevant(Embedding referenceEmbedding, int maxResults, double minScore) {
+        return search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(referenceEmbedding)
+                .maxResults(maxResults)
+                .minScore(minScore)
+                .build()).matches();
+    }
+
+    /**
+     * Recherche ANN: ORDER BY embedding <=> requête LIMIT k, seuil de score appliqué ensuite
+     * (un filtre sur la distance dans le WHERE empêcherait le parcours par l'index)
+     * Un filtre de metadata devient une clause WHERE sur metadata->>'clé': PostgreSQL choisit entre
+     * l'index ANN (avec une liste de candidats élargie) et les index d'expression des clés filtrées
+     */
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        String vector = toVectorLiteral(request.queryEmbedding().vector());
+        List<Object> filterParameters = new ArrayList<>();
+        String where = request.filter() != null ? " WHERE " + toSql(request.filter(), filterParameters) : "";
+        String sql = "SELECT embedding_id, embedding::text, text, metadata::text, embedding <=> ?::vector AS distance"
+                + " FROM " + table
+                + where
+                + " ORDER BY embedding <=> ?::vector LIMIT ?";
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                applySearchSettings(connection, request.filter() != null);
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int parameter = 1;
+                    statement.setString(parameter++, vector);
+                    for (Object value : filterParameters) {
+                        statement.setObject(parameter++, value);
+                    }
+                    statement.setString(parameter++, vector);
+                    statement.setInt(parameter, request.maxResults());
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            double score = RelevanceScore.fromCosineSimilarity(1.0 - rs.getDouble("distance"));
+                            if (score < request.minScore()) {
+                                break; // résultats triés par distance croissante
+                            }
+                            matches.add(toMatch(rs, score));
+                        }
+                    }
+                }
+            } finally {
+                connection.commit(); // termine la transaction et les SET LOCAL
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Recherche pgvector impossible: " + e.getMessage(), e);
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * ef_search / probes limités à la transaction courante
+     * Avec un filtre, l'index ANN renvoie ses candidats avant le WHERE: la liste est élargie
+     * pour qu'il en reste assez une fois le filtre appliqué
+     */
+    private void applySearchSettings(Connection connection, boolean filtered) throws SQLException {
+        int boost = filtered ? FILTERED_SEARCH_BOOST : 1;
+        try (Statement statement = connection.createStatement()) {
+            switch (indexSettings.type()) {
+                case HNSW -> statement.execute("SET LOCAL hnsw.ef_search = " + Math.min(1000, indexSettings.efSearch() * boost));
+                case IVFFLAT -> statement.execute("SET LOCAL ivfflat.probes = "
+                        + Math.min(indexSettings.lists(), indexSettings.probes() * boost));
+                case NONE -> { }
+            }
+        }
+    }
+
+    /**
+     * Traduit un filtre LangChain4j en condition SQL paramétrée sur la colonne metadata
+     * Les valeurs numériques sont comparées après conversion en numeric, les autres comme du texte
+     */
+    private static String toSql(Filter filter, List<Object> parameters) {
+        if (filter instanceof And and) {
+            return "(" + toSql(and.left(), parameters) + " AND " + toSql(and.right(), parameters) + ")";
+        }
+        if (filter instanceof Or or) {
+            return "(" + toSql(or.left(), parameters) + " OR " + toSql(or.right(), parameters) + ")";
+        }
+        if (filter instanceof Not not) {
+            return "NOT (" + toSql(not.expression(), parameters) + ")";
+        }
+        if (filter instanceof IsEqualTo equalTo) {
+            return comparison(equalTo.key(), "=", equalTo.comparisonValue(), parameters);
+        }
+        if (filter instanceof IsNotEqualTo notEqualTo) {
+            return "(" + field(notEqualTo.key()) + " IS NULL OR "
+                    + comparison(notEqualTo.key(), "<>", notEqualTo.comparisonValue(), parameters) + ")";
+        }
+        if (filter instanceof IsGreaterThan greaterThan) {
+            return comparison(greaterThan.key(), ">", greaterThan.comparisonValue(), parameters);
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo greaterOrEqual) {
+            return comparison(greaterOrEqual.key(), ">=", greaterOrEqual.comparisonValue(), parameters);
+        }
+        if (filter instanceof IsLessThan lessThan) {
+            return comparison(lessThan.key(), "<", lessThan.comparisonValue(), parameters);
+        }
+        if (filter instanceof IsLessThanOrEqualTo lessOrEqual) {
+            return comparison(lessOrEqual.key(), "<=", lessOrEqual.comparisonValue(), parameters);
+        }
+        if (filter instanceof IsIn in) {
+            return field(in.key()) + " IN (" + placeholders(in.comparisonValues(), parameters) + ")";
+        }
+        if (filter instanceof IsNotIn notIn) {
+            return "(" + field(notIn.key()) + " IS NULL OR " + field(notIn.key())
+                    + " NOT IN (" + placeholders(notIn.comparisonValues(), parameters) + "))";
+        }
+        throw new IllegalArgumentException("Filtre non supporté: " + filter.getClass().getSimpleName());
+    }
+
+    private static String comparison(String key, String operator, Object value, List<Object> parameters) {
+        if (value instanceof Number number) {
+            parameters.add(number.doubleValue());
+            return "(" + field(key) + ")::numeric " + operator + " ?";
+        }
+        parameters.add(String.valueOf(value));
+        return field(key) + " " + operator + " ?";
+    }
+
+    private static String placeholders(Collection<?> values, List<Object> parameters) {
+        StringBuilder sql = new StringBuilder();
+        for (Object value : values) {
+            sql.append(sql.length() > 0 ? ", " : "").append('?');
+            parameters.add(String.valueOf(value));
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Clé littérale (et non paramètre) pour que les index d'expression puissent servir
+     */
+    private static String field(String key) {
+        if (!IDENTIFIER.matcher(key).matches()) {
+            throw new IllegalArgumentException("Clé de metadata invalide: " + key);
+        }
+        return "(metadata->>'" + key + "')";
+    }
+
+    @Override
+    public Set<String> distinctValues(String key) {
+        Set<String> values = new TreeSet<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT DISTINCT " + field(key) + " FROM " + table
+                     + " WHERE " + field(key) + " IS NOT NULL")) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Lecture des metadata impossible: " + e.getMessage(), e);
+        }
+        return values;
+    }
+
+    @Override
+    public int removeWhere(String key, String value) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "DELETE FROM " + table + " WHERE " + field(key) + " = ?")) {
+            statement.setString(1, value);
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Suppression des segments impossible: " + e.getMessage(), e);
+        }
+    }
+
+    private EmbeddingMatch<TextSegment> toMatch(ResultSet rs, double score) throws SQLException {
+        String text = rs.getString("text");
+        TextSegment segment = null;
+        if (text != null) {
+            String metadataJson = rs.getString("metadata");
+            Map<String, String> metadata = metadataJson != null ? gson.fromJson(metadataJson, METADATA_TYPE) : null;
+            segment = TextSegment.from(text, metadata != null ? Metadata.from(metadata) : new Metadata());
+        }
+        return new EmbeddingMatch<>(score, rs.getString("embedding_id"),
+                Embedding.from(parseVector(rs.getString("embedding"))), segment);
+    }
+
+    static String toVectorLiteral(float[] vector) {
+        StringBuilder literal = new StringBuilder(vector.length * 10).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(vector[i]);
+        }
+        return literal.append(']').toString();
+    }
+
+    static float[] parseVector(String literal) {
+        String body = literal.substring(1, literal.length() - 1);
+        if (body.isEmpty()) {
+            return new float[0];
+        }
+        String[] parts = body.split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i]);
+        }
+        return vector;
+    }
+
+    private static List<String> randomIds(int count) {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+
+    @Override
+    public void close() {
+        if (dataSource instanceof HikariDataSource pool) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.youssfi.transactionservice.rag;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Similarités vectorielles pour tous les calculs en mémoire (store de fallback, MMR du ContextPacker,
+ * coupures sémantiques du découpage)
+ * Le noyau SIMD (Vector API) est utilisé si le module jdk.incubator.vector est chargé
+ * (--add-modules jdk.incubator.vector, configuré dans le pom), sinon le noyau scalaire
+ * -Drag.similarity.simd=false force le noyau scalaire
+ * Les variantes avec offset calculent sur des lignes d'une matrice stockée à plat
+ */
+@Slf4j
+public final class VectorSimilarity {
+
+    private static final SimilarityKernel SCALAR = new ScalarSimilarityKernel();
+    private static final SimilarityKernel SIMD = loadSimdKernel();
+    private static final SimilarityKernel KERNEL = SIMD != null ? SIMD : SCALAR;
+
+    static {
+        log.info("Noyau de similarité: {}", KERNEL.name());
+    }
+
+    private VectorSimilarity() {
+    }
+
+    public static float dot(float[] a, float[] b) {
+        checkLength(a, b);
+        return KERNEL.dot(a, 0, b, 0, a.length);
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static float cosine(float[] a, float[] b) {
+        checkLength(a, b);
+        return KERNEL.cosine(a, 0, b, 0, a.length);
+    }
+
+    public static float cosine(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.cosine(a, aOffset, b, bOffset, length);
+    }
+
+    public static float l2Squared(float[] a, float[] b) {
+        checkLength(a, b);
+        return KERNEL.l2Squared(a, 0, b, 0, a.length);
+    }
+
+    public static float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.l2Squared(a, aOffset, b, bOffset, length);
+    }
+
+    public static double norm(float[] vector) {
+        return Math.sqrt(KERNEL.dot(vector, 0, vector, 0, vector.length));
+    }
+
+    public static double norm(float[] vector, int offset, int length) {
+        return Math.sqrt(KERNEL.dot(vector, offset, vector, offset, length));
+    }
+
+    public static String kernelName() {
+        return KERNEL.name();
+    }
+
+    static SimilarityKernel scalarKernel() {
+        return SCALAR;
+    }
+
+    /**
+     * @return null si la Vector API n'est pas disponible
+     */
+    static SimilarityKernel simdKernel() {
+        return SIMD;
+    }
+
+    private static void checkLength(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Dimensions différentes: " + a.length + " et " + b.length);
+        }
+    }
+
+    private static SimilarityKernel loadSimdKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("rag.similarity.simd", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        return loadKernel(VectorSimilarity.class.getPackageName() + ".SimdSimilarityKernel");
+    }
+
+    /**
+     * @return null si la classe ne peut pas être chargée ou instanciée (module absent, classe introuvable)
+     */
+    static SimilarityKernel loadKernel(String className) {
+        try {
+            // Chargement par réflexion: aucune référence directe aux classes de jdk.incubator.vector
+            return (SimilarityKernel) Class.forName(className)
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("⚠️ Vector API indisponible, noyau scalaire: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package net.youssfi.transactionservice.repository;
+
+/**
+ * Projection du solde d'un compte, calculée par TransactionRepository.findBalanceByAccountId
+ * Le solde est la somme des crédits moins la somme des débits, tous statuts confondus
+ */
+public interface AccountBalance extends TransactionTotals {
+    long getAccountId();
+}
@@ -0,0 +1,11 @@
+package net.youssfi.transactionservice.repository;
+
+import net.youssfi.transactionservice.entities.TransactionStatus;
+
+/**
+ * Totaux d'un compte pour un statut (une ligne du group by accountId, status)
+ */
+public interface AccountStatusTotals extends TransactionTotals {
+    long getAccountId();
+    TransactionStatus getStatus();
+}
@@ -0,0 +1,23 @@
+package net.youssfi.transactionservice.repository;
+
+import jakarta.persistence.LockModeType;
+import net.youssfi.transactionservice.entities.AccountSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface AccountSummaryRepository extends JpaRepository<AccountSummary, Long> {
+
+    // Verrou de ligne: deux écritures concurrentes sur le même compte s'appliquent l'une après l'autre
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from AccountSummary s where s.accountId = :accountId")
+    Optional<AccountSummary> findForUpdate(@Param("accountId") long accountId);
+
+    @Modifying
+    @Query("delete from AccountSummary s where s.accountId >= :from and s.accountId < :to")
+    int deleteByAccountIdRange(@Param("from") long from, @Param("to") long to);
+}
@@ -0,0 +1,19 @@
+package net.youssfi.transactionservice.repository;
+
+import java.util.Date;
+
+/**
+ * Résumé d'un compte recalculé depuis la table Transaction (vérification et reconstruction des AccountSummary)
+ */
+public interface AccountSummaryRow {
+    long getAccountId();
+    long getPendingCount();
+    long getExecutedCount();
+    long getCanceledCount();
+    long getCreditCount();
+    long getDebitCount();
+    double getTotalCredits();
+    double getTotalDebits();
+    double getLargestDebit();
+    Date getLastActivity();
+}
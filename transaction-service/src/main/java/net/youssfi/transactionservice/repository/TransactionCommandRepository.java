@@ -0,0 +1,18 @@
+package net.youssfi.transactionservice.repository;
+
+import net.youssfi.transactionservice.entities.TransactionCommand;
+import net.youssfi.transactionservice.entities.TransactionCommandStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface TransactionCommandRepository extends JpaRepository<TransactionCommand, Long> {
+    Optional<TransactionCommand> findByIdempotencyKey(String idempotencyKey);
+
+    // Lot suivant du writer, dans l'ordre d'arrivée (index status, id)
+    List<TransactionCommand> findByStatusOrderByIdAsc(TransactionCommandStatus status, Limit limit);
+
+    long countByStatus(TransactionCommandStatus status);
+}
@@ -2,11 +2,122 @@ package net.youssfi.transactionservice.repository;
 
 import net.youssfi.transactionservice.entities.Transaction;
 import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+    // Cache de requêtes: ids du résultat mis en cache, entités lues dans le cache de second niveau
+    // Hibernate invalide ces résultats à toute écriture dans la table Transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Transaction> findByAccountId(long accountId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Transaction> findByStatus(TransactionStatus transactionStatus);
+
+    // Suppression en une requête (sans charger les entités), pour les comptes synthétiques [from, to)
+    @Modifying
+    @Query("delete from Transaction t where t.accountId >= :from and t.accountId < :to")
+    int deleteByAccountIdRange(@Param("from") long from, @Param("to") long to);
+
+    @Query("select count(t) from Transaction t where t.accountId >= :from and t.accountId < :to")
+    long countByAccountIdRange(@Param("from") long from, @Param("to") long to);
+
+    // Pagination par clé (id > dernier id vu): coût constant quelle que soit la page, contrairement à OFFSET
+
+    List<Transaction> findByIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
+    List<Transaction> findByAccountIdAndIdGreaterThanOrderByIdAsc(long accountId, long afterId, Limit limit);
+    List<Transaction> findByStatusAndIdGreaterThanOrderByIdAsc(TransactionStatus status, long afterId, Limit limit);
+
+    // Parcours complet en flux: le pilote JDBC lit les lignes par paquets de fetch size
+    // À consommer dans une transaction en lecture seule et à fermer (try-with-resources)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select t from Transaction t order by t.id")
+    Stream<Transaction> streamAllOrderById();
+
+    // Colonnes seules (projection), pour l'instantané analytique: lecture initiale puis incrémentale (id > dernier id vu)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select t.id as id, t.accountId as accountId, t.amount as amount, t.date as date, t.type as type,"
+            + " t.status as status from Transaction t where t.id > :afterId order by t.id")
+    Stream<TransactionRow> streamRowsAfter(@Param("afterId") long afterId);
+
+    // Agrégats calculés par la base: aucune entité chargée en mémoire
+
+    @Query("select coalesce(sum(t.amount), 0) from Transaction t where t.accountId = :accountId and t.type = :type")
+    double sumAmountByAccountIdAndType(@Param("accountId") long accountId, @Param("type") TransactionType type);
+
+    // Aucune ligne (donc null) pour un compte sans transaction
+    @Query("select t.accountId as accountId, count(t) as transactionCount,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.CREDIT then t.amount else 0 end), 0) as credits,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT then t.amount else 0 end), 0) as debits"
+            + " from Transaction t where t.accountId = :accountId group by t.accountId")
+    AccountBalance findBalanceByAccountId(@Param("accountId") long accountId);
+
+    @Query("select count(t) as transactionCount,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.CREDIT then t.amount else 0 end), 0) as credits,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT then t.amount else 0 end), 0) as debits"
+            + " from Transaction t")
+    TransactionTotals summarizeAll();
+
+    @Query("select count(t) as transactionCount,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.CREDIT then t.amount else 0 end), 0) as credits,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT then t.amount else 0 end), 0) as debits"
+            + " from Transaction t where t.status = :status")
+    TransactionTotals summarizeStatus(@Param("status") TransactionStatus status);
+
+    @Query("select count(t) as transactionCount,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.CREDIT then t.amount else 0 end), 0) as credits,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT then t.amount else 0 end), 0) as debits"
+            + " from Transaction t where t.accountId = :accountId")
+    TransactionTotals summarizeAccount(@Param("accountId") long accountId);
+
+    @Query("select t.accountId as accountId, t.status as status, count(t) as transactionCount,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.CREDIT then t.amount else 0 end), 0) as credits,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT then t.amount else 0 end), 0) as debits"
+            + " from Transaction t where t.accountId = :accountId group by t.accountId, t.status order by t.status")
+    List<AccountStatusTotals> summarizeByStatus(@Param("accountId") long accountId);
+
+    @Query("select t.accountId as accountId, t.status as status, count(t) as transactionCount,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.CREDIT then t.amount else 0 end), 0) as credits,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT then t.amount else 0 end), 0) as debits"
+            + " from Transaction t group by t.accountId, t.status order by t.accountId, t.status")
+    List<AccountStatusTotals> summarizeByAccountAndStatus();
+
+    // Résumés de compte (AccountSummaryService): recalcul après suppression et reconstruction complète
+
+    @Query("select max(t.amount) from Transaction t"
+            + " where t.accountId = :accountId and t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT")
+    Double findLargestDebit(@Param("accountId") long accountId);
+
+    @Query("select max(t.date) from Transaction t where t.accountId = :accountId")
+    Date findLastActivity(@Param("accountId") long accountId);
+
+    @Query("select t.accountId as accountId,"
+            + " sum(case when t.status = net.youssfi.transactionservice.entities.TransactionStatus.PENDING then 1 else 0 end) as pendingCount,"
+            + " sum(case when t.status = net.youssfi.transactionservice.entities.TransactionStatus.EXECUTED then 1 else 0 end) as executedCount,"
+            + " sum(case when t.status = net.youssfi.transactionservice.entities.TransactionStatus.CANCELED then 1 else 0 end) as canceledCount,"
+            + " sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.CREDIT then 1 else 0 end) as creditCount,"
+            + " sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT then 1 else 0 end) as debitCount,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.CREDIT then t.amount else 0 end), 0) as totalCredits,"
+            + " coalesce(sum(case when t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT then t.amount else 0 end), 0) as totalDebits,"
+            + " coalesce(max(case when t.type = net.youssfi.transactionservice.entities.TransactionType.DEBIT then t.amount else 0 end), 0) as largestDebit,"
+            + " max(t.date) as lastActivity"
+            + " from Transaction t group by t.accountId order by t.accountId")
+    Stream<AccountSummaryRow> streamAccountSummaries();
 }
@@ -0,0 +1,19 @@
+package net.youssfi.transactionservice.repository;
+
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+
+import java.util.Date;
+
+/**
+ * Colonnes d'une transaction lues sans entité (ni contexte de persistance ni cache de second niveau),
+ * pour l'instantané en colonnes de TransactionAnalyticsService
+ */
+public interface TransactionRow {
+    long getId();
+    long getAccountId();
+    double getAmount();
+    Date getDate();
+    TransactionType getType();
+    TransactionStatus getStatus();
+}
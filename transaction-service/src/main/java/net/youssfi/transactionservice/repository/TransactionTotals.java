@@ -0,0 +1,14 @@
+package net.youssfi.transactionservice.repository;
+
+/**
+ * Nombre de transactions, total des crédits et des débits d'un ensemble de transactions (agrégats calculés par la base)
+ */
+public interface TransactionTotals {
+    long getTransactionCount();
+    double getCredits();
+    double getDebits();
+
+    default double getBalance() {
+        return getCredits() - getDebits();
+    }
+}
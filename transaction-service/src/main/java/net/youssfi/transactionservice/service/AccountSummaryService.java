@@ -0,0 +1,253 @@
+package net.youssfi.transactionservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.entities.AccountSummary;
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+import net.youssfi.transactionservice.repository.AccountSummaryRepository;
+import net.youssfi.transactionservice.repository.AccountSummaryRow;
+import net.youssfi.transactionservice.repository.TransactionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Maintien incrémental des AccountSummary: chaque écriture de transaction applique son delta au résumé du compte
+ * dans la même transaction base de données (verrou de ligne sur le résumé), les lectures sont en O(1)
+ * Le plus gros débit et la dernière activité ne se décrémentent pas: ils sont recalculés par requête (index
+ * sur accountId) seulement quand la transaction supprimée était celle qui les fixait
+ * check() compare les résumés à un recalcul complet depuis la table Transaction et peut les corriger
+ */
+@Service
+@Slf4j
+public class AccountSummaryService {
+
+    private static final double TOLERANCE = 1e-6;
+    private static final int REPORTED_ACCOUNTS = 20;
+
+    private final AccountSummaryRepository accountSummaryRepository;
+    private final TransactionRepository transactionRepository;
+
+    public AccountSummaryService(AccountSummaryRepository accountSummaryRepository, TransactionRepository transactionRepository) {
+        this.accountSummaryRepository = accountSummaryRepository;
+        this.transactionRepository = transactionRepository;
+    }
+
+    /**
+     * @param mismatchedAccounts premiers comptes en écart (au plus 20)
+     */
+    public record ConsistencyReport(long accounts, long mismatched, long missing, long orphaned,
+                                    boolean repaired, List<Long> mismatchedAccounts) {
+        public boolean consistent() {
+            return mismatched == 0 && missing == 0 && orphaned == 0;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<AccountSummary> find(long accountId) {
+        return accountSummaryRepository.findById(accountId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(Transaction transaction) {
+        applyCreated(lockOrCreate(transaction.getAccountId()), transaction);
+    }
+
+    /**
+     * Chargement en masse: un verrou par compte et non par ligne, comptes pris dans l'ordre croissant
+     * (deux chargements concurrents verrouillent dans le même ordre, pas d'interblocage)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(Collection<Transaction> transactions) {
+        Map<Long, List<Transaction>> byAccount = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            byAccount.computeIfAbsent(transaction.getAccountId(), accountId -> new ArrayList<>()).add(transaction);
+        }
+        for (Map.Entry<Long, List<Transaction>> account : byAccount.entrySet()) {
+            AccountSummary summary = lockOrCreate(account.getKey());
+            for (Transaction transaction : account.getValue()) {
+                applyCreated(summary, transaction);
+            }
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordStatusChanged(Transaction transaction, TransactionStatus previousStatus) {
+        if (previousStatus == transaction.getStatus()) {
+            return;
+        }
+        AccountSummary summary = lockOrCreate(transaction.getAccountId());
+        if (previousStatus != null) {
+            summary.addToStatus(previousStatus, -1);
+        }
+        if (transaction.getStatus() != null) {
+            summary.addToStatus(transaction.getStatus(), 1);
+        }
+    }
+
+    /**
+     * À appeler après la suppression de la transaction (les recalculs ne doivent plus la voir)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeleted(Transaction transaction) {
+        AccountSummary summary = lockOrCreate(transaction.getAccountId());
+        apply(summary, transaction, -1);
+        if (summary.getTransactionCount() <= 0) {
+            accountSummaryRepository.delete(summary);
+            return;
+        }
+        if (transaction.getType() == TransactionType.DEBIT && transaction.getAmount() >= summary.getLargestDebit()) {
+            Double largestDebit = transactionRepository.findLargestDebit(transaction.getAccountId());
+            summary.setLargestDebit(largestDebit != null ? largestDebit : 0.0);
+        }
+        if (summary.getLastActivity() == null
+                || (transaction.getDate() != null && !transaction.getDate().before(summary.getLastActivity()))) {
+            summary.setLastActivity(transactionRepository.findLastActivity(transaction.getAccountId()));
+        }
+    }
+
+    /**
+     * Compare chaque résumé au recalcul depuis la table Transaction
+     * @param repair corrige les écarts, crée les résumés manquants et supprime ceux des comptes sans transaction
+     */
+    @Transactional
+    public ConsistencyReport check(boolean repair) {
+        Map<Long, AccountSummary> stored = new HashMap<>();
+        for (AccountSummary summary : accountSummaryRepository.findAll()) {
+            stored.put(summary.getAccountId(), summary);
+        }
+        long accounts = 0;
+        long mismatched = 0;
+        long missing = 0;
+        List<Long> mismatchedAccounts = new ArrayList<>();
+        try (Stream<AccountSummaryRow> rows = transactionRepository.streamAccountSummaries()) {
+            for (AccountSummaryRow row : (Iterable<AccountSummaryRow>) rows::iterator) {
+                accounts++;
+                AccountSummary summary = stored.remove(row.getAccountId());
+                if (summary == null) {
+                    missing++;
+                    if (repair) {
+                        AccountSummary rebuilt = new AccountSummary();
+                        copy(row, rebuilt);
+                        accountSummaryRepository.save(rebuilt);
+                    }
+                } else if (!matches(row, summary)) {
+                    mismatched++;
+                    if (mismatchedAccounts.size() < REPORTED_ACCOUNTS) {
+                        mismatchedAccounts.add(row.getAccountId());
+                    }
+                    if (repair) {
+                        copy(row, summary);
+                    }
+                }
+            }
+        }
+        long orphaned = stored.size();
+        if (repair && orphaned > 0) {
+            accountSummaryRepository.deleteAll(stored.values());
+        }
+        ConsistencyReport report = new ConsistencyReport(accounts, mismatched, missing, orphaned, repair, mismatchedAccounts);
+        if (report.consistent()) {
+            log.info("✅ Résumés de comptes cohérents ({} comptes)", accounts);
+        } else {
+            log.warn("⚠️ Résumés de comptes: {} en écart, {} manquants, {} orphelins{}", mismatched, missing, orphaned,
+                    repair ? " (corrigés)" : "");
+        }
+        return report;
+    }
+
+    /**
+     * Supprime tous les résumés et les recalcule depuis la table Transaction
+     */
+    @Transactional
+    public long rebuild() {
+        accountSummaryRepository.deleteAllInBatch();
+        long accounts = 0;
+        try (Stream<AccountSummaryRow> rows = transactionRepository.streamAccountSummaries()) {
+            for (AccountSummaryRow row : (Iterable<AccountSummaryRow>) rows::iterator) {
+                AccountSummary summary = new AccountSummary();
+                copy(row, summary);
+                accountSummaryRepository.save(summary);
+                accounts++;
+            }
+        }
+        log.info("🔁 {} résumés de comptes reconstruits", accounts);
+        return accounts;
+    }
+
+    private AccountSummary lockOrCreate(long accountId) {
+        // Premier mouvement du compte: deux créations concurrentes se heurtent à la clé primaire, l'une échoue
+        return accountSummaryRepository.findForUpdate(accountId)
+                .orElseGet(() -> accountSummaryRepository.save(AccountSummary.builder().accountId(accountId).build()));
+    }
+
+    private static void applyCreated(AccountSummary summary, Transaction transaction) {
+        apply(summary, transaction, 1);
+        if (transaction.getType() == TransactionType.DEBIT && transaction.getAmount() > summary.getLargestDebit()) {
+            summary.setLargestDebit(transaction.getAmount());
+        }
+        if (transaction.getDate() != null
+                && (summary.getLastActivity() == null || transaction.getDate().after(summary.getLastActivity()))) {
+            summary.setLastActivity(transaction.getDate());
+        }
+    }
+
+    private static void apply(AccountSummary summary, Transaction transaction, int sign) {
+        if (transaction.getStatus() != null) {
+            summary.addToStatus(transaction.getStatus(), sign);
+        }
+        if (transaction.getType() == TransactionType.CREDIT) {
+            summary.setCreditCount(summary.getCreditCount() + sign);
+            summary.setTotalCredits(summary.getTotalCredits() + sign * transaction.getAmount());
+        } else if (transaction.getType() == TransactionType.DEBIT) {
+            summary.setDebitCount(summary.getDebitCount() + sign);
+            summary.setTotalDebits(summary.getTotalDebits() + sign * transaction.getAmount());
+        }
+    }
+
+    private static boolean matches(AccountSummaryRow row, AccountSummary summary) {
+        return row.getPendingCount() == summary.getPendingCount()
+                && row.getExecutedCount() == summary.getExecutedCount()
+                && row.getCanceledCount() == summary.getCanceledCount()
+                && row.getCreditCount() == summary.getCreditCount()
+                && row.getDebitCount() == summary.getDebitCount()
+                && close(row.getTotalCredits(), summary.getTotalCredits())
+                && close(row.getTotalDebits(), summary.getTotalDebits())
+                && close(row.getLargestDebit(), summary.getLargestDebit())
+                && Objects.equals(time(row.getLastActivity()), time(summary.getLastActivity()));
+    }
+
+    private static void copy(AccountSummaryRow row, AccountSummary summary) {
+        summary.setAccountId(row.getAccountId());
+        summary.setPendingCount(row.getPendingCount());
+        summary.setExecutedCount(row.getExecutedCount());
+        summary.setCanceledCount(row.getCanceledCount());
+        summary.setCreditCount(row.getCreditCount());
+        summary.setDebitCount(row.getDebitCount());
+        summary.setTotalCredits(row.getTotalCredits());
+        summary.setTotalDebits(row.getTotalDebits());
+        summary.setLargestDebit(row.getLargestDebit());
+        summary.setLastActivity(row.getLastActivity());
+    }
+
+    // Sommes cumulées en double: écart relatif toléré
+    private static boolean close(double a, double b) {
+        return Math.abs(a - b) <= TOLERANCE * Math.max(1.0, Math.max(Math.abs(a), Math.abs(b)));
+    }
+
+    private static Long time(Date date) {
+        return date != null ? date.getTime() : null;
+    }
+}
@@ -0,0 +1,73 @@
+package net.youssfi.transactionservice.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Taux de succès par région: cache de second niveau et cache de requêtes Hibernate (hibernate.generate_statistics),
+ * caches Spring Caffeine (recordStats)
+ * Compteurs cumulés depuis le démarrage
+ */
+@Service
+public class CacheStatisticsService {
+
+    /**
+     * @param puts mises en cache (-1 pour les caches Spring: Caffeine ne les compte pas)
+     * @param size nombre d'entrées en mémoire, -1 si le fournisseur ne l'expose pas
+     */
+    public record RegionStatistics(String layer, String region, long hits, long misses, long puts, double hitRate, long size) {
+    }
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheManager cacheManager;
+
+    public CacheStatisticsService(EntityManagerFactory entityManagerFactory, CacheManager cacheManager) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.cacheManager = cacheManager;
+    }
+
+    public List<RegionStatistics> regions() {
+        List<RegionStatistics> regions = new ArrayList<>();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            if (RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME.equals(region)) {
+                continue;
+            }
+            try {
+                regions.add(hibernate("entités", region, statistics.getDomainDataRegionStatistics(region)));
+            } catch (IllegalArgumentException e) {
+                // région sans données d'entité (horodatages, résultats de requêtes)
+            }
+        }
+        CacheRegionStatistics queries = statistics.getQueryRegionStatistics(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+        if (queries != null) {
+            regions.add(hibernate("requêtes", queries.getRegionName(), queries));
+        }
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine) {
+                var stats = caffeine.stats();
+                regions.add(new RegionStatistics("spring", name, stats.hitCount(), stats.missCount(), -1,
+                        stats.hitRate(), caffeine.estimatedSize()));
+            }
+        }
+        return regions;
+    }
+
+    private static RegionStatistics hibernate(String layer, String region, CacheRegionStatistics statistics) {
+        long hits = statistics.getHitCount();
+        long misses = statistics.getMissCount();
+        long lookups = hits + misses;
+        return new RegionStatistics(layer, region, hits, misses, statistics.getPutCount(),
+                lookups > 0 ? (double) hits / lookups : 0.0, statistics.getElementCountInMemory());
+    }
+}
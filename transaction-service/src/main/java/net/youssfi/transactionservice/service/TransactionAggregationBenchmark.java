@@ -0,0 +1,156 @@
+package net.youssfi.transactionservice.service;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionType;
+import net.youssfi.transactionservice.repository.AccountBalance;
+import net.youssfi.transactionservice.repository.AccountStatusTotals;
+import net.youssfi.transactionservice.repository.TransactionRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Calcul du solde d'un compte: chargement des entités (findByAccountId) et somme en Java, contre agrégat
+ * calculé par la base (findBalanceByAccountId), sur un jeu de données synthétique (TransactionDatasetGenerator)
+ * Rapporte aussi le résumé groupé par compte et statut et le plan d'exécution de la requête de solde
+ * Les comptes du benchmark (à partir de ACCOUNT_BASE) sont distincts de ceux de /transactions/generate et du
+ * jeu de démarrage: le benchmark refuse de démarrer si sa plage contient déjà des lignes, et ne supprime
+ * que cette plage, donc uniquement des lignes qu'il a insérées
+ * 10 millions de lignes dans la base H2 en mémoire demandent plusieurs Go de tas (-Xmx6g)
+ */
+@Slf4j
+public class TransactionAggregationBenchmark {
+
+    static final long ACCOUNT_BASE = 9_000_000_000L;
+    // Deux runs simultanés partageraient la plage de comptes
+    private static final ReentrantLock RUNNING = new ReentrantLock();
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionBulkLoader bulkLoader;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    public TransactionAggregationBenchmark(TransactionRepository transactionRepository, TransactionBulkLoader bulkLoader,
+                                           JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.transactionRepository = transactionRepository;
+        this.bulkLoader = bulkLoader;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * @param keep conserver les lignes générées (sinon supprimées à la fin)
+     */
+    public String run(long rows, int accounts, int queries, boolean keep) {
+        if (!RUNNING.tryLock()) {
+            return "❌ Benchmark de solde déjà en cours\n";
+        }
+        try {
+            return runExclusive(rows, accounts, queries, keep);
+        } finally {
+            RUNNING.unlock();
+        }
+    }
+
+    private String runExclusive(long rows, int accounts, int queries, boolean keep) {
+        StringBuilder report = new StringBuilder(String.format("⏱️ Solde des comptes: %d transactions sur %d comptes, %d requêtes%n",
+                rows, accounts, queries));
+        long accountEnd = ACCOUNT_BASE + accounts;
+        long existing = transactionRepository.countByAccountIdRange(ACCOUNT_BASE, accountEnd);
+        if (existing > 0) {
+            return report.append(String.format("❌ %d transactions déjà présentes sur les comptes %d à %d (run précédent "
+                    + "avec keep=true?): supprimer via DELETE /transactions/generated%n", existing, ACCOUNT_BASE, accountEnd - 1))
+                    .toString();
+        }
+        TransactionDatasetGenerator.Settings defaults = TransactionDatasetGenerator.Settings.defaults(accounts, 42);
+        TransactionDatasetGenerator generator = new TransactionDatasetGenerator(new TransactionDatasetGenerator.Settings(
+                accounts, ACCOUNT_BASE, defaults.creditRatio(), defaults.pendingRatio(), defaults.canceledRatio(),
+                defaults.days(), defaults.maxAmount(), defaults.seed()));
+        try {
+            TransactionBulkLoader.LoadReport load = bulkLoader.load(generator.rows(rows));
+            report.append(String.format("génération: %d lignes en %.1f s (%.0f lignes/s)%n",
+                    load.inserted(), load.seconds(), load.rowsPerSecond()));
+
+            long start;
+            Random random = new Random(7);
+            long[] sampled = new long[queries];
+            for (int i = 0; i < queries; i++) {
+                sampled[i] = ACCOUNT_BASE + random.nextInt(Math.max(1, accounts));
+            }
+
+            // Chemin historique: toutes les entités du compte chargées puis additionnées en Java
+            double[] loadLatencies = new double[queries];
+            double[] loadBalances = new double[queries];
+            long loadedRows = 0;
+            for (int i = 0; i < queries; i++) {
+                start = System.nanoTime();
+                List<Transaction> transactions = transactionRepository.findByAccountId(sampled[i]);
+                double balance = 0.0;
+                for (Transaction t : transactions) {
+                    balance += t.getType() == TransactionType.CREDIT ? t.getAmount() : -t.getAmount();
+                }
+                loadLatencies[i] = (System.nanoTime() - start) / 1e6;
+                loadBalances[i] = balance;
+                loadedRows += transactions.size();
+                entityManager.clear(); // pas d'accumulation dans le contexte de persistance de la requête HTTP
+            }
+
+            // Agrégat: une ligne renvoyée par la base
+            double[] aggregateLatencies = new double[queries];
+            double maxDifference = 0;
+            for (int i = 0; i < queries; i++) {
+                start = System.nanoTime();
+                AccountBalance balance = transactionRepository.findBalanceByAccountId(sampled[i]);
+                aggregateLatencies[i] = (System.nanoTime() - start) / 1e6;
+                double value = balance != null ? balance.getBalance() : 0.0;
+                maxDifference = Math.max(maxDifference, Math.abs(value - loadBalances[i]));
+            }
+
+            report.append(String.format("findByAccountId + somme Java: moyenne %8.2f ms, p95 %8.2f ms (%d entités chargées en tout)%n",
+                    mean(loadLatencies), p95(loadLatencies), loadedRows));
+            report.append(String.format("findBalanceByAccountId:       moyenne %8.2f ms, p95 %8.2f ms (écart max %.6f)%n",
+                    mean(aggregateLatencies), p95(aggregateLatencies), maxDifference));
+
+            start = System.nanoTime();
+            List<AccountStatusTotals> totals = transactionRepository.summarizeByAccountAndStatus();
+            report.append(String.format("summarizeByAccountAndStatus:  %8.2f ms (%d groupes compte/statut)%n",
+                    (System.nanoTime() - start) / 1e6, totals.size()));
+
+            report.append("plan de la requête de solde:\n").append(explainBalance(sampled.length > 0 ? sampled[0] : 0));
+        } finally {
+            if (!keep) {
+                log.info("Suppression des transactions générées");
+                bulkLoader.deleteAccounts(ACCOUNT_BASE, accountEnd);
+            }
+        }
+        return report.toString();
+    }
+
+    private String explainBalance(long accountId) {
+        try {
+            return String.join("\n", jdbcTemplate.queryForList(
+                    "EXPLAIN SELECT SUM(CASE WHEN type = 'CREDIT' THEN amount ELSE -amount END) FROM transaction WHERE account_id = ?",
+                    String.class, accountId)) + "\n";
+        } catch (Exception e) {
+            return "   indisponible: " + e.getMessage() + "\n";
+        }
+    }
+
+    private static double mean(double[] values) {
+        return Arrays.stream(values).average().orElse(0);
+    }
+
+    private static double p95(double[] values) {
+        if (values.length == 0) {
+            return 0;
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(0.95 * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,328 @@
+package net.youssfi.transactionservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import net.youssfi.transactionservice.analytics.TransactionAnalyticsService;
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+import net.youssfi.transactionservice.repository.AccountSummaryRepository;
+import net.youssfi.transactionservice.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Chargement en masse des transactions (CSV, NDJSON ou générateur synthétique)
+ * - lignes lues au fil de l'eau: la mémoire ne dépend pas de la taille du fichier
+ * - une transaction base de données par bloc de transactions.bulk.commit-size lignes
+ * - INSERT regroupés par Hibernate (hibernate.jdbc.batch_size, ids de séquence pooled), contexte de
+ *   persistance vidé à chaque lot
+ * - résumés de comptes mis à jour dans la même transaction que chaque bloc (un verrou par compte)
+ * - lignes tenues hors du cache de second niveau, pages en cache des outils vidées à chaque bloc
+ * - lignes de chaque bloc ajoutées à l'instantané analytique au commit
+ * Les lignes invalides sont ignorées et comptées (les 20 premières erreurs sont rapportées)
+ */
+@Service
+@Slf4j
+public class TransactionBulkLoader {
+
+    private static final int REPORTED_ERRORS = 20;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountSummaryService accountSummaryService;
+    private final TransactionRepository transactionRepository;
+    private final AccountSummaryRepository accountSummaryRepository;
+    private final TransactionLookupService transactionLookupService;
+    private final TransactionAnalyticsService transactionAnalyticsService;
+    private final ObjectReader transactionReader;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int batchSize;
+
+    @Value("${transactions.bulk.commit-size:10000}")
+    private int commitSize;
+
+    public TransactionBulkLoader(EntityManager entityManager, PlatformTransactionManager transactionManager,
+                                 AccountSummaryService accountSummaryService, TransactionRepository transactionRepository,
+                                 AccountSummaryRepository accountSummaryRepository,
+                                 TransactionLookupService transactionLookupService,
+                                 TransactionAnalyticsService transactionAnalyticsService, ObjectMapper objectMapper) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.accountSummaryService = accountSummaryService;
+        this.transactionRepository = transactionRepository;
+        this.accountSummaryRepository = accountSummaryRepository;
+        this.transactionLookupService = transactionLookupService;
+        this.transactionAnalyticsService = transactionAnalyticsService;
+        this.transactionReader = objectMapper.readerFor(Transaction.class);
+    }
+
+    public record LoadReport(long inserted, long rejected, double seconds, double rowsPerSecond, List<String> errors) {
+    }
+
+    /**
+     * CSV avec en-tête: accountId, amount, type obligatoires; status (PENDING par défaut) et date
+     * (ISO-8601, maintenant par défaut) facultatifs; colonnes dans n'importe quel ordre
+     */
+    public LoadReport loadCsv(InputStream content) throws IOException {
+        try (BufferedReader reader = reader(content)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return load(List.<Transaction>of().iterator(), new Rejections());
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            String[] names = header.replace("\uFEFF", "").split(",");
+            for (int i = 0; i < names.length; i++) {
+                columns.put(names[i].trim().toLowerCase(Locale.ROOT), i);
+            }
+            for (String required : List.of("accountid", "amount", "type")) {
+                if (!columns.containsKey(required)) {
+                    throw new IllegalArgumentException("Colonne obligatoire absente de l'en-tête CSV: " + required);
+                }
+            }
+            Rejections rejections = new Rejections();
+            return load(new LineIterator(reader, line -> parseCsv(line, columns), rejections, 1), rejections);
+        }
+    }
+
+    /**
+     * Un objet JSON Transaction par ligne (même format que /transactions/stream, l'id est ignoré)
+     */
+    public LoadReport loadNdjson(InputStream content) throws IOException {
+        try (BufferedReader reader = reader(content)) {
+            Rejections rejections = new Rejections();
+            return load(new LineIterator(reader, this::parseJson, rejections, 0), rejections);
+        }
+    }
+
+    public LoadReport load(Iterator<Transaction> rows) {
+        return load(rows, new Rejections());
+    }
+
+    /**
+     * Supprime les transactions et les résumés des comptes à partir de accountId (comptes synthétiques)
+     */
+    public int deleteAccountsFrom(long accountId) {
+        return deleteAccounts(accountId, Long.MAX_VALUE);
+    }
+
+    /**
+     * Supprime les transactions et les résumés des comptes de from (inclus) à to (exclu)
+     */
+    public int deleteAccounts(long from, long to) {
+        Integer deleted = transactionTemplate.execute(status -> {
+            accountSummaryRepository.deleteByAccountIdRange(from, to);
+            transactionLookupService.evictAll();
+            transactionAnalyticsService.recordAccountsDeleted(from, to);
+            return transactionRepository.deleteByAccountIdRange(from, to);
+        });
+        return deleted != null ? deleted : 0;
+    }
+
+    private LoadReport load(Iterator<Transaction> rows, Rejections rejections) {
+        long start = System.nanoTime();
+        long inserted = 0;
+        int flushEvery = Math.max(1, batchSize);
+        List<Transaction> chunk = new ArrayList<>(Math.max(1, commitSize));
+        while (rows.hasNext()) {
+            chunk.clear();
+            while (rows.hasNext() && chunk.size() < Math.max(1, commitSize)) {
+                Transaction transaction = rows.next();
+                String problem = validate(transaction);
+                if (problem != null) {
+                    rejections.add(problem);
+                } else {
+                    chunk.add(transaction);
+                }
+            }
+            if (chunk.isEmpty()) {
+                continue;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                // Les lignes chargées en masse ne passent pas par le cache de second niveau
+                entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+                for (int i = 0; i < chunk.size(); i++) {
+                    entityManager.persist(chunk.get(i));
+                    if ((i + 1) % flushEvery == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                }
+                entityManager.flush();
+                entityManager.clear();
+                accountSummaryService.recordCreated(chunk);
+                transactionLookupService.evictAll();
+                transactionAnalyticsService.recordSaved(chunk);
+            });
+            inserted += chunk.size();
+            if (inserted % 1_000_000 < chunk.size()) {
+                log.info("   {} transactions chargées", inserted);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double rowsPerSecond = seconds > 0 ? inserted / seconds : 0;
+        log.info("📥 Chargement en masse: {} transactions en {} s ({} lignes/s), {} rejetées", inserted,
+                String.format("%.1f", seconds), String.format("%.0f", rowsPerSecond), rejections.count);
+        return new LoadReport(inserted, rejections.count, seconds, rowsPerSecond, rejections.messages);
+    }
+
+    private static String validate(Transaction transaction) {
+        if (transaction.getType() == null) {
+            return "type absent (DEBIT ou CREDIT)";
+        }
+        if (!Double.isFinite(transaction.getAmount()) || transaction.getAmount() < 0) {
+            return "montant invalide: " + transaction.getAmount();
+        }
+        transaction.setId(null);
+        if (transaction.getStatus() == null) {
+            transaction.setStatus(TransactionStatus.PENDING);
+        }
+        if (transaction.getDate() == null) {
+            transaction.setDate(new Date());
+        }
+        return null;
+    }
+
+    private Transaction parseJson(String line) {
+        try {
+            return transactionReader.readValue(line);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getOriginalMessage() != null ? e.getOriginalMessage() : e.getMessage());
+        }
+    }
+
+    private static Transaction parseCsv(String line, Map<String, Integer> columns) {
+        String[] values = line.split(",", -1);
+        String status = column(values, columns, "status");
+        String date = column(values, columns, "date");
+        return Transaction.builder()
+                .accountId(Long.parseLong(column(values, columns, "accountid")))
+                .amount(Double.parseDouble(column(values, columns, "amount")))
+                .type(TransactionType.valueOf(column(values, columns, "type").toUpperCase(Locale.ROOT)))
+                .status(status == null || status.isEmpty() ? null : TransactionStatus.valueOf(status.toUpperCase(Locale.ROOT)))
+                .date(date == null || date.isEmpty() ? null : parseDate(date))
+                .build();
+    }
+
+    private static String column(String[] values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null) {
+            return null;
+        }
+        if (index >= values.length) {
+            throw new IllegalArgumentException("colonne " + name + " absente");
+        }
+        return values[index].trim();
+    }
+
+    // Dates sans fuseau interprétées en UTC, comme le format JSON des transactions
+    private static Date parseDate(String value) {
+        if (value.length() == 10) {
+            return Date.from(LocalDate.parse(value).atStartOfDay().toInstant(ZoneOffset.UTC));
+        }
+        if (value.endsWith("Z")) {
+            return Date.from(Instant.parse(value));
+        }
+        if (value.matches(".*[+-]\\d{2}:\\d{2}$")) {
+            return Date.from(OffsetDateTime.parse(value).toInstant());
+        }
+        return Date.from(LocalDateTime.parse(value).toInstant(ZoneOffset.UTC));
+    }
+
+    private static BufferedReader reader(InputStream content) {
+        return new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+    }
+
+    private static final class Rejections {
+        private long count;
+        private final List<String> messages = new ArrayList<>();
+
+        void add(String message) {
+            count++;
+            if (messages.size() < REPORTED_ERRORS) {
+                messages.add(message);
+            }
+        }
+    }
+
+    /**
+     * Lignes du fichier converties à la demande; lignes vides ignorées, lignes illisibles comptées comme rejetées
+     */
+    private static final class LineIterator implements Iterator<Transaction> {
+        private final BufferedReader reader;
+        private final Function<String, Transaction> parser;
+        private final Rejections rejections;
+        private long lineNumber;
+        private Transaction next;
+
+        LineIterator(BufferedReader reader, Function<String, Transaction> parser, Rejections rejections, long linesRead) {
+            this.reader = reader;
+            this.parser = parser;
+            this.rejections = rejections;
+            this.lineNumber = linesRead;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (line == null) {
+                    return false;
+                }
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    next = parser.apply(line);
+                } catch (RuntimeException e) {
+                    rejections.add("ligne " + lineNumber + ": " + e.getMessage());
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Transaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Transaction transaction = next;
+            next = null;
+            return transaction;
+        }
+    }
+}
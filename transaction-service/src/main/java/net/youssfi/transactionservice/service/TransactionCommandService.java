@@ -0,0 +1,405 @@
+package net.youssfi.transactionservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionCommand;
+import net.youssfi.transactionservice.entities.TransactionCommandStatus;
+import net.youssfi.transactionservice.entities.TransactionCommandType;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+import net.youssfi.transactionservice.repository.TransactionCommandRepository;
+import net.youssfi.transactionservice.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Écritures demandées par les outils du chat (création, changement de statut, suppression), appliquées en
+ * arrière-plan: la réponse du chat n'attend plus l'écriture en base
+ * - submit*: la commande est enregistrée dans la table outbox (TransactionCommand) avec une clé d'idempotence
+ *   dérivée de la conversation, du jeton de la requête (requestId) et de l'intention; la même écriture soumise
+ *   à nouveau avec le même jeton (nouvel essai du LLM, message renvoyé par le client) retrouve la commande
+ *   existante, elle n'est jamais appliquée deux fois (contrainte unique sur la clé)
+ * - sans jeton (outils appelés par le LLM), la déduplication ne vaut que pendant dedup-window-seconds: passé ce
+ *   délai, la clé est libérée et la même écriture redemandée est une nouvelle commande
+ * - un writer unique lit les commandes en attente par lots de batch-size et les applique via
+ *   TransactionWriteService dans une seule transaction base de données par lot; le statut de chaque commande
+ *   est écrit dans la même transaction que l'écriture qu'elle décrit
+ * - confirmation(): futur complété au commit du lot, que le contrôleur ajoute au flux de la réponse
+ * Une commande en échec peut être soumise à nouveau (rien n'a été écrit); les commandes en attente au
+ * redémarrage sont reprises par la première lecture du writer
+ */
+@Service
+@Slf4j
+public class TransactionCommandService implements AutoCloseable {
+
+    private final TransactionCommandRepository commandRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionWriteService transactionWriteService;
+    private final TransactionTemplate submitTransaction;
+    private final TransactionTemplate batchTransaction;
+    private final int batchSize;
+    private final long dedupWindowMillis;
+    private final ScheduledExecutorService writer;
+
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private final Map<Long, CompletableFuture<TransactionCommand>> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * @param duplicate true si la même demande avait déjà été reçue (même jeton, ou dans la fenêtre de déduplication)
+     */
+    public record CommandReceipt(TransactionCommand command, boolean duplicate) {
+
+        public String message() {
+            if (!duplicate) {
+                return String.format("Commande n° %d enregistrée: %s. Elle est appliquée en arrière-plan, "
+                        + "la confirmation suivra dans la conversation.", command.getId(), describe(command));
+            }
+            if (command.getStatus() == TransactionCommandStatus.PENDING) {
+                return String.format("Demande déjà reçue (commande n° %d: %s), toujours en attente d'application.",
+                        command.getId(), describe(command));
+            }
+            return String.format("Demande déjà reçue (commande n° %d), elle n'est pas appliquée une seconde fois. "
+                    + "Résultat: %s", command.getId(), command.getOutcome());
+        }
+    }
+
+    public record CommandStatistics(long pending, long done, long failed) {
+    }
+
+    public TransactionCommandService(TransactionCommandRepository commandRepository, TransactionRepository transactionRepository,
+                                     TransactionWriteService transactionWriteService,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${transactions.commands.batch-size:100}") int batchSize,
+                                     @Value("${transactions.commands.poll-interval-ms:1000}") long pollIntervalMillis,
+                                     @Value("${transactions.commands.dedup-window-seconds:30}") long dedupWindowSeconds) {
+        this.commandRepository = commandRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionWriteService = transactionWriteService;
+        // Enregistrement validé immédiatement, même appelé depuis une transaction englobante
+        this.submitTransaction = new TransactionTemplate(transactionManager);
+        this.submitTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.dedupWindowMillis = TimeUnit.SECONDS.toMillis(Math.max(0, dedupWindowSeconds));
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "transaction-command-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, pollIntervalMillis);
+        writer.scheduleWithFixedDelay(this::drainQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param requestId jeton de nouvel essai (identifiant du message client ou de la requête HTTP), null pour une
+     *                  déduplication limitée à la fenêtre dedup-window-seconds
+     */
+    public CommandReceipt submitCreate(String chatId, String requestId, long accountId, double amount, TransactionType type,
+                                       TransactionStatus status) {
+        return submit(chatId, requestId, TransactionCommand.builder()
+                .type(TransactionCommandType.CREATE)
+                .accountId(accountId)
+                .amount(amount)
+                .transactionType(type)
+                .transactionStatus(status != null ? status : TransactionStatus.PENDING));
+    }
+
+    public CommandReceipt submitStatusUpdate(String chatId, String requestId, long transactionId, TransactionStatus status) {
+        return submit(chatId, requestId, TransactionCommand.builder()
+                .type(TransactionCommandType.UPDATE_STATUS)
+                .transactionId(transactionId)
+                .transactionStatus(status));
+    }
+
+    public CommandReceipt submitDelete(String chatId, String requestId, long transactionId) {
+        return submit(chatId, requestId, TransactionCommand.builder()
+                .type(TransactionCommandType.DELETE)
+                .transactionId(transactionId));
+    }
+
+    public Optional<TransactionCommand> find(long commandId) {
+        return commandRepository.findById(commandId);
+    }
+
+    public CommandStatistics statistics() {
+        return new CommandStatistics(commandRepository.countByStatus(TransactionCommandStatus.PENDING),
+                commandRepository.countByStatus(TransactionCommandStatus.DONE),
+                commandRepository.countByStatus(TransactionCommandStatus.FAILED));
+    }
+
+    /**
+     * Futur complété par la commande une fois appliquée (DONE) ou rejetée (FAILED)
+     */
+    public CompletableFuture<TransactionCommand> confirmation(long commandId) {
+        CompletableFuture<TransactionCommand> future = waiting.computeIfAbsent(commandId, id -> new CompletableFuture<>());
+        // Lot validé avant l'inscription du futur: le writer ne le complétera plus
+        commandRepository.findById(commandId)
+                .filter(command -> command.getStatus() != TransactionCommandStatus.PENDING)
+                .ifPresent(this::complete);
+        return future;
+    }
+
+    public static String confirmationMessage(TransactionCommand command) {
+        return command.getStatus() == TransactionCommandStatus.DONE
+                ? String.format("✅ Commande n° %d appliquée: %s", command.getId(), command.getOutcome())
+                : String.format("❌ Commande n° %d non appliquée: %s", command.getId(), command.getOutcome());
+    }
+
+    /**
+     * "création d'une transaction de 150.50 (DEBIT, PENDING) sur le compte 3", "passage de la transaction 5 au
+     * statut EXECUTED", "suppression de la transaction 5"
+     */
+    public static String describe(TransactionCommand command) {
+        return switch (command.getType()) {
+            case CREATE -> String.format("création d'une transaction de %.2f (%s, %s) sur le compte %d", command.getAmount(),
+                    command.getTransactionType(), command.getTransactionStatus(), command.getAccountId());
+            case UPDATE_STATUS -> String.format("passage de la transaction %d au statut %s", command.getTransactionId(),
+                    command.getTransactionStatus());
+            case DELETE -> "suppression de la transaction " + command.getTransactionId();
+        };
+    }
+
+    /**
+     * Applique toutes les commandes en attente, par lots (appelé par le writer)
+     * @return nombre de commandes traitées
+     */
+    public int drain() {
+        int processed = 0;
+        int batch;
+        do {
+            batch = drainBatch();
+            processed += batch;
+        } while (batch == batchSize);
+        return processed;
+    }
+
+    @Override
+    public void close() {
+        // Lot interrompu: sa transaction est annulée, les commandes restent en attente
+        writer.shutdownNow();
+    }
+
+    private CommandReceipt submit(String chatId, String requestId, TransactionCommand.TransactionCommandBuilder builder) {
+        TransactionCommand command = builder
+                .chatId(chatId)
+                .requestId(requestId != null && !requestId.isBlank() ? requestId : null)
+                .status(TransactionCommandStatus.PENDING)
+                .createdAt(new Date())
+                .build();
+        String key = idempotencyKey(command);
+        command.setIdempotencyKey(key);
+        CommandReceipt receipt;
+        try {
+            receipt = submitTransaction.execute(status -> insertOrFind(command));
+        } catch (DataIntegrityViolationException e) {
+            // Même demande enregistrée au même instant par une autre requête
+            receipt = new CommandReceipt(commandRepository.findByIdempotencyKey(key).orElseThrow(() -> e), true);
+        }
+        TransactionCommand saved = receipt.command();
+        if (receipt.duplicate()) {
+            log.info("🔁 Commande {} déjà reçue (conversation {}): {}", saved.getId(), chatId, describe(saved));
+        } else {
+            log.info("📨 Commande {} enregistrée (conversation {}): {}", saved.getId(), chatId, describe(saved));
+        }
+        if (saved.getStatus() == TransactionCommandStatus.PENDING) {
+            wakeWriter();
+        }
+        return receipt;
+    }
+
+    private CommandReceipt insertOrFind(TransactionCommand command) {
+        Optional<TransactionCommand> existing = commandRepository.findByIdempotencyKey(command.getIdempotencyKey());
+        if (existing.isEmpty()) {
+            return new CommandReceipt(commandRepository.saveAndFlush(command), false);
+        }
+        TransactionCommand previous = existing.get();
+        if (previous.getStatus() == TransactionCommandStatus.DONE && expired(command, previous)) {
+            // Fenêtre passée: la clé est libérée (l'ancienne commande reste dans l'historique)
+            previous.setIdempotencyKey("expired:" + previous.getId());
+            commandRepository.saveAndFlush(previous);
+            return new CommandReceipt(commandRepository.saveAndFlush(command), false);
+        }
+        if (previous.getStatus() != TransactionCommandStatus.FAILED) {
+            return new CommandReceipt(previous, true);
+        }
+        // Échec précédent: rien n'a été écrit, la demande est remise en attente
+        previous.setStatus(TransactionCommandStatus.PENDING);
+        previous.setOutcome(null);
+        previous.setProcessedAt(null);
+        return new CommandReceipt(previous, false);
+    }
+
+    /**
+     * Un jeton de requête déduplique tant qu'il est réutilisé; sans jeton, seulement pendant la fenêtre
+     */
+    private boolean expired(TransactionCommand command, TransactionCommand previous) {
+        return command.getRequestId() == null
+                && previous.getCreatedAt().getTime() + dedupWindowMillis < command.getCreatedAt().getTime();
+    }
+
+    /**
+     * Planifie un passage du writer; les soumissions arrivées pendant un lot sont regroupées dans le suivant
+     */
+    private void wakeWriter() {
+        if (drainRequested.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                drainRequested.set(false);
+                drainQuietly();
+            });
+        }
+    }
+
+    private void drainQuietly() {
+        try {
+            int processed = drain();
+            if (processed > 0) {
+                log.debug("✍️ {} commandes appliquées", processed);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Application des commandes en attente impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Un lot dans une transaction; si elle échoue, chaque commande du lot est rejouée seule pour isoler la fautive
+     * @return taille du lot, 0 après un repli (le prochain passage reprend les commandes restantes)
+     */
+    private int drainBatch() {
+        List<Long> ids = new ArrayList<>();
+        List<TransactionCommand> processed;
+        try {
+            processed = batchTransaction.execute(status -> {
+                List<TransactionCommand> batch = commandRepository.findByStatusOrderByIdAsc(TransactionCommandStatus.PENDING,
+                        Limit.of(batchSize));
+                for (TransactionCommand command : batch) {
+                    ids.add(command.getId());
+                    apply(command);
+                }
+                return batch;
+            });
+        } catch (RuntimeException e) {
+            if (ids.isEmpty()) {
+                throw e;
+            }
+            log.warn("⚠️ Lot de {} commandes annulé ({}), commandes rejouées une par une", ids.size(), e.getMessage());
+            ids.forEach(this::processAlone);
+            return 0;
+        }
+        processed.forEach(this::complete);
+        return processed.size();
+    }
+
+    private void processAlone(long commandId) {
+        TransactionCommand command;
+        try {
+            command = batchTransaction.execute(status -> pending(commandId).map(pending -> {
+                apply(pending);
+                return pending;
+            }).orElse(null));
+        } catch (RuntimeException e) {
+            log.warn("❌ Commande {} rejetée: {}", commandId, e.getMessage());
+            command = batchTransaction.execute(status -> pending(commandId).map(pending -> {
+                pending.setAttempts(pending.getAttempts() + 1);
+                finish(pending, TransactionCommandStatus.FAILED, "Erreur: " + e.getMessage());
+                return pending;
+            }).orElse(null));
+        }
+        if (command != null) {
+            complete(command);
+        }
+    }
+
+    private Optional<TransactionCommand> pending(long commandId) {
+        return commandRepository.findById(commandId).filter(command -> command.getStatus() == TransactionCommandStatus.PENDING);
+    }
+
+    /**
+     * Écriture décrite par la commande, dans la transaction du lot; les cas métier (transaction absente) sont
+     * vérifiés avant l'appel pour ne pas marquer tout le lot en rollback
+     */
+    private void apply(TransactionCommand command) {
+        command.setAttempts(command.getAttempts() + 1);
+        switch (command.getType()) {
+            case CREATE -> {
+                Transaction transaction = transactionWriteService.create(command.getAccountId(), command.getAmount(),
+                        command.getTransactionType(), command.getTransactionStatus(), command.getCreatedAt());
+                command.setTransactionId(transaction.getId());
+                finish(command, TransactionCommandStatus.DONE, String.format(
+                        "Transaction %d créée (compte %d, montant %.2f, type %s, statut %s)", transaction.getId(),
+                        transaction.getAccountId(), transaction.getAmount(), transaction.getType(), transaction.getStatus()));
+            }
+            case UPDATE_STATUS -> {
+                if (!transactionRepository.existsById(command.getTransactionId())) {
+                    finish(command, TransactionCommandStatus.FAILED, "Transaction non trouvée avec l'ID: " + command.getTransactionId());
+                } else {
+                    transactionWriteService.updateStatus(command.getTransactionId(), command.getTransactionStatus());
+                    finish(command, TransactionCommandStatus.DONE, "Transaction " + command.getTransactionId()
+                            + " mise à jour avec succès. Nouveau statut: " + command.getTransactionStatus());
+                }
+            }
+            case DELETE -> {
+                if (transactionWriteService.delete(command.getTransactionId())) {
+                    finish(command, TransactionCommandStatus.DONE, "Transaction " + command.getTransactionId() + " supprimée avec succès");
+                } else {
+                    finish(command, TransactionCommandStatus.FAILED, "Transaction non trouvée avec l'ID: " + command.getTransactionId());
+                }
+            }
+        }
+    }
+
+    private static void finish(TransactionCommand command, TransactionCommandStatus status, String outcome) {
+        command.setStatus(status);
+        command.setOutcome(outcome.length() > 1000 ? outcome.substring(0, 1000) : outcome);
+        command.setProcessedAt(new Date());
+    }
+
+    private void complete(TransactionCommand command) {
+        CompletableFuture<TransactionCommand> future = waiting.remove(command.getId());
+        if (future != null) {
+            future.complete(command);
+        }
+    }
+
+    /**
+     * SHA-256 de la conversation, du jeton de requête (vide sans jeton) et de l'intention normalisée (montant sans
+     * zéros superflus)
+     */
+    static String idempotencyKey(TransactionCommand command) {
+        String intent = switch (command.getType()) {
+            case CREATE -> "CREATE|" + command.getAccountId() + "|"
+                    + BigDecimal.valueOf(command.getAmount()).stripTrailingZeros().toPlainString() + "|"
+                    + command.getTransactionType() + "|" + command.getTransactionStatus();
+            case UPDATE_STATUS -> "UPDATE_STATUS|" + command.getTransactionId() + "|" + command.getTransactionStatus();
+            case DELETE -> "DELETE|" + command.getTransactionId();
+        };
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String scope = command.getChatId() + "\n" + (command.getRequestId() != null ? command.getRequestId() : "");
+            return HexFormat.of().formatHex(digest.digest((scope + "\n" + intent).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package net.youssfi.transactionservice.service;
+
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Transactions synthétiques produites à la demande (aucune liste en mémoire), à charger par TransactionBulkLoader
+ * Les comptes générés sont numérotés à partir de accountBase (ACCOUNT_BASE par défaut) pour ne jamais se mélanger
+ * aux comptes réels et pouvoir être supprimés d'une seule requête (TransactionBulkLoader.deleteAccountsFrom)
+ * Même graine, mêmes lignes
+ */
+public class TransactionDatasetGenerator {
+
+    public static final long ACCOUNT_BASE = 1_000_000_000L;
+    private static final long DAY_MILLIS = 24L * 3600 * 1000;
+
+    /**
+     * @param creditRatio   part des crédits (le reste en débits)
+     * @param pendingRatio  part des PENDING; canceledRatio part des CANCELED; le reste en EXECUTED
+     * @param days          les dates sont tirées sur les derniers jours
+     */
+    public record Settings(int accounts, long accountBase, double creditRatio, double pendingRatio,
+                           double canceledRatio, int days, double maxAmount, long seed) {
+
+        public static Settings defaults(int accounts, long seed) {
+            return new Settings(accounts, ACCOUNT_BASE, 0.5, 0.3, 0.1, 730, 5000, seed);
+        }
+    }
+
+    private final Settings settings;
+
+    public TransactionDatasetGenerator(Settings settings) {
+        this.settings = settings;
+    }
+
+    public Iterator<Transaction> rows(long count) {
+        Random random = new Random(settings.seed());
+        long now = System.currentTimeMillis();
+        int accounts = Math.max(1, settings.accounts());
+        return new Iterator<>() {
+            private long produced;
+
+            @Override
+            public boolean hasNext() {
+                return produced < count;
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                produced++;
+                double statusDraw = random.nextDouble();
+                TransactionStatus status = statusDraw < settings.pendingRatio() ? TransactionStatus.PENDING
+                        : statusDraw < settings.pendingRatio() + settings.canceledRatio() ? TransactionStatus.CANCELED
+                        : TransactionStatus.EXECUTED;
+                return Transaction.builder()
+                        .accountId(settings.accountBase() + random.nextInt(accounts))
+                        .amount(Math.round((10 + random.nextDouble() * settings.maxAmount()) * 100) / 100.0)
+                        .type(random.nextDouble() < settings.creditRatio() ? TransactionType.CREDIT : TransactionType.DEBIT)
+                        .status(status)
+                        .date(new Date(now - (long) (random.nextDouble() * settings.days() * DAY_MILLIS)))
+                        .build();
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package net.youssfi.transactionservice.service;
+
+import net.youssfi.transactionservice.analytics.AnalyticsQuery;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+
+/**
+ * Intention reconnue dans une question par TransactionIntentRouter, avec ses paramètres typés
+ */
+public sealed interface TransactionIntent {
+
+    record UpdateStatus(long transactionId, TransactionStatus status) implements TransactionIntent {
+    }
+
+    record Create(long accountId, double amount, TransactionType type) implements TransactionIntent {
+    }
+
+    record Delete(long transactionId) implements TransactionIntent {
+    }
+
+    record Balance(long accountId) implements TransactionIntent {
+    }
+
+    record Analytics(AnalyticsQuery query) implements TransactionIntent {
+    }
+
+    record ByStatus(TransactionStatus status) implements TransactionIntent {
+    }
+
+    record ByAccount(long accountId) implements TransactionIntent {
+    }
+
+    record Show(long transactionId) implements TransactionIntent {
+    }
+
+    record ListAll() implements TransactionIntent {
+    }
+}
@@ -0,0 +1,231 @@
+package net.youssfi.transactionservice.service;
+
+import net.youssfi.transactionservice.analytics.AnalyticsQuery;
+import net.youssfi.transactionservice.analytics.Period;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reconnaît l'intention d'une commande sur les transactions (français / anglais)
+ * Les expressions sont compilées une seule fois et essayées par priorité: les écritures (mise à jour,
+ * création, suppression) passent avant les lectures, si bien que "supprimer la transaction 5"
+ * n'est jamais lu comme une consultation. La question est normalisée une fois (minuscules, sans accents)
+ * Une écriture n'est reconnue que si ses arguments sont nommés: "transaction 5" pour la cible d'une mise à jour
+ * ou d'une suppression, "compte 3" pour le compte d'une création (le montant est alors le seul autre nombre),
+ * dans n'importe quel ordre; sinon la question n'est pas routée (null), jamais lue au hasard des nombres
+ * Une question analytique (total, moyenne, nombre, maximum...) est décomposée en AnalyticsQuery: agrégat,
+ * type, statut, compte, période (relative à la date du jour en UTC) et regroupement
+ */
+public final class TransactionIntentRouter {
+
+    private static final String STATUS = "(pending|executed|executee?s?|canceled|cancelled|annulee?s?|en attente)";
+    private static final String NUMBER_PREFIX = "(?:numero|number|id|n°|no|#)?\\s*(?:de|of)?\\s*";
+
+    private static final Pattern AVERAGE = Pattern.compile("\\b(?:moyenne|moyen|average|avg|mean)\\b");
+    private static final Pattern MAXIMUM = Pattern.compile(
+            "\\b(?:maximum|max|plus gros|plus grosse|plus grand|plus grande|plus eleve|plus elevee|largest|biggest|highest)\\b");
+    private static final Pattern MINIMUM = Pattern.compile(
+            "\\b(?:minimum|min|plus petit|plus petite|plus faible|smallest|lowest)\\b");
+    private static final Pattern COUNT = Pattern.compile(
+            "\\b(?:nombre|count|how many|combien de transactions?|combien d'operations?)\\b");
+    private static final Pattern DEBITS = Pattern.compile("\\b(?:debits?|depenses?|retraits?|withdrawals?|spending|spent)\\b");
+    private static final Pattern CREDITS = Pattern.compile("\\b(?:credits?|depots?|deposits?|revenus?|income)\\b");
+    private static final Pattern ANY_STATUS = Pattern.compile("\\b" + STATUS + "\\b");
+    private static final Pattern ACCOUNT = Pattern.compile("\\b(?:compte|account)\\s*" + NUMBER_PREFIX + "(\\d+)");
+    private static final Pattern TRANSACTION_ID = Pattern.compile("\\btransaction\\s*(?:n°|numero|number|id|#)?\\s*(\\d+)\\b");
+    private static final Pattern AMOUNT = Pattern.compile("(?<![\\d.,])\\d+(?:[.,]\\d+)?(?![\\d.,]*\\d)");
+    private static final Pattern WRITE_TYPE = Pattern.compile("\\b(debit|credit)\\b");
+    // Forme historique sans le mot compte: "ajouter une transaction 4 200 DEBIT" (compte puis montant, adjacents)
+    private static final Pattern CREATE_POSITIONAL = Pattern.compile(
+            "\\btransaction\\s+(\\d+)\\s+(?:montant\\s+|amount\\s+)?(\\d+(?:[.,]\\d+)?)\\s+(?:type\\s+)?(debit|credit)\\b");
+    private static final Pattern BY_ACCOUNT = Pattern.compile("\\b(?:par|per|by|pour chaque|for each)\\s+(?:compte|account)s?\\b");
+    private static final Pattern BY_MONTH = Pattern.compile("\\b(?:par mois|per month|by month|monthly|mensuel(?:le)?s?)\\b");
+    private static final Pattern BY_DAY = Pattern.compile("\\b(?:par jour|per day|by day|daily|quotidien(?:ne)?s?)\\b");
+    private static final Pattern BY_STATUS = Pattern.compile("\\b(?:par|per|by)\\s+(?:statut|status)\\b");
+    private static final Pattern BY_TYPE = Pattern.compile("\\b(?:par|per|by)\\s+type\\b");
+    private static final List<String> MONTHS = List.of(
+            "janvier", "fevrier", "mars", "avril", "mai", "juin", "juillet", "aout", "septembre", "octobre", "novembre", "decembre",
+            "january", "february", "march", "april", "may", "june", "july", "august", "september", "october", "november", "december");
+    private static final Pattern MONTH_OF_YEAR = Pattern.compile("\\b(" + String.join("|", MONTHS) + ")\\s+((?:19|20)\\d{2})\\b");
+    private static final Pattern YEAR = Pattern.compile("\\b(?:en|in|annee|year|durant|during|pour|for)\\s+((?:19|20)\\d{2})\\b");
+    private static final List<Map.Entry<Pattern, String>> RELATIVE_PERIODS = List.of(
+            Map.entry(Pattern.compile("\\b(?:aujourd'hui|today)\\b"), "TODAY"),
+            Map.entry(Pattern.compile("\\b(?:hier|yesterday)\\b"), "YESTERDAY"),
+            Map.entry(Pattern.compile("\\b(?:cette semaine|this week)\\b"), "THIS_WEEK"),
+            Map.entry(Pattern.compile("\\b(?:mois dernier|mois precedent|last month|previous month)\\b"), "LAST_MONTH"),
+            Map.entry(Pattern.compile("\\b(?:ce mois|mois en cours|this month|current month)\\b"), "THIS_MONTH"),
+            Map.entry(Pattern.compile("\\b(?:annee derniere|annee precedente|last year|previous year)\\b"), "LAST_YEAR"),
+            Map.entry(Pattern.compile("\\b(?:cette annee|annee en cours|this year|current year)\\b"), "THIS_YEAR"));
+
+    private record Rule(Pattern pattern, Function<Matcher, TransactionIntent> intent) {
+    }
+
+    private static final List<Rule> RULES = List.of(
+            // Écritures: le reste de la phrase après le verbe est capturé, les arguments y sont cherchés par leur nom
+            rule("\\b(?:mettre a jour|mets a jour|mettez a jour|update|changer|change|modifier|modify|set|passer|marquer|mark)\\b"
+                            + "(?=.*\\d)(?=.*\\b" + STATUS + "\\b)(.*)",
+                    m -> update(m.group(2))), // groupe 1: statut vu par l'anticipation
+            rule("\\b(?:creer|cree|creez|create|ajouter|ajoute|ajoutez|add)\\b(?=.*\\d)(?=.*\\b(?:debit|credit)\\b)(.*)",
+                    m -> create(m.group(1))),
+            rule("\\b(?:supprimer|supprime|supprimez|effacer|efface|delete|remove)\\b(.*)",
+                    m -> delete(m.group(1))),
+            rule("\\b(?:solde|balance)\\b\\D*?(\\d+)",
+                    m -> new TransactionIntent.Balance(Long.parseLong(m.group(1)))),
+            // Toute la question capturée: l'intention analytique est décomposée par analytics()
+            rule("(?s)^(?=.*\\b(?:total|totaux|somme|sum|moyenne|moyen|average|avg|mean|combien|nombre|count|how many|how much"
+                            + "|maximum|max|minimum|min|plus gros|plus grosse|plus grand|plus grande|plus petit|plus petite"
+                            + "|largest|biggest|highest|smallest|lowest|statistiques?|statistics)\\b).*",
+                    m -> new TransactionIntent.Analytics(analytics(m.group()))),
+            rule("\\btransactions?\\b\\D*?\\b" + STATUS + "\\b",
+                    m -> new TransactionIntent.ByStatus(status(m.group(1)))),
+            rule("\\b(?:compte|account)\\s*" + NUMBER_PREFIX + "(\\d+)",
+                    m -> new TransactionIntent.ByAccount(Long.parseLong(m.group(1)))),
+            rule("\\btransaction\\s*" + NUMBER_PREFIX + "(\\d+)",
+                    m -> new TransactionIntent.Show(Long.parseLong(m.group(1)))),
+            rule("\\b(?:affiche|afficher|affichez|montre|montrer|montrez|donne|donner|voir|show|display)\\s+(?:moi\\s+|me\\s+)?"
+                            + "(?:la\\s+|le\\s+|the\\s+)?" + NUMBER_PREFIX + "(\\d+)\\b",
+                    m -> new TransactionIntent.Show(Long.parseLong(m.group(1)))),
+            rule("\\b(?:toutes les transactions|tous les transactions|liste des transactions|lister les transactions"
+                            + "|all(?: the)? transactions|list(?: all)?(?: the)? transactions)\\b",
+                    m -> new TransactionIntent.ListAll()));
+
+    private TransactionIntentRouter() {
+    }
+
+    /**
+     * @return l'intention de plus haute priorité, ou null si la question ne concerne pas les outils
+     */
+    public static TransactionIntent route(String question) {
+        if (question == null || question.isBlank()) {
+            return null;
+        }
+        String normalized = normalize(question);
+        for (Rule rule : RULES) {
+            Matcher matcher = rule.pattern().matcher(normalized);
+            if (matcher.find()) {
+                try {
+                    return rule.intent().apply(matcher);
+                } catch (NumberFormatException e) {
+                    return null; // identifiant hors des bornes d'un long
+                }
+            }
+        }
+        return null;
+    }
+
+    static String normalize(String text) {
+        String withoutAccents = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return withoutAccents.toLowerCase(Locale.ROOT).replace('’', '\'');
+    }
+
+    /**
+     * Cible nommée ("transaction 5", "transaction n°5") et nouveau statut, dans n'importe quel ordre
+     */
+    private static TransactionIntent update(String command) {
+        Matcher transaction = TRANSACTION_ID.matcher(command);
+        Matcher status = ANY_STATUS.matcher(command);
+        if (!transaction.find() || !status.find()) {
+            return null;
+        }
+        return new TransactionIntent.UpdateStatus(Long.parseLong(transaction.group(1)), status(status.group(1)));
+    }
+
+    private static TransactionIntent delete(String command) {
+        Matcher transaction = TRANSACTION_ID.matcher(command);
+        return transaction.find() ? new TransactionIntent.Delete(Long.parseLong(transaction.group(1))) : null;
+    }
+
+    /**
+     * Compte désigné par "compte N" / "account N", montant = l'unique autre nombre, type débit ou crédit
+     * Sans compte nommé, seule la forme historique "transaction <compte> <montant> <type>" est acceptée
+     */
+    private static TransactionIntent create(String command) {
+        Matcher type = WRITE_TYPE.matcher(command);
+        if (!type.find()) {
+            return null;
+        }
+        TransactionType transactionType = TransactionType.valueOf(type.group(1).toUpperCase(Locale.ROOT));
+        if (type.find() && !type.group(1).equals(transactionType.name().toLowerCase(Locale.ROOT))) {
+            return null; // débit et crédit à la fois
+        }
+        Matcher account = ACCOUNT.matcher(command);
+        if (!account.find()) {
+            Matcher positional = CREATE_POSITIONAL.matcher(command);
+            return positional.find() ? new TransactionIntent.Create(Long.parseLong(positional.group(1)),
+                    Double.parseDouble(positional.group(2).replace(',', '.')), transactionType) : null;
+        }
+        String others = command.substring(0, account.start()) + " " + command.substring(account.end());
+        Matcher amount = AMOUNT.matcher(others);
+        if (!amount.find()) {
+            return null;
+        }
+        String value = amount.group();
+        if (amount.find()) {
+            return null; // plusieurs montants possibles
+        }
+        return new TransactionIntent.Create(Long.parseLong(account.group(1)), Double.parseDouble(value.replace(',', '.')),
+                transactionType);
+    }
+
+    private static AnalyticsQuery analytics(String question) {
+        AnalyticsQuery.Aggregate aggregate = AVERAGE.matcher(question).find() ? AnalyticsQuery.Aggregate.AVG
+                : MAXIMUM.matcher(question).find() ? AnalyticsQuery.Aggregate.MAX
+                : MINIMUM.matcher(question).find() ? AnalyticsQuery.Aggregate.MIN
+                : COUNT.matcher(question).find() ? AnalyticsQuery.Aggregate.COUNT
+                : AnalyticsQuery.Aggregate.SUM;
+        boolean debits = DEBITS.matcher(question).find();
+        boolean credits = CREDITS.matcher(question).find();
+        TransactionType type = debits == credits ? null : debits ? TransactionType.DEBIT : TransactionType.CREDIT;
+        Matcher status = ANY_STATUS.matcher(question);
+        Matcher account = ACCOUNT.matcher(question);
+        AnalyticsQuery.GroupBy groupBy = BY_ACCOUNT.matcher(question).find() ? AnalyticsQuery.GroupBy.ACCOUNT
+                : BY_MONTH.matcher(question).find() ? AnalyticsQuery.GroupBy.MONTH
+                : BY_DAY.matcher(question).find() ? AnalyticsQuery.GroupBy.DAY
+                : BY_STATUS.matcher(question).find() ? AnalyticsQuery.GroupBy.STATUS
+                : BY_TYPE.matcher(question).find() ? AnalyticsQuery.GroupBy.TYPE
+                : AnalyticsQuery.GroupBy.NONE;
+        return new AnalyticsQuery(account.find() ? Long.parseLong(account.group(1)) : null, type,
+                status.find() ? status(status.group(1)) : null, period(question), aggregate, groupBy);
+    }
+
+    private static Period period(String question) {
+        Matcher monthOfYear = MONTH_OF_YEAR.matcher(question);
+        if (monthOfYear.find()) {
+            return Period.month(Integer.parseInt(monthOfYear.group(2)), MONTHS.indexOf(monthOfYear.group(1)) % 12 + 1);
+        }
+        Matcher year = YEAR.matcher(question);
+        if (year.find()) {
+            return Period.year(Integer.parseInt(year.group(1)));
+        }
+        for (Map.Entry<Pattern, String> relative : RELATIVE_PERIODS) {
+            if (relative.getKey().matcher(question).find()) {
+                return Period.parse(relative.getValue(), LocalDate.now(ZoneOffset.UTC));
+            }
+        }
+        return Period.ALL;
+    }
+
+    private static TransactionStatus status(String value) {
+        if (value.startsWith("execut")) {
+            return TransactionStatus.EXECUTED;
+        }
+        if (value.startsWith("cancel") || value.startsWith("annul")) {
+            return TransactionStatus.CANCELED;
+        }
+        return TransactionStatus.PENDING;
+    }
+
+    private static Rule rule(String regex, Function<Matcher, TransactionIntent> intent) {
+        return new Rule(Pattern.compile(regex), intent);
+    }
+}
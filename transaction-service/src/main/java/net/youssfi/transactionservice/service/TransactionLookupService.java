@@ -0,0 +1,153 @@
+package net.youssfi.transactionservice.service;
+
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.repository.TransactionRepository;
+import net.youssfi.transactionservice.repository.TransactionTotals;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Lectures des outils du LLM, mises en cache: la première page (afterId = 0) d'un compte, d'un statut ou de
+ * toute la table, avec ses totaux, est gardée dans le cache transactionPages
+ * Clés versionnées: chaque portée (toute la table, un compte, un statut) a une version incluse dans la clé,
+ * lue avant la requête; une écriture incrémente après son commit les versions du compte et des statuts touchés
+ * Un lecteur qui a lu la base avant le commit range donc sa page sous l'ancienne version, que plus personne ne lit
+ * Les pages suivantes ne sont pas mises en cache, mais leurs totaux le sont (clés "totals:..."): parcourir
+ * les pages ne recalcule pas un agrégat sur toute la table à chaque appel
+ */
+@Service
+public class TransactionLookupService {
+
+    public static final String PAGES = "transactionPages";
+    // Versions réparties sur un nombre fixe de cases: deux portées de la même case s'invalident ensemble
+    private static final int VERSION_STRIPES = 4096;
+
+    private final TransactionRepository transactionRepository;
+    private final CacheManager cacheManager;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong epoch = new AtomicLong(); // incrémentée par evictAll
+
+    @Value("${rag.tools.max-rows:50}")
+    private int maxRows; // Lignes renvoyées au plus par appel d'outil (le reste est résumé par les totaux)
+
+    public TransactionLookupService(TransactionRepository transactionRepository, CacheManager cacheManager) {
+        this.transactionRepository = transactionRepository;
+        this.cacheManager = cacheManager;
+    }
+
+    public TransactionPage allPage(long afterId) {
+        return page("all", afterId, () -> TransactionPage.of(
+                transactionRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(maxRows + 1)),
+                maxRows, totals("all", transactionRepository::summarizeAll)));
+    }
+
+    public TransactionPage accountPage(long accountId, long afterId) {
+        String scope = "account:" + accountId;
+        return page(scope, afterId, () -> TransactionPage.of(
+                transactionRepository.findByAccountIdAndIdGreaterThanOrderByIdAsc(accountId, afterId, Limit.of(maxRows + 1)),
+                maxRows, totals(scope, () -> transactionRepository.summarizeAccount(accountId))));
+    }
+
+    public TransactionPage statusPage(TransactionStatus status, long afterId) {
+        String scope = "status:" + status;
+        return page(scope, afterId, () -> TransactionPage.of(
+                transactionRepository.findByStatusAndIdGreaterThanOrderByIdAsc(status, afterId, Limit.of(maxRows + 1)),
+                maxRows, totals(scope, () -> transactionRepository.summarizeStatus(status))));
+    }
+
+    private TransactionPage page(String scope, long afterId, Supplier<TransactionPage> query) {
+        Cache pages = cacheManager.getCache(PAGES);
+        if (pages == null || afterId != 0) {
+            return query.get();
+        }
+        // get puis put (pas de Cache.get avec chargeur): la requête lit aussi les totaux dans ce cache
+        String key = key(scope);
+        Cache.ValueWrapper cached = pages.get(key);
+        if (cached != null) {
+            return (TransactionPage) cached.get();
+        }
+        TransactionPage page = query.get();
+        pages.put(key, page);
+        return page;
+    }
+
+    private TransactionTotals totals(String scope, Supplier<TransactionTotals> query) {
+        Cache pages = cacheManager.getCache(PAGES);
+        return pages != null ? pages.get("totals:" + key(scope), query::get) : query.get();
+    }
+
+    // Toujours lue avant la requête base de données
+    private String key(String scope) {
+        return scope + "@" + epoch.get() + "." + versions.get(stripe(scope));
+    }
+
+    private static int stripe(String scope) {
+        return Math.floorMod(scope.hashCode(), VERSION_STRIPES);
+    }
+
+    /**
+     * Pages touchées par l'écriture d'une transaction, invalidées au commit (tout de suite hors transaction)
+     * @param previousStatus statut avant une mise à jour (null pour une création ou une suppression)
+     */
+    public void evict(Transaction transaction, TransactionStatus previousStatus) {
+        List<String> scopes = new ArrayList<>(4);
+        scopes.add("all");
+        scopes.add("account:" + transaction.getAccountId());
+        if (transaction.getStatus() != null) {
+            scopes.add("status:" + transaction.getStatus());
+        }
+        if (previousStatus != null) {
+            scopes.add("status:" + previousStatus);
+        }
+        afterCommit(() -> {
+            Cache pages = cacheManager.getCache(PAGES);
+            for (String scope : scopes) {
+                String previous = key(scope);
+                versions.incrementAndGet(stripe(scope));
+                // Les anciennes entrées ne sont plus lues: les libérer sans attendre leur expiration
+                if (pages != null) {
+                    pages.evict(previous);
+                    pages.evict("totals:" + previous);
+                }
+            }
+        });
+    }
+
+    /**
+     * Écritures en masse (chargement, suppression des comptes synthétiques)
+     */
+    public void evictAll() {
+        afterCommit(() -> {
+            epoch.incrementAndGet();
+            Cache pages = cacheManager.getCache(PAGES);
+            if (pages != null) {
+                pages.clear();
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        } else {
+            invalidation.run();
+        }
+    }
+}
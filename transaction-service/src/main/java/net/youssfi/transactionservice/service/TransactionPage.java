@@ -0,0 +1,27 @@
+package net.youssfi.transactionservice.service;
+
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.repository.TransactionTotals;
+
+import java.util.List;
+
+/**
+ * Page de transactions renvoyée aux outils du LLM: au plus une page de lignes, accompagnée des totaux
+ * de l'ensemble complet (calculés par la base) pour que le modèle puisse résumer sans tout recevoir
+ * @param nextAfterId identifiant à passer en afterId pour la page suivante, null s'il n'y en a plus
+ */
+public record TransactionPage(List<Transaction> transactions, long totalCount, double totalCredits,
+                              double totalDebits, Long nextAfterId) {
+
+    public static TransactionPage of(List<Transaction> rows, int limit, TransactionTotals totals) {
+        boolean hasMore = rows.size() > limit;
+        List<Transaction> transactions = hasMore ? rows.subList(0, limit) : rows;
+        Long nextAfterId = hasMore ? transactions.get(transactions.size() - 1).getId() : null;
+        return new TransactionPage(List.copyOf(transactions), totals.getTransactionCount(), totals.getCredits(),
+                totals.getDebits(), nextAfterId);
+    }
+
+    public double balance() {
+        return totalCredits - totalDebits;
+    }
+}
@@ -0,0 +1,14 @@
+package net.youssfi.transactionservice.service;
+
+import java.util.List;
+
+/**
+ * Données des outils pour le prompt, et commandes d'écriture soumises par cette requête (dont l'appelant
+ * attend la confirmation)
+ */
+public record TransactionToolResult(String data, List<Long> commandIds) {
+
+    public static TransactionToolResult of(String data) {
+        return new TransactionToolResult(data, List.of());
+    }
+}
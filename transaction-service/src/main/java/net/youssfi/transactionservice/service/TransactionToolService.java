@@ -1,193 +1,151 @@
 package net.youssfi.transactionservice.service;
 
 import net.youssfi.transactionservice.agents.TransactionAiTools;
+import net.youssfi.transactionservice.analytics.AnalyticsQuery;
+import net.youssfi.transactionservice.analytics.AnalyticsResult;
+import net.youssfi.transactionservice.analytics.TransactionAnalyticsService;
 import net.youssfi.transactionservice.entities.Transaction;
-import net.youssfi.transactionservice.entities.TransactionStatus;
-import net.youssfi.transactionservice.entities.TransactionType;
+import net.youssfi.transactionservice.entities.TransactionCommandStatus;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Service
 public class TransactionToolService {
     private TransactionAiTools transactionAiTools;
+    private final TransactionAnalyticsService transactionAnalyticsService;
+    private final TransactionCommandService transactionCommandService;
 
-    public TransactionToolService(TransactionAiTools transactionAiTools) {
+    @Value("${rag.tools.max-rows:50}")
+    private int maxRows;
+
+    public TransactionToolService(TransactionAiTools transactionAiTools, TransactionAnalyticsService transactionAnalyticsService,
+                                  TransactionCommandService transactionCommandService) {
         this.transactionAiTools = transactionAiTools;
+        this.transactionAnalyticsService = transactionAnalyticsService;
+        this.transactionCommandService = transactionCommandService;
     }
 
     /**
      * Analyse la question et appelle les outils appropriés
      * Retourne les données récupérées ou null si aucun outil n'est nécessaire
+     * Les écritures sont soumises à TransactionCommandService (appliquées en arrière-plan): les données sont
+     * alors l'accusé de réception, et commandIds les commandes dont la confirmation est à attendre
+     * @param requestId jeton de nouvel essai: la même écriture soumise avec le même jeton n'est appliquée qu'une fois
      */
-    public String executeTools(String question) {
-        String lowerQuestion = question.toLowerCase();
-        
-        // Pattern pour détecter "toutes les transactions" ou "all transactions"
-        if (lowerQuestion.contains("toutes les transactions") || 
-            lowerQuestion.contains("all transactions") ||
-            lowerQuestion.contains("liste des transactions") ||
-            lowerQuestion.contains("list transactions") ||
-            lowerQuestion.contains("afficher toutes les transactions")) {
-            List<Transaction> transactions = transactionAiTools.getAllTransactions();
-            return formatTransactions(transactions);
-        }
-        
-        // Pattern pour détecter les transactions par account ID
-        Pattern accountPattern = Pattern.compile("(?:compte|account|id)\\s*(?:numéro|number|id)?\\s*(?:de|of)?\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
-        Matcher accountMatcher = accountPattern.matcher(question);
-        if (accountMatcher.find()) {
-            try {
-                long accountId = Long.parseLong(accountMatcher.group(1));
-                List<Transaction> transactions = transactionAiTools.getAllTransactionsByAccountId(accountId);
-                return formatTransactions(transactions, accountId);
-            } catch (NumberFormatException e) {
-                return null;
-            }
-        }
-        
-        // Pattern pour détecter le calcul du solde
-        Pattern balancePattern = Pattern.compile("(?:solde|balance)\\s+(?:du|de|of)?\\s*(?:compte|account)?\\s*(?:numéro|number|id)?\\s*(?:de|of)?\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
-        Matcher balanceMatcher = balancePattern.matcher(question);
-        if (balanceMatcher.find()) {
-            try {
-                long accountId = Long.parseLong(balanceMatcher.group(1));
-                double balance = transactionAiTools.calculateAccountBalance(accountId);
-                return String.format("Le solde du compte %d est de %.2f", accountId, balance);
-            } catch (NumberFormatException e) {
-                return null;
-            }
-        }
-        
-        // Pattern pour détecter les transactions par statut
-        Pattern statusPattern = Pattern.compile("(?:transactions|transaction)\\s+(?:avec|with|en|in)?\\s+(?:le statut|status)?\\s+(PENDING|EXECUTED|CANCELED|CANCELLED)", Pattern.CASE_INSENSITIVE);
-        Matcher statusMatcher = statusPattern.matcher(question);
-        if (statusMatcher.find()) {
-            try {
-                String statusStr = statusMatcher.group(1).toUpperCase();
-                if (statusStr.equals("CANCELLED")) statusStr = "CANCELED";
-                TransactionStatus status = TransactionStatus.valueOf(statusStr);
-                List<Transaction> transactions = transactionAiTools.getTransactionsByStatus(status);
-                return formatTransactionsByStatus(transactions, status);
-            } catch (Exception e) {
-                return "Erreur lors de la récupération: " + e.getMessage();
-            }
-        }
-        
-        // Pattern pour détecter une transaction par ID (amélioré pour capturer "affiche", "montre", etc.)
-        Pattern transactionIdPattern = Pattern.compile("(?:affiche|afficher|montre|montrer|donne|donner|voir|voir|détails|details|information|infos)?\\s*(?:de|du|de la|sur)?\\s*(?:la|une)?\\s*(?:transaction)?\\s*(?:numéro|number|id|n°)?\\s*(?:de|of)?\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
-        Matcher transactionIdMatcher = transactionIdPattern.matcher(question);
-        if (transactionIdMatcher.find()) {
-            try {
-                Long transactionId = Long.parseLong(transactionIdMatcher.group(1));
-                Transaction transaction = transactionAiTools.getTransactionById(transactionId);
-                return "Détails de la transaction:\n" + formatTransaction(transaction);
-            } catch (Exception e) {
-                return "Erreur: " + e.getMessage();
-            }
-        }
-        
-        // Pattern alternatif: "transaction 17" ou "transaction numéro 17"
-        Pattern transactionIdPattern2 = Pattern.compile("(?:transaction|la transaction)\\s+(?:numéro|number|id|n°)?\\s*(?:de|of)?\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
-        Matcher transactionIdMatcher2 = transactionIdPattern2.matcher(question);
-        if (transactionIdMatcher2.find()) {
-            try {
-                Long transactionId = Long.parseLong(transactionIdMatcher2.group(1));
-                Transaction transaction = transactionAiTools.getTransactionById(transactionId);
-                return "Détails de la transaction:\n" + formatTransaction(transaction);
-            } catch (Exception e) {
-                return "Erreur: " + e.getMessage();
-            }
+    public TransactionToolResult executeTools(String question, String chatId, String requestId) {
+        TransactionIntent intent = TransactionIntentRouter.route(question);
+        if (intent == null) {
+            return null;
         }
-        
-        // Pattern pour détecter la mise à jour du statut
-        Pattern updatePattern = Pattern.compile("(?:mettre à jour|update|changer|change)\\s+(?:le statut|status)\\s+(?:de|of)?\\s+(?:la transaction|transaction)?\\s*(\\d+)\\s+(?:à|to|en)\\s+(PENDING|EXECUTED|CANCELED|CANCELLED)", Pattern.CASE_INSENSITIVE);
-        Matcher updateMatcher = updatePattern.matcher(question);
-        if (updateMatcher.find()) {
-            try {
-                Long transactionId = Long.parseLong(updateMatcher.group(1));
-                String statusStr = updateMatcher.group(2).toUpperCase();
-                if (statusStr.equals("CANCELLED")) statusStr = "CANCELED";
-                TransactionStatus status = TransactionStatus.valueOf(statusStr);
-                Transaction transaction = transactionAiTools.updateTransactionStatus(transactionId, status);
-                return "Transaction " + transactionId + " mise à jour avec succès. Nouveau statut: " + status + 
-                       "\nDétails: " + formatTransaction(transaction);
-            } catch (Exception e) {
-                return "Erreur lors de la mise à jour: " + e.getMessage();
-            }
-        }
-        
-        // Pattern pour détecter la création d'une transaction
-        Pattern createPattern = Pattern.compile("(?:créer|create|ajouter|add)\\s+(?:une|a)?\\s*(?:transaction|nouvelle transaction)\\s+(?:pour|for)?\\s*(?:compte|account)?\\s*(\\d+)\\s+(?:montant|amount)?\\s*(\\d+(?:\\.\\d+)?)\\s+(?:type|type)?\\s+(DEBIT|CREDIT)", Pattern.CASE_INSENSITIVE);
-        Matcher createMatcher = createPattern.matcher(question);
-        if (createMatcher.find()) {
-            try {
-                long accountId = Long.parseLong(createMatcher.group(1));
-                double amount = Double.parseDouble(createMatcher.group(2));
-                TransactionType type = TransactionType.valueOf(createMatcher.group(3).toUpperCase());
-                Transaction transaction = transactionAiTools.createTransaction(accountId, amount, type, TransactionStatus.PENDING);
-                return "Transaction créée avec succès:\n" + formatTransaction(transaction);
-            } catch (Exception e) {
-                return "Erreur lors de la création: " + e.getMessage();
-            }
+        try {
+            return execute(intent, chatId, requestId);
+        } catch (Exception e) {
+            return TransactionToolResult.of(errorPrefix(intent) + e.getMessage());
         }
-        
-        // Pattern pour détecter la suppression d'une transaction
-        Pattern deletePattern = Pattern.compile("(?:supprimer|delete|remove)\\s+(?:la transaction|transaction)?\\s*(?:numéro|number|id)?\\s*(?:de|of)?\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
-        Matcher deleteMatcher = deletePattern.matcher(question);
-        if (deleteMatcher.find()) {
-            try {
-                Long transactionId = Long.parseLong(deleteMatcher.group(1));
-                String result = transactionAiTools.deleteTransaction(transactionId);
-                return result;
-            } catch (Exception e) {
-                return "Erreur lors de la suppression: " + e.getMessage();
-            }
-        }
-        
-        return null;
     }
 
-    private String formatTransactions(List<Transaction> transactions) {
-        if (transactions == null || transactions.isEmpty()) {
-            return "Aucune transaction trouvée.";
+    private TransactionToolResult execute(TransactionIntent intent, String chatId, String requestId) {
+        return switch (intent) {
+            case TransactionIntent.UpdateStatus update -> submitted(transactionCommandService
+                    .submitStatusUpdate(chatId, requestId, update.transactionId(), update.status()));
+            case TransactionIntent.Create create -> submitted(transactionCommandService
+                    .submitCreate(chatId, requestId, create.accountId(), create.amount(), create.type(), null));
+            case TransactionIntent.Delete delete -> submitted(transactionCommandService
+                    .submitDelete(chatId, requestId, delete.transactionId()));
+            case TransactionIntent.Balance balance -> TransactionToolResult.of(String.format("Le solde du compte %d est de %.2f",
+                    balance.accountId(), transactionAiTools.calculateAccountBalance(balance.accountId())));
+            case TransactionIntent.Analytics analytics ->
+                    TransactionToolResult.of(formatAnalytics(transactionAnalyticsService.query(analytics.query())));
+            case TransactionIntent.ByStatus byStatus -> TransactionToolResult.of(formatPage(
+                    transactionAiTools.getTransactionsByStatus(byStatus.status(), 0), "avec le statut " + byStatus.status()));
+            case TransactionIntent.ByAccount byAccount -> TransactionToolResult.of(formatPage(
+                    transactionAiTools.getAllTransactionsByAccountId(byAccount.accountId(), 0), "du compte " + byAccount.accountId()));
+            case TransactionIntent.Show show -> TransactionToolResult.of(
+                    "Détails de la transaction:\n" + formatTransaction(transactionAiTools.getTransactionById(show.transactionId())));
+            case TransactionIntent.ListAll listAll -> TransactionToolResult.of(formatPage(transactionAiTools.getAllTransactions(0), null));
+        };
+    }
+
+    /**
+     * Confirmation attendue seulement si la commande est encore en attente (un doublon déjà traité donne son résultat)
+     */
+    private static TransactionToolResult submitted(TransactionCommandService.CommandReceipt receipt) {
+        return new TransactionToolResult(receipt.message(),
+                receipt.command().getStatus() == TransactionCommandStatus.PENDING ? List.of(receipt.command().getId()) : List.of());
+    }
+
+    private static String errorPrefix(TransactionIntent intent) {
+        return switch (intent) {
+            case TransactionIntent.UpdateStatus update -> "Erreur lors de la mise à jour: ";
+            case TransactionIntent.Create create -> "Erreur lors de la création: ";
+            case TransactionIntent.Delete delete -> "Erreur lors de la suppression: ";
+            case TransactionIntent.ByStatus byStatus -> "Erreur lors de la récupération: ";
+            default -> "Erreur: ";
+        };
+    }
+
+    /**
+     * Au plus une page de lignes dans le prompt; le reste est résumé par les totaux calculés par la base
+     * @param scope "du compte 3", "avec le statut PENDING"... ou null pour toutes les transactions
+     */
+    private String formatPage(TransactionPage page, String scope) {
+        if (page.totalCount() == 0) {
+            return scope == null ? "Aucune transaction trouvée." : "Aucune transaction trouvée " + scope + ".";
         }
-        
-        StringBuilder sb = new StringBuilder("Voici toutes les transactions (" + transactions.size() + "):\n\n");
-        for (Transaction t : transactions) {
+
+        StringBuilder sb = new StringBuilder(scope == null ? "Voici les transactions" : "Voici les transactions " + scope);
+        sb.append(String.format(" (%d au total, crédits %.2f, débits %.2f, solde %.2f):%n%n",
+                page.totalCount(), page.totalCredits(), page.totalDebits(), page.balance()));
+        for (Transaction t : page.transactions()) {
             sb.append(formatTransaction(t)).append("\n");
         }
+        long remaining = page.totalCount() - page.transactions().size();
+        if (page.nextAfterId() != null && remaining > 0) {
+            sb.append(String.format("... et %d autres transactions non affichées (suite après l'ID %d)%n", remaining, page.nextAfterId()));
+        }
         return sb.toString();
     }
 
-    private String formatTransactions(List<Transaction> transactions, long accountId) {
-        if (transactions == null || transactions.isEmpty()) {
-            return "Aucune transaction trouvée pour le compte " + accountId + ".";
+    /**
+     * Valeur demandée mise en avant, puis une ligne par groupe (au plus rag.tools.max-rows)
+     */
+    private String formatAnalytics(AnalyticsResult result) {
+        AnalyticsQuery query = result.query();
+        if (result.matchedRows() == 0) {
+            return query.describe() + ": aucune transaction ne correspond.";
         }
-        
-        StringBuilder sb = new StringBuilder("Voici les transactions du compte " + accountId + " (" + transactions.size() + "):\n\n");
-        for (Transaction t : transactions) {
-            sb.append(formatTransaction(t)).append("\n");
+        StringBuilder sb = new StringBuilder();
+        if (query.groupBy() == AnalyticsQuery.GroupBy.NONE) {
+            AnalyticsResult.Group total = result.total();
+            sb.append(query.describe()).append(": ").append(formatValue(total, query.aggregate())).append("\n");
+            sb.append(formatGroup(total)).append("\n");
+        } else {
+            sb.append(String.format("%s (%d groupes, %d transactions):%n", query.describe(), result.groupCount(), result.matchedRows()));
+            for (AnalyticsResult.Group group : result.groups().subList(0, Math.min(maxRows, result.groups().size()))) {
+                sb.append(group.key()).append(": ").append(formatValue(group, query.aggregate()))
+                        .append(" | ").append(formatGroup(group)).append("\n");
+            }
+            if (result.groupCount() > maxRows) {
+                sb.append(String.format("... et %d autres groupes non affichés%n", result.groupCount() - maxRows));
+            }
         }
         return sb.toString();
     }
 
+    private static String formatValue(AnalyticsResult.Group group, AnalyticsQuery.Aggregate aggregate) {
+        return aggregate == AnalyticsQuery.Aggregate.COUNT ? String.valueOf(group.count())
+                : String.format("%.2f", group.value(aggregate));
+    }
+
+    private static String formatGroup(AnalyticsResult.Group group) {
+        return String.format("Nombre: %d | Total: %.2f | Moyenne: %.2f | Min: %.2f | Max: %.2f",
+                group.count(), group.sum(), group.avg(), group.min(), group.max());
+    }
+
     private String formatTransaction(Transaction t) {
         return String.format("ID: %d | Compte: %d | Montant: %.2f | Type: %s | Statut: %s | Date: %s",
                 t.getId(), t.getAccountId(), t.getAmount(), t.getType(), t.getStatus(), t.getDate());
     }
-
-    private String formatTransactionsByStatus(List<Transaction> transactions, TransactionStatus status) {
-        if (transactions == null || transactions.isEmpty()) {
-            return "Aucune transaction trouvée avec le statut " + status + ".";
-        }
-        
-        StringBuilder sb = new StringBuilder("Voici les transactions avec le statut " + status + " (" + transactions.size() + "):\n\n");
-        for (Transaction t : transactions) {
-            sb.append(formatTransaction(t)).append("\n");
-        }
-        return sb.toString();
-    }
 }
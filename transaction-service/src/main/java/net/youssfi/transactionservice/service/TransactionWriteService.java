@@ -0,0 +1,80 @@
+package net.youssfi.transactionservice.service;
+
+import net.youssfi.transactionservice.analytics.TransactionAnalyticsService;
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+import net.youssfi.transactionservice.repository.TransactionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+/**
+ * Écritures sur les transactions: chaque méthode met à jour le résumé du compte (AccountSummaryService)
+ * dans la même transaction base de données, le résumé ne peut donc pas diverger de la table
+ * Les écritures demandées dans le chat passent par TransactionCommandService, qui appelle ces méthodes
+ * depuis son writer (les outils du LLM ne sont pas transactionnels: un proxy Spring masquerait leurs @Tool)
+ * Les pages mises en cache (TransactionLookupService) du compte et des statuts touchés sont invalidées au commit,
+ * l'instantané analytique (TransactionAnalyticsService) est mis à jour au commit
+ */
+@Service
+public class TransactionWriteService {
+    private final TransactionRepository transactionRepository;
+    private final AccountSummaryService accountSummaryService;
+    private final TransactionLookupService transactionLookupService;
+    private final TransactionAnalyticsService transactionAnalyticsService;
+
+    public TransactionWriteService(TransactionRepository transactionRepository, AccountSummaryService accountSummaryService,
+                                   TransactionLookupService transactionLookupService,
+                                   TransactionAnalyticsService transactionAnalyticsService) {
+        this.transactionRepository = transactionRepository;
+        this.accountSummaryService = accountSummaryService;
+        this.transactionLookupService = transactionLookupService;
+        this.transactionAnalyticsService = transactionAnalyticsService;
+    }
+
+    @Transactional
+    public Transaction create(long accountId, double amount, TransactionType type, TransactionStatus status, Date date) {
+        Transaction transaction = transactionRepository.save(Transaction.builder()
+                .accountId(accountId)
+                .amount(amount)
+                .type(type)
+                .status(status)
+                .date(date)
+                .build());
+        accountSummaryService.recordCreated(transaction);
+        transactionLookupService.evict(transaction, null);
+        transactionAnalyticsService.recordSaved(transaction);
+        return transaction;
+    }
+
+    @Transactional
+    public Transaction updateStatus(Long transactionId, TransactionStatus status) {
+        Transaction transaction = transactionRepository.findById(transactionId)
+                .orElseThrow(() -> new RuntimeException("Transaction non trouvée avec l'ID: " + transactionId));
+        TransactionStatus previousStatus = transaction.getStatus();
+        transaction.setStatus(status);
+        accountSummaryService.recordStatusChanged(transaction, previousStatus);
+        transactionLookupService.evict(transaction, previousStatus);
+        transactionAnalyticsService.recordSaved(transaction);
+        return transactionRepository.save(transaction);
+    }
+
+    /**
+     * @return false si la transaction n'existe pas
+     */
+    @Transactional
+    public boolean delete(Long transactionId) {
+        Transaction transaction = transactionRepository.findById(transactionId).orElse(null);
+        if (transaction == null) {
+            return false;
+        }
+        transactionRepository.delete(transaction);
+        transactionRepository.flush();
+        accountSummaryService.recordDeleted(transaction);
+        transactionLookupService.evict(transaction, null);
+        transactionAnalyticsService.recordDeleted(transaction);
+        return true;
+    }
+}
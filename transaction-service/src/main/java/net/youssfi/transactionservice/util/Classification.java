@@ -0,0 +1,37 @@
+package net.youssfi.transactionservice.util;
+
+import java.util.List;
+
+/**
+ * Résultat de QuestionClassifier.analyze, calculé une fois par requête et transmis aux étapes suivantes
+ * confidence: part lissée (Laplace) des mots-clés du type retenu, 0.5 quand aucun mot-clé ne départage
+ * (mots-clés), ou probabilité softmax de la route parmi les centroïdes (routeur sémantique)
+ * source: méthode qui a décidé (mots-clés, embeddings, llm)
+ */
+public record Classification(QuestionType type, double confidence,
+                             List<String> documentKeywords, List<String> transactionKeywords, String source) {
+
+    public static final String KEYWORDS = "mots-clés";
+    public static final String EMBEDDINGS = "embeddings";
+    public static final String LLM = "llm";
+
+    public Classification withDecision(QuestionType decidedType, double decidedConfidence, String decidedBy) {
+        return new Classification(decidedType, decidedConfidence, documentKeywords, transactionKeywords, decidedBy);
+    }
+
+    public int documentScore() {
+        return documentKeywords.size();
+    }
+
+    public int transactionScore() {
+        return transactionKeywords.size();
+    }
+
+    public boolean requiresRAG() {
+        return type == QuestionType.DOCUMENT;
+    }
+
+    public boolean requiresDatabaseTools() {
+        return type == QuestionType.TRANSACTION;
+    }
+}
@@ -0,0 +1,85 @@
+package net.youssfi.transactionservice.util;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Débit de la classification: automate d'Aho-Corasick (QuestionClassifier.analyze) contre l'ancienne
+ * recherche par String.contains sur chaque mot-clé, sur un échantillon de questions fixe
+ * Affiche aussi les questions où les deux diffèrent (mots-clés courts trouvés à l'intérieur d'autres mots)
+ */
+public class ClassifierBenchmark {
+
+    private static final List<String> QUESTIONS = List.of(
+            "Quelle est la conclusion du rapport d'analyse de données ?",
+            "Affiche toutes les transactions du compte 3",
+            "Quel est le solde du compte 12 ?",
+            "Explique la méthode utilisée dans le cours",
+            "Quelle est l'adresse du siège dans le document ?",
+            "What is the metadata standard described in the PDF?",
+            "Supprimer la transaction 5",
+            "Résume le chapitre sur les réseaux de neurones",
+            "Show me the playlist of the training",
+            "transactions en attente");
+
+    private final QuestionClassifier classifier;
+    private volatile int sink; // empêche le JIT d'éliminer les calculs
+
+    public ClassifierBenchmark(QuestionClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    public String run(int iterations) {
+        StringBuilder report = new StringBuilder("⏱️ Classification des questions\n");
+        for (String question : QUESTIONS) {
+            Classification classification = classifier.analyze(question);
+            QuestionType legacy = containsClassify(question);
+            report.append(String.format("   %-60s → %-11s %.2f documents%s transactions%s%s%n",
+                    question, classification.type(), classification.confidence(),
+                    classification.documentKeywords(), classification.transactionKeywords(),
+                    legacy != classification.type() ? "  (contains: " + legacy + ")" : ""));
+        }
+        int rounds = Math.max(1, iterations / QUESTIONS.size());
+        double automatonNanos = measure(rounds, true);
+        double containsNanos = measure(rounds, false);
+        report.append(String.format("Aho-Corasick:    %8.0f ns/question (%.0f questions/s)%n", automatonNanos, 1e9 / automatonNanos));
+        report.append(String.format("String.contains: %8.0f ns/question (%.0f questions/s)%n", containsNanos, 1e9 / containsNanos));
+        return report.toString();
+    }
+
+    private double measure(int rounds, boolean automaton) {
+        for (int i = 0; i < Math.min(rounds, 1000); i++) { // chauffe
+            classifyAll(automaton);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            classifyAll(automaton);
+        }
+        return (System.nanoTime() - start) / ((double) rounds * QUESTIONS.size());
+    }
+
+    private void classifyAll(boolean automaton) {
+        int documents = 0;
+        for (String question : QUESTIONS) {
+            QuestionType type = automaton ? classifier.analyze(question).type() : containsClassify(question);
+            documents += type == QuestionType.DOCUMENT ? 1 : 0;
+        }
+        sink = documents;
+    }
+
+    /**
+     * Ancienne classification: un String.contains par mot-clé, sans limites de mot
+     */
+    private static QuestionType containsClassify(String question) {
+        String lowerQuestion = question.toLowerCase(Locale.ROOT).trim();
+        int documentScore = 0;
+        for (String keyword : QuestionClassifier.DOCUMENT_KEYWORDS) {
+            documentScore += lowerQuestion.contains(keyword) ? 1 : 0;
+        }
+        int transactionScore = 0;
+        for (String keyword : QuestionClassifier.TRANSACTION_KEYWORDS) {
+            transactionScore += lowerQuestion.contains(keyword) ? 1 : 0;
+        }
+        return documentScore > 0 && documentScore >= transactionScore ? QuestionType.DOCUMENT : QuestionType.TRANSACTION;
+    }
+}
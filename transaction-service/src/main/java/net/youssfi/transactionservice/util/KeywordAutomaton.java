@@ -0,0 +1,134 @@
+package net.youssfi.transactionservice.util;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Automate d'Aho-Corasick: trouve tous les mots-clés d'un dictionnaire en un seul parcours du texte,
+ * quel que soit le nombre de mots-clés
+ * - insensible à la casse et aux accents (dictionnaire et texte passent par normalize)
+ * - un mot-clé ne compte que s'il est entouré de limites de mot: "add" ne correspond pas dans "address"
+ * Chaque mot-clé porte une catégorie (indice libre pour l'appelant). Immuable après construction
+ */
+public final class KeywordAutomaton {
+
+    public record Hit(String keyword, int category, int start, int end) {
+    }
+
+    private static final int ROOT = 0;
+
+    // États: transitions creuses, lien d'échec, sorties (mots-clés se terminant ici, suffixes compris)
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final int[] failure;
+    private final int[][] outputs;
+    private final List<String> keywords = new ArrayList<>();
+    private final List<Integer> categories = new ArrayList<>();
+
+    /**
+     * @param dictionary mot-clé → catégorie
+     */
+    public KeywordAutomaton(Map<String, Integer> dictionary) {
+        transitions.add(new HashMap<>());
+        List<List<Integer>> terminal = new ArrayList<>();
+        terminal.add(new ArrayList<>());
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            String keyword = normalize(entry.getKey());
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                Integer next = transitions.get(state).get(c);
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.get(state).put(c, next);
+                    transitions.add(new HashMap<>());
+                    terminal.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            terminal.get(state).add(keywords.size());
+            keywords.add(keyword);
+            categories.add(entry.getValue());
+        }
+
+        // Parcours en largeur: le lien d'échec d'un état est le plus long suffixe propre présent dans l'arbre
+        failure = new int[transitions.size()];
+        outputs = new int[transitions.size()][];
+        outputs[ROOT] = new int[0];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(ROOT).values()) {
+            failure[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] own = terminal.get(state).stream().mapToInt(Integer::intValue).toArray();
+            int[] inherited = outputs[failure[state]];
+            outputs[state] = inherited.length == 0 ? own : concat(own, inherited);
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                int child = edge.getValue();
+                int fallback = failure[state];
+                while (fallback != ROOT && !transitions.get(fallback).containsKey(edge.getKey())) {
+                    fallback = failure[fallback];
+                }
+                Integer target = transitions.get(fallback).get(edge.getKey());
+                failure[child] = target != null && target != child ? target : ROOT;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * @param normalizedText texte déjà passé par normalize (positions relatives à ce texte)
+     */
+    public List<Hit> findAll(String normalizedText) {
+        List<Hit> hits = new ArrayList<>();
+        int state = ROOT;
+        for (int i = 0; i < normalizedText.length(); i++) {
+            char c = normalizedText.charAt(i);
+            while (state != ROOT && !transitions.get(state).containsKey(c)) {
+                state = failure[state];
+            }
+            state = transitions.get(state).getOrDefault(c, ROOT);
+            for (int keywordIndex : outputs[state]) {
+                String keyword = keywords.get(keywordIndex);
+                int start = i - keyword.length() + 1;
+                if (isBoundary(normalizedText, start - 1) && isBoundary(normalizedText, i + 1)) {
+                    hits.add(new Hit(keyword, categories.get(keywordIndex), start, i + 1));
+                }
+            }
+        }
+        return hits;
+    }
+
+    public int size() {
+        return keywords.size();
+    }
+
+    /**
+     * Minuscules sans accents, apostrophe typographique remplacée par l'apostrophe simple
+     */
+    public static String normalize(String text) {
+        String withoutAccents = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return withoutAccents.toLowerCase(Locale.ROOT).replace('’', '\'');
+    }
+
+    private static boolean isBoundary(String text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -4,7 +4,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Classe utilitaire pour classifier les questions et déterminer
@@ -15,7 +19,7 @@ import java.util.List;
 public class QuestionClassifier {
     
     // Mots-clés indiquant une question sur les documents/PDF/contenu
-    private static final List<String> DOCUMENT_KEYWORDS = Arrays.asList(
+    static final List<String> DOCUMENT_KEYWORDS = Arrays.asList(
         "document", "pdf", "fichier", "file",
         "analyse", "analysis", "analyser", "analyze",
         "données", "data", "dataset",
@@ -34,7 +38,7 @@ public class QuestionClassifier {
     );
     
     // Mots-clés indiquant une question sur les transactions
-    private static final List<String> TRANSACTION_KEYWORDS = Arrays.asList(
+    static final List<String> TRANSACTION_KEYWORDS = Arrays.asList(
         "transaction", "transactions",
         "compte", "account", "comptes", "accounts",
         "solde", "balance", "soldes", "balances",
@@ -49,6 +53,17 @@ public class QuestionClassifier {
         "liste", "list", "afficher", "show", "display"
     );
     
+    private static final int DOCUMENT = 0;
+    private static final int TRANSACTION = 1;
+    private static final KeywordAutomaton AUTOMATON = buildAutomaton();
+    
+    private static KeywordAutomaton buildAutomaton() {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        DOCUMENT_KEYWORDS.forEach(keyword -> dictionary.put(keyword, DOCUMENT));
+        TRANSACTION_KEYWORDS.forEach(keyword -> dictionary.put(keyword, TRANSACTION));
+        return new KeywordAutomaton(dictionary);
+    }
+    
     /**
      * Détermine si une question concerne les documents (RAG) ou les transactions (DB)
      * Classification stricte pour éviter toute confusion
@@ -56,76 +71,55 @@ public class QuestionClassifier {
      * @return QuestionType.DOCUMENT si c'est une question sur documents, QuestionType.TRANSACTION sinon
      */
     public QuestionType classify(String question) {
+        return analyze(question).type();
+    }
+    
+    /**
+     * Classification avec scores et confiance, en un seul parcours de la question
+     * Les mots-clés sont reconnus entiers ("add" ne correspond pas dans "address"), sans tenir compte des accents
+     * Règles: documents si documentScore >= transactionScore > 0 ou seuls des mots-clés de documents,
+     * transactions sinon (y compris par défaut, sans mot-clé)
+     */
+    public Classification analyze(String question) {
         if (question == null || question.trim().isEmpty()) {
-            return QuestionType.TRANSACTION; // Par défaut, on assume une question sur transactions
+            // Par défaut, on assume une question sur transactions
+            return new Classification(QuestionType.TRANSACTION, 0.5, List.of(), List.of(), Classification.KEYWORDS);
         }
         
-        String lowerQuestion = question.toLowerCase().trim();
-        
-        // Compter les occurrences de mots-clés
-        int documentScore = countKeywords(lowerQuestion, DOCUMENT_KEYWORDS);
-        int transactionScore = countKeywords(lowerQuestion, TRANSACTION_KEYWORDS);
-        
-        log.debug("Classification: documentScore={}, transactionScore={} pour '{}'", 
-                documentScore, transactionScore, question);
-        
-        // RÈGLE 1: Si la question contient des mots-clés de documents, c'est une question sur documents
-        if (documentScore > 0) {
-            // Si elle contient aussi des mots-clés de transactions, on vérifie le contexte
-            if (transactionScore > 0) {
-                // Si les mots-clés de documents sont plus nombreux ou égaux, priorité documents
-                if (documentScore >= transactionScore) {
-                    log.info("✅ Question classifiée comme DOCUMENT (documentScore={} >= transactionScore={})", 
-                            documentScore, transactionScore);
-                    return QuestionType.DOCUMENT;
-                } else {
-                    // Si les mots-clés de transactions sont plus nombreux, priorité transactions
-                    log.info("✅ Question classifiée comme TRANSACTION (transactionScore={} > documentScore={})", 
-                            transactionScore, documentScore);
-                    return QuestionType.TRANSACTION;
-                }
-            } else {
-                // Pas de mots-clés de transactions, c'est clairement une question sur documents
-                log.info("✅ Question classifiée comme DOCUMENT (documentScore={}, transactionScore=0)", documentScore);
-                return QuestionType.DOCUMENT;
-            }
+        // Mots-clés distincts trouvés, par catégorie
+        Set<String> documentKeywords = new LinkedHashSet<>();
+        Set<String> transactionKeywords = new LinkedHashSet<>();
+        for (KeywordAutomaton.Hit hit : AUTOMATON.findAll(KeywordAutomaton.normalize(question))) {
+            (hit.category() == DOCUMENT ? documentKeywords : transactionKeywords).add(hit.keyword());
         }
+        int documentScore = documentKeywords.size();
+        int transactionScore = transactionKeywords.size();
         
-        // RÈGLE 2: Si on détecte des mots-clés de transactions, c'est une question sur transactions
-        if (transactionScore > 0) {
-            log.info("✅ Question classifiée comme TRANSACTION (transactionScore={}, documentScore=0)", transactionScore);
-            return QuestionType.TRANSACTION;
-        }
+        QuestionType type = documentScore > 0 && documentScore >= transactionScore
+                ? QuestionType.DOCUMENT
+                : QuestionType.TRANSACTION;
+        int winnerScore = type == QuestionType.DOCUMENT ? documentScore : transactionScore;
+        double confidence = (winnerScore + 1.0) / (documentScore + transactionScore + 2.0);
         
-        // RÈGLE 3: Par défaut (aucun mot-clé détecté), on assume une question sur transactions
-        log.info("✅ Question classifiée comme TRANSACTION (par défaut, aucun mot-clé spécifique)");
-        return QuestionType.TRANSACTION;
-    }
-    
-    /**
-     * Compte le nombre de mots-clés présents dans la question
-     */
-    private int countKeywords(String question, List<String> keywords) {
-        int count = 0;
-        for (String keyword : keywords) {
-            if (question.contains(keyword)) {
-                count++;
-            }
-        }
-        return count;
+        Classification classification = new Classification(type, confidence,
+                List.copyOf(documentKeywords), List.copyOf(transactionKeywords), Classification.KEYWORDS);
+        log.debug("Question classifiée comme {} (confiance {}, documents {} {}, transactions {} {})",
+                type, String.format("%.2f", confidence), documentScore, documentKeywords, transactionScore, transactionKeywords);
+        return classification;
     }
     
     /**
      * Vérifie si une question nécessite l'utilisation du RAG
+     * Préférer analyze(question).requiresRAG() quand la classification est déjà calculée
      */
     public boolean requiresRAG(String question) {
-        return classify(question) == QuestionType.DOCUMENT;
+        return analyze(question).requiresRAG();
     }
     
     /**
      * Vérifie si une question nécessite l'utilisation des outils de base de données
      */
     public boolean requiresDatabaseTools(String question) {
-        return classify(question) == QuestionType.TRANSACTION;
+        return analyze(question).requiresDatabaseTools();
     }
 }
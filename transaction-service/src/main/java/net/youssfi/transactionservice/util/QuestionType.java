@@ -5,5 +5,6 @@ package net.youssfi.transactionservice.util;
  */
 public enum QuestionType {
     DOCUMENT,    // Question sur les documents/PDF/contenu -> utilise RAG
-    TRANSACTION  // Question sur les transactions -> utilise DB tools
+    TRANSACTION, // Question sur les transactions -> utilise DB tools
+    SMALL_TALK   // Salutations, remerciements... -> ni RAG ni DB (SemanticQuestionRouter uniquement)
 }
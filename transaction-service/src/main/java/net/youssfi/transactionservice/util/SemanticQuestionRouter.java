@@ -0,0 +1,310 @@
+package net.youssfi.transactionservice.util;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.rag.VectorSimilarity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Routage des questions par similarité avec un centroïde d'embeddings par route
+ * (DOCUMENT, TRANSACTION, SMALL_TALK), calculé une fois à partir de routing/route-examples.tsv
+ * - marge entre les deux meilleures routes >= marginThreshold: décision directe (quelques microsecondes
+ *   une fois la question vectorisée)
+ * - marge insuffisante: les mots-clés départagent s'ils désignent nettement l'une des deux routes,
+ *   sinon appel au LLM (si rag.router.llm-fallback), sinon meilleure route
+ * Sans modèle d'embedding ou si la vectorisation échoue: classification par mots-clés (QuestionClassifier)
+ */
+@Component
+@Slf4j
+public class SemanticQuestionRouter {
+
+    private static final double KEYWORD_TIEBREAK_CONFIDENCE = 0.75;
+    private static final long CENTROID_RETRY_MILLIS = 60_000;
+
+    private final QuestionClassifier questionClassifier;
+    private final ChatLanguageModel chatLanguageModel;
+
+    @Autowired(required = false)
+    private EmbeddingModel embeddingModel;
+
+    @Value("${rag.router.semantic.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.router.margin-threshold:0.05}")
+    private double marginThreshold;
+
+    @Value("${rag.router.temperature:0.05}")
+    private double temperature;
+
+    @Value("${rag.router.llm-fallback:true}")
+    private boolean llmFallback;
+
+    @Value("classpath:/routing/route-examples.tsv")
+    private Resource examplesResource;
+
+    @Value("classpath:/routing/route-testset.tsv")
+    private Resource testSetResource;
+
+    private volatile Map<QuestionType, float[]> centroids;
+    private volatile long centroidsFailedAt;
+
+    public SemanticQuestionRouter(QuestionClassifier questionClassifier, ChatLanguageModel chatLanguageModel) {
+        this.questionClassifier = questionClassifier;
+        this.chatLanguageModel = chatLanguageModel;
+    }
+
+    private record Scores(QuestionType best, QuestionType second, double margin, Map<QuestionType, Double> probabilities) {
+    }
+
+    /**
+     * Classification d'une question, à calculer une fois par requête puis à transmettre
+     */
+    public Classification route(String question) {
+        Classification keywords = questionClassifier.analyze(question);
+        if (!enabled || embeddingModel == null || question == null || question.isBlank()) {
+            return keywords;
+        }
+        Map<QuestionType, float[]> routeCentroids = centroids();
+        if (routeCentroids == null) {
+            return keywords;
+        }
+        float[] vector;
+        try {
+            vector = embeddingModel.embed(question).content().vector();
+        } catch (Exception e) {
+            log.warn("⚠️ Routage sémantique indisponible ({}), classification par mots-clés", e.getMessage());
+            return keywords;
+        }
+
+        long start = System.nanoTime();
+        Scores scores = score(vector, routeCentroids);
+        log.debug("Similarités aux centroïdes calculées en {} µs", (System.nanoTime() - start) / 1000);
+        Classification decision = decide(question, scores, keywords, llmFallback);
+        log.info("🧭 Route {} (confiance {}, marge {}, par {})", decision.type(),
+                String.format("%.2f", decision.confidence()), String.format("%.3f", scores.margin()), decision.source());
+        return decision;
+    }
+
+    private Classification decide(String question, Scores scores, Classification keywords, boolean allowLlm) {
+        if (scores.margin() >= marginThreshold) {
+            return keywords.withDecision(scores.best(), scores.probabilities().get(scores.best()), Classification.EMBEDDINGS);
+        }
+        // Ambigu: les mots-clés départagent s'ils désignent nettement l'une des deux routes en tête
+        boolean keywordEvidence = keywords.documentScore() + keywords.transactionScore() > 0;
+        if (keywordEvidence && keywords.confidence() >= KEYWORD_TIEBREAK_CONFIDENCE
+                && (keywords.type() == scores.best() || keywords.type() == scores.second())) {
+            return keywords.withDecision(keywords.type(), scores.probabilities().get(keywords.type()), Classification.KEYWORDS);
+        }
+        if (allowLlm) {
+            QuestionType llmType = askLlm(question);
+            if (llmType != null) {
+                return keywords.withDecision(llmType, scores.probabilities().get(llmType), Classification.LLM);
+            }
+        }
+        return keywords.withDecision(scores.best(), scores.probabilities().get(scores.best()), Classification.EMBEDDINGS);
+    }
+
+    private Scores score(float[] vector, Map<QuestionType, float[]> routeCentroids) {
+        Map<QuestionType, Double> similarities = new EnumMap<>(QuestionType.class);
+        QuestionType best = null;
+        QuestionType second = null;
+        for (Map.Entry<QuestionType, float[]> entry : routeCentroids.entrySet()) {
+            double similarity = VectorSimilarity.cosine(vector, entry.getValue());
+            similarities.put(entry.getKey(), similarity);
+            if (best == null || similarity > similarities.get(best)) {
+                second = best;
+                best = entry.getKey();
+            } else if (second == null || similarity > similarities.get(second)) {
+                second = entry.getKey();
+            }
+        }
+        // Softmax des similarités: probabilité de chaque route
+        double max = similarities.get(best);
+        double total = 0;
+        Map<QuestionType, Double> probabilities = new EnumMap<>(QuestionType.class);
+        for (Map.Entry<QuestionType, Double> entry : similarities.entrySet()) {
+            double weight = Math.exp((entry.getValue() - max) / temperature);
+            probabilities.put(entry.getKey(), weight);
+            total += weight;
+        }
+        for (Map.Entry<QuestionType, Double> entry : probabilities.entrySet()) {
+            entry.setValue(entry.getValue() / total);
+        }
+        double margin = second != null ? max - similarities.get(second) : 1.0;
+        return new Scores(best, second, margin, probabilities);
+    }
+
+    private QuestionType askLlm(String question) {
+        String prompt = "Classe la question suivante dans UNE catégorie:\n"
+                + "DOCUMENT: question sur le contenu des documents chargés (cours, rapports, PDF, images)\n"
+                + "TRANSACTION: question ou commande sur les transactions bancaires, les comptes ou les soldes\n"
+                + "SMALL_TALK: salutation, remerciement ou conversation sans demande précise\n"
+                + "Réponds uniquement par DOCUMENT, TRANSACTION ou SMALL_TALK.\n\n"
+                + "Question: " + question;
+        try {
+            String answer = chatLanguageModel.generate(prompt).toUpperCase(Locale.ROOT);
+            for (QuestionType type : List.of(QuestionType.SMALL_TALK, QuestionType.TRANSACTION, QuestionType.DOCUMENT)) {
+                if (answer.contains(type.name())) {
+                    return type;
+                }
+            }
+            log.warn("⚠️ Réponse du LLM non reconnue pour le routage: {}", answer);
+        } catch (Exception e) {
+            log.warn("⚠️ Classification par LLM impossible: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Centroïdes calculés au premier appel; nouvel essai au plus une fois par minute si le modèle est indisponible
+     */
+    private Map<QuestionType, float[]> centroids() {
+        Map<QuestionType, float[]> current = centroids;
+        if (current != null || System.currentTimeMillis() - centroidsFailedAt < CENTROID_RETRY_MILLIS) {
+            return current;
+        }
+        synchronized (this) {
+            if (centroids != null) {
+                return centroids;
+            }
+            try {
+                List<String[]> examples = readLabeled(examplesResource);
+                List<TextSegment> segments = new ArrayList<>(examples.size());
+                for (String[] example : examples) {
+                    segments.add(TextSegment.from(example[1]));
+                }
+                List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+                Map<QuestionType, float[]> sums = new EnumMap<>(QuestionType.class);
+                for (int i = 0; i < examples.size(); i++) {
+                    float[] vector = embeddings.get(i).vector();
+                    double norm = VectorSimilarity.norm(vector);
+                    float[] sum = sums.computeIfAbsent(QuestionType.valueOf(examples.get(i)[0]), type -> new float[vector.length]);
+                    for (int d = 0; d < vector.length; d++) {
+                        sum[d] += norm > 0 ? (float) (vector[d] / norm) : 0f;
+                    }
+                }
+                centroids = sums;
+                log.info("✅ Centroïdes de routage calculés: {} exemples, routes {}", examples.size(), sums.keySet());
+            } catch (Exception e) {
+                centroidsFailedAt = System.currentTimeMillis();
+                log.warn("⚠️ Centroïdes de routage indisponibles: {}", e.getMessage());
+            }
+            return centroids;
+        }
+    }
+
+    /**
+     * Matrices de confusion sur routing/route-testset.tsv: mots-clés seuls, embeddings seuls, routeur complet
+     * (le routeur complet appelle le LLM pour les questions ambiguës)
+     */
+    public String evaluate() throws IOException {
+        List<String[]> testSet = readLabeled(testSetResource);
+        Map<QuestionType, float[]> routeCentroids = embeddingModel != null ? centroids() : null;
+        if (routeCentroids == null) {
+            return "Routeur sémantique indisponible (modèle d'embedding absent ou centroïdes non calculés)";
+        }
+        ConfusionMatrix keywordMatrix = new ConfusionMatrix("mots-clés");
+        ConfusionMatrix embeddingMatrix = new ConfusionMatrix("embeddings seuls");
+        ConfusionMatrix routerMatrix = new ConfusionMatrix("routeur (marge " + marginThreshold + ", LLM " + llmFallback + ")");
+        int escalations = 0;
+        long routingNanos = 0;
+        for (String[] example : testSet) {
+            QuestionType expected = QuestionType.valueOf(example[0]);
+            String question = example[1];
+            Classification keywords = questionClassifier.analyze(question);
+            keywordMatrix.add(expected, keywords.type());
+
+            float[] vector = embeddingModel.embed(question).content().vector();
+            long start = System.nanoTime();
+            Scores scores = score(vector, routeCentroids);
+            routingNanos += System.nanoTime() - start;
+            embeddingMatrix.add(expected, scores.best());
+
+            Classification decision = decide(question, scores, keywords, llmFallback);
+            escalations += Classification.LLM.equals(decision.source()) ? 1 : 0;
+            routerMatrix.add(expected, decision.type());
+        }
+        return String.format("🧭 Évaluation du routage: %d questions, %.1f µs par comparaison aux centroïdes, %d appels LLM%n%n",
+                testSet.size(), routingNanos / 1000.0 / testSet.size(), escalations)
+                + keywordMatrix.render() + "\n" + embeddingMatrix.render() + "\n" + routerMatrix.render();
+    }
+
+    private static final class ConfusionMatrix {
+        private final String name;
+        private final int[][] counts = new int[QuestionType.values().length][QuestionType.values().length];
+
+        ConfusionMatrix(String name) {
+            this.name = name;
+        }
+
+        void add(QuestionType expected, QuestionType predicted) {
+            counts[expected.ordinal()][predicted.ordinal()]++;
+        }
+
+        String render() {
+            QuestionType[] types = QuestionType.values();
+            StringBuilder report = new StringBuilder(name).append(" (lignes: attendu, colonnes: prédit)\n");
+            report.append(String.format("%-12s", ""));
+            for (QuestionType type : types) {
+                report.append(String.format("%12s", type));
+            }
+            report.append(String.format("%11s%8s%n", "précision", "rappel"));
+            int correct = 0;
+            int total = 0;
+            for (QuestionType expected : types) {
+                report.append(String.format("%-12s", expected));
+                int rowTotal = 0;
+                int columnTotal = 0;
+                for (QuestionType predicted : types) {
+                    int count = counts[expected.ordinal()][predicted.ordinal()];
+                    report.append(String.format("%12d", count));
+                    rowTotal += count;
+                    columnTotal += counts[predicted.ordinal()][expected.ordinal()];
+                }
+                int hits = counts[expected.ordinal()][expected.ordinal()];
+                correct += hits;
+                total += rowTotal;
+                report.append(String.format("%11.2f%8.2f%n",
+                        columnTotal > 0 ? (double) hits / columnTotal : 0.0, rowTotal > 0 ? (double) hits / rowTotal : 0.0));
+            }
+            report.append(String.format("exactitude: %.2f%n", total > 0 ? (double) correct / total : 0.0));
+            return report.toString();
+        }
+    }
+
+    /**
+     * Lignes "route<TAB>question", commentaires (#) et lignes vides ignorés
+     */
+    private static List<String[]> readLabeled(Resource resource) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t", 2);
+                if (columns.length == 2) {
+                    rows.add(new String[]{columns[0].trim(), columns[1].trim()});
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -2,20 +2,33 @@ package net.youssfi.transactionservice.web;
 
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.ChatMemoryProvider;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.output.Response;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
 import net.youssfi.transactionservice.agents.TransactionAIAgent;
 import net.youssfi.transactionservice.agents.TransactionAiTools;
 import net.youssfi.transactionservice.agents.MultiAgentOrchestrator;
+import net.youssfi.transactionservice.rag.ContextPacker;
+import net.youssfi.transactionservice.rag.CrossEncoderReranker;
+import net.youssfi.transactionservice.rag.EmbeddingCircuitBreaker;
+import net.youssfi.transactionservice.rag.IngestionRetryQueue;
+import net.youssfi.transactionservice.service.TransactionCommandService;
+import net.youssfi.transactionservice.rag.PackedContext;
+import net.youssfi.transactionservice.rag.RetrievalFilterExtractor;
+import net.youssfi.transactionservice.rag.ShardedEmbeddingStore;
+import net.youssfi.transactionservice.service.TransactionToolResult;
 import net.youssfi.transactionservice.service.TransactionToolService;
+import net.youssfi.transactionservice.util.Classification;
 import net.youssfi.transactionservice.util.QuestionClassifier;
 import net.youssfi.transactionservice.util.QuestionType;
+import net.youssfi.transactionservice.util.SemanticQuestionRouter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -24,10 +37,14 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @CrossOrigin("*")
@@ -38,6 +55,9 @@ public class AIAssistantController {
     private final TransactionToolService transactionToolService;
     private final TransactionAiTools transactionAiTools;
     private final QuestionClassifier questionClassifier;
+    private final SemanticQuestionRouter questionRouter;
+    private final ContextPacker contextPacker;
+    private final RetrievalFilterExtractor retrievalFilterExtractor;
     
     @Autowired(required = false)
     private MultiAgentOrchestrator multiAgentOrchestrator; // Orchestrateur multi-agents (optionnel)
@@ -48,6 +68,21 @@ public class AIAssistantController {
     @Autowired(required = false)
     private EmbeddingModel embeddingModel; // Embedding Model pour RAG
     
+    @Autowired(required = false)
+    private EmbeddingCircuitBreaker embeddingCircuitBreaker;
+    
+    @Autowired(required = false)
+    private IngestionRetryQueue ingestionRetryQueue;
+    
+    @Autowired(required = false)
+    private CrossEncoderReranker reranker; // Re-ranking cross-encoder (si rag.rerank.enabled=true)
+    
+    @Autowired
+    private TransactionCommandService transactionCommandService; // Écritures demandées dans le chat (outbox)
+    
+    @Value("${transactions.commands.confirmation-timeout-seconds:10}")
+    private long confirmationTimeoutSeconds;
+    
     @Value("${rag.retriever.max-results:30}")
     private int maxResults;
     
@@ -62,18 +97,29 @@ public class AIAssistantController {
             ChatMemoryProvider chatMemoryProvider,
             TransactionToolService transactionToolService,
             TransactionAiTools transactionAiTools,
-            QuestionClassifier questionClassifier){
+            QuestionClassifier questionClassifier,
+            SemanticQuestionRouter questionRouter,
+            ContextPacker contextPacker,
+            RetrievalFilterExtractor retrievalFilterExtractor){
         this.streamingChatLanguageModel = streamingChatLanguageModel;
         this.chatMemoryProvider = chatMemoryProvider;
         this.transactionToolService = transactionToolService;
         this.transactionAiTools = transactionAiTools;
         this.questionClassifier = questionClassifier;
+        this.questionRouter = questionRouter;
+        this.contextPacker = contextPacker;
+        this.retrievalFilterExtractor = retrievalFilterExtractor;
     }
 
+    /**
+     * @param requestId identifiant du message côté client, renvoyé tel quel en cas de nouvel essai: une écriture
+     *                  déjà demandée avec ce jeton n'est pas appliquée une seconde fois (un jeton par requête sinon)
+     */
     @GetMapping("/askAgent")
     public Flux<String> chat(
             @RequestParam(defaultValue = "Bonjour") String question,
-            @RequestParam(required = false, defaultValue = "default") String chatId) {
+            @RequestParam(required = false, defaultValue = "default") String chatId,
+            @RequestParam(required = false) String requestId) {
         
         try {
             // Décoder la question si elle est encodée (gestion des caractères spéciaux dans l'URL)
@@ -84,14 +130,16 @@ public class AIAssistantController {
             }
             
             // Classifier la question
-            QuestionType questionType = questionClassifier.classify(question);
-            boolean isDocumentQuestion = questionType == QuestionType.DOCUMENT;
-            boolean isTransactionQuestion = questionType == QuestionType.TRANSACTION;
+            Classification classification = questionRouter.route(question);
+            QuestionType questionType = classification.type();
+            boolean isDocumentQuestion = classification.requiresRAG();
+            boolean isTransactionQuestion = classification.requiresDatabaseTools();
             
-            log.info("Question classifiée: {} - '{}'", questionType, question);
+            log.info("Question classifiée: {} (confiance {}, par {}) - '{}'", questionType,
+                    String.format("%.2f", classification.confidence()), classification.source(), question);
             
             // Récupérer la mémoire conversationnelle pour ce chatId
-            MessageWindowChatMemory chatMemory = (MessageWindowChatMemory) chatMemoryProvider.get((Object) chatId);
+            ChatMemory chatMemory = chatMemoryProvider.get(chatId);
             
             // Récupérer l'historique existant
             List<dev.langchain4j.data.message.ChatMessage> previousMessages = new ArrayList<>(chatMemory.messages());
@@ -99,6 +147,7 @@ public class AIAssistantController {
             // SÉPARATION STRICTE: RAG pour documents, DB pour transactions
             String ragContext = "";
             String toolResult = null;
+            List<Long> commandIds = List.of();
             
             if (isDocumentQuestion) {
                 if (embeddingStore != null && embeddingModel != null) {
@@ -107,7 +156,11 @@ public class AIAssistantController {
                             ragContext.isEmpty() ? "non" : "");
                 }
             } else if (isTransactionQuestion) {
-                toolResult = transactionToolService.executeTools(question);
+                TransactionToolResult tools = transactionToolService.executeTools(question, chatId, retryToken(requestId));
+                if (tools != null) {
+                    toolResult = tools.data();
+                    commandIds = tools.commandIds();
+                }
                 log.info("Mode TRANSACTIONS: Données DB {} récupérées", 
                         (toolResult != null && !toolResult.isEmpty()) ? "" : "non");
             }
@@ -126,8 +179,8 @@ public class AIAssistantController {
             allMessages.addAll(previousMessages);
             allMessages.add(userMessage);
             
-            // Générer la réponse
-            return generateResponse(allMessages, chatMemory, userMessage);
+            // Générer la réponse, suivie des confirmations des écritures demandées
+            return withConfirmations(generateResponse(allMessages, chatMemory, userMessage), commandIds);
             
         } catch (Exception e) {
             log.error("Erreur lors du traitement de la question: {}", e.getMessage(), e);
@@ -135,6 +188,23 @@ public class AIAssistantController {
         }
     }
     
+    /**
+     * Ajoute à la réponse la confirmation de chaque écriture demandée dans cette requête (commande appliquée ou
+     * rejetée par TransactionCommandService), au fil de leur application; au-delà du délai, la commande est
+     * signalée comme toujours en attente
+     */
+    private Flux<String> withConfirmations(Flux<String> answer, List<Long> commands) {
+        if (commands.isEmpty()) {
+            return answer;
+        }
+        return answer.concatWith(Flux.fromIterable(commands).concatMap(commandId ->
+                Mono.fromFuture(transactionCommandService.confirmation(commandId))
+                        .map(command -> "\n\n" + TransactionCommandService.confirmationMessage(command))
+                        .timeout(Duration.ofSeconds(confirmationTimeoutSeconds))
+                        .onErrorResume(e -> Mono.just("\n\n⏳ Commande n° " + commandId
+                                + " toujours en attente (état: /transactions/commands/" + commandId + ")"))));
+    }
+    
     /**
      * Récupère le contexte RAG depuis le vector store
      */
@@ -171,9 +241,24 @@ public class AIAssistantController {
                             double.class);
             log.info("   ✅ Méthode findRelevant trouvée");
             
+            // Filtres désignés par la question (document, type, année), appliqués dans le store
+            List<?> relevantMatches = null;
+            Filter filter = retrievalFilterExtractor.extract(question);
+            if (filter != null) {
+                relevantMatches = embeddingStore.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(queryEmbedding)
+                        .maxResults(Math.max(maxResults, 30))
+                        .minScore(0.0)
+                        .filter(filter)
+                        .build()).matches();
+                log.info("   {} résultats avec le filtre {}", relevantMatches.size(), filter);
+            }
+            
             // Recherche progressive avec seuils décroissants
-            log.info("   Début de la recherche dans le vector store...");
-            List<?> relevantMatches = searchInVectorStore(findRelevantMethod, queryEmbedding, question);
+            if (relevantMatches == null || relevantMatches.isEmpty()) {
+                log.info("   Début de la recherche dans le vector store...");
+                relevantMatches = searchInVectorStore(findRelevantMethod, queryEmbedding, question);
+            }
             
             if (relevantMatches == null || relevantMatches.isEmpty()) {
                 log.warn("⚠️ Aucun contenu trouvé dans le vector store pour: '{}'", question);
@@ -185,7 +270,7 @@ public class AIAssistantController {
             }
             
             log.info("✅ RAG: {} résultats trouvés", relevantMatches.size());
-            String ragContext = buildRAGContext(relevantMatches);
+            String ragContext = buildRAGContext(question, relevantMatches, queryEmbedding);
             log.info("✅ RAG: Contexte construit ({} caractères)", ragContext.length());
             log.info("═══════════════════════════════════════════════════════════");
             return ragContext;
@@ -197,6 +282,14 @@ public class AIAssistantController {
         }
     }
     
+    /**
+     * Jeton de réessai des commandes d'écriture: le requestId du client s'il est fourni (un nouvel essai
+     * retrouve la même commande), sinon un jeton propre à cette requête
+     */
+    private static String retryToken(String requestId) {
+        return requestId != null && !requestId.isBlank() ? requestId : UUID.randomUUID().toString();
+    }
+    
     /**
      * Recherche dans le vector store avec seuils progressifs
      * Recherche très agressive pour trouver du contenu même avec faible similarité
@@ -391,7 +484,7 @@ public class AIAssistantController {
     /**
      * Construit le contexte RAG formaté à partir des matches
      */
-    private String buildRAGContext(List<?> relevantMatches) {
+    private String buildRAGContext(String question, List<?> relevantMatches, dev.langchain4j.data.embedding.Embedding queryEmbedding) {
         StringBuilder ragBuilder = new StringBuilder();
         ragBuilder.append("═══════════════════════════════════════════════════════════\n");
         ragBuilder.append("📚 CONTEXTE PERTINENT DEPUIS LES DOCUMENTS CHARGÉS\n");
@@ -411,60 +504,42 @@ public class AIAssistantController {
         ragBuilder.append("CONTENU DES DOCUMENTS:\n");
         ragBuilder.append("───────────────────────────────────────────────────────────\n\n");
         
-        int segmentIndex = 1;
-        int totalChars = 0;
+        // Les résultats des différentes recherches sont assemblés au budget de tokens (MMR, sans recouvrement)
+        List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
         for (Object match : relevantMatches) {
-            try {
-                TextSegment segment = extractTextSegment(match);
-                if (segment != null && segment.text() != null && !segment.text().trim().isEmpty()) {
-                    String segmentText = segment.text().trim();
-                    // Augmenter la limite pour avoir plus de contenu
-                    if (segmentText.length() > 5000) {
-                        segmentText = segmentText.substring(0, 5000) + "...";
-                    }
-                    
-                    ragBuilder.append("【 Extrait ").append(segmentIndex).append(" 】\n");
-                    ragBuilder.append(segmentText).append("\n\n");
-                    totalChars += segmentText.length();
-                    segmentIndex++;
-                }
-            } catch (Exception e) {
-                log.debug("Erreur lors du traitement d'un match: {}", e.getMessage());
+            if (match instanceof dev.langchain4j.store.embedding.EmbeddingMatch<?> embeddingMatch
+                    && embeddingMatch.embedded() instanceof TextSegment) {
+                @SuppressWarnings("unchecked")
+                dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment> typed =
+                        (dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>) embeddingMatch;
+                matches.add(typed);
             }
         }
+        if (reranker != null) {
+            // Les scores du cross-encoder remplacent la similarité cosinus pour l'assemblage
+            matches = reranker.rerank(question, matches);
+            queryEmbedding = null;
+        }
+        PackedContext packed = contextPacker.pack(queryEmbedding, matches);
+        ragBuilder.append(packed.render());
         
         ragBuilder.append("═══════════════════════════════════════════════════════════\n");
-        log.info("✅ RAG: {} segments ajoutés au contexte ({} caractères)", segmentIndex - 1, totalChars);
+        log.info("✅ RAG: {} segments ajoutés au contexte ({} tokens)", packed.getSegments().size(), packed.getTotalTokens());
         return ragBuilder.toString();
     }
     
-    /**
-     * Extrait un TextSegment d'un match (gère différentes versions de l'API)
-     */
-    private TextSegment extractTextSegment(Object match) {
-        if (match instanceof TextSegment) {
-            return (TextSegment) match;
-        }
-        
-        // Essayer d'appeler embedded() ou getEmbedded() via réflexion
-        try {
-            java.lang.reflect.Method embeddedMethod = match.getClass().getMethod("embedded");
-            return (TextSegment) embeddedMethod.invoke(match);
-        } catch (Exception e) {
-            try {
-                java.lang.reflect.Method getEmbeddedMethod = match.getClass().getMethod("getEmbedded");
-                return (TextSegment) getEmbeddedMethod.invoke(match);
-            } catch (Exception e2) {
-                log.debug("Impossible d'extraire le segment du match: {}", e2.getMessage());
-                return null;
-            }
-        }
-    }
-    
     /**
      * Construit le message système selon le type de question
      */
     private String buildSystemPrompt(QuestionType questionType, String ragContext, String toolResult) {
+        if (questionType == QuestionType.SMALL_TALK) {
+            return "Tu es un assistant aimable qui aide à consulter des documents et à gérer des transactions bancaires.\n\n" +
+                   "L'utilisateur fait la conversation (salutation, remerciement, question sur toi).\n" +
+                   "- Réponds brièvement et cordialement, en une ou deux phrases.\n" +
+                   "- N'invente aucune donnée de document ni de transaction.\n" +
+                   "- Si c'est pertinent, rappelle que tu peux répondre sur les documents chargés ou sur les transactions.\n\n" +
+                   "IMPORTANT: Réponds TOUJOURS en FRANÇAIS.";
+        }
         if (questionType == QuestionType.DOCUMENT) {
             String prompt = "Tu es un ASSISTANT D'ANALYSE DE DOCUMENTS. Ton SEUL objectif est de répondre aux questions sur les DOCUMENTS, PDFs et CONTENUS.\n\n" +
                    "🚫 INTERDICTIONS ABSOLUES:\n" +
@@ -505,7 +580,10 @@ public class AIAssistantController {
                    "- Tu DOIS utiliser DIRECTEMENT ces données pour répondre à l'utilisateur\n" +
                    "- Si les données contiennent les informations demandées, affiche-les directement\n" +
                    "- Réponds comme si tu avais accès direct aux données, pas comme un développeur qui explique le code\n" +
-                   "- Formate ta réponse de manière naturelle et lisible pour l'utilisateur\n\n" +
+                   "- Formate ta réponse de manière naturelle et lisible pour l'utilisateur\n" +
+                   "- Pour une création, une mise à jour ou une suppression, les données sont l'accusé de réception d'une commande: " +
+                   "annonce que la demande est enregistrée (avec son numéro), sans dire qu'elle est déjà appliquée; " +
+                   "la confirmation est envoyée à la suite de ta réponse\n\n" +
                    "EXEMPLE DE BONNE RÉPONSE:\n" +
                    "Si les données contiennent: 'ID: 17 | Compte: 11 | Montant: 5000.00 | Type: CREDIT | Statut: PENDING'\n" +
                    "Tu réponds: 'Voici les détails de la transaction 17 :\n" +
@@ -577,7 +655,7 @@ public class AIAssistantController {
      */
     private Flux<String> generateResponse(
             List<dev.langchain4j.data.message.ChatMessage> allMessages,
-            MessageWindowChatMemory chatMemory,
+            ChatMemory chatMemory,
             UserMessage userMessage) {
         
         Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
@@ -653,11 +731,12 @@ public class AIAssistantController {
     @GetMapping("/askAgentWithTools")
     public Flux<String> chatWithTools(
             @RequestParam(defaultValue = "Bonjour") String question,
-            @RequestParam(required = false, defaultValue = "default") String chatId) {
+            @RequestParam(required = false, defaultValue = "default") String chatId,
+            @RequestParam(required = false) String requestId) {
         try {
             // Utiliser l'agent directement si possible, sinon utiliser l'approche manuelle
             // Pour Ollama, on utilise l'approche manuelle avec les outils
-            return chat(question, chatId);
+            return chat(question, chatId, requestId);
         } catch (Exception e) {
             e.printStackTrace();
             return Flux.just("Erreur lors de l'exécution de l'agent: " + e.getMessage());
@@ -675,7 +754,8 @@ public class AIAssistantController {
     @GetMapping("/askAgentMultiAgent")
     public Flux<String> chatMultiAgent(
             @RequestParam(defaultValue = "Bonjour") String question,
-            @RequestParam(required = false, defaultValue = "default") String chatId) {
+            @RequestParam(required = false, defaultValue = "default") String chatId,
+            @RequestParam(required = false) String requestId) {
         
         try {
             // Décoder la question
@@ -686,23 +766,24 @@ public class AIAssistantController {
             
             if (multiAgentOrchestrator == null) {
                 log.warn("⚠️ MultiAgentOrchestrator non disponible, utilisation du mode classique");
-                return chat(question, chatId);
+                return chat(question, chatId, requestId);
             }
             
             log.info("🎯 Utilisation de l'orchestration multi-agents pour: '{}'", question);
             
             // Orchestrer avec tous les agents
-            MultiAgentOrchestrator.OrchestrationResult result = multiAgentOrchestrator.orchestrate(question);
+            MultiAgentOrchestrator.OrchestrationResult result = multiAgentOrchestrator.orchestrate(
+                    question, questionRouter.route(question), chatId, retryToken(requestId));
             
             // Sauvegarder dans la mémoire conversationnelle
-            MessageWindowChatMemory chatMemory = (MessageWindowChatMemory) chatMemoryProvider.get((Object) chatId);
+            ChatMemory chatMemory = chatMemoryProvider.get(chatId);
             chatMemory.add(UserMessage.from(question));
             chatMemory.add(dev.langchain4j.data.message.AiMessage.from(result.getFinalResponse()));
             
             // Retourner la réponse en streaming (simulé)
-            return Flux.just(result.getFinalResponse().split(""))
+            return withConfirmations(Flux.just(result.getFinalResponse().split(""))
                     .map(s -> s)
-                    .delayElements(java.time.Duration.ofMillis(20)); // Simulation du streaming
+                    .delayElements(java.time.Duration.ofMillis(20)), result.getCommandIds()); // Simulation du streaming
             
         } catch (Exception e) {
             log.error("Erreur lors de l'orchestration multi-agents: {}", e.getMessage(), e);
@@ -721,7 +802,23 @@ public class AIAssistantController {
         status.append("🔧 COMPOSANTS:\n");
         status.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
         status.append("EmbeddingModel: ").append(embeddingModel != null ? "✅ Disponible" : "❌ Non disponible").append("\n");
-        status.append("EmbeddingStore: ").append(embeddingStore != null ? "✅ Disponible" : "❌ Non disponible").append("\n\n");
+        status.append("EmbeddingStore: ").append(embeddingStore != null ? "✅ Disponible" : "❌ Non disponible").append("\n");
+        if (embeddingCircuitBreaker != null) {
+            status.append("Circuit d'embedding: ").append(embeddingCircuitBreaker.state()).append("\n");
+        }
+        if (ingestionRetryQueue != null) {
+            status.append("Ingestions en attente de réessai: ").append(ingestionRetryQueue.size()).append("\n");
+        }
+        if (embeddingStore instanceof ShardedEmbeddingStore sharded) {
+            ShardedEmbeddingStore.Health health = sharded.health();
+            status.append("Shards: ").append(sharded.shardCount()).append(", recherches partielles: ")
+                    .append(health.partialSearches()).append("/").append(health.searches())
+                    .append(", échecs par shard: ").append(Arrays.toString(health.failuresByShard())).append("\n");
+            if (health.lastFailure() != null) {
+                status.append("   ⚠️ Dernière erreur: ").append(health.lastFailure()).append("\n");
+            }
+        }
+        status.append("Re-ranking: ").append(reranker != null ? "✅ Activé" : "➖ Désactivé").append("\n\n");
         
         if (embeddingStore == null || embeddingModel == null) {
             status.append("⚠️ ATTENTION: Le RAG n'est pas complètement configuré!\n");
@@ -785,8 +882,13 @@ public class AIAssistantController {
         status.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
         status.append("maxResults: ").append(maxResults).append("\n");
         status.append("minScore: ").append(minScore).append("\n");
+        if (reranker != null) {
+            status.append("Latence du re-ranking par taille de lot:\n");
+            reranker.latencyStats().forEach((size, stats) ->
+                    status.append("   lot de ").append(size).append(": ").append(stats).append("\n"));
+        }
         status.append("═══════════════════════════════════════════════════════════\n");
         
         return status.toString();
     }
-}
\ No newline at end of file
+}
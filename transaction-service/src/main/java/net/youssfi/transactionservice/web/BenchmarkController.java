@@ -0,0 +1,341 @@
+package net.youssfi.transactionservice.web;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.analytics.ColumnarScanBenchmark;
+import net.youssfi.transactionservice.config.OllamaEmbeddingModelImpl;
+import net.youssfi.transactionservice.ingestion.SplitterEvaluation;
+import net.youssfi.transactionservice.rag.CrossEncoderReranker;
+import net.youssfi.transactionservice.rag.LocalShardHost;
+import net.youssfi.transactionservice.rag.PgVectorBenchmark;
+import net.youssfi.transactionservice.rag.ResilientEmbeddingModel;
+import net.youssfi.transactionservice.rag.ShardingBenchmark;
+import net.youssfi.transactionservice.rag.TunedPgVectorEmbeddingStore;
+import net.youssfi.transactionservice.repository.TransactionRepository;
+import net.youssfi.transactionservice.service.TransactionAggregationBenchmark;
+import net.youssfi.transactionservice.service.TransactionBulkLoader;
+import net.youssfi.transactionservice.util.ClassifierBenchmark;
+import net.youssfi.transactionservice.util.QuestionClassifier;
+import net.youssfi.transactionservice.util.SemanticQuestionRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks et évaluations (re-ranking, embeddings, découpage, pgvector, shards, analytique, routage...)
+ * Ils allouent des millions de vecteurs ou de lignes, créent des tables et appellent Ollama: le contrôleur
+ * n'existe qu'avec le profil Spring "bench" (--spring.profiles.active=bench), jamais en production
+ */
+@RestController
+@Profile("bench")
+@Slf4j
+public class BenchmarkController {
+    private final QuestionClassifier questionClassifier;
+    private final SemanticQuestionRouter questionRouter;
+    
+    @Autowired(required = false)
+    private EmbeddingStore<TextSegment> embeddingStore;
+    
+    @Autowired(required = false)
+    private EmbeddingModel embeddingModel;
+    
+    @Autowired(required = false)
+    private OllamaEmbeddingModelImpl ollamaEmbeddingModel; // Chemin HTTP, référence pour le benchmark d'embeddings
+    
+    @Autowired(required = false)
+    private CrossEncoderReranker reranker; // Re-ranking cross-encoder (si rag.rerank.enabled=true)
+    
+    @Autowired(required = false)
+    private SplitterEvaluation splitterEvaluation; // Comparaison des découpages sur le corpus docs/
+    
+    @Autowired(required = false)
+    private LocalShardHost localShardHost; // Shards hébergés (si rag.sharding.host.enabled=true)
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Autowired
+    private TransactionBulkLoader transactionBulkLoader; // Génération du jeu de données des benchmarks (insertions par lots)
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate; // Plans d'exécution (EXPLAIN) des benchmarks
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${server.port:8080}")
+    private int serverPort;
+    
+    @Value("${rag.retriever.max-results:30}")
+    private int maxResults;
+    
+    @Value("${rag.postgres.insert-batch-size:500}")
+    private int insertBatchSize;
+    
+    public BenchmarkController(QuestionClassifier questionClassifier, SemanticQuestionRouter questionRouter) {
+        this.questionClassifier = questionClassifier;
+        this.questionRouter = questionRouter;
+    }
+    
+    /**
+     * Mesure la latence du re-ranking par taille de lot sur les segments réellement indexés
+     * Exemple: POST /rag/rerankBenchmark?question=remboursement&batchSizes=1,4,8,16&rounds=5
+     */
+    @PostMapping("/rag/rerankBenchmark")
+    public String rerankBenchmark(
+            @RequestParam(defaultValue = "test") String question,
+            @RequestParam(defaultValue = "1,4,8,16,32") List<Integer> batchSizes,
+            @RequestParam(defaultValue = "5") int rounds) {
+        if (reranker == null) {
+            return "Re-ranking désactivé (rag.rerank.enabled=false)";
+        }
+        if (embeddingStore == null || embeddingModel == null) {
+            return "RAG non configuré";
+        }
+        try {
+            dev.langchain4j.data.embedding.Embedding queryEmbedding = embeddingModel.embed(question).content();
+            java.lang.reflect.Method findRelevantMethod = embeddingStore.getClass()
+                    .getMethod("findRelevant", dev.langchain4j.data.embedding.Embedding.class, int.class, double.class);
+            List<?> results = (List<?>) findRelevantMethod.invoke(embeddingStore, queryEmbedding, maxResults, 0.0);
+            
+            List<String> texts = new ArrayList<>();
+            for (Object result : results) {
+                if (result instanceof dev.langchain4j.store.embedding.EmbeddingMatch<?> match
+                        && match.embedded() instanceof TextSegment segment) {
+                    texts.add(segment.text());
+                }
+            }
+            if (texts.isEmpty()) {
+                return "Aucun segment dans le vector store";
+            }
+            
+            StringBuilder report = new StringBuilder("⏱️ Latence du re-ranking (moyenne sur ")
+                    .append(rounds).append(" passes, ").append(texts.size()).append(" segments distincts)\n");
+            reranker.benchmark(question, texts, batchSizes, Math.max(1, rounds)).forEach((size, millis) ->
+                    report.append(String.format("lot de %3d: %8.2f ms (%.2f ms/paire)%n", size, millis, millis / size)));
+            return report.toString();
+        } catch (Exception e) {
+            log.error("Erreur lors du benchmark de re-ranking: {}", e.getMessage(), e);
+            return "Erreur: " + e.getMessage();
+        }
+    }
+    
+    /**
+     * Compare le débit du modèle d'embedding actif avec le chemin HTTP Ollama
+     * - requêtes: embed() séquentiels de questions courtes
+     * - ingestion: embedAll() sur des segments de la taille des chunks
+     * Exemple: POST /rag/embeddingBenchmark?queries=50&segments=128
+     */
+    @PostMapping("/rag/embeddingBenchmark")
+    public String embeddingBenchmark(
+            @RequestParam(defaultValue = "50") int queries,
+            @RequestParam(defaultValue = "128") int segments) {
+        if (embeddingModel == null) {
+            return "RAG non configuré";
+        }
+        List<String> queryTexts = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            queryTexts.add("Quelle est la procédure de remboursement numéro " + i + " ?");
+        }
+        String paragraph = "Les conditions générales précisent les modalités de paiement, de remboursement "
+                + "et de résiliation applicables aux comptes clients. ";
+        List<TextSegment> segmentTexts = new ArrayList<>();
+        for (int i = 0; i < segments; i++) {
+            segmentTexts.add(TextSegment.from(i + ". " + paragraph.repeat(8)));
+        }
+        
+        StringBuilder report = new StringBuilder("⏱️ Débit des embeddings\n");
+        benchmarkEmbeddingModel("actif (" + embeddingModel.getClass().getSimpleName() + ")",
+                embeddingModel, queryTexts, segmentTexts, report);
+        boolean activeIsOllama = embeddingModel instanceof ResilientEmbeddingModel resilient
+                && resilient.getDelegate() == ollamaEmbeddingModel;
+        if (ollamaEmbeddingModel != null && !activeIsOllama) {
+            benchmarkEmbeddingModel("ollama", ollamaEmbeddingModel, queryTexts, segmentTexts, report);
+        }
+        return report.toString();
+    }
+    
+    /**
+     * Compare le découpage récursif et le découpage structurel sur le corpus docs/
+     * - nombre et taille des chunks, temps de découpage
+     * - taux de succès: texte attendu présent dans les topK segments retrouvés
+     * Questions au format "question|texte attendu", séparées par ';' (sinon phrases échantillonnées du corpus)
+     * Exemple: POST /rag/splitterBenchmark?samples=40&topK=3
+     */
+    @PostMapping("/rag/splitterBenchmark")
+    public String splitterBenchmark(
+            @RequestParam(required = false) String probes,
+            @RequestParam(defaultValue = "30") int samples,
+            @RequestParam(defaultValue = "3") int topK) {
+        if (splitterEvaluation == null) {
+            return "RAG non configuré";
+        }
+        List<SplitterEvaluation.Probe> probeList = new ArrayList<>();
+        if (probes != null) {
+            for (String probe : probes.split(";")) {
+                String[] parts = probe.split("\\|", 2);
+                if (parts.length == 2 && !parts[0].isBlank() && !parts[1].isBlank()) {
+                    probeList.add(new SplitterEvaluation.Probe(parts[0].trim(), parts[1].trim()));
+                }
+            }
+        }
+        try {
+            File corpus;
+            try {
+                corpus = new ClassPathResource("docs").getFile();
+            } catch (Exception e) {
+                corpus = new File("src/main/resources/docs");
+            }
+            List<SplitterEvaluation.Result> results = splitterEvaluation.evaluate(corpus, probeList, samples, topK);
+            if (results.isEmpty()) {
+                return "Aucun document PDF/TXT dans " + corpus.getAbsolutePath();
+            }
+            StringBuilder report = new StringBuilder("✂️ Comparaison des découpages (top ").append(topK).append(")\n");
+            for (SplitterEvaluation.Result result : results) {
+                report.append(String.format("%-20s %5d chunks, %6.1f tokens en moyenne (max %d), découpage %d ms, "
+                                + "succès %d/%d (%.0f%%)%n",
+                        result.splitter(), result.chunks(), result.averageTokens(), result.maxTokens(),
+                        result.splitMillis(), result.hits(), result.probes(), result.hitRate() * 100));
+            }
+            return report.toString();
+        } catch (Exception e) {
+            log.error("Erreur lors de la comparaison des découpages: {}", e.getMessage(), e);
+            return "Erreur: " + e.getMessage();
+        }
+    }
+    
+    /**
+     * Compare insertions ligne par ligne / par lots et recherche exacte / ANN sur une table jetable
+     * de la base pgvector configurée (vecteurs synthétiques de la dimension du store)
+     * Exemple: POST /rag/pgvectorBenchmark?rows=20000&queries=50&k=10&breadths=10,40,100,200
+     */
+    @PostMapping("/rag/pgvectorBenchmark")
+    public String pgvectorBenchmark(
+            @RequestParam(defaultValue = "20000") int rows,
+            @RequestParam(defaultValue = "50") int queries,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "10,40,100,200") List<Integer> breadths) {
+        if (!(embeddingStore instanceof TunedPgVectorEmbeddingStore pgStore)) {
+            return "Store pgvector non actif (fallback en mémoire)";
+        }
+        try {
+            return new PgVectorBenchmark(pgStore, insertBatchSize).run(rows, Math.max(1, queries), k, breadths);
+        } catch (Exception e) {
+            log.error("Erreur lors du benchmark pgvector: {}", e.getMessage(), e);
+            return "Erreur: " + e.getMessage();
+        }
+    }
+    
+    /**
+     * Courbe de passage à l'échelle du store partitionné en mémoire (et via HTTP si remote=true)
+     * Exemple: POST /rag/shardingBenchmark?rows=100000&dimension=384&queries=200&k=10&shards=1,2,4,8,16
+     */
+    @PostMapping("/rag/shardingBenchmark")
+    public String shardingBenchmark(
+            @RequestParam(defaultValue = "100000") int rows,
+            @RequestParam(defaultValue = "384") int dimension,
+            @RequestParam(defaultValue = "200") int queries,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "1,2,4,8,16") List<Integer> shards,
+            @RequestParam(defaultValue = "false") boolean remote) {
+        try {
+            return new ShardingBenchmark(localShardHost, "http://localhost:" + serverPort)
+                    .run(rows, dimension, Math.max(1, queries), k, shards, remote);
+        } catch (Exception e) {
+            log.error("Erreur lors du benchmark des shards: {}", e.getMessage(), e);
+            return "Erreur: " + e.getMessage();
+        }
+    }
+    
+    /**
+     * Solde des comptes: entités chargées et sommées en Java contre agrégat calculé par la base
+     * Génère les transactions sur sa propre plage de comptes (>= 9 000 000 000), seule plage supprimée à la fin
+     * (sauf keep=true); refuse de démarrer si cette plage contient déjà des lignes
+     * 100 000 lignes par défaut: les gros volumes (ex. 10 millions) se demandent explicitement
+     * Exemple: POST /tools/aggregationBenchmark?rows=10000000&accounts=1000&queries=50
+     */
+    @PostMapping("/tools/aggregationBenchmark")
+    public String aggregationBenchmark(
+            @RequestParam(defaultValue = "100000") long rows,
+            @RequestParam(defaultValue = "1000") int accounts,
+            @RequestParam(defaultValue = "50") int queries,
+            @RequestParam(defaultValue = "false") boolean keep) {
+        return new TransactionAggregationBenchmark(transactionRepository, transactionBulkLoader, jdbcTemplate, entityManager)
+                .run(Math.max(1, rows), Math.max(1, accounts), Math.max(1, queries), keep);
+    }
+    
+    /**
+     * Parcours analytiques en colonnes, séquentiels contre parallèles, sur des transactions synthétiques en mémoire
+     * (sans la base); référence en flux Java sur un échantillon d'entités de objectRows lignes
+     * 100 000 lignes par défaut: les gros volumes (ex. 10 millions) se demandent explicitement
+     * Exemple: POST /tools/analyticsBenchmark?rows=10000000&accounts=1000&rounds=5&threads=0&objectRows=1000000
+     */
+    @PostMapping("/tools/analyticsBenchmark")
+    public String analyticsBenchmark(
+            @RequestParam(defaultValue = "100000") int rows,
+            @RequestParam(defaultValue = "1000") int accounts,
+            @RequestParam(defaultValue = "5") int rounds,
+            @RequestParam(defaultValue = "0") int threads,
+            @RequestParam(defaultValue = "100000") int objectRows,
+            @RequestParam(defaultValue = "262144") int chunkRows) {
+        return new ColumnarScanBenchmark().run(Math.max(1, rows), Math.max(1, accounts), Math.max(1, rounds), threads,
+                Math.max(0, objectRows), Math.max(1024, chunkRows));
+    }
+    
+    /**
+     * Débit de la classification des questions: automate d'Aho-Corasick contre recherche String.contains
+     * Exemple: POST /tools/classifierBenchmark?iterations=100000
+     */
+    @PostMapping("/tools/classifierBenchmark")
+    public String classifierBenchmark(@RequestParam(defaultValue = "100000") int iterations) {
+        return new ClassifierBenchmark(questionClassifier).run(Math.max(1, iterations));
+    }
+    
+    /**
+     * Matrices de confusion du routage (mots-clés, embeddings seuls, routeur complet) sur routing/route-testset.tsv
+     * Exemple: POST /tools/routerEvaluation
+     */
+    @PostMapping("/tools/routerEvaluation")
+    public String routerEvaluation() throws Exception {
+        return questionRouter.evaluate();
+    }
+    
+    private void benchmarkEmbeddingModel(String name, EmbeddingModel model, List<String> queryTexts,
+                                         List<TextSegment> segmentTexts, StringBuilder report) {
+        try {
+            model.embed("préchauffage");
+            
+            long start = System.nanoTime();
+            for (String query : queryTexts) {
+                model.embed(query);
+            }
+            double queryMillis = (System.nanoTime() - start) / 1_000_000.0;
+            
+            start = System.nanoTime();
+            model.embedAll(segmentTexts);
+            double ingestionMillis = (System.nanoTime() - start) / 1_000_000.0;
+            
+            report.append(String.format("%s%n   requêtes:  %d en %.0f ms (%.1f/s, %.2f ms/requête)%n"
+                            + "   ingestion: %d segments en %.0f ms (%.1f segments/s)%n",
+                    name, queryTexts.size(), queryMillis, queryTexts.size() * 1000.0 / queryMillis,
+                    queryMillis / queryTexts.size(), segmentTexts.size(), ingestionMillis,
+                    segmentTexts.size() * 1000.0 / ingestionMillis));
+        } catch (Exception e) {
+            log.error("Erreur lors du benchmark d'embeddings ({}): {}", name, e.getMessage(), e);
+            report.append(name).append(": ❌ ").append(e.getMessage()).append("\n");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.youssfi.transactionservice.web;
+
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.ingestion.DocumentIngestionService;
+import net.youssfi.transactionservice.ingestion.IngestionJob;
+import net.youssfi.transactionservice.ingestion.IngestionJobQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upload de documents (PDF, TXT, images) vers la file d'ingestion
+ * L'ingestion est asynchrone: la réponse contient les tâches créées, à suivre via /documents/jobs/{id}
+ */
+@RestController
+@CrossOrigin("*")
+@Slf4j
+public class DocumentController {
+
+    @Autowired(required = false)
+    private IngestionJobQueue ingestionJobQueue; // absent si le RAG n'est pas configuré
+
+    @PostMapping("/documents")
+    public ResponseEntity<?> upload(@RequestParam("files") List<MultipartFile> files) {
+        if (ingestionJobQueue == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("RAG non configuré");
+        }
+        // Tous les fichiers sont vérifiés avant d'en soumettre un: un 400 ne laisse aucune tâche derrière lui
+        for (MultipartFile file : files) {
+            String fileName = file.getOriginalFilename();
+            if (fileName == null || !DocumentIngestionService.isSupported(fileName)) {
+                return ResponseEntity.badRequest().body("Format non supporté: " + fileName);
+            }
+        }
+        List<IngestionJob> jobs = new ArrayList<>();
+        for (MultipartFile file : files) {
+            String fileName = file.getOriginalFilename();
+            try (InputStream content = file.getInputStream()) {
+                jobs.add(ingestionJobQueue.submitUpload(fileName, content));
+            } catch (Exception e) {
+                log.error("Erreur lors de l'enregistrement de {}: {}", fileName, e.getMessage(), e);
+                return ResponseEntity.internalServerError().body("Erreur: " + e.getMessage());
+            }
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobs);
+    }
+
+    /**
+     * Réingère les documents déjà indexés (metadata ajoutées depuis leur ingestion: année, type, section)
+     * Leurs segments sont supprimés du store avant la nouvelle ingestion
+     */
+    @PostMapping("/documents/reindex")
+    public ResponseEntity<?> reindex() {
+        if (ingestionJobQueue == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("RAG non configuré");
+        }
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ingestionJobQueue.reindex());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/documents/jobs/{id}")
+    public ResponseEntity<IngestionJob> job(@PathVariable String id) {
+        IngestionJob job = ingestionJobQueue != null ? ingestionJobQueue.get(id) : null;
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/documents/jobs")
+    public ResponseEntity<Map<String, Object>> jobs() {
+        if (ingestionJobQueue == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("counters", ingestionJobQueue.counters());
+        body.put("jobs", ingestionJobQueue.list());
+        return ResponseEntity.ok(body);
+    }
+}
@@ -0,0 +1,105 @@
+package net.youssfi.transactionservice.web;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import net.youssfi.transactionservice.rag.FilteredInMemoryEmbeddingStore;
+import net.youssfi.transactionservice.rag.LocalShardHost;
+import net.youssfi.transactionservice.rag.ShardProtocol;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Côté hôte du protocole de shards (voir ShardProtocol et RemoteShardEmbeddingStore)
+ * Répond 503 tant que rag.sharding.host.enabled n'est pas activé
+ */
+@RestController
+public class ShardController {
+
+    @Autowired(required = false)
+    private LocalShardHost shardHost;
+
+    @PostMapping("/shards/{name}/add")
+    public ResponseEntity<ShardProtocol.AddResponse> add(@PathVariable String name,
+                                                         @RequestBody ShardProtocol.AddRequest request) {
+        if (shardHost == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        List<String> requestedIds = new ArrayList<>(request.entries().size());
+        List<Embedding> embeddings = new ArrayList<>(request.entries().size());
+        List<TextSegment> segments = new ArrayList<>(request.entries().size());
+        for (ShardProtocol.Entry entry : request.entries()) {
+            requestedIds.add(entry.id());
+            embeddings.add(Embedding.from(entry.vector()));
+            segments.add(ShardProtocol.segment(entry.text(), entry.metadata()));
+        }
+        List<String> ids = shardHost.shard(name).addAllWithIds(requestedIds, embeddings, segments);
+        return ResponseEntity.ok(new ShardProtocol.AddResponse(ids));
+    }
+
+    @PostMapping("/shards/{name}/search")
+    public ResponseEntity<ShardProtocol.SearchResponse> search(@PathVariable String name,
+                                                               @RequestBody ShardProtocol.SearchRequest request) {
+        if (shardHost == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        FilteredInMemoryEmbeddingStore shard = shardHost.shard(name);
+        List<EmbeddingMatch<TextSegment>> matches = shard.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(request.vector()))
+                .maxResults(request.maxResults())
+                .minScore(request.minScore())
+                .build()).matches();
+        List<ShardProtocol.Match> body = new ArrayList<>(matches.size());
+        for (EmbeddingMatch<TextSegment> match : matches) {
+            TextSegment segment = match.embedded();
+            body.add(new ShardProtocol.Match(match.embeddingId(), match.score(),
+                    segment != null ? segment.text() : null, segment != null ? segment.metadata().asMap() : null));
+        }
+        return ResponseEntity.ok(new ShardProtocol.SearchResponse(body));
+    }
+
+    @GetMapping("/shards/{name}/values/{key}")
+    public ResponseEntity<Set<String>> values(@PathVariable String name, @PathVariable String key) {
+        if (shardHost == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(shardHost.shard(name).distinctValues(key));
+    }
+
+    @DeleteMapping("/shards/{name}/values/{key}")
+    public ResponseEntity<Integer> remove(@PathVariable String name, @PathVariable String key, @RequestParam String value) {
+        if (shardHost == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(shardHost.shard(name).removeWhere(key, value));
+    }
+
+    @GetMapping("/shards")
+    public ResponseEntity<Set<String>> shards() {
+        if (shardHost == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(shardHost.names());
+    }
+
+    @DeleteMapping("/shards/{name}")
+    public ResponseEntity<Void> drop(@PathVariable String name) {
+        if (shardHost == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return shardHost.drop(name) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
@@ -1,31 +1,277 @@
 package net.youssfi.transactionservice.web;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import net.youssfi.transactionservice.analytics.AnalyticsQuery;
+import net.youssfi.transactionservice.analytics.AnalyticsResult;
+import net.youssfi.transactionservice.analytics.Period;
+import net.youssfi.transactionservice.analytics.TransactionAnalyticsService;
+import net.youssfi.transactionservice.entities.AccountSummary;
 import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionCommand;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
 import net.youssfi.transactionservice.repository.TransactionRepository;
+import net.youssfi.transactionservice.service.AccountSummaryService;
+import net.youssfi.transactionservice.service.CacheStatisticsService;
+import net.youssfi.transactionservice.service.TransactionBulkLoader;
+import net.youssfi.transactionservice.service.TransactionCommandService;
+import net.youssfi.transactionservice.service.TransactionDatasetGenerator;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
 
 @RestController
 @CrossOrigin("*")
+@Slf4j
 public class TransactionController {
+    private static final int MAX_PAGE_SIZE = 5000;
+    private static final int FLUSH_EVERY = 500;
+
     private TransactionRepository transactionRepository;
+    private final AccountSummaryService accountSummaryService;
+    private final TransactionBulkLoader bulkLoader;
+    private final CacheStatisticsService cacheStatisticsService;
+    private final TransactionAnalyticsService analyticsService;
+    private final TransactionCommandService commandService;
+    private final EntityManager entityManager;
+    private final ObjectWriter transactionWriter;
+    private final TransactionTemplate readOnlyTransaction;
 
-    public TransactionController(TransactionRepository transactionRepository) {
+    public TransactionController(TransactionRepository transactionRepository, AccountSummaryService accountSummaryService,
+                                 TransactionBulkLoader bulkLoader, CacheStatisticsService cacheStatisticsService,
+                                 TransactionAnalyticsService analyticsService, TransactionCommandService commandService,
+                                 EntityManager entityManager, ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
         this.transactionRepository = transactionRepository;
+        this.accountSummaryService = accountSummaryService;
+        this.bulkLoader = bulkLoader;
+        this.cacheStatisticsService = cacheStatisticsService;
+        this.analyticsService = analyticsService;
+        this.commandService = commandService;
+        this.entityManager = entityManager;
+        this.transactionWriter = objectMapper.writerFor(Transaction.class);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
+    /**
+     * Une page de transactions par ordre d'identifiant (pagination par clé)
+     * L'en-tête X-Next-After-Id donne l'afterId de la page suivante quand la page est pleine
+     * Sans size, toute la table comme auparavant (client Angular); pour une grande table, paginer
+     * ou utiliser /transactions/stream
+     * Exemple: /transactions?afterId=0&size=1000
+     */
     @GetMapping("/transactions")
-    public ResponseEntity<List<Transaction>> transactions(){
+    public ResponseEntity<List<Transaction>> transactions(
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(required = false) Integer size){
         try {
-            List<Transaction> transactions = transactionRepository.findAll();
-            return ResponseEntity.ok(transactions);
+            if (size == null) {
+                return ResponseEntity.ok(transactionRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.unlimited()));
+            }
+            int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+            List<Transaction> transactions = transactionRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageSize));
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (transactions.size() == pageSize) {
+                response.header("X-Next-After-Id", String.valueOf(transactions.get(transactions.size() - 1).getId()));
+            }
+            return response.body(transactions);
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Toute la table en NDJSON (une transaction JSON par ligne), lue en flux dans une transaction en lecture seule:
+     * chaque entité est détachée une fois écrite, la mémoire reste constante quelle que soit la taille de la table
+     */
+    @GetMapping(value = "/transactions/stream", produces = "application/x-ndjson")
+    public void streamTransactions(HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = response.getOutputStream();
+        long written = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            try (Stream<Transaction> transactions = transactionRepository.streamAllOrderById()) {
+                Iterator<Transaction> iterator = transactions.iterator();
+                while (iterator.hasNext()) {
+                    Transaction transaction = iterator.next();
+                    out.write(transactionWriter.writeValueAsBytes(transaction));
+                    out.write('\n');
+                    entityManager.detach(transaction);
+                    if (++count % FLUSH_EVERY == 0) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // client déconnecté
+            }
+            return count;
+        });
+        out.flush();
+        log.info("📤 {} transactions exportées en NDJSON", written);
+    }
+
+    /**
+     * Chargement en masse d'un fichier .csv (en-tête accountId,amount,type[,status][,date]) ou .ndjson/.jsonl
+     * (format de /transactions/stream); le rapport donne les lignes insérées, rejetées et le débit
+     */
+    @PostMapping("/transactions/bulk")
+    public ResponseEntity<?> bulkLoad(@RequestParam("file") MultipartFile file) {
+        String fileName = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase(Locale.ROOT) : "";
+        try (InputStream content = file.getInputStream()) {
+            if (fileName.endsWith(".csv")) {
+                return ResponseEntity.ok(bulkLoader.loadCsv(content));
+            }
+            if (fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl")) {
+                return ResponseEntity.ok(bulkLoader.loadNdjson(content));
+            }
+            return ResponseEntity.badRequest().body("Format non supporté (csv, ndjson ou jsonl): " + file.getOriginalFilename());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Erreur lors du chargement de {}: {}", file.getOriginalFilename(), e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Erreur: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Transactions synthétiques sur des comptes >= 1 000 000 000, chargées par lots
+     * Exemple: /transactions/generate?rows=1000000&accounts=1000&creditRatio=0.5&pendingRatio=0.3&canceledRatio=0.1&days=730
+     */
+    @PostMapping("/transactions/generate")
+    public TransactionBulkLoader.LoadReport generate(
+            @RequestParam(defaultValue = "1000000") long rows,
+            @RequestParam(defaultValue = "1000") int accounts,
+            @RequestParam(defaultValue = "0.5") double creditRatio,
+            @RequestParam(defaultValue = "0.3") double pendingRatio,
+            @RequestParam(defaultValue = "0.1") double canceledRatio,
+            @RequestParam(defaultValue = "730") int days,
+            @RequestParam(defaultValue = "5000") double maxAmount,
+            @RequestParam(defaultValue = "42") long seed) {
+        TransactionDatasetGenerator.Settings settings = new TransactionDatasetGenerator.Settings(Math.max(1, accounts),
+                TransactionDatasetGenerator.ACCOUNT_BASE, creditRatio, pendingRatio, canceledRatio, Math.max(1, days),
+                maxAmount, seed);
+        return bulkLoader.load(new TransactionDatasetGenerator(settings).rows(Math.max(0, rows)));
+    }
+
+    /**
+     * Supprime toutes les transactions synthétiques et leurs résumés
+     */
+    @DeleteMapping("/transactions/generated")
+    public String deleteGenerated() {
+        return bulkLoader.deleteAccountsFrom(TransactionDatasetGenerator.ACCOUNT_BASE) + " transactions synthétiques supprimées";
+    }
+
+    @GetMapping("/transactions/summaries/{accountId}")
+    public ResponseEntity<AccountSummary> accountSummary(@PathVariable long accountId) {
+        return ResponseEntity.of(accountSummaryService.find(accountId));
+    }
+
+    /**
+     * Compare les résumés de comptes à un recalcul depuis la table Transaction (lecture seule)
+     */
+    @GetMapping("/transactions/summaries/check")
+    public AccountSummaryService.ConsistencyReport checkSummaries() {
+        return accountSummaryService.check(false);
+    }
+
+    /**
+     * Compare les résumés de comptes à un recalcul et corrige ceux qui diffèrent, manquent ou sont orphelins
+     */
+    @PostMapping("/transactions/summaries/repair")
+    public AccountSummaryService.ConsistencyReport repairSummaries() {
+        return accountSummaryService.check(true);
+    }
+
+    /**
+     * Reconstruit tous les résumés de comptes depuis la table Transaction
+     */
+    @PostMapping("/transactions/summaries/rebuild")
+    public String rebuildSummaries() {
+        return accountSummaryService.rebuild() + " résumés de comptes reconstruits";
+    }
+
+    /**
+     * Succès et échecs par région de cache (second niveau et requêtes Hibernate, caches Spring)
+     */
+    @GetMapping("/transactions/cache/stats")
+    public List<CacheStatisticsService.RegionStatistics> cacheStatistics() {
+        return cacheStatisticsService.regions();
+    }
+
+    /**
+     * Statistiques calculées sur l'instantané en colonnes (mêmes paramètres que l'outil aggregateTransactions)
+     * Exemple: /transactions/analytics?aggregate=SUM&type=DEBIT&status=EXECUTED&period=THIS_MONTH&groupBy=ACCOUNT
+     */
+    @GetMapping("/transactions/analytics")
+    public ResponseEntity<?> analytics(
+            @RequestParam(defaultValue = "SUM") AnalyticsQuery.Aggregate aggregate,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) Long accountId,
+            @RequestParam(defaultValue = "ALL") String period,
+            @RequestParam(defaultValue = "NONE") AnalyticsQuery.GroupBy groupBy) {
+        try {
+            AnalyticsQuery query = new AnalyticsQuery(accountId, type, status, Period.parse(period, LocalDate.now(ZoneOffset.UTC)),
+                    aggregate, groupBy);
+            AnalyticsResult result = analyticsService.query(query);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/transactions/analytics/status")
+    public TransactionAnalyticsService.SnapshotStatus analyticsStatus() {
+        return analyticsService.status();
+    }
+
+    /**
+     * Relit toute la table dans l'instantané (après des modifications faites directement en SQL)
+     */
+    @PostMapping("/transactions/analytics/rebuild")
+    public String rebuildAnalytics() {
+        return analyticsService.rebuild() + " transactions relues dans l'instantané analytique";
+    }
+
+    /**
+     * Commandes d'écriture du chat (outbox): nombre en attente, appliquées et rejetées
+     */
+    @GetMapping("/transactions/commands/status")
+    public TransactionCommandService.CommandStatistics commandStatistics() {
+        return commandService.statistics();
+    }
+
+    /**
+     * État d'une commande d'écriture demandée dans le chat (numéro donné par l'accusé de réception)
+     */
+    @GetMapping("/transactions/commands/{id}")
+    public ResponseEntity<TransactionCommand> command(@PathVariable Long id) {
+        return ResponseEntity.of(commandService.find(id));
+    }
 }
@@ -0,0 +1,225 @@
+package net.youssfi.transactionservice.analytics;
+
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parcours des colonnes (séquentiel et parallèle par morceaux) comparé à un calcul naïf sur les mêmes lignes,
+ * après ajouts, remplacements, suppressions, suppressions par plage de comptes et compactage
+ */
+class ColumnarScannerTest {
+
+    private static final int ROWS = 10_000;
+    private static final int ACCOUNTS = 50;
+    private static final int CHUNK_ROWS = 1024;
+    private static final long DAY_MILLIS = 24L * 3600 * 1000;
+    // Quelques jours avant 1970 pour les divisions entières des dates négatives
+    private static final long START = LocalDate.of(1969, 12, 25).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+    private static final LocalDate RECENT = LocalDate.of(2023, 1, 1);
+
+    private final Map<Long, Row> reference = new LinkedHashMap<>();
+    private TransactionColumns columns;
+    private ForkJoinPool pool;
+
+    private record Row(long id, long accountId, double amount, long date, TransactionType type, TransactionStatus status) {
+    }
+
+    @BeforeEach
+    void load() {
+        pool = new ForkJoinPool(4);
+        columns = new TransactionColumns(16);
+        Random random = new Random(49);
+        for (long id = 1; id <= ROWS; id++) {
+            upsert(randomRow(random, id));
+        }
+        // Lignes revues par la lecture incrémentale: même identifiant, nouvelles valeurs
+        for (int i = 0; i < 500; i++) {
+            upsert(randomRow(random, 1 + random.nextInt(ROWS)));
+        }
+        for (int i = 0; i < 700; i++) {
+            long id = 1 + random.nextInt(ROWS);
+            assertEquals(reference.remove(id) != null, columns.delete(id), "suppression " + id);
+        }
+        // Lignes supprimées puis revues: elles redeviennent visibles
+        for (long id = 1; id <= 200; id++) {
+            if (!reference.containsKey(id)) {
+                upsert(randomRow(random, id));
+            }
+        }
+        int before = reference.size();
+        reference.values().removeIf(row -> row.accountId() >= 40 && row.accountId() < 45);
+        assertEquals(before - reference.size(), columns.deleteAccounts(40, 45));
+    }
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void scanMatchesReference() {
+        assertEquals(reference.size(), columns.live());
+        assertAllQueries();
+    }
+
+    @Test
+    void compactKeepsResults() {
+        columns.compact();
+        assertEquals(0, columns.deleted());
+        assertEquals(reference.size(), columns.size());
+        assertAllQueries();
+        // Index des identifiants reconstruit: un remplacement après compactage ne duplique pas la ligne
+        Row first = reference.values().iterator().next();
+        upsert(new Row(first.id(), first.accountId(), first.amount() + 1, first.date(), first.type(), first.status()));
+        assertEquals(reference.size(), columns.size());
+        assertTrue(columns.delete(first.id()));
+        assertFalse(columns.delete(first.id()));
+        reference.remove(first.id());
+        assertAllQueries();
+    }
+
+    @Test
+    void monthIndexMatchesCalendar() {
+        for (long epochDay = -800_000; epochDay <= 800_000; epochDay += 13) {
+            YearMonth month = YearMonth.from(LocalDate.ofEpochDay(epochDay));
+            assertEquals(month.getYear() * 12L + month.getMonthValue() - 1, ColumnarScanner.monthIndex(epochDay),
+                    LocalDate.ofEpochDay(epochDay).toString());
+        }
+    }
+
+    private void assertAllQueries() {
+        List<Long> accounts = new ArrayList<>();
+        accounts.add(null);
+        accounts.add(7L);
+        List<Period> periods = List.of(Period.ALL, Period.year(2024), Period.month(2024, 2), Period.day(LocalDate.of(1969, 12, 31)),
+                new Period(LocalDate.of(2024, 6, 15), null), new Period(null, LocalDate.of(2023, 3, 1)));
+        for (AnalyticsQuery.GroupBy groupBy : AnalyticsQuery.GroupBy.values()) {
+            for (Long accountId : accounts) {
+                for (Period period : periods) {
+                    assertQuery(new AnalyticsQuery(accountId, null, null, period, AnalyticsQuery.Aggregate.SUM, groupBy));
+                }
+            }
+            assertQuery(new AnalyticsQuery(null, TransactionType.CREDIT, TransactionStatus.EXECUTED, Period.ALL,
+                    AnalyticsQuery.Aggregate.COUNT, groupBy));
+            assertQuery(new AnalyticsQuery(null, TransactionType.DEBIT, null, Period.year(2024),
+                    AnalyticsQuery.Aggregate.MAX, groupBy));
+            assertQuery(new AnalyticsQuery(3L, null, TransactionStatus.PENDING, Period.ALL,
+                    AnalyticsQuery.Aggregate.AVG, groupBy));
+        }
+    }
+
+    private void assertQuery(AnalyticsQuery query) {
+        Map<String, double[]> expected = expected(query);
+        long matched = 0;
+        for (double[] group : expected.values()) {
+            matched += (long) group[0];
+        }
+        for (ForkJoinPool scanPool : new ForkJoinPool[]{null, pool}) {
+            AnalyticsResult result = ColumnarScanner.scan(columns, query, scanPool, CHUNK_ROWS);
+            String label = query.describe() + (scanPool == null ? " (séquentiel)" : " (parallèle)");
+            assertEquals(matched, result.matchedRows(), label);
+            if (query.groupBy() == AnalyticsQuery.GroupBy.NONE) {
+                AnalyticsResult.Group total = result.total();
+                assertEquals(matched, total.count(), label);
+                if (matched > 0) {
+                    assertGroup(expected.get("total"), total, label);
+                }
+                continue;
+            }
+            assertEquals(expected.size(), result.groupCount(), label);
+            assertEquals(expected.size(), result.groups().size(), label);
+            AnalyticsResult.Group previous = null;
+            for (AnalyticsResult.Group group : result.groups()) {
+                assertTrue(expected.containsKey(group.key()), label + ": groupe inattendu " + group.key());
+                assertGroup(expected.get(group.key()), group, label + ", groupe " + group.key());
+                if (previous != null) {
+                    assertOrdered(query, previous, group, label);
+                }
+                previous = group;
+            }
+        }
+    }
+
+    private Map<String, double[]> expected(AnalyticsQuery query) {
+        Map<String, double[]> groups = new HashMap<>();
+        for (Row row : reference.values()) {
+            LocalDate day = Instant.ofEpochMilli(row.date()).atZone(ZoneOffset.UTC).toLocalDate();
+            Period period = query.period();
+            if ((query.accountId() != null && row.accountId() != query.accountId())
+                    || (query.type() != null && row.type() != query.type())
+                    || (query.status() != null && row.status() != query.status())
+                    || (period.from() != null && day.isBefore(period.from()))
+                    || (period.to() != null && !day.isBefore(period.to()))) {
+                continue;
+            }
+            String key = switch (query.groupBy()) {
+                case NONE -> "total";
+                case ACCOUNT -> String.valueOf(row.accountId());
+                case TYPE -> row.type().name();
+                case STATUS -> row.status().name();
+                case MONTH -> YearMonth.from(day).toString();
+                case DAY -> day.toString();
+            };
+            double[] group = groups.computeIfAbsent(key,
+                    k -> new double[]{0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY});
+            group[0]++;
+            group[1] += row.amount();
+            group[2] = Math.min(group[2], row.amount());
+            group[3] = Math.max(group[3], row.amount());
+        }
+        return groups;
+    }
+
+    private static void assertGroup(double[] expected, AnalyticsResult.Group actual, String label) {
+        assertEquals((long) expected[0], actual.count(), label);
+        // Ordre des additions différent (morceaux parallèles): tolérance relative
+        assertEquals(expected[1], actual.sum(), 1e-9 * Math.max(1, Math.abs(expected[1])), label);
+        assertEquals(expected[2], actual.min(), label);
+        assertEquals(expected[3], actual.max(), label);
+    }
+
+    private static void assertOrdered(AnalyticsQuery query, AnalyticsResult.Group previous, AnalyticsResult.Group group,
+                                      String label) {
+        switch (query.groupBy()) {
+            case ACCOUNT -> assertTrue(previous.value(query.aggregate()) >= group.value(query.aggregate()), label);
+            case MONTH -> assertTrue(YearMonth.parse(previous.key()).isBefore(YearMonth.parse(group.key())), label);
+            case DAY -> assertTrue(LocalDate.parse(previous.key()).isBefore(LocalDate.parse(group.key())), label);
+            default -> {
+            }
+        }
+    }
+
+    private void upsert(Row row) {
+        reference.put(row.id(), row);
+        columns.upsert(row.id(), row.accountId(), row.amount(), row.date(), row.type(), row.status());
+    }
+
+    private static Row randomRow(Random random, long id) {
+        // Un dixième des lignes autour du 1er janvier 1970, les autres de 2023 à 2025
+        long date = random.nextInt(10) == 0
+                ? START + (long) (random.nextDouble() * 14 * DAY_MILLIS)
+                : RECENT.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli() + (long) (random.nextDouble() * 730 * DAY_MILLIS);
+        return new Row(id, random.nextInt(ACCOUNTS), Math.round(random.nextDouble() * 1_000_000) / 100.0, date,
+                TransactionType.values()[random.nextInt(TransactionType.values().length)],
+                TransactionStatus.values()[random.nextInt(TransactionStatus.values().length)]);
+    }
+}
@@ -0,0 +1,141 @@
+package net.youssfi.transactionservice.analytics;
+
+import net.youssfi.transactionservice.entities.Transaction;
+import net.youssfi.transactionservice.entities.TransactionStatus;
+import net.youssfi.transactionservice.entities.TransactionType;
+import net.youssfi.transactionservice.repository.AccountStatusTotals;
+import net.youssfi.transactionservice.repository.TransactionRepository;
+import net.youssfi.transactionservice.repository.TransactionRow;
+import net.youssfi.transactionservice.repository.TransactionTotals;
+import net.youssfi.transactionservice.service.TransactionBulkLoader;
+import net.youssfi.transactionservice.service.TransactionWriteService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Les colonnes lues par streamRowsAfter (la requête de TransactionAnalyticsService) donnent les mêmes nombres
+ * et totaux que les agrégats JPQL du repository
+ * Les services de la classe principale (CommandLineRunner de démarrage) sont remplacés par des mocks:
+ * la base ne contient que les lignes du test
+ */
+@DataJpaTest
+class ColumnarSnapshotTest {
+
+    private static final int ACCOUNTS = 20;
+    private static final int ROWS = 3000;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @MockBean
+    private TransactionWriteService transactionWriteService;
+
+    @MockBean
+    private TransactionBulkLoader transactionBulkLoader;
+
+    private TransactionColumns columns;
+
+    @BeforeEach
+    void load() {
+        Random random = new Random(49);
+        long start = new Date().getTime() - 400L * 24 * 3600 * 1000;
+        List<Transaction> transactions = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            transactions.add(Transaction.builder()
+                    .accountId(1 + random.nextInt(ACCOUNTS))
+                    .amount(Math.round(random.nextDouble() * 1_000_000) / 100.0)
+                    .date(new Date(start + (long) (random.nextDouble() * 400L * 24 * 3600 * 1000)))
+                    .type(TransactionType.values()[random.nextInt(TransactionType.values().length)])
+                    .status(TransactionStatus.values()[random.nextInt(TransactionStatus.values().length)])
+                    .build());
+        }
+        transactionRepository.saveAllAndFlush(transactions);
+        columns = new TransactionColumns(ROWS);
+        try (Stream<TransactionRow> rows = transactionRepository.streamRowsAfter(0)) {
+            rows.forEach(row -> columns.upsert(row.getId(), row.getAccountId(), row.getAmount(), row.getDate().getTime(),
+                    row.getType(), row.getStatus()));
+        }
+    }
+
+    @Test
+    void totalsMatchJpql() {
+        assertEquals(ROWS, columns.live());
+        assertTotals(transactionRepository.summarizeAll(), null, null);
+        for (TransactionStatus status : TransactionStatus.values()) {
+            assertTotals(transactionRepository.summarizeStatus(status), null, status);
+        }
+        for (long accountId = 1; accountId <= ACCOUNTS; accountId++) {
+            assertTotals(transactionRepository.summarizeAccount(accountId), accountId, null);
+        }
+    }
+
+    @Test
+    void accountGroupsMatchJpqlGroupBy() {
+        Map<String, AccountStatusTotals> expected = new HashMap<>();
+        for (AccountStatusTotals totals : transactionRepository.summarizeByAccountAndStatus()) {
+            expected.put(totals.getAccountId() + "/" + totals.getStatus(), totals);
+        }
+        int groups = 0;
+        for (TransactionStatus status : TransactionStatus.values()) {
+            Map<String, AnalyticsResult.Group> credits =
+                    byKey(query(null, TransactionType.CREDIT, status, AnalyticsQuery.GroupBy.ACCOUNT));
+            Map<String, AnalyticsResult.Group> debits =
+                    byKey(query(null, TransactionType.DEBIT, status, AnalyticsQuery.GroupBy.ACCOUNT));
+            for (long accountId = 1; accountId <= ACCOUNTS; accountId++) {
+                AccountStatusTotals totals = expected.get(accountId + "/" + status);
+                AnalyticsResult.Group credit = credits.get(String.valueOf(accountId));
+                AnalyticsResult.Group debit = debits.get(String.valueOf(accountId));
+                long count = (credit != null ? credit.count() : 0) + (debit != null ? debit.count() : 0);
+                if (totals == null) {
+                    assertEquals(0, count, accountId + "/" + status);
+                    continue;
+                }
+                groups++;
+                assertEquals(totals.getTransactionCount(), count, accountId + "/" + status);
+                assertClose(totals.getCredits(), credit != null ? credit.sum() : 0);
+                assertClose(totals.getDebits(), debit != null ? debit.sum() : 0);
+            }
+        }
+        assertEquals(expected.size(), groups);
+    }
+
+    private void assertTotals(TransactionTotals expected, Long accountId, TransactionStatus status) {
+        AnalyticsResult.Group all = query(accountId, null, status, AnalyticsQuery.GroupBy.NONE).total();
+        AnalyticsResult.Group credits = query(accountId, TransactionType.CREDIT, status, AnalyticsQuery.GroupBy.NONE).total();
+        AnalyticsResult.Group debits = query(accountId, TransactionType.DEBIT, status, AnalyticsQuery.GroupBy.NONE).total();
+        assertEquals(expected.getTransactionCount(), all.count(), "compte " + accountId + ", statut " + status);
+        assertClose(expected.getCredits(), credits.sum());
+        assertClose(expected.getDebits(), debits.sum());
+    }
+
+    private AnalyticsResult query(Long accountId, TransactionType type, TransactionStatus status, AnalyticsQuery.GroupBy groupBy) {
+        return ColumnarScanner.scan(columns,
+                new AnalyticsQuery(accountId, type, status, Period.ALL, AnalyticsQuery.Aggregate.SUM, groupBy), null, ROWS);
+    }
+
+    private static Map<String, AnalyticsResult.Group> byKey(AnalyticsResult result) {
+        Map<String, AnalyticsResult.Group> groups = new HashMap<>();
+        for (AnalyticsResult.Group group : result.groups()) {
+            groups.put(group.key(), group);
+        }
+        return groups;
+    }
+
+    // Ordre des additions différent de la base: tolérance relative
+    private static void assertClose(double expected, double actual) {
+        assertEquals(expected, actual, 1e-9 * Math.max(1, Math.abs(expected)));
+    }
+}
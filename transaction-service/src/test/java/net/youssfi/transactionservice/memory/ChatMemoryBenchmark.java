@@ -0,0 +1,115 @@
+package net.youssfi.transactionservice.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * N sessions de chat: ancienne map sans éviction (ConcurrentHashMap de MessageWindowChatMemory) contre
+ * BoundedChatMemoryProvider sous un budget en octets
+ * Le temps mesuré est celui du remplissage; le tas retenu (mesuré après GC, dans la JVM forkée du benchmark)
+ * est affiché à la fin de chaque itération avec le nombre de sessions gardées
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="ChatMemoryBenchmark"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ChatMemoryBenchmark {
+
+    private static final int MAX_MESSAGES = 20;
+    private static final int GC_ROUNDS = 3;
+    private static final String QUESTION = "Quel est le solde du compte %d et quelles sont ses dernières transactions ?";
+    private static final String ANSWER = "Le compte %d a un solde de 1250.00 MAD; ses trois dernières transactions "
+            + "sont un dépôt de 500.00, un retrait de 120.00 et un virement de 80.00.";
+
+    @Param("100000")
+    public int sessions;
+
+    @Param("5")
+    public int exchanges;
+
+    @Param({"unbounded", "bounded"})
+    public String provider;
+
+    @Param("67108864")
+    public long maxBytes;
+
+    private Map<String, ChatMemory> unboundedMemories;
+    private BoundedChatMemoryProvider boundedProvider;
+    private ChatMemoryProvider memoryProvider;
+    private long heapBefore;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        if ("bounded".equals(provider)) {
+            // TTL long: seule l'éviction sur budget intervient pendant la mesure
+            boundedProvider = new BoundedChatMemoryProvider(
+                    id -> MessageWindowChatMemory.builder().id(id).maxMessages(MAX_MESSAGES).build(),
+                    Long.MAX_VALUE / 2, maxBytes, null);
+            memoryProvider = boundedProvider;
+        } else {
+            unboundedMemories = new ConcurrentHashMap<>();
+            memoryProvider = chatId -> unboundedMemories.computeIfAbsent(chatId.toString(),
+                    id -> MessageWindowChatMemory.withMaxMessages(MAX_MESSAGES));
+        }
+        heapBefore = usedHeap();
+    }
+
+    @Benchmark
+    public ChatMemoryProvider fill() {
+        for (int session = 0; session < sessions; session++) {
+            ChatMemory memory = memoryProvider.get("session-" + session);
+            for (int exchange = 0; exchange < exchanges; exchange++) {
+                memory.add(UserMessage.from(String.format(QUESTION, session)));
+                memory.add(AiMessage.from(String.format(ANSWER, session)));
+            }
+        }
+        return memoryProvider;
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long retainedBytes = usedHeap() - heapBefore;
+        int retained = boundedProvider != null ? boundedProvider.size() : unboundedMemories.size();
+        System.out.printf("%n%s: %d sessions en mémoire sur %d, tas retenu %d Mo (%d octets/session)%s%n",
+                provider, retained, sessions, retainedBytes >> 20, retainedBytes / Math.max(1, retained),
+                boundedProvider != null ? ", estimation " + (boundedProvider.totalBytes() >> 20) + " Mo" : "");
+        if (boundedProvider != null) {
+            boundedProvider.close();
+        }
+        boundedProvider = null;
+        unboundedMemories = null;
+        memoryProvider = null;
+    }
+
+    // Hors de la mesure (setup / teardown), dans la JVM forkée par JMH
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,75 @@
+package net.youssfi.transactionservice.rag;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comptes de tokens connus sur de petits vocabulaires tokenizer.json (src/test/resources/tokenizer)
+ * Les comptes attendus se déduisent à la main des fusions de chaque fichier
+ */
+class BpeTokenizerTest {
+
+    @ParameterizedTest(name = "{0}: \"{1}\" → {2}")
+    @CsvSource(delimiter = '|', value = {
+            // SentencePiece: "▁les" fusionné en entier, "▁chats" → "▁chat" + "s"
+            "metaspace-bpe.json|les|1",
+            "metaspace-bpe.json|les chats|3",
+            // "é" absent du vocabulaire: deux octets <0xC3><0xA9>
+            "metaspace-bpe.json|été|6",
+            // GPT-2: "hello" et "Ġworld" fusionnés, "!" seul
+            "byte-level-bpe.json|hello world|2",
+            "byte-level-bpe.json|hello world!|3",
+            // WordPiece: minuscules, "le" + "##s", "chat" + "##s", ponctuation séparée
+            "wordpiece.json|Les chats!|5",
+            "wordpiece.json|Été|1",
+            "wordpiece.json|xyz|1"
+    })
+    void countsKnownTokens(String vocabulary, String text, int expected) throws IOException {
+        assertEquals(expected, load(vocabulary).estimateTokenCountInText(text));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "metaspace-bpe.json|les chats les chats",
+            "byte-level-bpe.json|hello world! hello world!",
+            "wordpiece.json|Les chats! Les chats!"
+    })
+    void truncateRoundTrips(String vocabulary, String text) throws IOException {
+        BpeTokenizer tokenizer = load(vocabulary);
+        int total = tokenizer.estimateTokenCountInText(text);
+        assertEquals(text, tokenizer.truncate(text, total));
+        for (int budget = 0; budget < total; budget++) {
+            String truncated = tokenizer.truncate(text, budget);
+            assertTrue(text.startsWith(truncated));
+            assertTrue(tokenizer.estimateTokenCountInText(truncated) <= budget, "budget " + budget + ": " + truncated);
+        }
+    }
+
+    @Test
+    void truncatesOnWordBoundary() throws IOException {
+        BpeTokenizer tokenizer = load("metaspace-bpe.json");
+        assertEquals("les", tokenizer.truncate("les chats", 2));
+        assertEquals("", tokenizer.truncate("les chats", 0));
+    }
+
+    @Test
+    void cachedCountsMatchFreshCounts() throws IOException {
+        BpeTokenizer tokenizer = load("byte-level-bpe.json");
+        int first = tokenizer.estimateTokenCountInText("hello world! hello world!");
+        assertEquals(first, tokenizer.estimateTokenCountInText("hello world! hello world!"));
+        assertEquals(first, load("byte-level-bpe.json").estimateTokenCountInText("hello world! hello world!"));
+        assertTrue(tokenizer.cachedPieces() > 0);
+    }
+
+    private static BpeTokenizer load(String vocabulary) throws IOException {
+        InputStream inputStream = BpeTokenizerTest.class.getResourceAsStream("/tokenizer/" + vocabulary);
+        return BpeTokenizer.load(inputStream, 1024);
+    }
+}
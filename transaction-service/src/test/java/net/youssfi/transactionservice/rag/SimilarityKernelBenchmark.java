@@ -0,0 +1,93 @@
+package net.youssfi.transactionservice.rag;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Noyaux scalaire et SIMD (ns par vecteur) pour dot, cosinus et L2, sur une matrice stockée à plat comme dans
+ * FilteredInMemoryEmbeddingStore
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="SimilarityKernelBenchmark"
+ * Le noyau simd échoue au setup si jdk.incubator.vector n'est pas chargé
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class SimilarityKernelBenchmark {
+
+    private static final int VECTORS = 4096;
+
+    @Param({"384", "768", "1024"})
+    public int dimension;
+
+    @Param({"scalar", "simd"})
+    public String kernel;
+
+    private SimilarityKernel similarity;
+    private float[] query;
+    private float[] matrix;
+
+    @Setup
+    public void setUp() {
+        similarity = "simd".equals(kernel) ? VectorSimilarity.simdKernel() : VectorSimilarity.scalarKernel();
+        if (similarity == null) {
+            throw new IllegalStateException("Vector API indisponible (--add-modules jdk.incubator.vector)");
+        }
+        Random random = new Random(42);
+        query = gaussian(random, dimension);
+        matrix = gaussian(random, VECTORS * dimension);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public float dot() {
+        float sum = 0;
+        for (int offset = 0; offset < matrix.length; offset += dimension) {
+            sum += similarity.dot(query, 0, matrix, offset, dimension);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public float cosine() {
+        float sum = 0;
+        for (int offset = 0; offset < matrix.length; offset += dimension) {
+            sum += similarity.cosine(query, 0, matrix, offset, dimension);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public float l2Squared() {
+        float sum = 0;
+        for (int offset = 0; offset < matrix.length; offset += dimension) {
+            sum += similarity.l2Squared(query, 0, matrix, offset, dimension);
+        }
+        return sum;
+    }
+
+    private static float[] gaussian(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+}
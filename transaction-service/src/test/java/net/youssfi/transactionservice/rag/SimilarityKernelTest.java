@@ -0,0 +1,79 @@
+package net.youssfi.transactionservice.rag;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Le noyau SIMD calcule la même chose que le noyau scalaire (fin de vecteur et offsets compris),
+ * et le chargement par réflexion retombe sur le scalaire quand la classe est inutilisable
+ * Surefire charge jdk.incubator.vector (voir le pom): sans ce module les comparaisons sont ignorées
+ */
+class SimilarityKernelTest {
+
+    private static final SimilarityKernel SCALAR = VectorSimilarity.scalarKernel();
+
+    // Dimensions hors multiple de la largeur SIMD: la fin du vecteur passe par la boucle scalaire
+    @ParameterizedTest(name = "d={0}")
+    @ValueSource(ints = {1, 3, 7, 8, 15, 16, 17, 33, 384, 1023})
+    void simdMatchesScalar(int dimension) {
+        SimilarityKernel simd = VectorSimilarity.simdKernel();
+        assumeTrue(simd != null, "Vector API indisponible");
+        Random random = new Random(dimension);
+        int offset = 5;
+        float[] a = gaussian(random, dimension);
+        float[] matrix = gaussian(random, offset + 2 * dimension);
+
+        for (int row = offset; row <= offset + dimension; row += dimension) {
+            assertClose(SCALAR.dot(a, 0, matrix, row, dimension), simd.dot(a, 0, matrix, row, dimension), dimension);
+            assertClose(SCALAR.cosine(a, 0, matrix, row, dimension), simd.cosine(a, 0, matrix, row, dimension), 1);
+            assertClose(SCALAR.l2Squared(a, 0, matrix, row, dimension), simd.l2Squared(a, 0, matrix, row, dimension),
+                    dimension);
+        }
+    }
+
+    @Test
+    void activeKernelIsSimdWhenAvailable() {
+        SimilarityKernel simd = VectorSimilarity.simdKernel();
+        assertEquals((simd != null ? simd : SCALAR).name(), VectorSimilarity.kernelName());
+    }
+
+    @Test
+    void zeroVectorHasZeroCosine() {
+        float[] zero = new float[19];
+        float[] other = gaussian(new Random(1), 19);
+        assertEquals(0f, SCALAR.cosine(zero, 0, other, 0, 19));
+        SimilarityKernel simd = VectorSimilarity.simdKernel();
+        if (simd != null) {
+            assertEquals(0f, simd.cosine(zero, 0, other, 0, 19));
+        }
+    }
+
+    @Test
+    void fallsBackWhenKernelCannotBeLoaded() {
+        assertNull(VectorSimilarity.loadKernel(VectorSimilarity.class.getPackageName() + ".MissingSimilarityKernel"));
+        assertNotNull(VectorSimilarity.loadKernel(ScalarSimilarityKernel.class.getName()));
+    }
+
+    private static float[] gaussian(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+
+    /**
+     * L'ordre des additions diffère entre noyaux: tolérance relative à l'ordre de grandeur de la somme
+     */
+    private static void assertClose(float expected, float actual, int scale) {
+        assertEquals(expected, actual, 1e-5f * Math.max(1, scale) + 1e-4f * Math.abs(expected));
+    }
+}
@@ -0,0 +1,49 @@
+package net.youssfi.transactionservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût du routage des commandes outils (TransactionIntentRouter, expressions précompilées), en ns par question
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="TransactionIntentRouterBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionIntentRouterBenchmark {
+
+    private static final List<String> QUESTIONS = List.of(
+            "supprimer la transaction 5",
+            "update status of transaction 9 to cancelled",
+            "créer une transaction pour le compte 3 montant 150.5 type DEBIT",
+            "quel est le solde du compte 5",
+            "transactions avec le statut PENDING",
+            "transactions du compte 12",
+            "affiche la transaction 17",
+            "afficher toutes les transactions",
+            "quel est le montant total des transactions en 2023 ?",
+            "moyenne des débits exécutés par compte ce mois");
+
+    @Benchmark
+    @OperationsPerInvocation(10) // une opération = une des 10 questions
+    public void route(Blackhole blackhole) {
+        for (String question : QUESTIONS) {
+            blackhole.consume(TransactionIntentRouter.route(question));
+        }
+    }
+}
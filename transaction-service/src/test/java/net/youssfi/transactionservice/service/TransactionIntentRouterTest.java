@@ -0,0 +1,19 @@
+package net.youssfi.transactionservice.service;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Corpus de non-régression du routage des commandes (français / anglais)
+ */
+class TransactionIntentRouterTest {
+
+    @ParameterizedTest(name = "{0} → {1}")
+    @CsvFileSource(resources = "/routing/intent-corpus.tsv", delimiter = '\t', quoteCharacter = '"')
+    void routesCorpus(String question, String expected) {
+        TransactionIntent intent = TransactionIntentRouter.route(question);
+        assertEquals(expected, intent != null ? intent.toString() : "-");
+    }
+}
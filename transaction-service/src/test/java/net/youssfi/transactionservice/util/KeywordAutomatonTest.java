@@ -0,0 +1,56 @@
+package net.youssfi.transactionservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Mots-clés qui se chevauchent ou partagent un préfixe / suffixe, limites de mot et accents
+ */
+class KeywordAutomatonTest {
+
+    private static List<String> keywords(KeywordAutomaton automaton, String text) {
+        return automaton.findAll(KeywordAutomaton.normalize(text)).stream()
+                .map(hit -> hit.keyword() + "@" + hit.start())
+                .toList();
+    }
+
+    private static KeywordAutomaton automaton(String... keywords) {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (int i = 0; i < keywords.length; i++) {
+            dictionary.put(keywords[i], i);
+        }
+        return new KeywordAutomaton(dictionary);
+    }
+
+    @Test
+    void findsOverlappingKeywords() {
+        KeywordAutomaton automaton = automaton("compte", "compte courant", "courant", "solde du compte");
+        assertEquals(List.of("solde du compte@0", "compte@9", "compte courant@9", "courant@16"),
+                keywords(automaton, "solde du compte courant"));
+    }
+
+    @Test
+    void followsFailureLinksAcrossSharedSuffixes() {
+        // Après "a b c", l'automate repart de "b c" (lien d'échec) pour trouver "b c d"
+        KeywordAutomaton automaton = automaton("a b c", "b c d", "c");
+        assertEquals(List.of("a b c@0", "c@4", "b c d@2"), keywords(automaton, "a b c d"));
+    }
+
+    @Test
+    void requiresWordBoundaries() {
+        KeywordAutomaton automaton = automaton("add", "action", "transaction");
+        assertEquals(List.of("add@0"), keywords(automaton, "add address"));
+        assertEquals(List.of("transaction@0", "action@13"), keywords(automaton, "transaction, action"));
+    }
+
+    @Test
+    void ignoresCaseAndAccents() {
+        KeywordAutomaton automaton = automaton("dépôt", "résumé");
+        assertEquals(List.of("depot@0", "resume@9"), keywords(automaton, "DEPOT et Résume’"));
+    }
+}